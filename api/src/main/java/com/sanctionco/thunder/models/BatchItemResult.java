@@ -0,0 +1,123 @@
+package com.sanctionco.thunder.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Represents the result of one item in a batch request, providing access to the email address
+ * of the user that the item was for, the HTTP status code that the item would have received as
+ * a single request, and either the resulting user or a message describing the failure.
+ *
+ * @see User
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+  private final String email;
+  private final int status;
+  private final User user;
+  private final String message;
+
+  /**
+   * Constructs a new batch item result with the given email, status, user, and message.
+   *
+   * @param email the email address of the user that the item was for
+   * @param status the HTTP status code of the item
+   * @param user the resulting user if the item succeeded, otherwise {@code null}
+   * @param message a description of the failure if the item failed, otherwise {@code null}
+   */
+  @JsonCreator
+  public BatchItemResult(@JsonProperty("email") String email,
+                         @JsonProperty("status") int status,
+                         @JsonProperty("user") User user,
+                         @JsonProperty("message") String message) {
+    this.email = email;
+    this.status = status;
+    this.user = user;
+    this.message = message;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public User getUser() {
+    return user;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Determines if the item succeeded, based on its status code.
+   *
+   * @return {@code true} if the status code is in the 2xx range; {@code false} otherwise
+   */
+  @JsonIgnore
+  public boolean isSuccessful() {
+    return status >= 200 && status < 300;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (!(obj instanceof BatchItemResult other)) {
+      return false;
+    }
+
+    return Objects.equals(this.email, other.email)
+        && this.status == other.status
+        && Objects.equals(this.user, other.user)
+        && Objects.equals(this.message, other.message);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(email, status, user, message);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "BatchItemResult [", "]")
+        .add(String.format("email=%s", email))
+        .add(String.format("status=%d", status))
+        .add(String.format("user=%s", user))
+        .add(String.format("message=%s", message))
+        .toString();
+  }
+
+  /**
+   * Creates a new successful {@code BatchItemResult} instance.
+   *
+   * @param status the HTTP status code of the item
+   * @param user the resulting user
+   * @return a new {@code BatchItemResult} instance
+   */
+  public static BatchItemResult success(int status, User user) {
+    return new BatchItemResult(user.getEmail().getAddress(), status, user, null);
+  }
+
+  /**
+   * Creates a new failed {@code BatchItemResult} instance.
+   *
+   * @param email the email address of the user that the item was for
+   * @param status the HTTP status code of the item
+   * @param message a description of the failure
+   * @return a new {@code BatchItemResult} instance
+   */
+  public static BatchItemResult failure(String email, int status, String message) {
+    return new BatchItemResult(email, status, null, message);
+  }
+}
@@ -0,0 +1,72 @@
+package com.sanctionco.thunder.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+/**
+ * Represents one page of users from a list request, providing access to the users in the page
+ * and the token used to request the next page. The token is opaque and should be passed back
+ * to Thunder unchanged.
+ *
+ * @see User
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserList {
+  private final List<User> users;
+  private final String nextToken;
+
+  /**
+   * Constructs a new user list with the given users and next page token.
+   *
+   * @param users the users in the page. If null, an empty list will be used.
+   * @param nextToken the token used to request the next page, or {@code null} if this is the
+   *                  last page
+   */
+  @JsonCreator
+  public UserList(@JsonProperty("users") List<User> users,
+                  @JsonProperty("nextToken") String nextToken) {
+    this.users = Optional.ofNullable(users).orElse(List.of());
+    this.nextToken = nextToken;
+  }
+
+  public List<User> getUsers() {
+    return users;
+  }
+
+  public String getNextToken() {
+    return nextToken;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (!(obj instanceof UserList other)) {
+      return false;
+    }
+
+    return Objects.equals(this.users, other.users)
+        && Objects.equals(this.nextToken, other.nextToken);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(users, nextToken);
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", "UserList [", "]")
+        .add(String.format("users=%s", users))
+        .add(String.format("nextToken=%s", nextToken))
+        .toString();
+  }
+}
@@ -0,0 +1,114 @@
+package com.sanctionco.thunder.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Resources;
+
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchItemResultTest {
+  private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+  private static final String MESSAGE = "User not found in the database. (User: test@test.com)";
+  private static final User USER = new User(Email.unverified("test@test.com"), "password");
+
+  // Test object should use the same values as the JSON object in
+  // 'resources/fixtures/batch_item_result.json'
+  private final BatchItemResult result = BatchItemResult.failure("test@test.com", 404, MESSAGE);
+
+  @Test
+  void shouldSerializeToJson() throws Exception {
+    String expected = MAPPER.writeValueAsString(MAPPER.readValue(
+        Resources.getResource("fixtures/batch_item_result.json"), BatchItemResult.class));
+
+    assertEquals(expected, MAPPER.writeValueAsString(result));
+  }
+
+  @Test
+  void shouldDeserializeFromJson() throws Exception {
+    BatchItemResult fromJson = MAPPER.readValue(
+        Resources.getResource("fixtures/batch_item_result.json"), BatchItemResult.class);
+
+    assertEquals(result, fromJson);
+  }
+
+  @Test
+  void shouldRoundTripSuccessfulResult() throws Exception {
+    BatchItemResult success = BatchItemResult.success(201, USER);
+
+    assertEquals(success,
+        MAPPER.readValue(MAPPER.writeValueAsString(success), BatchItemResult.class));
+  }
+
+  @Test
+  void successShouldUseUserEmail() {
+    BatchItemResult success = BatchItemResult.success(200, USER);
+
+    assertAll("The success result is correct",
+        () -> assertEquals("test@test.com", success.getEmail()),
+        () -> assertEquals(200, success.getStatus()),
+        () -> assertEquals(USER, success.getUser()),
+        () -> assertNull(success.getMessage()),
+        () -> assertTrue(success.isSuccessful()));
+  }
+
+  @Test
+  void failureShouldNotBeSuccessful() {
+    assertAll("The failure result is correct",
+        () -> assertNull(result.getUser()),
+        () -> assertEquals(MESSAGE, result.getMessage()),
+        () -> assertFalse(result.isSuccessful()));
+  }
+
+  @Test
+  @SuppressWarnings({"ConstantConditions", "ObjectEqualsNull"})
+  void equalsShouldWorkCorrectly() {
+    assertAll("Basic equals properties",
+        () -> assertFalse(result.equals(null), "Result must not be equal to null"),
+        () -> assertFalse(result.equals(new Object()), "Result must not be equal to another type"),
+        () -> assertEquals(result, result, "Result must be equal to itself"));
+
+    // Create different results to test against
+    var differentEmail = BatchItemResult.failure("bad@test.com", 404, MESSAGE);
+    var differentStatus = BatchItemResult.failure("test@test.com", 503, MESSAGE);
+    var differentUser = new BatchItemResult("test@test.com", 404, USER, MESSAGE);
+    var differentMessage = BatchItemResult.failure("test@test.com", 404, "message");
+
+    // Also test against an equal object
+    var sameResult = BatchItemResult.failure("test@test.com", 404, MESSAGE);
+
+    assertAll("Verify against other created objects",
+        () -> assertNotEquals(differentEmail, result),
+        () -> assertNotEquals(differentStatus, result),
+        () -> assertNotEquals(differentUser, result),
+        () -> assertNotEquals(differentMessage, result),
+        () -> assertEquals(sameResult, result));
+  }
+
+  @Test
+  void hashCodeShouldBeConsistent() {
+    assertEquals(BatchItemResult.failure("test@test.com", 404, MESSAGE).hashCode(),
+        result.hashCode());
+  }
+
+  @Test
+  void toStringShouldBeCorrect() {
+    String expected = new StringJoiner(", ", "BatchItemResult [", "]")
+        .add("email=test@test.com")
+        .add("status=404")
+        .add("user=null")
+        .add(String.format("message=%s", MESSAGE))
+        .toString();
+
+    assertEquals(expected, result.toString());
+  }
+}
@@ -0,0 +1,87 @@
+package com.sanctionco.thunder.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Resources;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserListTest {
+  private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+  private static final String TOKEN = "dGVzdEB0ZXN0LmNvbQ";
+  private static final User USER = new User(Email.unverified("test@test.com"), "password");
+
+  // Test object should use the same values as the JSON object in
+  // 'resources/fixtures/user_list.json'
+  private final UserList list = new UserList(List.of(USER), TOKEN);
+
+  @Test
+  void shouldSerializeToJson() throws Exception {
+    String expected = MAPPER.writeValueAsString(MAPPER.readValue(
+        Resources.getResource("fixtures/user_list.json"), UserList.class));
+
+    assertEquals(expected, MAPPER.writeValueAsString(list));
+  }
+
+  @Test
+  void shouldDeserializeFromJson() throws Exception {
+    UserList fromJson = MAPPER.readValue(
+        Resources.getResource("fixtures/user_list.json"), UserList.class);
+
+    assertEquals(list, fromJson);
+  }
+
+  @Test
+  void lastPageShouldNotHaveToken() throws Exception {
+    UserList last = new UserList(null, null);
+
+    assertAll("The last page is correct",
+        () -> assertTrue(last.getUsers().isEmpty()),
+        () -> assertNull(last.getNextToken()),
+        () -> assertFalse(MAPPER.writeValueAsString(last).contains("nextToken")));
+  }
+
+  @Test
+  @SuppressWarnings({"ConstantConditions", "ObjectEqualsNull"})
+  void equalsShouldWorkCorrectly() {
+    assertAll("Basic equals properties",
+        () -> assertFalse(list.equals(null), "List must not be equal to null"),
+        () -> assertFalse(list.equals(new Object()), "List must not be equal to another type"),
+        () -> assertEquals(list, list, "List must be equal to itself"));
+
+    var differentUsers = new UserList(List.of(), TOKEN);
+    var differentToken = new UserList(List.of(USER), null);
+    var sameList = new UserList(List.of(USER), TOKEN);
+
+    assertAll("Verify against other created objects",
+        () -> assertNotEquals(differentUsers, list),
+        () -> assertNotEquals(differentToken, list),
+        () -> assertEquals(sameList, list));
+  }
+
+  @Test
+  void hashCodeShouldBeConsistent() {
+    assertEquals(new UserList(List.of(USER), TOKEN).hashCode(), list.hashCode());
+  }
+
+  @Test
+  void toStringShouldBeCorrect() {
+    String expected = new StringJoiner(", ", "UserList [", "]")
+        .add(String.format("users=%s", List.of(USER)))
+        .add(String.format("nextToken=%s", TOKEN))
+        .toString();
+
+    assertEquals(expected, list.toString());
+  }
+}
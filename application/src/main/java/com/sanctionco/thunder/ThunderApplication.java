@@ -9,6 +9,9 @@ import com.sanctionco.thunder.secrets.SecretSourceProvider;
 import io.dropwizard.core.Application;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.AutoCloseableManager;
+
+import java.io.Closeable;
 
 /**
  * Starts up the Thunder application. The run method will add resources, health checks,
@@ -19,6 +22,7 @@ import io.dropwizard.core.setup.Environment;
  *
  * @see com.sanctionco.thunder.resources.UserResource UserResource
  * @see com.sanctionco.thunder.resources.VerificationResource VerificationResource
+ * @see com.sanctionco.thunder.resources.AdminResource AdminResource
  */
 public class ThunderApplication extends Application<ThunderConfiguration> {
 
@@ -42,7 +46,8 @@ public class ThunderApplication extends Application<ThunderConfiguration> {
   @Override
   public void run(ThunderConfiguration config, Environment env) {
     ThunderComponent component = DaggerThunderComponent.builder()
-        .daoModule(new DaoModule(config.getUsersDaoFactory()))
+        .daoModule(new DaoModule(config.getUsersDaoFactory(),
+            config.getValidationConfiguration().getIndexedProperties()))
         .emailModule(new EmailModule(config.getEmailServiceFactory()))
         .thunderModule(new ThunderModule(env.metrics(), config))
         .build();
@@ -50,6 +55,9 @@ public class ThunderApplication extends Application<ThunderConfiguration> {
     // Authentication
     config.getAuthConfiguration().registerAuthentication(env);
 
+    // Write queued changes and close database files when the server stops
+    env.lifecycle().manage(new AutoCloseableManager(component.getUsersDao()));
+
     // HealthChecks
     env.healthChecks().register("Database", component.getDatabaseHealthCheck());
 
@@ -60,6 +68,16 @@ public class ThunderApplication extends Application<ThunderConfiguration> {
     if (config.getEmailServiceFactory().isEnabled()) {
       env.jersey().register(component.getVerificationResource());
       env.healthChecks().register("Email", component.getEmailHealthCheck());
+
+      // Send queued emails when the server stops
+      if (component.getEmailService() instanceof Closeable outbox) {
+        env.lifecycle().manage(new AutoCloseableManager(outbox));
+      }
+    }
+
+    // Only register admin resource if it has been explicitly enabled
+    if (config.getRequestOptions().adminEndpointsEnabled()) {
+      env.jersey().register(component.getAdminResource());
     }
   }
 }
@@ -2,8 +2,11 @@ package com.sanctionco.thunder;
 
 import com.sanctionco.thunder.dao.DaoModule;
 import com.sanctionco.thunder.dao.DatabaseHealthCheck;
+import com.sanctionco.thunder.dao.UsersDao;
 import com.sanctionco.thunder.email.EmailHealthCheck;
 import com.sanctionco.thunder.email.EmailModule;
+import com.sanctionco.thunder.email.EmailService;
+import com.sanctionco.thunder.resources.AdminResource;
 import com.sanctionco.thunder.resources.UserResource;
 import com.sanctionco.thunder.resources.VerificationResource;
 
@@ -28,8 +31,15 @@ public interface ThunderComponent {
 
   VerificationResource getVerificationResource();
 
+  AdminResource getAdminResource();
+
   // HealthChecks
   DatabaseHealthCheck getDatabaseHealthCheck();
 
   EmailHealthCheck getEmailHealthCheck();
+
+  // Managed objects
+  UsersDao getUsersDao();
+
+  EmailService getEmailService();
 }
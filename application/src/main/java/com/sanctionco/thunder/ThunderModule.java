@@ -4,7 +4,11 @@ import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sanctionco.jmail.EmailValidator;
 import com.sanctionco.jmail.JMail;
+import com.sanctionco.thunder.crypto.CachingHashService;
+import com.sanctionco.thunder.crypto.ExecutorHashService;
+import com.sanctionco.thunder.crypto.HashExecutorConfiguration;
 import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
 import com.sanctionco.thunder.resources.RequestOptions;
 import com.sanctionco.thunder.secrets.SecretProvider;
 import com.sanctionco.thunder.validation.PropertyValidator;
@@ -103,9 +107,36 @@ class ThunderModule {
         config.getHashConfiguration().serverSideHash(),
         config.getHashConfiguration().allowCommonMistakes());
 
-    return config.getHashConfiguration().getAlgorithm().newHashService(
+    LOG.info("Hashing cost: argon: {}, bcrypt: {}, calibration enabled: {}, "
+        + "calibration target: {}, rehash on verify: {}",
+        config.getHashConfiguration().getArgon(),
+        config.getHashConfiguration().getBcrypt(),
+        config.getHashConfiguration().getCalibration().isEnabled(),
+        config.getHashConfiguration().getCalibration().getTargetTime(),
+        config.getHashConfiguration().rehashOnVerify());
+
+    HashService hashService = config.getHashConfiguration().getAlgorithm().newHashService(
         config.getHashConfiguration().serverSideHash(),
-        config.getHashConfiguration().allowCommonMistakes());
+        config.getHashConfiguration().allowCommonMistakes(),
+        config.getHashConfiguration());
+
+    HashExecutorConfiguration executor = config.getHashConfiguration().getExecutor();
+
+    LOG.info("Hashing executor: threads: {}, queueSize: {}",
+        executor.getThreads(), executor.getQueueSize());
+
+    hashService = new ExecutorHashService(hashService, executor, metrics);
+
+    CacheConfiguration matchCache = config.getHashConfiguration().getMatchCache();
+
+    if (!matchCache.isEnabled()) {
+      return hashService;
+    }
+
+    LOG.info("Password match cache: maximumSize: {}, expireAfterWrite: {}",
+        matchCache.getMaximumSize(), matchCache.getExpireAfterWrite());
+
+    return new CachingHashService(hashService, matchCache, metrics);
   }
 
   @Singleton
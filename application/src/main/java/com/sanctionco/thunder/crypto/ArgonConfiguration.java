@@ -0,0 +1,62 @@
+package com.sanctionco.thunder.crypto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional cost parameters for the {@code argon} password hash algorithm. See the
+ * {@code PasswordHashConfiguration} class for more details.
+ */
+public class ArgonConfiguration {
+  private static final int DEFAULT_MEMORY = 15360;
+  private static final int DEFAULT_ITERATIONS = 2;
+  private static final int DEFAULT_PARALLELISM = 1;
+
+  /**
+   * Constructs a new instance of {@code ArgonConfiguration} with default values.
+   */
+  public ArgonConfiguration() {
+    this(DEFAULT_MEMORY, DEFAULT_ITERATIONS, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Constructs a new instance of {@code ArgonConfiguration} with the given values.
+   *
+   * @param memory the amount of memory to use, in kibibytes
+   * @param iterations the number of passes over the memory
+   * @param parallelism the number of lanes to compute in parallel
+   */
+  ArgonConfiguration(int memory, int iterations, int parallelism) {
+    this.memory = memory;
+    this.iterations = iterations;
+    this.parallelism = parallelism;
+  }
+
+  @Min(8) @JsonProperty("memory")
+  private final Integer memory;
+
+  @Min(1) @JsonProperty("iterations")
+  private final Integer iterations;
+
+  @Min(1) @JsonProperty("parallelism")
+  private final Integer parallelism;
+
+  public Integer getMemory() {
+    return memory;
+  }
+
+  public Integer getIterations() {
+    return iterations;
+  }
+
+  public Integer getParallelism() {
+    return parallelism;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("{memory: %d, iterations: %d, parallelism: %d}",
+        memory, iterations, parallelism);
+  }
+}
@@ -2,17 +2,36 @@ package com.sanctionco.thunder.crypto;
 
 import com.password4j.Argon2Function;
 import com.password4j.Password;
+import com.password4j.types.Argon2;
 
 /**
- * Provides the BCrypt implementation for the {@link HashService}. Provides methods to hash and to
+ * Provides the Argon2 implementation for the {@link HashService}. Provides methods to hash and to
  * verify existing hashes match.
  *
  * @see HashService
  */
 public class ArgonHashService extends HashService {
+  private static final int OUTPUT_LENGTH = 32;
+
+  private final ArgonConfiguration configuration;
+  private final Argon2Function function;
+  private final boolean rehashOnVerify;
 
   ArgonHashService(boolean serverSideHashEnabled, boolean allowCommonMistakes) {
+    this(serverSideHashEnabled, allowCommonMistakes, new PasswordHashConfiguration());
+  }
+
+  ArgonHashService(boolean serverSideHashEnabled,
+                   boolean allowCommonMistakes,
+                   PasswordHashConfiguration hashConfiguration) {
     super(serverSideHashEnabled, allowCommonMistakes);
+
+    this.configuration = serverSideHashEnabled && hashConfiguration.getCalibration().isEnabled()
+        ? HashCalibrator.calibrate(hashConfiguration.getArgon(),
+            hashConfiguration.getCalibration().getTargetTime())
+        : hashConfiguration.getArgon();
+    this.function = function(configuration);
+    this.rehashOnVerify = hashConfiguration.rehashOnVerify();
   }
 
   @Override
@@ -23,9 +42,47 @@ public class ArgonHashService extends HashService {
   @Override
   public String hash(String plaintext) {
     if (serverSideHashEnabled()) {
-      return Password.hash(plaintext).withArgon2().getResult();
+      return Password.hash(plaintext).with(function).getResult();
     }
 
     return plaintext;
   }
+
+  @Override
+  public boolean needsRehash(String hashed) {
+    if (!rehashOnVerify || !serverSideHashEnabled() || allowCommonMistakes()) {
+      return false;
+    }
+
+    try {
+      Argon2Function existing = Argon2Function.getInstanceFromHash(hashed);
+
+      return existing.getVariant() != Argon2.ID
+          || existing.getMemory() != configuration.getMemory()
+          || existing.getIterations() != configuration.getIterations()
+          || existing.getParallelism() != configuration.getParallelism();
+    } catch (RuntimeException e) {
+      // Not an Argon2 hash, so it cannot be compared
+      return false;
+    }
+  }
+
+  ArgonConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Builds the Argon2id function that uses the given cost parameters.
+   *
+   * @param configuration the cost parameters
+   * @return the Argon2 function
+   */
+  static Argon2Function function(ArgonConfiguration configuration) {
+    return Argon2Function.getInstance(
+        configuration.getMemory(),
+        configuration.getIterations(),
+        configuration.getParallelism(),
+        OUTPUT_LENGTH,
+        Argon2.ID);
+  }
 }
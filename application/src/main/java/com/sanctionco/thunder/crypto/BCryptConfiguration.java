@@ -0,0 +1,42 @@
+package com.sanctionco.thunder.crypto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional cost parameters for the {@code bcrypt} password hash algorithm. See the
+ * {@code PasswordHashConfiguration} class for more details.
+ */
+public class BCryptConfiguration {
+  private static final int DEFAULT_COST = 10;
+
+  /**
+   * Constructs a new instance of {@code BCryptConfiguration} with default values.
+   */
+  public BCryptConfiguration() {
+    this(DEFAULT_COST);
+  }
+
+  /**
+   * Constructs a new instance of {@code BCryptConfiguration} with the given cost.
+   *
+   * @param cost the base 2 logarithm of the number of key expansion rounds
+   */
+  BCryptConfiguration(int cost) {
+    this.cost = cost;
+  }
+
+  @Min(4) @Max(31) @JsonProperty("cost")
+  private final Integer cost;
+
+  public Integer getCost() {
+    return cost;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("{cost: %d}", cost);
+  }
+}
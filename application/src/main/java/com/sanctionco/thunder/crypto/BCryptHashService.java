@@ -1,7 +1,10 @@
 package com.sanctionco.thunder.crypto;
 
+import com.password4j.BcryptFunction;
 import com.password4j.Password;
 
+import java.util.regex.Pattern;
+
 /**
  * Provides the BCrypt implementation for the {@link HashService}. Provides methods to hash and to
  * verify existing hashes match.
@@ -9,9 +12,27 @@ import com.password4j.Password;
  * @see HashService
  */
 public class BCryptHashService extends HashService {
+  private static final Pattern COST_PATTERN = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$.*");
+
+  private final BCryptConfiguration configuration;
+  private final BcryptFunction function;
+  private final boolean rehashOnVerify;
 
   BCryptHashService(boolean serverSideHashEnabled, boolean allowCommonMistakes) {
+    this(serverSideHashEnabled, allowCommonMistakes, new PasswordHashConfiguration());
+  }
+
+  BCryptHashService(boolean serverSideHashEnabled,
+                    boolean allowCommonMistakes,
+                    PasswordHashConfiguration hashConfiguration) {
     super(serverSideHashEnabled, allowCommonMistakes);
+
+    this.configuration = serverSideHashEnabled && hashConfiguration.getCalibration().isEnabled()
+        ? HashCalibrator.calibrate(hashConfiguration.getBcrypt(),
+            hashConfiguration.getCalibration().getTargetTime())
+        : hashConfiguration.getBcrypt();
+    this.function = function(configuration);
+    this.rehashOnVerify = hashConfiguration.rehashOnVerify();
   }
 
   @Override
@@ -22,9 +43,35 @@ public class BCryptHashService extends HashService {
   @Override
   public String hash(String plaintext) {
     if (serverSideHashEnabled()) {
-      return Password.hash(plaintext).withBcrypt().getResult();
+      return Password.hash(plaintext).with(function).getResult();
     }
 
     return plaintext;
   }
+
+  @Override
+  public boolean needsRehash(String hashed) {
+    if (!rehashOnVerify || !serverSideHashEnabled() || allowCommonMistakes()) {
+      return false;
+    }
+
+    var matcher = COST_PATTERN.matcher(hashed);
+
+    // Hashes that are not BCrypt hashes cannot be compared
+    return matcher.matches() && Integer.parseInt(matcher.group(1)) != configuration.getCost();
+  }
+
+  BCryptConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Builds the BCrypt function that uses the given cost.
+   *
+   * @param configuration the cost parameters
+   * @return the BCrypt function
+   */
+  static BcryptFunction function(BCryptConfiguration configuration) {
+    return BcryptFunction.getInstance(configuration.getCost());
+  }
 }
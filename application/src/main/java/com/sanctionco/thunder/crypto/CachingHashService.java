@@ -0,0 +1,154 @@
+package com.sanctionco.thunder.crypto;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Provides a {@link HashService} that remembers successful password matches for a short time, so
+ * that repeated requests from the same client do not re-run an expensive hash function such as
+ * Argon2 or BCrypt on every call. All other operations are passed to the wrapped hash service.
+ *
+ * <p>Each cache entry is keyed by the stored hash together with an HMAC of the supplied password.
+ * The HMAC key is randomly generated on startup and never leaves memory, so plaintext passwords
+ * are never stored. Since the stored hash is part of the key, an entry stops matching as soon as
+ * the user's password hash changes.
+ *
+ * <p>Only successful matches are cached. Incorrect passwords always pay the full cost of
+ * the hash function, which keeps brute force attempts as expensive as they were before.
+ *
+ * @see HashService
+ */
+public class CachingHashService extends HashService {
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int HMAC_KEY_LENGTH = 32;
+
+  private final HashService delegate;
+  private final Cache<String, Boolean> matches;
+  private final ThreadLocal<Mac> mac;
+
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  /**
+   * Constructs a new {@code CachingHashService} that caches successful matches from
+   * the given hash service.
+   *
+   * @param delegate the hash service used to hash passwords and verify uncached matches
+   * @param configuration the cache size and expiration configuration
+   * @param metrics the {@code MetricRegistry} instance used to register cache metrics
+   */
+  public CachingHashService(HashService delegate,
+                            CacheConfiguration configuration,
+                            MetricRegistry metrics) {
+    super(delegate.serverSideHashEnabled(), false);
+
+    this.delegate = Objects.requireNonNull(delegate);
+    this.matches = Caffeine.newBuilder()
+        .maximumSize(configuration.getMaximumSize())
+        .expireAfterWrite(configuration.getExpireAfterWrite().toJavaDuration())
+        .build();
+
+    byte[] key = new byte[HMAC_KEY_LENGTH];
+    new SecureRandom().nextBytes(key);
+
+    SecretKeySpec keySpec = new SecretKeySpec(key, HMAC_ALGORITHM);
+    this.mac = ThreadLocal.withInitial(() -> {
+      try {
+        Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+        instance.init(keySpec);
+
+        return instance;
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("Unable to initialize the password match cache HMAC", e);
+      }
+    });
+
+    hitCounter = metrics.counter(MetricRegistry.name(CachingHashService.class, "hits"));
+    missCounter = metrics.counter(MetricRegistry.name(CachingHashService.class, "misses"));
+  }
+
+  @Override
+  public boolean isMatch(String plaintext, String hashed) {
+    String key = cacheKey(plaintext, hashed);
+
+    if (matches.getIfPresent(key) != null) {
+      hitCounter.inc();
+      return true;
+    }
+
+    missCounter.inc();
+
+    boolean result = delegate.isMatch(plaintext, hashed);
+
+    if (result) {
+      matches.put(key, Boolean.TRUE);
+    }
+
+    return result;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> isMatchAsync(String plaintext, String hashed) {
+    String key = cacheKey(plaintext, hashed);
+
+    if (matches.getIfPresent(key) != null) {
+      hitCounter.inc();
+      return CompletableFuture.completedFuture(true);
+    }
+
+    missCounter.inc();
+
+    return delegate.isMatchAsync(plaintext, hashed).thenApply(result -> {
+      if (result) {
+        matches.put(key, Boolean.TRUE);
+      }
+
+      return result;
+    });
+  }
+
+  @Override
+  boolean isMatchExact(String plaintext, String hashed) {
+    return delegate.isMatchExact(plaintext, hashed);
+  }
+
+  @Override
+  public String hash(String plaintext) {
+    return delegate.hash(plaintext);
+  }
+
+  @Override
+  public boolean needsRehash(String hashed) {
+    return delegate.needsRehash(hashed);
+  }
+
+  @Override
+  public CompletableFuture<String> hashAsync(String plaintext) {
+    return delegate.hashAsync(plaintext);
+  }
+
+  /**
+   * Builds the cache key for the given supplied password and stored hash.
+   *
+   * @param plaintext the supplied plaintext password
+   * @param hashed the stored hash to check against
+   * @return the cache key
+   */
+  private String cacheKey(String plaintext, String hashed) {
+    byte[] digest = mac.get().doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+    return hashed + ':' + Base64.getEncoder().encodeToString(digest);
+  }
+}
@@ -0,0 +1,137 @@
+package com.sanctionco.thunder.crypto;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Provides a {@link HashService} that runs asynchronous hash computations and verifications on
+ * a dedicated, bounded thread pool. This keeps expensive hash functions such as Argon2 or BCrypt
+ * off of request threads and database client event loops.
+ *
+ * <p>When all threads are busy and the queue is full, new asynchronous requests are rejected
+ * immediately with a {@link HashServiceBusyException} instead of waiting for the request to
+ * time out. The synchronous methods are passed directly to the wrapped hash service.
+ *
+ * @see HashService
+ */
+public class ExecutorHashService extends HashService {
+  private final HashService delegate;
+  private final ThreadPoolExecutor executor;
+
+  private final Timer waitTimer;
+  private final Counter rejectedCounter;
+
+  /**
+   * Constructs a new {@code ExecutorHashService} that runs operations from the given hash service
+   * on a new thread pool.
+   *
+   * @param delegate the hash service used to hash passwords and verify matches
+   * @param configuration the thread pool size and queue size configuration
+   * @param metrics the {@code MetricRegistry} instance used to register executor metrics
+   */
+  public ExecutorHashService(HashService delegate,
+                             HashExecutorConfiguration configuration,
+                             MetricRegistry metrics) {
+    super(delegate.serverSideHashEnabled(), false);
+
+    this.delegate = Objects.requireNonNull(delegate);
+    this.executor = new ThreadPoolExecutor(
+        configuration.getThreads(),
+        configuration.getThreads(),
+        0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(configuration.getQueueSize()),
+        new HashThreadFactory(),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    waitTimer = metrics.timer(MetricRegistry.name(ExecutorHashService.class, "wait-time"));
+    rejectedCounter = metrics.counter(MetricRegistry.name(ExecutorHashService.class, "rejected"));
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(ExecutorHashService.class, "queue-depth"),
+        () -> () -> executor.getQueue().size());
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(ExecutorHashService.class, "active"),
+        () -> executor::getActiveCount);
+  }
+
+  @Override
+  public boolean isMatch(String plaintext, String hashed) {
+    return delegate.isMatch(plaintext, hashed);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> isMatchAsync(String plaintext, String hashed) {
+    return submit(() -> delegate.isMatch(plaintext, hashed));
+  }
+
+  @Override
+  boolean isMatchExact(String plaintext, String hashed) {
+    return delegate.isMatchExact(plaintext, hashed);
+  }
+
+  @Override
+  public String hash(String plaintext) {
+    return delegate.hash(plaintext);
+  }
+
+  @Override
+  public boolean needsRehash(String hashed) {
+    return delegate.needsRehash(hashed);
+  }
+
+  @Override
+  public CompletableFuture<String> hashAsync(String plaintext) {
+    return submit(() -> delegate.hash(plaintext));
+  }
+
+  /**
+   * Runs the given operation on the hashing thread pool, recording the amount of time that
+   * the operation spent waiting in the queue.
+   *
+   * @param operation the hash operation to run
+   * @param <T> the result type of the operation
+   * @return a future that is completed with the result of the operation, or completed
+   *         exceptionally with a {@link HashServiceBusyException} if the thread pool is full
+   */
+  private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+    long submitted = System.nanoTime();
+
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        waitTimer.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+
+        return operation.get();
+      }, executor);
+    } catch (RejectedExecutionException e) {
+      rejectedCounter.inc();
+
+      return CompletableFuture.failedFuture(new HashServiceBusyException(
+          "The server is too busy to verify credentials right now. Try again later.", e));
+    }
+  }
+
+  /**
+   * Creates named daemon threads so that the hashing pool never prevents the JVM from exiting.
+   */
+  private static class HashThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "thunder-hash-" + count.incrementAndGet());
+      thread.setDaemon(true);
+
+      return thread;
+    }
+  }
+}
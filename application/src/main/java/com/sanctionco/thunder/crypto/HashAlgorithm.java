@@ -1,20 +1,18 @@
 package com.sanctionco.thunder.crypto;
 
-import java.util.function.BiFunction;
-
 /**
  * Describes the supported password hashing algorithms available in Thunder.
  */
 public enum HashAlgorithm {
   ARGON("argon", ArgonHashService::new),
   BCRYPT("bcrypt", BCryptHashService::new),
-  SHA256("sha256", Sha256HashService::new),
-  SIMPLE("simple", SimpleHashService::new);
+  SHA256("sha256", (serverSide, mistakes, config) -> new Sha256HashService(serverSide, mistakes)),
+  SIMPLE("simple", (serverSide, mistakes, config) -> new SimpleHashService(serverSide, mistakes));
 
   private final String text;
-  private final BiFunction<Boolean, Boolean, HashService> hashServiceGenerator;
+  private final HashServiceGenerator hashServiceGenerator;
 
-  HashAlgorithm(String text, BiFunction<Boolean, Boolean, HashService> hashServiceGenerator) {
+  HashAlgorithm(String text, HashServiceGenerator hashServiceGenerator) {
     this.text = text;
     this.hashServiceGenerator = hashServiceGenerator;
   }
@@ -51,6 +49,34 @@ public enum HashAlgorithm {
    */
   public HashService newHashService(boolean serverSideHashEnabled,
                                     boolean allowCommonMistakes) {
-    return hashServiceGenerator.apply(serverSideHashEnabled, allowCommonMistakes);
+    return newHashService(
+        serverSideHashEnabled, allowCommonMistakes, new PasswordHashConfiguration());
+  }
+
+  /**
+   * Creates a new hash service that can be used to verify passwords, using the cost parameters
+   * and calibration options from the given configuration.
+   *
+   * @param serverSideHashEnabled {@code true} if server side hashing should be
+   *                              enabled; {@code false} otherwise
+   * @param allowCommonMistakes {@code true} if the hash service should allow common password
+   *                            mistakes when checking for a match; {@code false} otherwise
+   * @param configuration the password hash configuration containing algorithm cost parameters
+   * @return the new {@code HashService} object
+   */
+  public HashService newHashService(boolean serverSideHashEnabled,
+                                    boolean allowCommonMistakes,
+                                    PasswordHashConfiguration configuration) {
+    return hashServiceGenerator.create(serverSideHashEnabled, allowCommonMistakes, configuration);
+  }
+
+  /**
+   * Creates a {@link HashService} for an algorithm.
+   */
+  @FunctionalInterface
+  private interface HashServiceGenerator {
+    HashService create(boolean serverSideHashEnabled,
+                       boolean allowCommonMistakes,
+                       PasswordHashConfiguration configuration);
   }
 }
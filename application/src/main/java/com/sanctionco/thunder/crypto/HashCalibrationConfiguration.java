@@ -0,0 +1,38 @@
+package com.sanctionco.thunder.crypto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+
+/**
+ * Provides optional configuration options for calibrating password hash cost parameters on
+ * startup. See the {@code PasswordHashConfiguration} class for more details.
+ */
+public class HashCalibrationConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final Duration DEFAULT_TARGET_TIME = Duration.milliseconds(250);
+
+  /**
+   * Constructs a new instance of {@code HashCalibrationConfiguration} with default values.
+   */
+  public HashCalibrationConfiguration() {
+    this.enabled = DEFAULT_ENABLED;
+    this.targetTime = DEFAULT_TARGET_TIME;
+  }
+
+  @Valid @JsonProperty("enabled")
+  private final Boolean enabled;
+
+  @Valid @JsonProperty("targetTime")
+  private final Duration targetTime;
+
+  public Boolean isEnabled() {
+    return enabled;
+  }
+
+  public Duration getTargetTime() {
+    return targetTime;
+  }
+}
@@ -0,0 +1,105 @@
+package com.sanctionco.thunder.crypto;
+
+import io.dropwizard.util.Duration;
+
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects password hash cost parameters that take approximately a target amount of time to
+ * compute on the current hardware. Calibration only ever strengthens the configured parameters;
+ * if the configured cost is already slower than the target, it is used unchanged.
+ */
+final class HashCalibrator {
+  private static final Logger LOG = LoggerFactory.getLogger(HashCalibrator.class);
+
+  private static final String SAMPLE_PASSWORD = "thunder-calibration-sample";
+  private static final int SAMPLE_RUNS = 3;
+  private static final int MAX_ARGON_ITERATIONS = 64;
+  private static final int MAX_BCRYPT_COST = 31;
+
+  private HashCalibrator() {
+  }
+
+  /**
+   * Calibrates Argon2 parameters by increasing the number of iterations, which scales the
+   * computation time linearly while keeping the configured memory and parallelism.
+   *
+   * @param configuration the configured parameters to start from
+   * @param targetTime the desired amount of time to compute a single hash
+   * @return the calibrated parameters
+   */
+  static ArgonConfiguration calibrate(ArgonConfiguration configuration, Duration targetTime) {
+    return calibrate(configuration, targetTime,
+        candidate -> time(() -> ArgonHashService.function(candidate).hash(SAMPLE_PASSWORD)));
+  }
+
+  static ArgonConfiguration calibrate(ArgonConfiguration configuration,
+                                      Duration targetTime,
+                                      ToLongFunction<ArgonConfiguration> timer) {
+    long elapsed = Math.max(1L, timer.applyAsLong(configuration));
+    long scaled = configuration.getIterations() * targetTime.toNanoseconds() / elapsed;
+
+    int iterations = (int) Math.min(MAX_ARGON_ITERATIONS,
+        Math.max(configuration.getIterations(), scaled));
+
+    LOG.info("Calibrated argon iterations to {} ({} iterations took {} ms)",
+        iterations, configuration.getIterations(), elapsed / 1_000_000);
+
+    return new ArgonConfiguration(
+        configuration.getMemory(), iterations, configuration.getParallelism());
+  }
+
+  /**
+   * Calibrates the BCrypt cost. Each increase of the cost doubles the computation time, so the
+   * highest cost that does not exceed the target time is selected.
+   *
+   * @param configuration the configured parameters to start from
+   * @param targetTime the desired amount of time to compute a single hash
+   * @return the calibrated parameters
+   */
+  static BCryptConfiguration calibrate(BCryptConfiguration configuration, Duration targetTime) {
+    return calibrate(configuration, targetTime,
+        candidate -> time(() -> BCryptHashService.function(candidate).hash(SAMPLE_PASSWORD)));
+  }
+
+  static BCryptConfiguration calibrate(BCryptConfiguration configuration,
+                                       Duration targetTime,
+                                       ToLongFunction<BCryptConfiguration> timer) {
+    long elapsed = Math.max(1L, timer.applyAsLong(configuration));
+    long estimate = elapsed;
+    int cost = configuration.getCost();
+
+    while (cost < MAX_BCRYPT_COST && estimate * 2 <= targetTime.toNanoseconds()) {
+      cost++;
+      estimate *= 2;
+    }
+
+    LOG.info("Calibrated bcrypt cost to {} (cost {} took {} ms)",
+        cost, configuration.getCost(), elapsed / 1_000_000);
+
+    return new BCryptConfiguration(cost);
+  }
+
+  /**
+   * Measures the fastest of several runs of the given operation, after one warm up run.
+   *
+   * @param operation the operation to time
+   * @return the fastest run time, in nanoseconds
+   */
+  private static long time(Runnable operation) {
+    operation.run();
+
+    long fastest = Long.MAX_VALUE;
+
+    for (int i = 0; i < SAMPLE_RUNS; i++) {
+      long start = System.nanoTime();
+      operation.run();
+      fastest = Math.min(fastest, System.nanoTime() - start);
+    }
+
+    return fastest;
+  }
+}
@@ -0,0 +1,35 @@
+package com.sanctionco.thunder.crypto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional configuration options for the dedicated thread pool that computes and
+ * verifies password hashes. See the {@code PasswordHashConfiguration} class for more details.
+ */
+public class HashExecutorConfiguration {
+  private static final int DEFAULT_QUEUE_SIZE = 256;
+
+  /**
+   * Constructs a new instance of {@code HashExecutorConfiguration} with default values.
+   */
+  public HashExecutorConfiguration() {
+    this.threads = Runtime.getRuntime().availableProcessors();
+    this.queueSize = DEFAULT_QUEUE_SIZE;
+  }
+
+  @Min(1) @JsonProperty("threads")
+  private final Integer threads;
+
+  @Min(1) @JsonProperty("queueSize")
+  private final Integer queueSize;
+
+  public Integer getThreads() {
+    return threads;
+  }
+
+  public Integer getQueueSize() {
+    return queueSize;
+  }
+}
@@ -2,6 +2,7 @@ package com.sanctionco.thunder.crypto;
 
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.CharacterPredicates;
@@ -75,6 +76,56 @@ public abstract class HashService {
    */
   public abstract String hash(String plaintext);
 
+  /**
+   * Determines if the plaintext matches the given hashed string without blocking the calling
+   * thread on the hash computation, if supported by the implementation. By default, the check
+   * is performed on the calling thread and an already completed future is returned.
+   *
+   * @param plaintext the plaintext string
+   * @param hashed the hashed string to check against
+   * @return a {@link CompletableFuture} that is eventually completed with {@code true} if the
+   *         plaintext is a match; {@code false} otherwise
+   * @see HashService#isMatch(String, String)
+   */
+  public CompletableFuture<Boolean> isMatchAsync(String plaintext, String hashed) {
+    try {
+      return CompletableFuture.completedFuture(isMatch(plaintext, hashed));
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Performs a hash of the plaintext without blocking the calling thread on the hash
+   * computation, if supported by the implementation. By default, the hash is computed on the
+   * calling thread and an already completed future is returned.
+   *
+   * @param plaintext the text to hash
+   * @return a {@link CompletableFuture} that is eventually completed with the computed hash or
+   *         the original plaintext if server side hashing is disabled
+   * @see HashService#hash(String)
+   */
+  public CompletableFuture<String> hashAsync(String plaintext) {
+    try {
+      return CompletableFuture.completedFuture(hash(plaintext));
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Determines if the given hash was computed with different parameters than the ones this hash
+   * service currently uses, meaning that it should be recomputed the next time the plaintext is
+   * known. Only exact matches can be rehashed, so this always returns {@code false} when
+   * common password mistakes are allowed.
+   *
+   * @param hashed the stored hash to check
+   * @return {@code true} if the hash should be upgraded; {@code false} otherwise
+   */
+  public boolean needsRehash(String hashed) {
+    return false;
+  }
+
   /**
    * Determines if server side password hashing is currently enabled.
    *
@@ -84,6 +135,15 @@ public abstract class HashService {
     return serverSideHashEnabled;
   }
 
+  /**
+   * Determines if common password mistakes are allowed when checking for a match.
+   *
+   * @return {@code true} if common mistakes are allowed; {@code false} otherwise
+   */
+  boolean allowCommonMistakes() {
+    return allowCommonMistakes;
+  }
+
   /**
    * Generates a new salt.
    *
@@ -0,0 +1,31 @@
+package com.sanctionco.thunder.crypto;
+
+import com.sanctionco.thunder.ThunderException;
+
+import jakarta.ws.rs.core.Response;
+
+/**
+ * An exception that represents a password hashing request that was rejected because the
+ * hashing executor is already at capacity.
+ *
+ * @see ExecutorHashService
+ */
+public class HashServiceBusyException extends ThunderException {
+
+  /**
+   * Constructs a new instance of {@code HashServiceBusyException}.
+   *
+   * @param message a description of the exception
+   * @param cause the cause of the exception
+   */
+  public HashServiceBusyException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  @Override
+  public Response response(String email) {
+    return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+        .entity(String.format("%s (User: %s)", getMessage(), email))
+        .build();
+  }
+}
@@ -1,6 +1,7 @@
 package com.sanctionco.thunder.crypto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
 
 import jakarta.validation.Valid;
 
@@ -13,6 +14,7 @@ public class PasswordHashConfiguration {
   private static final boolean DEFAULT_SERVER_SIDE_HASH = false;
   private static final boolean DEFAULT_HEADER_CHECK = true;
   private static final boolean DEFAULT_ALLOW_COMMON_MISTAKES = false;
+  private static final boolean DEFAULT_REHASH_ON_VERIFY = true;
 
   /**
    * Constructs a new instance of {@code PasswordHashConfiguration} with default values.
@@ -22,6 +24,12 @@ public class PasswordHashConfiguration {
     this.serverSideHash = DEFAULT_SERVER_SIDE_HASH;
     this.headerCheck = DEFAULT_HEADER_CHECK;
     this.allowCommonMistakes = DEFAULT_ALLOW_COMMON_MISTAKES;
+    this.matchCache = new CacheConfiguration();
+    this.executor = new HashExecutorConfiguration();
+    this.argon = new ArgonConfiguration();
+    this.bcrypt = new BCryptConfiguration();
+    this.calibration = new HashCalibrationConfiguration();
+    this.rehashOnVerify = DEFAULT_REHASH_ON_VERIFY;
   }
 
   @Valid @JsonProperty("algorithm")
@@ -36,6 +44,24 @@ public class PasswordHashConfiguration {
   @Valid @JsonProperty("allowCommonMistakes")
   private final Boolean allowCommonMistakes;
 
+  @Valid @JsonProperty("matchCache")
+  private final CacheConfiguration matchCache;
+
+  @Valid @JsonProperty("executor")
+  private final HashExecutorConfiguration executor;
+
+  @Valid @JsonProperty("argon")
+  private final ArgonConfiguration argon;
+
+  @Valid @JsonProperty("bcrypt")
+  private final BCryptConfiguration bcrypt;
+
+  @Valid @JsonProperty("calibration")
+  private final HashCalibrationConfiguration calibration;
+
+  @Valid @JsonProperty("rehashOnVerify")
+  private final Boolean rehashOnVerify;
+
   public HashAlgorithm getAlgorithm() {
     return algorithm;
   }
@@ -51,4 +77,28 @@ public class PasswordHashConfiguration {
   public Boolean allowCommonMistakes() {
     return allowCommonMistakes;
   }
+
+  public CacheConfiguration getMatchCache() {
+    return matchCache;
+  }
+
+  public HashExecutorConfiguration getExecutor() {
+    return executor;
+  }
+
+  public ArgonConfiguration getArgon() {
+    return argon;
+  }
+
+  public BCryptConfiguration getBcrypt() {
+    return bcrypt;
+  }
+
+  public HashCalibrationConfiguration getCalibration() {
+    return calibration;
+  }
+
+  public Boolean rehashOnVerify() {
+    return rehashOnVerify;
+  }
 }
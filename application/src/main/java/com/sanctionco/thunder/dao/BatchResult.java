@@ -0,0 +1,89 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Represents the outcome of a single item in a batch database operation. Exactly one of
+ * {@code user} and {@code error} is present.
+ *
+ * @param email the email of the user that the item was for
+ * @param user the user that was inserted, found, or deleted, or {@code null} if the item failed
+ * @param error the reason the item failed, or {@code null} if the item succeeded
+ */
+public record BatchResult(String email, @Nullable User user, @Nullable DatabaseException error) {
+
+  /**
+   * Creates a successful result for the given user.
+   *
+   * @param user the user that was inserted, found, or deleted
+   * @return the new result
+   */
+  public static BatchResult success(User user) {
+    return new BatchResult(user.getEmail().getAddress(), user, null);
+  }
+
+  /**
+   * Creates a failed result for the given email.
+   *
+   * @param email the email of the user that the item was for
+   * @param error the reason the item failed
+   * @return the new result
+   */
+  public static BatchResult failure(String email, DatabaseException error) {
+    return new BatchResult(email, null, error);
+  }
+
+  /**
+   * Creates a future that completes with the result of the given single-user operation. The
+   * returned future never completes exceptionally; a failed operation becomes a failed result.
+   *
+   * @param email the email of the user that the operation is for
+   * @param operation the operation to wait for
+   * @return a future that is completed with the result of the operation
+   */
+  public static CompletableFuture<BatchResult> of(String email,
+                                                  CompletableFuture<User> operation) {
+    return operation.handle((user, throwable) -> throwable == null
+        ? success(user)
+        : failure(email, toDatabaseException(throwable)));
+  }
+
+  /**
+   * Combines the given result futures into a single future that completes with every result,
+   * in the same order.
+   *
+   * @param results the futures to combine
+   * @return a future that is completed once every result is available
+   */
+  public static CompletableFuture<List<BatchResult>> all(
+      List<CompletableFuture<BatchResult>> results) {
+    return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> results.stream().map(CompletableFuture::join).toList());
+  }
+
+  /**
+   * Converts a failure from a single-user operation into a {@link DatabaseException}.
+   *
+   * @param throwable the failure to convert
+   * @return the failure if it was already a {@code DatabaseException}, otherwise a new
+   *         {@code DatabaseException} describing an unknown error
+   */
+  private static DatabaseException toDatabaseException(Throwable throwable) {
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      throwable = throwable.getCause();
+    }
+
+    if (throwable instanceof DatabaseException e) {
+      return e;
+    }
+
+    return new DatabaseException("Unknown database error. Please try again later.",
+        throwable, DatabaseException.Error.DATABASE_DOWN);
+  }
+}
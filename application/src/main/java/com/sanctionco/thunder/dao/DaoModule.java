@@ -1,13 +1,23 @@
 package com.sanctionco.thunder.dao;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
+import com.sanctionco.thunder.dao.cache.CachingUsersDao;
+import com.sanctionco.thunder.dao.singleflight.SingleFlightUsersDao;
+import com.sanctionco.thunder.dao.tiered.TieredUsersDao;
+import com.sanctionco.thunder.dao.tiered.WriteBehindConfiguration;
 
 import dagger.Module;
 import dagger.Provides;
 
 import java.util.Objects;
+import java.util.Set;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * Provides object dependencies, including the application's database access object.
  *
@@ -15,21 +25,67 @@ import javax.inject.Singleton;
  */
 @Module
 public class DaoModule {
+  private static final Logger LOG = LoggerFactory.getLogger(DaoModule.class);
+
   private final UsersDaoFactory usersDaoFactory;
+  private final Set<String> indexedProperties;
 
   /**
-   * Constructs a new {@code DaoModule} object.
+   * Constructs a new {@code DaoModule} object that does not index any user properties.
    *
    * @param usersDaoFactory the factory used to create the {@code UsersDao} and related instances
    */
   public DaoModule(UsersDaoFactory usersDaoFactory) {
+    this(usersDaoFactory, Set.of());
+  }
+
+  /**
+   * Constructs a new {@code DaoModule} object.
+   *
+   * @param usersDaoFactory the factory used to create the {@code UsersDao} and related instances
+   * @param indexedProperties the names of the user properties that the database should index
+   */
+  public DaoModule(UsersDaoFactory usersDaoFactory, Set<String> indexedProperties) {
     this.usersDaoFactory = Objects.requireNonNull(usersDaoFactory);
+    this.indexedProperties = Objects.requireNonNull(indexedProperties);
   }
 
   @Singleton
   @Provides
-  UsersDao provideUsersDao(ObjectMapper mapper) {
-    return usersDaoFactory.createUsersDao(mapper);
+  UsersDao provideUsersDao(ObjectMapper mapper, MetricRegistry metrics) {
+    UsersDao usersDao = usersDaoFactory.createUsersDao(mapper, metrics, indexedProperties);
+
+    if (usersDaoFactory.isCoalesceReadsEnabled()) {
+      LOG.info("Concurrent lookups of the same user will share a single database call.");
+
+      usersDao = new SingleFlightUsersDao(usersDao, metrics);
+    }
+
+    WriteBehindConfiguration writeBehindConfiguration =
+        usersDaoFactory.getWriteBehindConfiguration();
+
+    if (writeBehindConfiguration.isEnabled()) {
+      LOG.info("Write-behind tier: maxSize: {}, expireAfterWrite: {}, maxPendingWrites: {},"
+              + " flushInterval: {}, batchSize: {}",
+          writeBehindConfiguration.getMaxSize(),
+          writeBehindConfiguration.getExpireAfterWrite(),
+          writeBehindConfiguration.getMaxPendingWrites(),
+          writeBehindConfiguration.getFlushInterval(),
+          writeBehindConfiguration.getBatchSize());
+
+      usersDao = new TieredUsersDao(usersDao, writeBehindConfiguration, metrics);
+    }
+
+    CacheConfiguration cacheConfiguration = usersDaoFactory.getCacheConfiguration();
+
+    if (!cacheConfiguration.isEnabled()) {
+      return usersDao;
+    }
+
+    LOG.info("User cache: maximumSize: {}, expireAfterWrite: {}",
+        cacheConfiguration.getMaximumSize(), cacheConfiguration.getExpireAfterWrite());
+
+    return new CachingUsersDao(usersDao, cacheConfiguration, metrics);
   }
 
   @Singleton
@@ -0,0 +1,62 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Provides the values that are stored in the database indexes of indexed user properties. Only
+ * string, number, and boolean values are indexed. They are indexed by their string form, so that
+ * they can be looked up with the string value of a query parameter.
+ *
+ * @see UsersDao#findEmailsByProperty(String, String, int)
+ */
+public final class PropertyIndexes {
+
+  private PropertyIndexes() {
+  }
+
+  /**
+   * Converts a property value into the value that is stored in the index. Empty strings are
+   * not indexed, since DynamoDB does not allow an empty index key.
+   *
+   * @param value the value of the property
+   * @return the indexed value, or {@code null} if the value is missing or cannot be indexed
+   */
+  @Nullable
+  public static String valueOf(@Nullable Object value) {
+    if (value instanceof String string) {
+      return string.isEmpty() ? null : string;
+    }
+
+    return value instanceof Number || value instanceof Boolean
+        ? value.toString()
+        : null;
+  }
+
+  /**
+   * Finds the indexed values of each of the indexed properties of the user.
+   *
+   * @param user the user to index
+   * @param indexedProperties the names of the indexed properties
+   * @return a map from property name to indexed value, which leaves out any indexed property
+   *         that the user does not have a value for
+   */
+  public static Map<String, String> valuesOf(User user, Set<String> indexedProperties) {
+    Map<String, String> values = new HashMap<>();
+
+    for (String property : indexedProperties) {
+      String value = valueOf(user.getProperties().get(property));
+
+      if (value != null) {
+        values.put(property, value);
+      }
+    }
+
+    return values;
+  }
+}
@@ -0,0 +1,139 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes every user in the database by reading each segment of a scan in parallel, one page
+ * at a time. Each subscriber starts a new scan. Segments are read on virtual threads, and a
+ * segment waits for the subscriber to catch up once the subscriber's buffer is full, so a slow
+ * subscriber does not cause the whole table to be held in memory. The order of the users is not
+ * defined.
+ *
+ * <p>The scan stops early if the subscriber cancels its subscription, and the subscriber
+ * receives {@code onError} with a {@link DatabaseException} if reading any page fails.
+ *
+ * @see UsersDao#scanAll()
+ */
+public class SegmentedScanPublisher implements Flow.Publisher<User> {
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentedScanPublisher.class);
+
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  private static final Executor EXECUTOR = Executors.newThreadPerTaskExecutor(
+      Thread.ofVirtual().name("users-scan-", 0).factory());
+
+  private final PageReader reader;
+  private final int totalSegments;
+  private final int pageSize;
+
+  /**
+   * Constructs a new {@code SegmentedScanPublisher} that reads pages with the given reader.
+   *
+   * @param reader the function used to read one page of a segment. This may block.
+   * @param totalSegments the number of segments to read in parallel
+   * @param pageSize the maximum number of users to read in each page
+   */
+  public SegmentedScanPublisher(PageReader reader, int totalSegments, int pageSize) {
+    this.reader = Objects.requireNonNull(reader);
+
+    if (totalSegments < 1 || pageSize < 1) {
+      throw new IllegalArgumentException("The number of segments and page size must be positive.");
+    }
+
+    this.totalSegments = totalSegments;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super User> subscriber) {
+    Objects.requireNonNull(subscriber);
+
+    // The submission publisher handles demand, and blocks a segment while the buffer is full
+    SubmissionPublisher<User> publisher = new SubmissionPublisher<>(EXECUTOR, pageSize);
+    publisher.subscribe(subscriber);
+
+    AtomicInteger remaining = new AtomicInteger(totalSegments);
+
+    for (int segment = 0; segment < totalSegments; segment++) {
+      int current = segment;
+
+      EXECUTOR.execute(() -> {
+        try {
+          readSegment(current, publisher);
+
+          if (remaining.decrementAndGet() == 0) {
+            publisher.close();
+          }
+        } catch (RuntimeException e) {
+          // Submitting fails once another segment has already failed the scan
+          if (publisher.isClosed()) {
+            return;
+          }
+
+          Throwable cause = e instanceof CompletionException && e.getCause() != null
+              ? e.getCause()
+              : e;
+
+          LOG.error("Error reading segment {} of {} while scanning users.",
+              current, totalSegments, cause);
+          publisher.closeExceptionally(cause);
+        }
+      });
+    }
+  }
+
+  /**
+   * Reads every page of one segment, submitting each user to the publisher.
+   *
+   * @param segment the segment to read
+   * @param publisher the publisher to submit users to
+   */
+  private void readSegment(int segment, SubmissionPublisher<User> publisher) {
+    String token = null;
+
+    do {
+      // Stop early if another segment failed or the subscriber cancelled
+      if (publisher.isClosed() || !publisher.hasSubscribers()) {
+        return;
+      }
+
+      UsersPage page = reader.read(segment, totalSegments, token, pageSize);
+
+      page.users().forEach(publisher::submit);
+      token = page.nextToken();
+    } while (token != null);
+  }
+
+  /**
+   * Reads one page of a segment of a scan, blocking until the page is available.
+   */
+  @FunctionalInterface
+  public interface PageReader {
+
+    /**
+     * Reads one page of users from a segment of the database.
+     *
+     * @param segment the segment to read
+     * @param totalSegments the number of segments that the scan is split into
+     * @param startToken the {@code nextToken} of the previous page of the segment, or
+     *                   {@code null} to start from the beginning of the segment
+     * @param limit the maximum number of users to read
+     * @return the page of users
+     * @throws DatabaseException if the database was down or rejected the request
+     */
+    UsersPage read(int segment, int totalSegments, @Nullable String startToken, int limit);
+  }
+}
@@ -3,11 +3,17 @@ package com.sanctionco.thunder.dao;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import jakarta.annotation.Nullable;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,8 +21,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Provides the base interface for the {@code UsersDao}. Provides methods to
  * insert, update, get, and delete a {@code User} (in the {@code api} module) in the database.
+ * A {@code UsersDao} is closed when the application stops.
  */
-public interface UsersDao {
+public interface UsersDao extends Closeable {
   Logger LOG = LoggerFactory.getLogger(UsersDao.class);
 
   /**
@@ -39,6 +46,35 @@ public interface UsersDao {
    */
   CompletableFuture<User> findByEmail(String email);
 
+  /**
+   * Retrieves the user with the given email, along with the version of the stored record. The
+   * version can be passed to {@link #update(String, User, String)} in order to make the update
+   * conditional without reading the user again. Databases that do not track record versions
+   * return a {@code null} version.
+   *
+   * @param email the email of the user to retrieve
+   * @return a {@link CompletableFuture} that is eventually completed with the user that was
+   *         requested and its version, or completed exceptionally with a
+   *         {@link DatabaseException} if the user does not exist or if the database was down
+   */
+  default CompletableFuture<VersionedUser> findVersionedByEmail(String email) {
+    return findByEmail(email).thenApply(user -> new VersionedUser(user, null));
+  }
+
+  /**
+   * Retrieves only the stored password of the user with the given email. Databases that store
+   * the password separately from the rest of the user can implement this without reading and
+   * deserializing the user's properties.
+   *
+   * @param email the email of the user to retrieve the password for
+   * @return a {@link CompletableFuture} that is eventually completed with the stored password,
+   *         or completed exceptionally with a {@link DatabaseException} if the user does not
+   *         exist or if the database was down
+   */
+  default CompletableFuture<String> findPasswordByEmail(String email) {
+    return findByEmail(email).thenApply(User::getPassword);
+  }
+
   /**
    * Updates the user in the DynamoDB database.
    *
@@ -52,6 +88,55 @@ public interface UsersDao {
    */
   CompletableFuture<User> update(@Nullable String existingEmail, User user);
 
+  /**
+   * Updates the user in the database, only if the stored record still has the expected version.
+   * Databases that do not track record versions ignore the expected version.
+   *
+   * @param existingEmail the email of the user before the update. If the user's email is
+   *                      being updated, then this must not be {@code null}.
+   * @param user the updated user object to put in the database
+   * @param expectedVersion the version returned by {@link #findVersionedByEmail(String)}, or
+   *                        {@code null} to update regardless of the current version
+   * @return a {@link CompletableFuture} that is eventually completed with the user that was
+   *         updated and its new version, or completed exceptionally with a
+   *         {@link DatabaseException} if the user was not found, the version did not match,
+   *         the database was down, or the database rejected the request
+   */
+  default CompletableFuture<VersionedUser> update(@Nullable String existingEmail,
+                                                  User user,
+                                                  @Nullable String expectedVersion) {
+    return update(existingEmail, user).thenApply(updated -> new VersionedUser(updated, null));
+  }
+
+  /**
+   * Marks the email of the user with the given email as verified, only if the given token
+   * matches the verification token stored with the user. Databases that can check the stored
+   * token as part of a conditional write should override this method, so that a verification
+   * takes a single write instead of a read followed by an update.
+   *
+   * @param email the email of the user to verify
+   * @param token the verification token that the user provided
+   * @return a {@link CompletableFuture} that is eventually completed with the verified user, or
+   *         completed exceptionally with a {@link RequestValidationException} if the stored
+   *         token is not set or does not match, or a {@link DatabaseException} if the user was
+   *         not found, the user was changed by another request, or the database was down
+   */
+  default CompletableFuture<User> markVerified(String email, String token) {
+    return findVersionedByEmail(email)
+        .thenCompose(found -> {
+          User user = found.user();
+
+          checkVerificationToken(user.getEmail().getVerificationToken(), token);
+
+          // Store the verified user, as long as the user has not changed since it was read
+          return update(email, new User(
+              user.getEmail().verifiedCopy(),
+              user.getPassword(),
+              user.getProperties()), found.version());
+        })
+        .thenApply(VersionedUser::user);
+  }
+
   /**
    * Deletes the user with the given email in the DynamoDB database.
    *
@@ -62,6 +147,99 @@ public interface UsersDao {
    */
   CompletableFuture<User> delete(String email);
 
+  /**
+   * Finds the emails of the users whose indexed property has the given value. Only properties
+   * that were indexed when the DAO was created can be looked up, and the lookup reads the index
+   * rather than scanning the database. Property values are compared by their string form, as
+   * described in {@link PropertyIndexes}.
+   *
+   * @param property the name of the indexed property
+   * @param value the value of the property to look for
+   * @param limit the maximum number of emails to return
+   * @return a {@link CompletableFuture} that is eventually completed with the emails of up to
+   *         {@code limit} matching users, which is empty if no user matches, or completed
+   *         exceptionally with a {@link DatabaseException} if the property is not indexed, the
+   *         database rejected the request, or the database was down
+   */
+  CompletableFuture<List<String>> findEmailsByProperty(String property, String value, int limit);
+
+  /**
+   * Inserts each of the given users into the database. Each user is inserted independently, so
+   * a failure for one user does not prevent the others from being inserted.
+   *
+   * @param users the users to insert
+   * @return a {@link CompletableFuture} that is eventually completed with one result per user,
+   *         in the same order as the given users. A user that already exists has a
+   *         {@link DatabaseException.Error#CONFLICT} error.
+   */
+  default CompletableFuture<List<BatchResult>> insertAll(List<User> users) {
+    return BatchResult.all(users.stream()
+        .map(user -> BatchResult.of(user.getEmail().getAddress(), insert(user)))
+        .toList());
+  }
+
+  /**
+   * Retrieves each of the users with the given emails from the database.
+   *
+   * @param emails the emails of the users to retrieve
+   * @return a {@link CompletableFuture} that is eventually completed with one result per email,
+   *         in the same order as the given emails. An email without a user has a
+   *         {@link DatabaseException.Error#USER_NOT_FOUND} error.
+   */
+  default CompletableFuture<List<BatchResult>> findAllByEmail(List<String> emails) {
+    return BatchResult.all(emails.stream()
+        .map(email -> BatchResult.of(email, findByEmail(email)))
+        .toList());
+  }
+
+  /**
+   * Deletes each of the users with the given emails from the database.
+   *
+   * @param emails the emails of the users to delete
+   * @return a {@link CompletableFuture} that is eventually completed with one result per email,
+   *         in the same order as the given emails, containing the deleted users. An email
+   *         without a user has a {@link DatabaseException.Error#USER_NOT_FOUND} error.
+   */
+  default CompletableFuture<List<BatchResult>> deleteAll(List<String> emails) {
+    return BatchResult.all(emails.stream()
+        .map(email -> BatchResult.of(email, delete(email)))
+        .toList());
+  }
+
+  /**
+   * Reads one page of users from a segment of the database. Splitting a scan into segments allows
+   * the segments to be read in parallel. Databases that cannot split a scan return every user
+   * from segment {@code 0} and no users from any other segment.
+   *
+   * @param segment the segment to read, from {@code 0} to {@code totalSegments - 1}
+   * @param totalSegments the number of segments that the scan is split into
+   * @param startToken the {@code nextToken} of the previous page of the segment, or {@code null}
+   *                   to start from the beginning of the segment
+   * @param limit the maximum number of users to read
+   * @return a {@link CompletableFuture} that is eventually completed with the page of users, or
+   *         completed exceptionally with a {@link DatabaseException} if the database was down
+   *         or rejected the request
+   */
+  CompletableFuture<UsersPage> scan(int segment,
+                                    int totalSegments,
+                                    @Nullable String startToken,
+                                    int limit);
+
+  /**
+   * Streams every user in the database. Each subscriber starts a new scan, which reads the
+   * database one page at a time as the subscriber requests more users. The order of the users
+   * is not defined. By default, this reads every page of {@link #scan(int, int, String, int)}
+   * as a single segment.
+   *
+   * @return a publisher of every user, which signals {@code onError} with a
+   *         {@link DatabaseException} if the database was down or rejected a request
+   */
+  default Flow.Publisher<User> scanAll() {
+    return new SegmentedScanPublisher(
+        (segment, totalSegments, token, limit) -> scan(segment, totalSegments, token, limit).join(),
+        1, SegmentedScanPublisher.DEFAULT_PAGE_SIZE);
+  }
+
   /**
    * Serializes a user to a JSON String.
    *
@@ -92,9 +270,34 @@ public interface UsersDao {
     }
   }
 
+  /**
+   * Checks that the token provided by a user matches the verification token stored with the
+   * user.
+   *
+   * @param storedToken the verification token stored with the user
+   * @param token the verification token that the user provided
+   * @throws RequestValidationException if the stored token is not set or does not match
+   */
+  static void checkVerificationToken(@Nullable String storedToken, String token) {
+    if (storedToken == null || storedToken.isEmpty()) {
+      LOG.warn("Tried to read null or empty verification token");
+      throw RequestValidationException
+          .tokenNotSet("Bad value found for user verification token.");
+    }
+
+    if (!storedToken.equals(token)) {
+      LOG.warn("User provided verification token does not match DB verification token.");
+      throw RequestValidationException.incorrectToken("Incorrect verification token.");
+    }
+  }
+
   /**
    * Updates a user's email by first inserting a new user with the updated email in the database,
-   * then deleting the old user.
+   * then deleting the old user. If the old user cannot be deleted, the new user is deleted again
+   * so that the user is not left under both emails.
+   *
+   * <p>The steps are not atomic, so implementations that can move a user to a new key in a
+   * single operation should override this method.
    *
    * @param existingEmail the email of the user before the update
    * @param user the updated user object to put in the database
@@ -103,37 +306,52 @@ public interface UsersDao {
    *     the database rejected the request, or a user with the new email address already exists
    */
   default CompletableFuture<User> updateEmail(String existingEmail, User user) {
-    // TODO figure out how to chain this to the insert.
-    // TODO Right now we have to join() on the find result to let any exceptions
-    // TODO propagate.
-    try {
-      findByEmail(user.getEmail().getAddress())
-          .thenApply(result -> {
-            LOG.warn("A user with the new email {} already exists.", user.getEmail().getAddress());
+    String newEmail = user.getEmail().getAddress();
 
-            // If code execution reaches here, we found the user without an error.
-            // Since a user with the new email address was found, throw an exception.
+    return findByEmail(newEmail)
+        .handle((found, throwable) -> {
+          if (throwable == null) {
+            LOG.warn("A user with the new email {} already exists.", newEmail);
             throw new DatabaseException("A user with the new email address already exists.",
                 DatabaseException.Error.CONFLICT);
-          })
-          .exceptionally(throwable -> {
-            var cause = (DatabaseException) throwable.getCause();
-
-            // We got an exception when finding the user. If it is USER_NOT_FOUND, we are okay.
-            // If it is not USER_NOT_FOUND, we need to throw the exception we got
-            if (!cause.getError().equals(DatabaseException.Error.USER_NOT_FOUND)) {
-              throw cause;
-            }
-
-            // Otherwise, we're good
-            return null;
-          }).join();
-    } catch (CompletionException e) {
-      // If this fails, we need to return a failed future back to the caller
-      return CompletableFuture.failedFuture(e);
-    }
+          }
 
-    return insert(user)
-        .thenCompose(inserted -> delete(existingEmail).thenApply(deleted -> inserted));
+          // USER_NOT_FOUND is expected, any other failure is passed on to the caller
+          Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+              ? throwable.getCause()
+              : throwable;
+
+          if (!(cause instanceof DatabaseException e)
+              || !e.getError().equals(DatabaseException.Error.USER_NOT_FOUND)) {
+            throw throwable instanceof CompletionException c ? c : new CompletionException(cause);
+          }
+
+          return null;
+        })
+        .thenCompose(ignored -> insert(user))
+        .thenCompose(inserted -> delete(existingEmail)
+            .handle((deleted, throwable) -> {
+              if (throwable == null) {
+                return CompletableFuture.completedFuture(inserted);
+              }
+
+              LOG.warn("Unable to delete {} after it was moved to {}. Removing {}.",
+                  existingEmail, newEmail, newEmail);
+
+              return delete(newEmail)
+                  .handle((removed, ignored) -> CompletableFuture.<User>failedFuture(throwable))
+                  .thenCompose(Function.identity());
+            })
+            .thenCompose(Function.identity()));
+  }
+
+  /**
+   * Releases the resources held by the DAO, such as queued writes and open files. A DAO that
+   * wraps another DAO closes it as well. By default, there is nothing to release.
+   *
+   * @throws IOException if the resources cannot be released
+   */
+  @Override
+  default void close() throws IOException {
   }
 }
@@ -1,12 +1,21 @@
 package com.sanctionco.thunder.dao;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
+import com.sanctionco.thunder.dao.tiered.WriteBehindConfiguration;
 
 import io.dropwizard.jackson.Discoverable;
 
+import jakarta.validation.Valid;
+
+import java.util.Optional;
+import java.util.Set;
+
 /**
- * Provides the base interface for the {@code UsersDaoFactory} which allows for instance
+ * Provides the base class for the {@code UsersDaoFactory} which allows for instance
  * creation of {@link UsersDao} objects and {@link DatabaseHealthCheck} objects.
  *
  * <p>This class is to be used within the Dropwizard configuration and provides polymorphic
@@ -14,15 +23,55 @@ import io.dropwizard.jackson.Discoverable;
  * with multiple configuration classes.
  *
  * <p>The {@code type} property on the configuration object is used to determine which implementing
- * class to construct.
+ * class to construct. Options that apply to every type, such as {@code cache},
+ * {@code writeBehind}, and {@code coalesceReads}, are defined here.
  *
  * <p>This class must be registered in
  * {@code /resources/META-INF/services/io.dropwizard.jackson.Discoverable}.
  *
  * <p>See the {@code ThunderConfiguration} class for usage.
  */
+@SuppressWarnings("ConstantConditions")
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
-public interface UsersDaoFactory extends Discoverable {
+public abstract class UsersDaoFactory implements Discoverable {
+
+  @Valid @JsonProperty("cache")
+  private final CacheConfiguration cacheConfiguration = null;
+
+  @Valid @JsonProperty("writeBehind")
+  private final WriteBehindConfiguration writeBehindConfiguration = null;
+
+  @JsonProperty("coalesceReads")
+  private final Boolean coalesceReads = null;
+
+  /**
+   * Provides the configuration for the read-through user cache.
+   *
+   * @return the configured cache options or defaults, which leave the cache disabled
+   */
+  public CacheConfiguration getCacheConfiguration() {
+    return Optional.ofNullable(cacheConfiguration)
+        .orElseGet(CacheConfiguration::new);
+  }
+
+  /**
+   * Provides the configuration for the in-memory tier and write-behind queue.
+   *
+   * @return the configured write-behind options or defaults, which leave the tier disabled
+   */
+  public WriteBehindConfiguration getWriteBehindConfiguration() {
+    return Optional.ofNullable(writeBehindConfiguration)
+        .orElseGet(WriteBehindConfiguration::new);
+  }
+
+  /**
+   * Determines whether concurrent lookups of the same user should share a single database call.
+   *
+   * @return true if lookups should be coalesced, false otherwise. Defaults to false.
+   */
+  public boolean isCoalesceReadsEnabled() {
+    return Optional.ofNullable(coalesceReads).orElse(false);
+  }
 
   /**
    * Creates a new instance of {@code UsersDao}.
@@ -30,12 +79,40 @@ public interface UsersDaoFactory extends Discoverable {
    * @param mapper the ObjectMapper instance to use
    * @return the created UsersDao object
    */
-  UsersDao createUsersDao(ObjectMapper mapper);
+  public abstract UsersDao createUsersDao(ObjectMapper mapper);
+
+  /**
+   * Creates a new instance of {@code UsersDao}, registering any database client metrics with
+   * the given registry. By default, no metrics are registered.
+   *
+   * @param mapper the ObjectMapper instance to use
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   * @return the created UsersDao object
+   */
+  public UsersDao createUsersDao(ObjectMapper mapper, MetricRegistry metrics) {
+    return createUsersDao(mapper);
+  }
+
+  /**
+   * Creates a new instance of {@code UsersDao} that maintains an index for each of the given
+   * properties, so that users can be looked up by the value of the property. By default, no
+   * indexes are created.
+   *
+   * @param mapper the ObjectMapper instance to use
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   * @param indexedProperties the names of the properties to index
+   * @return the created UsersDao object
+   */
+  public UsersDao createUsersDao(ObjectMapper mapper,
+                                 MetricRegistry metrics,
+                                 Set<String> indexedProperties) {
+    return createUsersDao(mapper, metrics);
+  }
 
   /**
    * Creates a new instance of {@code DatabaseHealthCheck}.
    *
    * @return the created DatabaseHealthCheck object
    */
-  DatabaseHealthCheck createHealthCheck();
+  public abstract DatabaseHealthCheck createHealthCheck();
 }
@@ -0,0 +1,18 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Represents one page of users read by {@link UsersDao#scan(int, int, String, int)}, together
+ * with the token needed to read the next page of the same segment.
+ *
+ * @param users the users that were read
+ * @param nextToken the token to pass to the next call in order to continue the scan, or
+ *                  {@code null} if there are no more users in the segment
+ */
+public record UsersPage(List<User> users, @Nullable String nextToken) {
+}
@@ -0,0 +1,18 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Represents a {@link User} read from the database, together with the version of the stored
+ * record at the time it was read. The version can be passed back to
+ * {@link UsersDao#update(String, User, String)} so that the update only succeeds if the record
+ * has not changed since it was read.
+ *
+ * @param user the user that was read
+ * @param version the version of the stored record, or {@code null} if the database does not
+ *                track record versions
+ */
+public record VersionedUser(User user, @Nullable String version) {
+}
@@ -0,0 +1,48 @@
+package com.sanctionco.thunder.dao.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional configuration options for an in-memory cache, such as the read-through user
+ * cache that sits in front of the database. See the {@code UsersDaoFactory} class for more details.
+ */
+public class CacheConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+  private static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.minutes(1);
+
+  /**
+   * Constructs a new instance of {@code CacheConfiguration} with default values.
+   */
+  public CacheConfiguration() {
+    this.enabled = DEFAULT_ENABLED;
+    this.maximumSize = DEFAULT_MAXIMUM_SIZE;
+    this.expireAfterWrite = DEFAULT_EXPIRE_AFTER_WRITE;
+  }
+
+  @Valid @JsonProperty("enabled")
+  private final Boolean enabled;
+
+  @Min(1) @JsonProperty("maximumSize")
+  private final Long maximumSize;
+
+  @Valid @JsonProperty("expireAfterWrite")
+  private final Duration expireAfterWrite;
+
+  public Boolean isEnabled() {
+    return enabled;
+  }
+
+  public Long getMaximumSize() {
+    return maximumSize;
+  }
+
+  public Duration getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+}
@@ -0,0 +1,240 @@
+package com.sanctionco.thunder.dao.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanctionco.thunder.dao.BatchResult;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a read-through cache in front of any other {@link UsersDao}. Lookups by email are
+ * served from a bounded, expiring cache (using W-TinyLFU eviction) and only reach the underlying
+ * database on a miss. Concurrent misses for the same email share a single database call.
+ *
+ * <p>Entries are cached together with their database version. Every write through this DAO
+ * refreshes or invalidates the affected entries once the database responds, so a cached entry
+ * always reflects the latest version written by this instance. Writes made by other Thunder
+ * instances are picked up once the entry expires, or as soon as a conditional update using the
+ * stale version is rejected by the database.
+ *
+ * @see UsersDao
+ */
+public class CachingUsersDao implements UsersDao {
+  private static final Logger LOG = LoggerFactory.getLogger(CachingUsersDao.class);
+
+  private final UsersDao delegate;
+  private final AsyncLoadingCache<String, VersionedUser> cache;
+
+  /**
+   * Constructs a new {@code CachingUsersDao} that caches results from the given DAO.
+   *
+   * @param delegate the DAO to read from on a cache miss and to send all writes to
+   * @param configuration the cache size and expiration configuration
+   * @param metrics the {@code MetricRegistry} instance used to register cache metrics
+   */
+  public CachingUsersDao(UsersDao delegate,
+                         CacheConfiguration configuration,
+                         MetricRegistry metrics) {
+    this.delegate = Objects.requireNonNull(delegate);
+
+    String prefix = MetricRegistry.name(CachingUsersDao.class);
+    MetricsStatsCounter statsCounter = new MetricsStatsCounter(metrics, prefix);
+
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(configuration.getMaximumSize())
+        .expireAfterWrite(configuration.getExpireAfterWrite().toJavaDuration())
+        .recordStats(() -> statsCounter)
+        .buildAsync((email, executor) -> delegate.findVersionedByEmail(email));
+
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "size"),
+        () -> () -> cache.synchronous().estimatedSize());
+  }
+
+  @Override
+  public CompletableFuture<User> insert(User user) {
+    Objects.requireNonNull(user);
+
+    // The version assigned by the database is not known here, so let the next read load it
+    return delegate.insert(user)
+        .whenComplete((result, throwable) -> invalidate(user.getEmail().getAddress()));
+  }
+
+  @Override
+  public CompletableFuture<User> findByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return cache.get(email).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> findVersionedByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return cache.get(email);
+  }
+
+  @Override
+  public CompletableFuture<String> findPasswordByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    // Use the cached user if there is one, but don't load the full user just for its password
+    CompletableFuture<VersionedUser> cached = cache.getIfPresent(email);
+
+    return cached != null
+        ? cached.thenApply(found -> found.user().getPassword())
+        : delegate.findPasswordByEmail(email);
+  }
+
+  @Override
+  public CompletableFuture<User> update(@Nullable String existingEmail, User user) {
+    return update(existingEmail, user, null).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> update(@Nullable String existingEmail,
+                                                 User user,
+                                                 @Nullable String expectedVersion) {
+    Objects.requireNonNull(user);
+
+    String email = user.getEmail().getAddress();
+
+    return delegate.update(existingEmail, user, expectedVersion)
+        .whenComplete((result, throwable) -> {
+          if (existingEmail != null && !existingEmail.equals(email)) {
+            invalidate(existingEmail);
+          }
+
+          if (throwable == null && result.version() != null) {
+            cache.put(email, CompletableFuture.completedFuture(result));
+          } else {
+            // The cached version may be the reason the update failed (a version conflict), and
+            // without a new version the cached entry cannot be refreshed, so make sure the next
+            // read goes to the database
+            invalidate(email);
+          }
+        });
+  }
+
+  @Override
+  public CompletableFuture<User> markVerified(String email, String token) {
+    Objects.requireNonNull(email);
+
+    // The new version is not known here, so let the next read load it
+    return delegate.markVerified(email, token)
+        .whenComplete((result, throwable) -> invalidate(email));
+  }
+
+  @Override
+  public CompletableFuture<User> delete(String email) {
+    Objects.requireNonNull(email);
+
+    return delegate.delete(email)
+        .whenComplete((result, throwable) -> invalidate(email));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> findEmailsByProperty(String property,
+                                                             String value,
+                                                             int limit) {
+    // Only users are cached, so the user for each email can be read through the cache afterwards
+    return delegate.findEmailsByProperty(property, value, limit);
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> insertAll(List<User> users) {
+    Objects.requireNonNull(users);
+
+    return delegate.insertAll(users)
+        .whenComplete((results, throwable) -> users
+            .forEach(user -> invalidate(user.getEmail().getAddress())));
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> findAllByEmail(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    Map<String, CompletableFuture<BatchResult>> cached = new HashMap<>();
+    List<String> misses = new ArrayList<>();
+
+    for (String email : emails) {
+      CompletableFuture<VersionedUser> entry = cache.getIfPresent(email);
+
+      if (entry != null) {
+        cached.put(email, BatchResult.of(email, entry.thenApply(VersionedUser::user)));
+      } else {
+        misses.add(email);
+      }
+    }
+
+    // Read all of the misses in one batch. The results are not cached, since they have no version
+    CompletableFuture<List<BatchResult>> loaded = misses.isEmpty()
+        ? CompletableFuture.completedFuture(List.of())
+        : delegate.findAllByEmail(misses);
+
+    return loaded.thenCompose(results -> {
+      Map<String, BatchResult> byEmail = new HashMap<>();
+      results.forEach(result -> byEmail.putIfAbsent(result.email(), result));
+
+      return BatchResult.all(emails.stream()
+          .map(email -> cached.getOrDefault(email,
+              CompletableFuture.completedFuture(byEmail.get(email))))
+          .toList());
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> deleteAll(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    return delegate.deleteAll(emails)
+        .whenComplete((results, throwable) -> emails.forEach(this::invalidate));
+  }
+
+  @Override
+  public CompletableFuture<UsersPage> scan(int segment,
+                                           int totalSegments,
+                                           @Nullable String startToken,
+                                           int limit) {
+    // Scanned users have no version, and a scan would evict the hot entries, so skip the cache
+    return delegate.scan(segment, totalSegments, startToken, limit);
+  }
+
+  @Override
+  public Flow.Publisher<User> scanAll() {
+    return delegate.scanAll();
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+
+  /**
+   * Removes the entry for the given email from the cache.
+   *
+   * @param email the email of the entry to remove
+   */
+  private void invalidate(String email) {
+    LOG.debug("Invalidating cached user {}.", email);
+
+    cache.synchronous().invalidate(email);
+  }
+}
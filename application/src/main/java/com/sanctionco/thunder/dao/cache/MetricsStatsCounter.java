@@ -0,0 +1,80 @@
+package com.sanctionco.thunder.dao.cache;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Caffeine {@link StatsCounter} that reports cache statistics to a {@link MetricRegistry}.
+ */
+class MetricsStatsCounter implements StatsCounter {
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter evictionCounter;
+  private final Counter evictionWeightCounter;
+  private final Timer loadSuccessTimer;
+  private final Timer loadFailureTimer;
+  private final LongAdder totalLoadTime = new LongAdder();
+
+  /**
+   * Constructs a new {@code MetricsStatsCounter} that registers its metrics under
+   * the given prefix.
+   *
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   * @param prefix the prefix to use for each metric name
+   */
+  MetricsStatsCounter(MetricRegistry metrics, String prefix) {
+    hitCounter = metrics.counter(MetricRegistry.name(prefix, "hits"));
+    missCounter = metrics.counter(MetricRegistry.name(prefix, "misses"));
+    evictionCounter = metrics.counter(MetricRegistry.name(prefix, "evictions"));
+    evictionWeightCounter = metrics.counter(MetricRegistry.name(prefix, "eviction-weight"));
+    loadSuccessTimer = metrics.timer(MetricRegistry.name(prefix, "load-success-time"));
+    loadFailureTimer = metrics.timer(MetricRegistry.name(prefix, "load-failure-time"));
+  }
+
+  @Override
+  public void recordHits(int count) {
+    hitCounter.inc(count);
+  }
+
+  @Override
+  public void recordMisses(int count) {
+    missCounter.inc(count);
+  }
+
+  @Override
+  public void recordLoadSuccess(long loadTime) {
+    loadSuccessTimer.update(loadTime, TimeUnit.NANOSECONDS);
+    totalLoadTime.add(loadTime);
+  }
+
+  @Override
+  public void recordLoadFailure(long loadTime) {
+    loadFailureTimer.update(loadTime, TimeUnit.NANOSECONDS);
+    totalLoadTime.add(loadTime);
+  }
+
+  @Override
+  public void recordEviction(int weight, RemovalCause cause) {
+    evictionCounter.inc();
+    evictionWeightCounter.inc(weight);
+  }
+
+  @Override
+  public CacheStats snapshot() {
+    return CacheStats.of(
+        hitCounter.getCount(),
+        missCounter.getCount(),
+        loadSuccessTimer.getCount(),
+        loadFailureTimer.getCount(),
+        totalLoadTime.sum(),
+        evictionCounter.getCount(),
+        evictionWeightCounter.getCount());
+  }
+}
@@ -0,0 +1,48 @@
+package com.sanctionco.thunder.dao.dynamodb;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional configuration options for full-table scans of the DynamoDB table, such as
+ * the scan used by the user export. See the {@code DynamoDbUsersDaoFactory} class for more
+ * details.
+ */
+public class DynamoDbScanConfiguration {
+  private static final int DEFAULT_SEGMENTS = 4;
+  private static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int DEFAULT_READ_CAPACITY_PER_SECOND = 0;
+
+  /**
+   * Constructs a new instance of {@code DynamoDbScanConfiguration} with default values.
+   */
+  public DynamoDbScanConfiguration() {
+    this.segments = DEFAULT_SEGMENTS;
+    this.pageSize = DEFAULT_PAGE_SIZE;
+    this.readCapacityPerSecond = DEFAULT_READ_CAPACITY_PER_SECOND;
+  }
+
+  // DynamoDB allows at most 1,000,000 segments in a parallel scan
+  @Min(1) @Max(1000000) @JsonProperty("segments")
+  private final Integer segments;
+
+  @Min(1) @JsonProperty("pageSize")
+  private final Integer pageSize;
+
+  @Min(0) @JsonProperty("readCapacityPerSecond")
+  private final Integer readCapacityPerSecond;
+
+  public Integer getSegments() {
+    return segments;
+  }
+
+  public Integer getPageSize() {
+    return pageSize;
+  }
+
+  public Integer getReadCapacityPerSecond() {
+    return readCapacityPerSecond;
+  }
+}
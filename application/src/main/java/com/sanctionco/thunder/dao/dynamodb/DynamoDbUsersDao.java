@@ -1,19 +1,36 @@
 package com.sanctionco.thunder.dao.dynamodb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
+import com.sanctionco.thunder.dao.BatchResult;
 import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.PropertyIndexes;
+import com.sanctionco.thunder.dao.SegmentedScanPublisher;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import jakarta.annotation.Nullable;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,30 +39,86 @@ import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.ComparisonOperator;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.ExpectedAttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * Provides the Amazon DynamoDB implementation for the {@link UsersDao}. Provides methods to
  * insert, update, get, and delete a {@code User} (in the {@code api} module) in the database.
  *
+ * <p>The value of each indexed property is copied into its own top-level attribute of the item,
+ * which is the partition key of a global secondary index on the table. The indexes only project
+ * the table key, so looking up a property returns emails that are then read from the table.
+ *
  * @see UsersDao
  */
 public class DynamoDbUsersDao implements UsersDao {
   private static final Logger LOG = LoggerFactory.getLogger(DynamoDbUsersDao.class);
 
+  // DynamoDB limits on the number of items in a single batch request
+  private static final int MAX_BATCH_GET_SIZE = 100;
+  private static final int MAX_BATCH_WRITE_SIZE = 25;
+
+  // Unprocessed batch items are retried with exponential backoff before giving up
+  private static final int MAX_BATCH_ATTEMPTS = 5;
+  private static final long BATCH_RETRY_BASE_DELAY_MILLIS = 50;
+
+  // The cancellation reason of a transaction write whose condition was not met
+  private static final String TRANSACTION_CONDITION_FAILED = "ConditionalCheckFailed";
+
+  // Attribute names are aliased so that they can never conflict with DynamoDB reserved words
+  private static final Map<String, String> UPDATE_ATTRIBUTE_NAMES = Map.of(
+      "#email", "email",
+      "#version", "version",
+      "#update_time", "update_time",
+      "#document", "document",
+      "#password_hash", "password_hash",
+      "#verified", "verified",
+      "#verification_token", "verification_token",
+      "#creation_time", "creation_time");
+
+  // The key is projected along with the password so that existing users are always returned
+  private static final Map<String, String> PASSWORD_ATTRIBUTE_NAMES = Map.of(
+      "#email", "email",
+      "#password_hash", "password_hash");
+
   private final DynamoDbAsyncClient dynamoDbClient;
   private final String tableName;
   private final ObjectMapper mapper;
+  private final DynamoDbScanConfiguration scanConfiguration;
+  private final Set<String> indexedProperties;
+
+  // Shared by every full-table scan, so that concurrent scans together stay under the limit
+  @Nullable private final RateLimiter scanRateLimiter;
 
   /**
    * Constructs a new {@code DynamoDbUsersDao} object with the given dynamoDbClient, table,
-   * and mapper.
+   * and mapper, using the default scan configuration.
    *
    * @param dynamoDbClient the dynamoDbClient to perform operations on
    * @param tableName the name of the DynamoDB table to operate on
@@ -54,9 +127,50 @@ public class DynamoDbUsersDao implements UsersDao {
   public DynamoDbUsersDao(DynamoDbAsyncClient dynamoDbClient,
                           String tableName,
                           ObjectMapper mapper) {
+    this(dynamoDbClient, tableName, mapper, new DynamoDbScanConfiguration());
+  }
+
+  /**
+   * Constructs a new {@code DynamoDbUsersDao} object with the given dynamoDbClient, table,
+   * mapper, and scan configuration.
+   *
+   * @param dynamoDbClient the dynamoDbClient to perform operations on
+   * @param tableName the name of the DynamoDB table to operate on
+   * @param mapper the mapper used to serialize and deserialize JSON
+   * @param scanConfiguration the segments, page size, and rate limit of full-table scans
+   */
+  public DynamoDbUsersDao(DynamoDbAsyncClient dynamoDbClient,
+                          String tableName,
+                          ObjectMapper mapper,
+                          DynamoDbScanConfiguration scanConfiguration) {
+    this(dynamoDbClient, tableName, mapper, scanConfiguration, Set.of());
+  }
+
+  /**
+   * Constructs a new {@code DynamoDbUsersDao} object with the given dynamoDbClient, table,
+   * mapper, scan configuration, and indexed properties. The table must already have a global
+   * secondary index for each indexed property, as created by {@link DynamoDbUsersDaoFactory}.
+   *
+   * @param dynamoDbClient the dynamoDbClient to perform operations on
+   * @param tableName the name of the DynamoDB table to operate on
+   * @param mapper the mapper used to serialize and deserialize JSON
+   * @param scanConfiguration the segments, page size, and rate limit of full-table scans
+   * @param indexedProperties the names of the properties that users can be looked up by
+   */
+  public DynamoDbUsersDao(DynamoDbAsyncClient dynamoDbClient,
+                          String tableName,
+                          ObjectMapper mapper,
+                          DynamoDbScanConfiguration scanConfiguration,
+                          Set<String> indexedProperties) {
     this.dynamoDbClient = Objects.requireNonNull(dynamoDbClient);
     this.tableName = Objects.requireNonNull(tableName);
     this.mapper = Objects.requireNonNull(mapper);
+    this.scanConfiguration = Objects.requireNonNull(scanConfiguration);
+    this.indexedProperties = Set.copyOf(indexedProperties);
+
+    this.scanRateLimiter = scanConfiguration.getReadCapacityPerSecond() > 0
+        ? RateLimiter.create(scanConfiguration.getReadCapacityPerSecond())
+        : null;
   }
 
   @Override
@@ -65,22 +179,7 @@ public class DynamoDbUsersDao implements UsersDao {
 
     long now = Instant.now().toEpochMilli();
 
-    Map<String, AttributeValue> item = Map.of(
-        "email", AttributeValue.builder().s(user.getEmail().getAddress()).build(),
-        "id", AttributeValue.builder().s(UUID.randomUUID().toString()).build(),
-        "version", AttributeValue.builder().s(UUID.randomUUID().toString()).build(),
-        "creation_time", AttributeValue.builder().n(String.valueOf(now)).build(),
-        "update_time", AttributeValue.builder().n(String.valueOf(now)).build(),
-        "document", AttributeValue.builder().s(UsersDao.toJson(mapper, user)).build());
-
-    PutItemRequest putItemRequest = PutItemRequest.builder()
-        .tableName(tableName)
-        .item(item)
-        .expected(Collections.singletonMap("email",
-            ExpectedAttributeValue.builder().exists(false).build()))
-        .build();
-
-    return dynamoDbClient.putItem(putItemRequest)
+    return putIfAbsent(user, now)
         .thenApply(response -> user.withTime(now, now))
         .exceptionally(throwable -> {
           throw convertToDatabaseException(throwable.getCause(), user.getEmail().getAddress());
@@ -89,6 +188,11 @@ public class DynamoDbUsersDao implements UsersDao {
 
   @Override
   public CompletableFuture<User> findByEmail(String email) {
+    return findVersionedByEmail(email).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> findVersionedByEmail(String email) {
     Objects.requireNonNull(email);
 
     GetItemRequest request = GetItemRequest.builder()
@@ -104,10 +208,43 @@ public class DynamoDbUsersDao implements UsersDao {
                 DatabaseException.Error.USER_NOT_FOUND);
           }
 
-          return UsersDao.fromJson(mapper, response.item().get("document").s())
-              .withTime(
-                  Long.parseLong(response.item().get("creation_time").n()),
-                  Long.parseLong(response.item().get("update_time").n()));
+          User user = toUser(response.item());
+
+          String version = Optional.ofNullable(response.item().get("version"))
+              .map(AttributeValue::s)
+              .orElse(null);
+
+          return new VersionedUser(user, version);
+        }).exceptionally(throwable -> {
+          throw convertToDatabaseException(throwable.getCause(), email);
+        });
+  }
+
+  @Override
+  public CompletableFuture<String> findPasswordByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    GetItemRequest request = GetItemRequest.builder()
+        .tableName(tableName)
+        .key(Collections.singletonMap("email", AttributeValue.builder().s(email).build()))
+        .projectionExpression("#email, #password_hash")
+        .expressionAttributeNames(PASSWORD_ATTRIBUTE_NAMES)
+        .build();
+
+    return dynamoDbClient.getItem(request)
+        .thenCompose(response -> {
+          if (response.item().size() <= 0) {
+            LOG.warn("The email {} was not found in the database.", email);
+            throw new DatabaseException("User not found in the database.",
+                DatabaseException.Error.USER_NOT_FOUND);
+          }
+
+          // Users that have not been written since the password attribute was added
+          // only have the password in the document
+          return Optional.ofNullable(response.item().get("password_hash"))
+              .map(AttributeValue::s)
+              .map(CompletableFuture::completedFuture)
+              .orElseGet(() -> findByEmail(email).thenApply(User::getPassword));
         }).exceptionally(throwable -> {
           throw convertToDatabaseException(throwable.getCause(), email);
         });
@@ -115,67 +252,255 @@ public class DynamoDbUsersDao implements UsersDao {
 
   @Override
   public CompletableFuture<User> update(@Nullable String existingEmail, User user) {
+    return update(existingEmail, user, null).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> update(@Nullable String existingEmail,
+                                                 User user,
+                                                 @Nullable String expectedVersion) {
     Objects.requireNonNull(user);
 
     // Different email (primary key) means we need to delete and insert
     if (existingEmail != null && !existingEmail.equals(user.getEmail().getAddress())) {
-      LOG.info("User to update has new email. The user will be deleted and then reinserted.");
-      return updateEmail(existingEmail, user);
+      LOG.info("User to update has new email. The user will be moved to the new email.");
+      return moveEmail(existingEmail, user, expectedVersion);
     }
 
     long now = Instant.now().toEpochMilli();
+    String email = user.getEmail().getAddress();
+    String newVersion = UUID.randomUUID().toString();
 
-    // Get the old version
-    GetItemRequest request = GetItemRequest.builder()
+    Map<String, AttributeValue> values = new HashMap<>();
+    values.put(":version", AttributeValue.builder().s(newVersion).build());
+    values.put(":now", AttributeValue.builder().n(String.valueOf(now)).build());
+    values.put(":document", AttributeValue.builder().s(UsersDao.toJson(mapper, user)).build());
+    values.put(":verified", AttributeValue.builder().bool(user.getEmail().isVerified()).build());
+
+    // Keep the verification token in sync with the document, so that markVerified can check it
+    values.put(":verification_token", user.getEmail().getVerificationToken() != null
+        ? AttributeValue.builder().s(user.getEmail().getVerificationToken()).build()
+        : AttributeValue.builder().nul(true).build());
+
+    // creation_time is included in the update expression without changing it,
+    // so that UPDATED_NEW returns it along with the new values
+    List<String> setClauses = new ArrayList<>(List.of(
+        "#version = :version",
+        "#update_time = :now",
+        "#document = :document",
+        "#verified = :verified",
+        "#verification_token = :verification_token",
+        "#creation_time = if_not_exists(#creation_time, :now)"));
+    List<String> removeClauses = new ArrayList<>();
+    Map<String, String> names = new HashMap<>(UPDATE_ATTRIBUTE_NAMES);
+
+    // Keep each index attribute in sync with the document, removing it if there is no value
+    Map<String, String> indexed = PropertyIndexes.valuesOf(user, indexedProperties);
+    List<String> properties = indexedProperties.stream().sorted().toList();
+
+    for (int i = 0; i < properties.size(); i++) {
+      String value = indexed.get(properties.get(i));
+
+      names.put("#property_" + i, indexAttribute(properties.get(i)));
+
+      if (value != null) {
+        setClauses.add("#property_" + i + " = :property_" + i);
+        values.put(":property_" + i, AttributeValue.builder().s(value).build());
+      } else {
+        removeClauses.add("#property_" + i);
+      }
+    }
+
+    // Remove any previously stored password if the updated user does not have one
+    if (user.getPassword() != null) {
+      setClauses.add("#password_hash = :password_hash");
+      values.put(":password_hash", AttributeValue.builder().s(user.getPassword()).build());
+    } else {
+      removeClauses.add("#password_hash");
+    }
+
+    String updateExpression = "SET " + String.join(", ", setClauses)
+        + (removeClauses.isEmpty() ? "" : " REMOVE " + String.join(", ", removeClauses));
+
+    // The user must exist, and if the caller read a version it must not have changed since
+    String condition = "attribute_exists(#email)";
+
+    if (expectedVersion != null) {
+      condition += " AND #version = :expected_version";
+      values.put(":expected_version", AttributeValue.builder().s(expectedVersion).build());
+    }
+
+    UpdateItemRequest request = UpdateItemRequest.builder()
         .tableName(tableName)
-        .key(Collections.singletonMap("email",
-            AttributeValue.builder().s(user.getEmail().getAddress()).build()))
+        .key(Collections.singletonMap("email", AttributeValue.builder().s(email).build()))
+        .updateExpression(updateExpression)
+        .conditionExpression(condition)
+        .expressionAttributeNames(names)
+        .expressionAttributeValues(values)
+        .returnValues(ReturnValue.UPDATED_NEW)
+        .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
         .build();
 
-    return dynamoDbClient.getItem(request)
-        .thenApply(response -> {
-          if (response.item().size() <= 0) {
-            LOG.warn("The email {} was not found in the database.", user.getEmail().getAddress());
+    return dynamoDbClient.updateItem(request)
+        .thenApply(response -> new VersionedUser(
+            user.withTime(Long.parseLong(response.attributes().get("creation_time").n()), now),
+            newVersion))
+        .exceptionally(throwable -> {
+          // A failed condition without an existing item means that the user does not exist
+          if (throwable.getCause() instanceof ConditionalCheckFailedException e
+              && !e.hasItem()) {
+            LOG.warn("The email {} was not found in the database.", email);
             throw new DatabaseException("User not found in the database.",
                 DatabaseException.Error.USER_NOT_FOUND);
           }
 
-          // Compute the new data
-          String newVersion = UUID.randomUUID().toString();
-          String document = UsersDao.toJson(mapper, user);
-
-          // Build the new item
-          Map<String, AttributeValue> newItem = new HashMap<>();
-
-          // Fields that don't change
-          newItem.put("email", response.item().get("email"));
-          newItem.put("id", response.item().get("id"));
-          newItem.put("creation_time", response.item().get("creation_time"));
-
-          // Fields that do change
-          newItem.put("version", AttributeValue.builder().s(newVersion).build());
-          newItem.put("update_time", AttributeValue.builder().n(String.valueOf(now)).build());
-          newItem.put("document", AttributeValue.builder().s(document).build());
-
-          return PutItemRequest.builder()
-              .tableName(tableName)
-              .item(newItem)
-              .expected(Collections.singletonMap("version",
-                  ExpectedAttributeValue.builder()
-                      .comparisonOperator(ComparisonOperator.EQ)
-                      .value(response.item().get("version"))
-                      .build()))
-              .returnValues(ReturnValue.ALL_OLD)
-              .build();
-        })
-        .thenCompose(dynamoDbClient::putItem)
-        .thenApply(response ->
-            user.withTime(Long.parseLong(response.attributes().get("creation_time").n()), now))
-        .exceptionally(throwable -> {
-          throw convertToDatabaseException(throwable.getCause(), user.getEmail().getAddress());
+          throw convertToDatabaseException(throwable.getCause(), email);
         });
   }
 
+  /**
+   * Marks the user as verified with a single conditional update, which sets the {@code verified}
+   * attribute only if the stored {@code verification_token} attribute matches the given token.
+   * Users that have not been written since the attribute was added are verified with the
+   * default steps of {@link UsersDao#markVerified(String, String)} instead.
+   *
+   * @param email the email of the user to verify
+   * @param token the verification token that the user provided
+   * @return the verified user
+   */
+  @Override
+  public CompletableFuture<User> markVerified(String email, String token) {
+    Objects.requireNonNull(email);
+    Objects.requireNonNull(token);
+
+    long now = Instant.now().toEpochMilli();
+
+    UpdateItemRequest request = UpdateItemRequest.builder()
+        .tableName(tableName)
+        .key(keyOf(email))
+        .updateExpression("SET #verified = :verified, #version = :version, #update_time = :now")
+        .conditionExpression("#verification_token = :token")
+        .expressionAttributeNames(Map.of(
+            "#verified", "verified",
+            "#version", "version",
+            "#update_time", "update_time",
+            "#verification_token", "verification_token"))
+        .expressionAttributeValues(Map.of(
+            ":verified", AttributeValue.builder().bool(true).build(),
+            ":version", AttributeValue.builder().s(UUID.randomUUID().toString()).build(),
+            ":now", AttributeValue.builder().n(String.valueOf(now)).build(),
+            ":token", AttributeValue.builder().s(token).build()))
+        .returnValues(ReturnValue.ALL_NEW)
+        .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+        .build();
+
+    return dynamoDbClient.updateItem(request)
+        .thenApply(response -> toUser(response.attributes()))
+        .exceptionallyCompose(throwable -> {
+          Throwable cause = unwrap(throwable);
+
+          if (!(cause instanceof ConditionalCheckFailedException e)) {
+            return CompletableFuture.failedFuture(convertToDatabaseException(cause, email));
+          }
+
+          if (!e.hasItem() || e.item().isEmpty()) {
+            LOG.warn("The email {} was not found in the database.", email);
+            return CompletableFuture.failedFuture(new DatabaseException(
+                "User not found in the database.", DatabaseException.Error.USER_NOT_FOUND));
+          }
+
+          // Users written before the verified attribute was added may only have the token
+          // in the document
+          if (!e.item().containsKey("verified")) {
+            return markVerifiedWithoutCondition(email, token);
+          }
+
+          return CompletableFuture.failedFuture(verificationFailure(e.item(), token));
+        });
+  }
+
+  private CompletableFuture<User> markVerifiedWithoutCondition(String email, String token) {
+    return UsersDao.super.markVerified(email, token);
+  }
+
+  /**
+   * Moves the user to the new email in a single DynamoDB transaction, which puts the item under
+   * the new key only if no item exists there and deletes the item under the old key only if it
+   * has not changed since it was read. Either both writes are applied or neither is.
+   *
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object to put in the database
+   * @return the user that was updated
+   */
+  @Override
+  public CompletableFuture<User> updateEmail(String existingEmail, User user) {
+    return moveEmail(existingEmail, user, null).thenApply(VersionedUser::user);
+  }
+
+  /**
+   * Moves the user to the new email, as described in {@link #updateEmail(String, User)}. If an
+   * expected version is given, the item under the old key is only deleted if it still has that
+   * version, instead of the version that was read before the move.
+   *
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object to put in the database
+   * @param expectedVersion the version the caller read, or {@code null} to use the version that
+   *                        is read before the move
+   * @return the user that was updated and the version of the item under the new key
+   */
+  private CompletableFuture<VersionedUser> moveEmail(String existingEmail,
+                                                     User user,
+                                                     @Nullable String expectedVersion) {
+    Objects.requireNonNull(existingEmail);
+    Objects.requireNonNull(user);
+
+    String email = user.getEmail().getAddress();
+
+    return findVersionedByEmail(existingEmail).thenCompose(existing -> {
+      long now = Instant.now().toEpochMilli();
+      long creationTime = existing.user().getCreationTime();
+      String version = expectedVersion != null ? expectedVersion : existing.version();
+
+      Map<String, AttributeValue> item = newItem(user, creationTime);
+      item.put("update_time", AttributeValue.builder().n(String.valueOf(now)).build());
+
+      Put put = Put.builder()
+          .tableName(tableName)
+          .item(item)
+          .conditionExpression("attribute_not_exists(#email)")
+          .expressionAttributeNames(Map.of("#email", "email"))
+          .build();
+
+      // Users written before versions were added have no version to compare
+      Delete.Builder delete = Delete.builder()
+          .tableName(tableName)
+          .key(keyOf(existingEmail))
+          .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD);
+
+      if (version != null) {
+        delete.conditionExpression("#version = :version")
+            .expressionAttributeNames(Map.of("#version", "version"))
+            .expressionAttributeValues(Map.of(
+                ":version", AttributeValue.builder().s(version).build()));
+      } else {
+        delete.conditionExpression("attribute_exists(#email) AND attribute_not_exists(#version)")
+            .expressionAttributeNames(Map.of("#email", "email", "#version", "version"));
+      }
+
+      TransactWriteItemsRequest request = TransactWriteItemsRequest.builder()
+          .transactItems(
+              TransactWriteItem.builder().put(put).build(),
+              TransactWriteItem.builder().delete(delete.build()).build())
+          .build();
+
+      return dynamoDbClient.transactWriteItems(request)
+          .thenApply(response -> new VersionedUser(
+              user.withTime(creationTime, now), item.get("version").s()));
+    }).exceptionally(throwable -> {
+      throw convertTransactionException(unwrap(throwable), existingEmail, email);
+    });
+  }
+
   @Override
   public CompletableFuture<User> delete(String email) {
     Objects.requireNonNull(email);
@@ -192,10 +517,7 @@ public class DynamoDbUsersDao implements UsersDao {
         .build();
 
     return dynamoDbClient.deleteItem(deleteItemRequest)
-        .thenApply(response -> UsersDao.fromJson(mapper, response.attributes().get("document").s())
-            .withTime(
-                Long.parseLong(response.attributes().get("creation_time").n()),
-                Long.parseLong(response.attributes().get("update_time").n())))
+        .thenApply(response -> toUser(response.attributes()))
         .exceptionally(throwable -> {
           // First check ConditionalCheckFailedException, since we want to return a different
           // result than convertToDatabaseException() supplies
@@ -209,6 +531,635 @@ public class DynamoDbUsersDao implements UsersDao {
         });
   }
 
+  @Override
+  public CompletableFuture<List<String>> findEmailsByProperty(String property,
+                                                             String value,
+                                                             int limit) {
+    Objects.requireNonNull(property);
+    Objects.requireNonNull(value);
+
+    if (!indexedProperties.contains(property)) {
+      return CompletableFuture.failedFuture(new DatabaseException(
+          String.format("The property %s is not indexed.", property),
+          DatabaseException.Error.REQUEST_REJECTED));
+    }
+
+    // Global secondary indexes are eventually consistent, so a user that was just written
+    // may not be found yet
+    QueryRequest request = QueryRequest.builder()
+        .tableName(tableName)
+        .indexName(indexName(property))
+        .keyConditionExpression("#property = :value")
+        .expressionAttributeNames(Map.of("#property", indexAttribute(property)))
+        .expressionAttributeValues(Map.of(":value", AttributeValue.builder().s(value).build()))
+        .limit(limit)
+        .build();
+
+    return dynamoDbClient.query(request)
+        .thenApply(response -> response.items().stream()
+            .map(item -> item.get("email").s())
+            .toList())
+        .exceptionally(throwable -> {
+          throw convertToDatabaseException(unwrap(throwable), property);
+        });
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> insertAll(List<User> users) {
+    Objects.requireNonNull(users);
+
+    long now = Instant.now().toEpochMilli();
+
+    // Only the first occurrence of an email is written, since a transaction cannot write the
+    // same item twice
+    Map<String, User> unique = new LinkedHashMap<>();
+    users.forEach(user -> unique.putIfAbsent(user.getEmail().getAddress(), user));
+
+    List<CompletableFuture<Map<String, BatchResult>>> chunks
+        = partition(List.copyOf(unique.values()), MAX_BATCH_WRITE_SIZE).stream()
+            .map(chunk -> insertChunk(chunk, now))
+            .toList();
+
+    return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> {
+          Map<String, BatchResult> results = new HashMap<>();
+          chunks.forEach(chunk -> results.putAll(chunk.join()));
+
+          List<BatchResult> ordered = new ArrayList<>();
+          Set<String> seen = new HashSet<>();
+
+          for (User user : users) {
+            String email = user.getEmail().getAddress();
+
+            ordered.add(seen.add(email) ? results.get(email) : conflict(email));
+          }
+
+          return ordered;
+        });
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> findAllByEmail(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    return batchGet(emails.stream().distinct().toList())
+        .thenApply(found -> emails.stream().map(found::get).toList());
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> deleteAll(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    // BatchWriteItem does not return deleted items, so read them first
+    return batchGet(emails.stream().distinct().toList())
+        .thenCompose(found -> {
+          List<WriteRequest> deletes = found.values().stream()
+              .filter(result -> result.error() == null)
+              .map(result -> WriteRequest.builder()
+                  .deleteRequest(DeleteRequest.builder().key(keyOf(result.email())).build())
+                  .build())
+              .toList();
+
+          return batchWrite(deletes).thenApply(failures -> emails.stream()
+              .map(email -> Optional.ofNullable(failures.get(email))
+                  .map(error -> BatchResult.failure(email, error))
+                  .orElse(found.get(email)))
+              .toList());
+        });
+  }
+
+  @Override
+  public CompletableFuture<UsersPage> scan(int segment,
+                                           int totalSegments,
+                                           @Nullable String startToken,
+                                           int limit) {
+    return scanTable(segment, totalSegments, startToken, limit).thenApply(this::toPage);
+  }
+
+  @Override
+  public Flow.Publisher<User> scanAll() {
+    return new SegmentedScanPublisher(
+        this::throttledScan, scanConfiguration.getSegments(), scanConfiguration.getPageSize());
+  }
+
+  /**
+   * Reads one page of a full-table scan, then waits for the read capacity that the page used
+   * if a rate limit is configured. Waiting after the page means the next page of any segment is
+   * delayed until the scan is back under the limit, which leaves the rest of the table's
+   * provisioned capacity for other requests.
+   *
+   * @param segment the segment to read
+   * @param totalSegments the number of segments that the scan is split into
+   * @param startToken the email to start after, or {@code null} to start from the beginning
+   * @param limit the maximum number of users to read
+   * @return the page of users
+   */
+  private UsersPage throttledScan(int segment,
+                                  int totalSegments,
+                                  @Nullable String startToken,
+                                  int limit) {
+    ScanResponse response = scanTable(segment, totalSegments, startToken, limit).join();
+
+    if (scanRateLimiter != null && response.consumedCapacity() != null) {
+      int units = (int) Math.ceil(response.consumedCapacity().capacityUnits());
+
+      scanRateLimiter.acquire(Math.max(1, units));
+    }
+
+    return toPage(response);
+  }
+
+  /**
+   * Sends a {@code Scan} request for one page of a segment of the table.
+   *
+   * @param segment the segment to read
+   * @param totalSegments the number of segments that the scan is split into
+   * @param startToken the email to start after, or {@code null} to start from the beginning
+   * @param limit the maximum number of users to read
+   * @return a future that is completed with the response, or completed exceptionally with a
+   *         {@link DatabaseException} if the request failed
+   */
+  private CompletableFuture<ScanResponse> scanTable(int segment,
+                                                    int totalSegments,
+                                                    @Nullable String startToken,
+                                                    int limit) {
+    ScanRequest.Builder request = ScanRequest.builder()
+        .tableName(tableName)
+        .limit(limit)
+        .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+    // DynamoDB reads each segment of a parallel scan independently
+    if (totalSegments > 1) {
+      request.segment(segment).totalSegments(totalSegments);
+    }
+
+    if (startToken != null) {
+      request.exclusiveStartKey(keyOf(startToken));
+    }
+
+    return dynamoDbClient.scan(request.build())
+        .exceptionally(throwable -> {
+          throw convertToDatabaseException(unwrap(throwable), "scan");
+        });
+  }
+
+  /**
+   * Converts a {@code Scan} response into a page of users.
+   *
+   * @param response the response to convert
+   * @return the page of users, with the email of the last user read as the next token if there
+   *         are more users in the segment
+   */
+  private UsersPage toPage(ScanResponse response) {
+    return new UsersPage(
+        response.items().stream().map(this::toUser).toList(),
+        response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+            ? response.lastEvaluatedKey().get("email").s()
+            : null);
+  }
+
+  /**
+   * Reads the users with the given distinct emails using {@code BatchGetItem} requests of up to
+   * {@value #MAX_BATCH_GET_SIZE} keys each. Keys that DynamoDB leaves unprocessed are retried.
+   *
+   * @param emails the distinct emails to read
+   * @return a future that is completed with the result for each email. This future is never
+   *         completed exceptionally.
+   */
+  private CompletableFuture<Map<String, BatchResult>> batchGet(List<String> emails) {
+    List<CompletableFuture<Map<String, BatchResult>>> chunks
+        = partition(emails, MAX_BATCH_GET_SIZE).stream()
+            .map(chunk -> batchGet(KeysAndAttributes.builder()
+                .keys(chunk.stream().map(DynamoDbUsersDao::keyOf).toList())
+                .build(), new HashMap<>(), 1))
+            .toList();
+
+    return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> {
+          Map<String, BatchResult> results = new HashMap<>();
+          chunks.forEach(chunk -> results.putAll(chunk.join()));
+
+          return results;
+        });
+  }
+
+  /**
+   * Sends a single {@code BatchGetItem} request, then retries any unprocessed keys.
+   *
+   * @param keys the keys to read
+   * @param results the results collected by previous attempts
+   * @param attempt the number of this attempt, starting at 1
+   * @return a future that is completed with the result for each key
+   */
+  private CompletableFuture<Map<String, BatchResult>> batchGet(KeysAndAttributes keys,
+                                                               Map<String, BatchResult> results,
+                                                               int attempt) {
+    BatchGetItemRequest request = BatchGetItemRequest.builder()
+        .requestItems(Map.of(tableName, keys))
+        .build();
+
+    return dynamoDbClient.batchGetItem(request)
+        .thenCompose(response -> {
+          response.responses().getOrDefault(tableName, List.of()).forEach(item -> results
+              .put(item.get("email").s(), BatchResult.success(toUser(item))));
+
+          KeysAndAttributes unprocessed = response.unprocessedKeys().get(tableName);
+          Set<String> pending = unprocessed == null
+              ? Set.of()
+              : unprocessed.keys().stream().map(key -> key.get("email").s()).collect(toSet());
+
+          // Every key that was processed but not returned does not exist
+          keys.keys().stream()
+              .map(key -> key.get("email").s())
+              .filter(email -> !pending.contains(email))
+              .forEach(email -> results.computeIfAbsent(email, ignored -> BatchResult.failure(
+                  email, new DatabaseException("User not found in the database.",
+                      DatabaseException.Error.USER_NOT_FOUND))));
+
+          if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+          }
+
+          if (attempt < MAX_BATCH_ATTEMPTS) {
+            return retryAfterBackoff(attempt, () -> batchGet(unprocessed, results, attempt + 1));
+          }
+
+          pending.forEach(email -> results.put(email,
+              BatchResult.failure(email, throughputExceeded())));
+
+          return CompletableFuture.completedFuture(results);
+        })
+        .exceptionally(throwable -> {
+          keys.keys().forEach(key -> results.computeIfAbsent(key.get("email").s(),
+              email -> BatchResult.failure(email,
+                  convertToDatabaseException(unwrap(throwable), email))));
+
+          return results;
+        });
+  }
+
+  /**
+   * Sends the given writes using {@code BatchWriteItem} requests of up to
+   * {@value #MAX_BATCH_WRITE_SIZE} items each. Items that DynamoDB leaves unprocessed are retried.
+   *
+   * @param writes the writes to send, each for a different email
+   * @return a future that is completed with the failure for each email that could not be
+   *         written. This future is never completed exceptionally.
+   */
+  private CompletableFuture<Map<String, DatabaseException>> batchWrite(List<WriteRequest> writes) {
+    List<CompletableFuture<Map<String, DatabaseException>>> chunks
+        = partition(writes, MAX_BATCH_WRITE_SIZE).stream()
+            .map(chunk -> batchWrite(chunk, new HashMap<>(), 1))
+            .toList();
+
+    return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> {
+          Map<String, DatabaseException> failures = new HashMap<>();
+          chunks.forEach(chunk -> failures.putAll(chunk.join()));
+
+          return failures;
+        });
+  }
+
+  /**
+   * Sends a single {@code BatchWriteItem} request, then retries any unprocessed items.
+   *
+   * @param writes the writes to send
+   * @param failures the failures collected by previous attempts
+   * @param attempt the number of this attempt, starting at 1
+   * @return a future that is completed with the failure for each email that could not be written
+   */
+  private CompletableFuture<Map<String, DatabaseException>> batchWrite(
+      List<WriteRequest> writes, Map<String, DatabaseException> failures, int attempt) {
+    BatchWriteItemRequest request = BatchWriteItemRequest.builder()
+        .requestItems(Map.of(tableName, writes))
+        .build();
+
+    return dynamoDbClient.batchWriteItem(request)
+        .thenCompose(response -> {
+          List<WriteRequest> unprocessed = response.unprocessedItems()
+              .getOrDefault(tableName, List.of());
+
+          if (unprocessed.isEmpty()) {
+            return CompletableFuture.completedFuture(failures);
+          }
+
+          if (attempt < MAX_BATCH_ATTEMPTS) {
+            return retryAfterBackoff(attempt, () -> batchWrite(unprocessed, failures, attempt + 1));
+          }
+
+          unprocessed.forEach(write -> failures.put(emailOf(write), throughputExceeded()));
+
+          return CompletableFuture.completedFuture(failures);
+        })
+        .exceptionally(throwable -> {
+          writes.forEach(write -> failures.put(emailOf(write),
+              convertToDatabaseException(unwrap(throwable), emailOf(write))));
+
+          return failures;
+        });
+  }
+
+  /**
+   * Runs the given retry once the backoff delay for the given attempt has passed.
+   *
+   * @param attempt the number of the attempt that left items unprocessed
+   * @param retry the retry to run
+   * @param <T> the result type of the retry
+   * @return a future that is completed with the result of the retry
+   */
+  private static <T> CompletableFuture<T> retryAfterBackoff(
+      int attempt, Supplier<CompletableFuture<T>> retry) {
+    long delay = BATCH_RETRY_BASE_DELAY_MILLIS << (attempt - 1);
+
+    return CompletableFuture
+        .supplyAsync(() -> null, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+        .thenCompose(ignored -> retry.get());
+  }
+
+  /**
+   * Writes up to {@value #MAX_BATCH_WRITE_SIZE} new users with a single
+   * {@code TransactWriteItems} call, on the condition that none of them exist. If any of them
+   * exists, the whole transaction is cancelled, and each user is then written with its own
+   * conditional {@code PutItem} so that only the existing users are reported as conflicts.
+   *
+   * @param users the users to write, each with a different email address
+   * @param now the creation time of the users
+   * @return a future that is completed with the result for each email address
+   */
+  private CompletableFuture<Map<String, BatchResult>> insertChunk(List<User> users, long now) {
+    // A transaction costs twice the write capacity of a single put, so it is not worth it for one
+    if (users.size() == 1) {
+      return insertEach(users, now);
+    }
+
+    List<TransactWriteItem> puts = users.stream()
+        .map(user -> Put.builder()
+            .tableName(tableName)
+            .item(newItem(user, now))
+            .conditionExpression("attribute_not_exists(#email)")
+            .expressionAttributeNames(Map.of("#email", "email"))
+            .build())
+        .map(put -> TransactWriteItem.builder().put(put).build())
+        .toList();
+
+    TransactWriteItemsRequest request = TransactWriteItemsRequest.builder()
+        .transactItems(puts)
+        .build();
+
+    return dynamoDbClient.transactWriteItems(request)
+        .thenApply(response -> users.stream().collect(toMap(
+            user -> user.getEmail().getAddress(),
+            user -> BatchResult.success(user.withTime(now, now)))))
+        .exceptionallyCompose(throwable -> {
+          Throwable cause = unwrap(throwable);
+
+          if (cause instanceof TransactionCanceledException) {
+            LOG.info("A transaction of {} new users was cancelled. Writing them one at a time.",
+                users.size());
+            return insertEach(users, now);
+          }
+
+          return CompletableFuture.completedFuture(users.stream().collect(toMap(
+              user -> user.getEmail().getAddress(),
+              user -> BatchResult.failure(user.getEmail().getAddress(),
+                  convertToDatabaseException(cause, user.getEmail().getAddress())))));
+        });
+  }
+
+  /**
+   * Writes each of the given new users with its own conditional {@code PutItem} call.
+   *
+   * @param users the users to write, each with a different email address
+   * @param now the creation time of the users
+   * @return a future that is completed with the result for each email address
+   */
+  private CompletableFuture<Map<String, BatchResult>> insertEach(List<User> users, long now) {
+    Map<String, CompletableFuture<BatchResult>> results = new HashMap<>();
+
+    for (User user : users) {
+      String email = user.getEmail().getAddress();
+
+      results.put(email, putIfAbsent(user, now).handle((response, throwable) -> {
+        if (throwable == null) {
+          return BatchResult.success(user.withTime(now, now));
+        }
+
+        Throwable cause = unwrap(throwable);
+
+        return cause instanceof ConditionalCheckFailedException
+            ? conflict(email)
+            : BatchResult.failure(email, convertToDatabaseException(cause, email));
+      }));
+    }
+
+    return CompletableFuture.allOf(results.values().toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> {
+          Map<String, BatchResult> written = new HashMap<>();
+          results.forEach((email, result) -> written.put(email, result.join()));
+
+          return written;
+        });
+  }
+
+  /**
+   * Writes a new user, on the condition that no user with the same email address exists.
+   *
+   * @param user the user to write
+   * @param now the creation time of the user
+   * @return a future that is completed once the user is written, or completed exceptionally
+   *         with a {@link ConditionalCheckFailedException} if the user already exists
+   */
+  private CompletableFuture<PutItemResponse> putIfAbsent(User user, long now) {
+    PutItemRequest putItemRequest = PutItemRequest.builder()
+        .tableName(tableName)
+        .item(newItem(user, now))
+        .expected(Collections.singletonMap("email",
+            ExpectedAttributeValue.builder().exists(false).build()))
+        .build();
+
+    return dynamoDbClient.putItem(putItemRequest);
+  }
+
+  /**
+   * Builds the item to store in DynamoDB for a new user.
+   *
+   * @param user the user to store
+   * @param now the creation time of the user
+   * @return the new item
+   */
+  private Map<String, AttributeValue> newItem(User user, long now) {
+    Map<String, AttributeValue> item = new HashMap<>(Map.of(
+        "email", AttributeValue.builder().s(user.getEmail().getAddress()).build(),
+        "id", AttributeValue.builder().s(UUID.randomUUID().toString()).build(),
+        "version", AttributeValue.builder().s(UUID.randomUUID().toString()).build(),
+        "creation_time", AttributeValue.builder().n(String.valueOf(now)).build(),
+        "update_time", AttributeValue.builder().n(String.valueOf(now)).build(),
+        "document", AttributeValue.builder().s(UsersDao.toJson(mapper, user)).build(),
+        "verified", AttributeValue.builder().bool(user.getEmail().isVerified()).build()));
+
+    // The password is also stored on its own so that it can be read without the document
+    if (user.getPassword() != null) {
+      item.put("password_hash", AttributeValue.builder().s(user.getPassword()).build());
+    }
+
+    // The verification token is stored on its own so that markVerified can check it in a condition
+    if (user.getEmail().getVerificationToken() != null) {
+      item.put("verification_token",
+          AttributeValue.builder().s(user.getEmail().getVerificationToken()).build());
+    }
+
+    PropertyIndexes.valuesOf(user, indexedProperties).forEach((property, value) ->
+        item.put(indexAttribute(property), AttributeValue.builder().s(value).build()));
+
+    return item;
+  }
+
+  /**
+   * Converts an item stored in DynamoDB into a {@link User}.
+   *
+   * @param item the stored item
+   * @return the user, including its creation and update times
+   */
+  private User toUser(Map<String, AttributeValue> item) {
+    User user = UsersDao.fromJson(mapper, item.get("document").s());
+
+    // markVerified sets the verified attribute without rewriting the document
+    if (item.containsKey("verified") && Boolean.TRUE.equals(item.get("verified").bool())
+        && !user.getEmail().isVerified()) {
+      user = new User(user.getEmail().verifiedCopy(), user.getPassword(), user.getProperties());
+    }
+
+    return user.withTime(
+        Long.parseLong(item.get("creation_time").n()),
+        Long.parseLong(item.get("update_time").n()));
+  }
+
+  /**
+   * Provides the name of the item attribute that holds the value of an indexed property.
+   *
+   * @param property the name of the indexed property
+   * @return the attribute name
+   */
+  static String indexAttribute(String property) {
+    return "property_" + property;
+  }
+
+  /**
+   * Provides the name of the global secondary index for an indexed property.
+   *
+   * @param property the name of the indexed property
+   * @return the index name
+   */
+  static String indexName(String property) {
+    return indexAttribute(property) + "-index";
+  }
+
+  /**
+   * Builds the exception for a verification whose token condition failed.
+   *
+   * @param item the stored item, returned by the failed condition
+   * @param token the verification token that the user provided
+   * @return the exception that explains why the token did not match
+   */
+  private static RuntimeException verificationFailure(Map<String, AttributeValue> item,
+                                                      String token) {
+    String stored = Optional.ofNullable(item.get("verification_token"))
+        .map(AttributeValue::s)
+        .orElse(null);
+
+    try {
+      UsersDao.checkVerificationToken(stored, token);
+    } catch (RequestValidationException e) {
+      return e;
+    }
+
+    // The token matched, so the item changed between the update and the failed condition
+    return new DatabaseException("The user was changed by another request. Please try again.",
+        DatabaseException.Error.CONFLICT);
+  }
+
+  private static Map<String, AttributeValue> keyOf(String email) {
+    return Collections.singletonMap("email", AttributeValue.builder().s(email).build());
+  }
+
+  private static String emailOf(WriteRequest write) {
+    return write.putRequest() != null
+        ? write.putRequest().item().get("email").s()
+        : write.deleteRequest().key().get("email").s();
+  }
+
+  private static BatchResult conflict(String email) {
+    return BatchResult.failure(email, new DatabaseException(
+        "A user with the same email address already exists.", DatabaseException.Error.CONFLICT));
+  }
+
+  private static DatabaseException throughputExceeded() {
+    return new DatabaseException("The database did not process the request in time."
+        + " Please try again later.", DatabaseException.Error.DATABASE_DOWN);
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+  }
+
+  private static <T> List<List<T>> partition(List<T> list, int size) {
+    List<List<T>> partitions = new ArrayList<>();
+
+    for (int i = 0; i < list.size(); i += size) {
+      partitions.add(list.subList(i, Math.min(i + size, list.size())));
+    }
+
+    return partitions;
+  }
+
+  /**
+   * Converts a throwable received from an email change transaction into a
+   * {@link DatabaseException}, using the reason each write in the transaction was cancelled.
+   *
+   * @param throwable the throwable to convert
+   * @param existingEmail the email of the user before the update
+   * @param email the new email of the user
+   * @return a new {@link DatabaseException}
+   */
+  private DatabaseException convertTransactionException(Throwable throwable,
+                                                        String existingEmail,
+                                                        String email) {
+    if (!(throwable instanceof TransactionCanceledException e) || !e.hasCancellationReasons()
+        || e.cancellationReasons().size() < 2) {
+      return convertToDatabaseException(throwable, email);
+    }
+
+    CancellationReason put = e.cancellationReasons().get(0);
+    CancellationReason delete = e.cancellationReasons().get(1);
+
+    if (TRANSACTION_CONDITION_FAILED.equals(put.code())) {
+      LOG.warn("A user with the new email {} already exists.", email);
+      return new DatabaseException("A user with the new email address already exists.",
+          DatabaseException.Error.CONFLICT);
+    }
+
+    if (TRANSACTION_CONDITION_FAILED.equals(delete.code())) {
+      if (delete.item() == null || delete.item().isEmpty()) {
+        LOG.warn("The email {} was not found in the database.", existingEmail);
+        return new DatabaseException("User not found in the database.",
+            DatabaseException.Error.USER_NOT_FOUND);
+      }
+
+      LOG.warn("The user {} was changed while its email was being updated.", existingEmail);
+      return new DatabaseException("The user was changed by another request. Please try again.",
+          DatabaseException.Error.CONFLICT);
+    }
+
+    // Another transaction wrote one of the same items at the same time
+    LOG.warn("The email update from {} to {} was cancelled: {}.",
+        existingEmail, email, e.cancellationReasons());
+    return new DatabaseException("The user was changed by another request. Please try again.",
+        DatabaseException.Error.CONFLICT);
+  }
+
   /**
    * Converts a throwable received from DynamoDB into a {@link DatabaseException}.
    *
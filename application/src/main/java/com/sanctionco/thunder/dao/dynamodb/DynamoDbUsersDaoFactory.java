@@ -1,5 +1,6 @@
 package com.sanctionco.thunder.dao.dynamodb;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -7,10 +8,16 @@ import com.sanctionco.thunder.dao.DatabaseHealthCheck;
 import com.sanctionco.thunder.dao.UsersDao;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,18 +25,30 @@ import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.CreateGlobalSecondaryIndexAction;
 import software.amazon.awssdk.services.dynamodb.model.CreateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndex;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexUpdate;
 import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
 import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.Projection;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
 import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughput;
 import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableRequest;
 
 /**
  * Provides the Amazon DynamoDB implementation for the {@link UsersDaoFactory}. Provides methods
  * to construct new UsersDao and DatabaseHealthCheck objects that interact with DynamoDB.
  *
  * <p>The application configuration file should use {@code type: dynamodb} in order to use this
- * factory.
+ * factory. The optional {@code scan} section configures full-table scans of the table.
+ *
+ * <p>A global secondary index is created for each indexed user property that the table does not
+ * already have an index for. On an existing table, DynamoDB builds a new index in the background,
+ * and lookups by the property fail until the index is active.
  *
  * <p>This class must be registered in
  * {@code /resources/META-INF/services/com.sanctionco.thunder.dao.UsersDaoFactory}.
@@ -37,7 +56,7 @@ import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
  * @see UsersDaoFactory
  */
 @JsonTypeName("dynamodb")
-public class DynamoDbUsersDaoFactory implements UsersDaoFactory {
+public class DynamoDbUsersDaoFactory extends UsersDaoFactory {
   private static final Logger LOG = LoggerFactory.getLogger(DynamoDbUsersDaoFactory.class);
   private static final Long READ_CAPACITY_UNITS = 5L;
   private static final Long WRITE_CAPACITY_UNITS = 5L;
@@ -53,6 +72,9 @@ public class DynamoDbUsersDaoFactory implements UsersDaoFactory {
   @NotEmpty @JsonProperty("tableName")
   private final String tableName = null;
 
+  @Valid @JsonProperty("scan")
+  private final DynamoDbScanConfiguration scanConfiguration = null;
+
   public String getEndpoint() {
     return endpoint;
   }
@@ -65,6 +87,16 @@ public class DynamoDbUsersDaoFactory implements UsersDaoFactory {
     return tableName;
   }
 
+  /**
+   * Provides the configuration for full-table scans.
+   *
+   * @return the configured scan options or the defaults
+   */
+  public DynamoDbScanConfiguration getScanConfiguration() {
+    return Optional.ofNullable(scanConfiguration)
+        .orElseGet(DynamoDbScanConfiguration::new);
+  }
+
   /**
    * Constructs a new {@link DynamoDbUsersDao} instance.
    *
@@ -72,14 +104,39 @@ public class DynamoDbUsersDaoFactory implements UsersDaoFactory {
    * @return the created {@link DynamoDbUsersDao} instance
    */
   @Override
-  @SuppressWarnings("ConstantConditions")
   public UsersDao createUsersDao(ObjectMapper mapper) {
+    return newUsersDao(mapper, Set.of());
+  }
+
+  /**
+   * Constructs a new {@link DynamoDbUsersDao} instance, creating a global secondary index for
+   * each of the given properties if the table does not have one yet.
+   *
+   * @param mapper the ObjectMapper instance to use
+   * @param metrics the {@code MetricRegistry} instance, which is not used by DynamoDB
+   * @param indexedProperties the names of the properties to index
+   * @return the created {@link DynamoDbUsersDao} instance
+   */
+  @Override
+  public UsersDao createUsersDao(ObjectMapper mapper,
+                                 MetricRegistry metrics,
+                                 Set<String> indexedProperties) {
+    return newUsersDao(mapper, indexedProperties);
+  }
+
+  @SuppressWarnings("ConstantConditions")
+  private UsersDao newUsersDao(ObjectMapper mapper, Set<String> indexedProperties) {
     LOG.info("Creating DynamoDB implementation of UsersDao");
 
     initializeDynamoDbClient();
-    initializeDynamoDbTable();
+    initializeDynamoDbTable(indexedProperties);
 
-    return new DynamoDbUsersDao(dynamoDbClient, tableName, mapper);
+    DynamoDbScanConfiguration scan = getScanConfiguration();
+
+    LOG.info("DynamoDB scans: segments: {}, pageSize: {}, readCapacityPerSecond: {}",
+        scan.getSegments(), scan.getPageSize(), scan.getReadCapacityPerSecond());
+
+    return new DynamoDbUsersDao(dynamoDbClient, tableName, mapper, scan, indexedProperties);
   }
 
   /**
@@ -116,30 +173,111 @@ public class DynamoDbUsersDaoFactory implements UsersDaoFactory {
   }
 
   /**
-   * Ensures that the DynamoDB table exists. If not, it creates the table.
+   * Ensures that the DynamoDB table exists with an index for each indexed property. If the table
+   * does not exist, it creates the table along with the indexes. Otherwise, it creates any
+   * missing indexes.
+   *
+   * @param indexedProperties the names of the properties to index
    */
   @SuppressWarnings("ConstantConditions")
-  private void initializeDynamoDbTable() {
+  private void initializeDynamoDbTable(Set<String> indexedProperties) {
     if (!dynamoDbClient.listTables().join().tableNames().contains(tableName)) {
       LOG.warn("The DynamoDB table {} does not exist."
               + " Creating this table with {} read capacity units and {} write capacity units.",
           tableName, READ_CAPACITY_UNITS, WRITE_CAPACITY_UNITS);
 
-      dynamoDbClient.createTable(CreateTableRequest.builder()
+      List<AttributeDefinition> attributes = new ArrayList<>();
+      attributes.add(stringAttribute("email"));
+      indexedProperties.forEach(property ->
+          attributes.add(stringAttribute(DynamoDbUsersDao.indexAttribute(property))));
+
+      CreateTableRequest.Builder request = CreateTableRequest.builder()
           .tableName(tableName)
-          .attributeDefinitions(AttributeDefinition.builder()
-              .attributeName("email")
-              .attributeType(ScalarAttributeType.S)
-              .build())
+          .attributeDefinitions(attributes)
           .keySchema(KeySchemaElement.builder()
               .attributeName("email")
               .keyType(KeyType.HASH)
               .build())
-          .provisionedThroughput(ProvisionedThroughput.builder()
-              .readCapacityUnits(READ_CAPACITY_UNITS)
-              .writeCapacityUnits(WRITE_CAPACITY_UNITS)
-              .build())
-          .build());
+          .provisionedThroughput(provisionedThroughput());
+
+      if (!indexedProperties.isEmpty()) {
+        request.globalSecondaryIndexes(indexedProperties.stream()
+            .map(DynamoDbUsersDaoFactory::globalSecondaryIndex)
+            .toList());
+      }
+
+      dynamoDbClient.createTable(request.build());
+      return;
+    }
+
+    if (indexedProperties.isEmpty()) {
+      return;
     }
+
+    DescribeTableRequest describeRequest = DescribeTableRequest.builder()
+        .tableName(tableName)
+        .build();
+
+    Set<String> existing = dynamoDbClient.describeTable(describeRequest).join()
+        .table().globalSecondaryIndexes().stream()
+        .map(GlobalSecondaryIndexDescription::indexName)
+        .collect(Collectors.toSet());
+
+    // DynamoDB only allows one index to be created by each table update
+    indexedProperties.stream()
+        .filter(property -> !existing.contains(DynamoDbUsersDao.indexName(property)))
+        .forEach(property -> {
+          LOG.warn("The DynamoDB table {} does not have an index for the property {}."
+                  + " Creating the index {}.",
+              tableName, property, DynamoDbUsersDao.indexName(property));
+
+          GlobalSecondaryIndex index = globalSecondaryIndex(property);
+
+          dynamoDbClient.updateTable(UpdateTableRequest.builder()
+              .tableName(tableName)
+              .attributeDefinitions(stringAttribute(DynamoDbUsersDao.indexAttribute(property)))
+              .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder()
+                  .create(CreateGlobalSecondaryIndexAction.builder()
+                      .indexName(index.indexName())
+                      .keySchema(index.keySchema())
+                      .projection(index.projection())
+                      .provisionedThroughput(index.provisionedThroughput())
+                      .build())
+                  .build())
+              .build()).join();
+        });
+  }
+
+  /**
+   * Builds the global secondary index for an indexed property. The index only projects the
+   * table key, since the users it finds are read from the table afterwards.
+   *
+   * @param property the name of the indexed property
+   * @return the index definition
+   */
+  private static GlobalSecondaryIndex globalSecondaryIndex(String property) {
+    return GlobalSecondaryIndex.builder()
+        .indexName(DynamoDbUsersDao.indexName(property))
+        .keySchema(KeySchemaElement.builder()
+            .attributeName(DynamoDbUsersDao.indexAttribute(property))
+            .keyType(KeyType.HASH)
+            .build())
+        .projection(Projection.builder().projectionType(ProjectionType.KEYS_ONLY).build())
+        .provisionedThroughput(provisionedThroughput())
+        .build();
+  }
+
+  private static AttributeDefinition stringAttribute(String name) {
+    return AttributeDefinition.builder()
+        .attributeName(name)
+        .attributeType(ScalarAttributeType.S)
+        .build();
+  }
+
+  private static ProvisionedThroughput provisionedThroughput() {
+    return ProvisionedThroughput.builder()
+        .readCapacityUnits(READ_CAPACITY_UNITS)
+        .writeCapacityUnits(WRITE_CAPACITY_UNITS)
+        .build();
   }
 }
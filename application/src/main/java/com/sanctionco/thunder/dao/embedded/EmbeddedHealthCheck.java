@@ -0,0 +1,46 @@
+package com.sanctionco.thunder.dao.embedded;
+
+import com.sanctionco.thunder.dao.DatabaseHealthCheck;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Provides the health check for the embedded database. See {@code HealthCheck} in
+ * {@code com.codahale.metrics.health} for more information on the base class. Additionally, see
+ * <a href="https://www.dropwizard.io/1.3.5/docs/manual/core.html#health-checks">The Dropwizard
+ * manual</a> for more information on Dropwizard health checks.
+ */
+public class EmbeddedHealthCheck extends DatabaseHealthCheck {
+  private final Path directory;
+  private final BooleanSupplier writable;
+
+  /**
+   * Constructs a new {@code EmbeddedHealthCheck}.
+   *
+   * @param directory the data directory of the embedded database
+   * @param writable supplies whether the embedded database is accepting writes
+   */
+  public EmbeddedHealthCheck(Path directory, BooleanSupplier writable) {
+    this.directory = Objects.requireNonNull(directory);
+    this.writable = Objects.requireNonNull(writable);
+  }
+
+  /**
+   * Checks that the data directory can be written to and that no write has failed.
+   *
+   * @return healthy if the embedded database can accept writes; unhealthy otherwise
+   */
+  @Override
+  protected Result check() {
+    if (!Files.isDirectory(directory) || !Files.isWritable(directory)) {
+      return Result.unhealthy("The embedded database directory %s is not writable.", directory);
+    }
+
+    return writable.getAsBoolean()
+        ? Result.healthy()
+        : Result.unhealthy("The embedded database is not accepting writes.");
+  }
+}
@@ -0,0 +1,120 @@
+package com.sanctionco.thunder.dao.embedded;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.dao.DatabaseHealthCheck;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersDaoFactory;
+import com.sanctionco.thunder.dao.inmemorydb.InMemoryDbUsersDao;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the embedded implementation for the {@link UsersDaoFactory}. Provides methods to
+ * construct new UsersDao and DatabaseHealthCheck objects that keep users in a local data
+ * directory, with no external database. Users are kept in a {@link LogStructuredUserStore} and
+ * served through the same DAO as the in-memory database.
+ *
+ * <p>The application configuration file should use {@code type: embedded} in order to use this
+ * factory.
+ *
+ * <p>This class must be registered in
+ * {@code /resources/META-INF/services/com.sanctionco.thunder.dao.UsersDaoFactory}.
+ *
+ * @see UsersDaoFactory
+ */
+@JsonTypeName("embedded")
+public class EmbeddedUsersDaoFactory extends UsersDaoFactory {
+  private static final Logger LOG = LoggerFactory.getLogger(EmbeddedUsersDaoFactory.class);
+
+  volatile LogStructuredUserStore store; // package-private for testing
+
+  @NotEmpty @JsonProperty("directory")
+  private final String directory = "thunder-db";
+
+  @Min(0) @JsonProperty("cacheSize")
+  private final Long cacheSize = 10_000L;
+
+  @Min(1) @Max(100) @JsonProperty("compactionThreshold")
+  private final Integer compactionThreshold = 50;
+
+  @Valid @JsonProperty("compactionInterval")
+  private final Duration compactionInterval = Duration.minutes(1);
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public Long getCacheSize() {
+    return cacheSize;
+  }
+
+  public Integer getCompactionThreshold() {
+    return compactionThreshold;
+  }
+
+  public Duration getCompactionInterval() {
+    return compactionInterval;
+  }
+
+  @Override
+  public UsersDao createUsersDao(ObjectMapper mapper) {
+    return createUsersDao(mapper, new MetricRegistry(), Set.of());
+  }
+
+  @Override
+  public UsersDao createUsersDao(ObjectMapper mapper,
+                                 MetricRegistry metrics,
+                                 Set<String> indexedProperties) {
+    LOG.info("Creating embedded implementation of UsersDao in {}", directory);
+    LOG.info("Embedded database indexed properties: {}", indexedProperties);
+
+    initializeStore(mapper, metrics);
+
+    return new InMemoryDbUsersDao(store, indexedProperties);
+  }
+
+  @Override
+  public DatabaseHealthCheck createHealthCheck() {
+    LOG.info("Creating embedded implementation of DatabaseHealthCheck");
+
+    // The store may not be open yet when the health check is created
+    return new EmbeddedHealthCheck(Path.of(directory),
+        () -> store == null || store.isWritable());
+  }
+
+  /**
+   * Opens the store in the data directory if it is not open yet. The store can only be opened
+   * once, since it locks its log for writing.
+   *
+   * @param mapper the mapper used to serialize and deserialize users
+   * @param metrics the {@code MetricRegistry} instance used to register store metrics
+   */
+  private synchronized void initializeStore(ObjectMapper mapper, MetricRegistry metrics) {
+    if (store != null) {
+      return;
+    }
+
+    try {
+      store = new LogStructuredUserStore(mapper, Path.of(directory), cacheSize,
+          compactionThreshold, compactionInterval, metrics);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open the embedded database.", e);
+    }
+  }
+}
@@ -0,0 +1,318 @@
+package com.sanctionco.thunder.dao.embedded;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sanctionco.thunder.dao.inmemorydb.UserStore;
+import com.sanctionco.thunder.dao.inmemorydb.WriteAheadLog;
+import com.sanctionco.thunder.models.User;
+
+import io.dropwizard.util.Duration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a {@link UserStore} that keeps users on disk in a log-structured data file. Every
+ * write appends the full user to a {@link WriteAheadLog}, and an in-memory key directory maps
+ * each email to the position of its latest record, so any user can be read with a single
+ * positional read. Recently used users are kept in a bounded block cache, so most reads never
+ * touch the disk. On startup the key directory is rebuilt by reading every record once.
+ *
+ * <p>Overwritten and deleted records stay in the data file as garbage until compaction. When the
+ * share of garbage reaches the configured threshold, compaction starts a new segment, copies every
+ * live record out of the older segments, and then deletes them.
+ *
+ * <p>The number of users, live and total bytes, cache hits and misses, and compactions are
+ * reported under {@code com.sanctionco.thunder.dao.embedded.LogStructuredUserStore}.
+ *
+ * @see WriteAheadLog
+ */
+public class LogStructuredUserStore implements UserStore, Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(LogStructuredUserStore.class);
+
+  private final ConcurrentMap<String, WriteAheadLog.Position> keys = new ConcurrentHashMap<>();
+  private final AtomicLong liveBytes = new AtomicLong();
+  private final AtomicLong logBytes = new AtomicLong();
+
+  // Writes hold the read lock while they append, so that a rotation waits for them to finish
+  private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+
+  private final ObjectMapper mapper;
+  private final Path directory;
+  private final WriteAheadLog log;
+  private final Cache<String, User> cache;
+  private final int compactionThreshold;
+  private final ScheduledExecutorService compactions;
+
+  private final Counter cacheHits;
+  private final Counter cacheMisses;
+  private final Counter compactionCounter;
+
+  /**
+   * Constructs a new {@code LogStructuredUserStore}, loading the positions of the users saved in
+   * the given directory.
+   *
+   * @param mapper the mapper used to serialize and deserialize users
+   * @param directory the directory that holds the data file segments
+   * @param cacheSize the maximum number of users to keep in the block cache
+   * @param compactionThreshold the percentage of the data file that must be garbage before it is
+   *                            compacted
+   * @param compactionInterval the time between checks for whether to compact
+   * @param metrics the {@code MetricRegistry} instance used to register store metrics
+   * @throws IOException if the data file cannot be read or opened for writing
+   */
+  public LogStructuredUserStore(ObjectMapper mapper,
+                                Path directory,
+                                long cacheSize,
+                                int compactionThreshold,
+                                Duration compactionInterval,
+                                MetricRegistry metrics) throws IOException {
+    this.mapper = Objects.requireNonNull(mapper);
+    this.directory = Objects.requireNonNull(directory);
+    this.compactionThreshold = compactionThreshold;
+
+    long records = WriteAheadLog.replay(directory, 0, this::load);
+    LOG.info("Loaded {} users from {} records in the embedded database.", keys.size(), records);
+
+    this.log = new WriteAheadLog(directory, metrics);
+    this.cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+
+    String prefix = MetricRegistry.name(LogStructuredUserStore.class);
+
+    cacheHits = metrics.counter(MetricRegistry.name(prefix, "cache-hits"));
+    cacheMisses = metrics.counter(MetricRegistry.name(prefix, "cache-misses"));
+    compactionCounter = metrics.counter(MetricRegistry.name(prefix, "compactions"));
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(prefix, "entries"), () -> keys::size);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "live-bytes"), () -> liveBytes::get);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "log-bytes"), () -> logBytes::get);
+
+    this.compactions = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("thunder-compaction").daemon().factory());
+
+    long interval = compactionInterval.toMilliseconds();
+    compactions.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public User get(String email) {
+    User cached = cache.getIfPresent(email);
+
+    if (cached != null) {
+      cacheHits.inc();
+      return cached;
+    }
+
+    cacheMisses.inc();
+
+    // Read while the entry is locked, so that a concurrent write cannot be hidden by the cache
+    AtomicReference<User> result = new AtomicReference<>();
+
+    keys.computeIfPresent(email, (key, position) -> {
+      User user = decode(log.read(position));
+
+      cache.put(key, user);
+      result.set(user);
+
+      return position;
+    });
+
+    return result.get();
+  }
+
+  @Override
+  public User compute(String email,
+                      BiFunction<String, User, User> remapping,
+                      ChangeListener listener) {
+    AtomicReference<User> result = new AtomicReference<>();
+
+    rotationLock.readLock().lock();
+
+    try {
+      keys.compute(email, (key, position) -> {
+        User current = position != null ? current(key, position) : null;
+        User updated = remapping.apply(key, current);
+
+        result.set(updated);
+
+        if (updated == current) {
+          return position;
+        }
+
+        // Write the record first, so that a change that cannot be written is not applied
+        WriteAheadLog.Position written = log.append(key, updated != null ? encode(updated) : null);
+        listener.onChange(key, current, updated);
+
+        logBytes.addAndGet(written.size());
+        liveBytes.addAndGet((updated != null ? written.size() : 0)
+            - (position != null ? position.size() : 0));
+
+        if (updated != null) {
+          cache.put(key, updated);
+        } else {
+          cache.invalidate(key);
+        }
+
+        return updated != null ? written : null;
+      });
+    } finally {
+      rotationLock.readLock().unlock();
+    }
+
+    return result.get();
+  }
+
+  @Override
+  public CompletableFuture<Void> flush() {
+    return log.sync();
+  }
+
+  @Override
+  public Set<String> emails() {
+    return keys.keySet();
+  }
+
+  @Override
+  public int size() {
+    return keys.size();
+  }
+
+  /**
+   * Determines whether the data file is accepting writes.
+   *
+   * @return true if writes can be made, false if a previous write failed
+   */
+  public boolean isWritable() {
+    return log.isWritable();
+  }
+
+  /**
+   * Copies every live record out of the current segments into a new segment, and then deletes
+   * the old segments along with all of their garbage.
+   *
+   * @throws IOException if the old segments cannot be deleted
+   */
+  public synchronized void compact() throws IOException {
+    long first;
+
+    rotationLock.writeLock().lock();
+
+    try {
+      first = log.rotate();
+    } finally {
+      rotationLock.writeLock().unlock();
+    }
+
+    AtomicLong moved = new AtomicLong();
+
+    for (String email : keys.keySet()) {
+      keys.computeIfPresent(email, (key, position) -> {
+        if (position.segment() >= first) {
+          return position;
+        }
+
+        WriteAheadLog.Position copy = log.append(key, log.read(position));
+
+        logBytes.addAndGet(copy.size());
+        liveBytes.addAndGet(copy.size() - position.size());
+        moved.incrementAndGet();
+
+        return copy;
+      });
+    }
+
+    log.sync().join();
+
+    // The new segment must be durable in the directory before the segments it replaces are gone
+    WriteAheadLog.syncDirectory(directory);
+    logBytes.addAndGet(-log.deleteSegmentsBefore(first));
+    compactionCounter.inc();
+
+    LOG.info("Compacted the embedded database. Moved {} users, and the data file is now {} bytes.",
+        moved.get(), logBytes.get());
+  }
+
+  @Override
+  public void close() throws IOException {
+    compactions.shutdownNow();
+    log.close();
+  }
+
+  private void compactIfNeeded() {
+    long total = logBytes.get();
+    long garbage = total - liveBytes.get();
+
+    if (total == 0 || garbage * 100 < (long) compactionThreshold * total) {
+      return;
+    }
+
+    try {
+      compact();
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Unable to compact the embedded database.", e);
+    }
+  }
+
+  /**
+   * Gets the user at the given position, preferring the cached copy. This must be called while
+   * the user's entry in the key directory is locked.
+   *
+   * @param email the email of the user
+   * @param position the position of the user's latest record
+   * @return the user
+   */
+  private User current(String email, WriteAheadLog.Position position) {
+    User cached = cache.getIfPresent(email);
+
+    return cached != null ? cached : decode(log.read(position));
+  }
+
+  private void load(String email, byte[] user, WriteAheadLog.Position position) {
+    WriteAheadLog.Position previous = user != null
+        ? keys.put(email, position)
+        : keys.remove(email);
+
+    logBytes.addAndGet(position.size());
+    liveBytes.addAndGet((user != null ? position.size() : 0)
+        - (previous != null ? previous.size() : 0));
+  }
+
+  private byte[] encode(User user) {
+    try {
+      return mapper.writeValueAsBytes(user);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private User decode(byte[] record) {
+    try {
+      return mapper.readValue(record, User.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
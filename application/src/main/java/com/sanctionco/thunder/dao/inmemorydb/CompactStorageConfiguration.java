@@ -0,0 +1,62 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.DataSize;
+import io.dropwizard.validation.ValidationMethod;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional configuration options for storing in-memory users as compact serialized
+ * records. See the {@code InMemoryDbUsersDaoFactory} class for more details.
+ */
+public class CompactStorageConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final DataSize DEFAULT_MAX_SIZE = DataSize.mebibytes(256);
+  private static final int DEFAULT_SHARDS = 1;
+
+  /**
+   * Constructs a new instance of {@code CompactStorageConfiguration} with default values.
+   */
+  public CompactStorageConfiguration() {
+    this.enabled = DEFAULT_ENABLED;
+    this.maxSize = DEFAULT_MAX_SIZE;
+    this.shards = DEFAULT_SHARDS;
+  }
+
+  @Valid @JsonProperty("enabled")
+  private final Boolean enabled;
+
+  @Valid @JsonProperty("maxSize")
+  private final DataSize maxSize;
+
+  @Min(1) @Max(1024) @JsonProperty("shards")
+  private final Integer shards;
+
+  public Boolean isEnabled() {
+    return enabled;
+  }
+
+  public DataSize getMaxSize() {
+    return maxSize;
+  }
+
+  public Integer getShards() {
+    return shards;
+  }
+
+  /**
+   * Validates that each shard gets at least one byte of the maximum size.
+   *
+   * @return {@code true} if validation is successful; {@code false} otherwise
+   */
+  @JsonIgnore
+  @ValidationMethod(message = "The compact maxSize must be at least one byte per shard.")
+  public boolean isMaxSizeEnoughForShards() {
+    return maxSize == null || shards == null || maxSize.toBytes() >= shards;
+  }
+}
@@ -0,0 +1,220 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.models.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Provides a {@link UserStore} that keeps each user as a single serialized JSON record instead of
+ * a graph of objects, which takes a fraction of the memory. Users are decoded again whenever they
+ * are read.
+ *
+ * <p>The size of every record is counted exactly, and any write that would take the total above
+ * the configured number of bytes is rejected. Unlike {@link HeapUserStore}, the point of
+ * rejection does not depend on the garbage collector. The number of users and the number of bytes
+ * used are reported under {@code com.sanctionco.thunder.dao.inmemorydb.CompactUserStore}.
+ *
+ * <p>Use {@link #sharded(ObjectMapper, long, int, MetricRegistry)} to split the users and the
+ * byte limit across several independent stores.
+ *
+ * @see UserStore
+ */
+public class CompactUserStore implements UserStore {
+  private final ConcurrentMap<String, byte[]> records = new ConcurrentHashMap<>();
+  private final AtomicLong usedBytes = new AtomicLong();
+
+  private final ObjectMapper mapper;
+  private final long maxBytes;
+
+  /**
+   * Constructs a new {@code CompactUserStore}.
+   *
+   * @param mapper the mapper used to serialize and deserialize user records
+   * @param maxBytes the maximum number of bytes that the stored records can take up
+   * @param metrics the {@code MetricRegistry} instance used to register store metrics
+   */
+  public CompactUserStore(ObjectMapper mapper, long maxBytes, MetricRegistry metrics) {
+    this(mapper, maxBytes, metrics, MetricRegistry.name(CompactUserStore.class));
+  }
+
+  /**
+   * Constructs a new {@code CompactUserStore} that reports its metrics under the given name.
+   *
+   * @param mapper the mapper used to serialize and deserialize user records
+   * @param maxBytes the maximum number of bytes that the stored records can take up
+   * @param metrics the {@code MetricRegistry} instance used to register store metrics
+   * @param prefix the prefix to use for each metric name
+   */
+  public CompactUserStore(ObjectMapper mapper,
+                          long maxBytes,
+                          MetricRegistry metrics,
+                          String prefix) {
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("The maximum number of bytes must be positive.");
+    }
+
+    this.mapper = Objects.requireNonNull(mapper);
+    this.maxBytes = maxBytes;
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(prefix, "entries"),
+        () -> records::size);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "bytes"),
+        () -> usedBytes::get);
+  }
+
+  /**
+   * Creates a {@link ShardedUserStore} of compact stores that each get an equal share of the
+   * maximum number of bytes. Any bytes left over from an uneven split go to the first shards.
+   * Totals across every shard are reported under
+   * {@code com.sanctionco.thunder.dao.inmemorydb.CompactUserStore}, and the metrics of each shard
+   * are reported under {@code com.sanctionco.thunder.dao.inmemorydb.CompactUserStore.shard-N}.
+   *
+   * @param mapper the mapper used to serialize and deserialize user records
+   * @param maxBytes the maximum number of bytes that the records in all shards can take up
+   * @param shards the number of shards
+   * @param metrics the {@code MetricRegistry} instance used to register store metrics
+   * @return the new sharded store
+   * @throws IllegalArgumentException if there are fewer bytes than shards
+   */
+  public static ShardedUserStore sharded(ObjectMapper mapper,
+                                         long maxBytes,
+                                         int shards,
+                                         MetricRegistry metrics) {
+    if (shards < 1 || maxBytes < shards) {
+      throw new IllegalArgumentException(String.format(
+          "Unable to split %d bytes across %d shards. Each shard needs at least one byte.",
+          maxBytes, shards));
+    }
+
+    String prefix = MetricRegistry.name(CompactUserStore.class);
+
+    List<CompactUserStore> stores = IntStream.range(0, shards)
+        .mapToObj(shard -> new CompactUserStore(mapper,
+            maxBytes / shards + (shard < maxBytes % shards ? 1 : 0), metrics,
+            MetricRegistry.name(prefix, "shard-" + shard)))
+        .toList();
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(prefix, "entries"),
+        () -> () -> stores.stream().mapToInt(CompactUserStore::size).sum());
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "bytes"),
+        () -> () -> stores.stream().mapToLong(CompactUserStore::usedBytes).sum());
+
+    return new ShardedUserStore(stores);
+  }
+
+  @Override
+  public User get(String email) {
+    byte[] record = records.get(email);
+
+    return record != null ? decode(record) : null;
+  }
+
+  @Override
+  public User compute(String email,
+                      BiFunction<String, User, User> remapping,
+                      ChangeListener listener) {
+    AtomicReference<User> result = new AtomicReference<>();
+
+    records.compute(email, (key, record) -> {
+      User current = record != null ? decode(record) : null;
+      User updated = remapping.apply(key, current);
+
+      result.set(updated);
+
+      if (updated == current) {
+        return record;
+      }
+
+      byte[] updatedRecord = updated != null ? encode(updated) : null;
+      long change = sizeOf(updatedRecord) - sizeOf(record);
+
+      reserve(change);
+
+      try {
+        listener.onChange(key, current, updated);
+      } catch (RuntimeException e) {
+        // The record is not going to be stored, so give back the bytes it reserved
+        usedBytes.addAndGet(-change);
+        throw e;
+      }
+
+      return updatedRecord;
+    });
+
+    return result.get();
+  }
+
+  @Override
+  public Set<String> emails() {
+    return records.keySet();
+  }
+
+  @Override
+  public int size() {
+    return records.size();
+  }
+
+  /**
+   * Gets the number of bytes taken up by the stored records.
+   *
+   * @return the number of bytes used
+   */
+  public long usedBytes() {
+    return usedBytes.get();
+  }
+
+  /**
+   * Adds the given number of bytes to the bytes used, if there is room for them.
+   *
+   * @param bytes the number of bytes to add, which may be negative
+   * @throws DatabaseException if adding the bytes would go over the maximum number of bytes
+   */
+  private void reserve(long bytes) {
+    long used;
+
+    do {
+      used = usedBytes.get();
+
+      if (bytes > 0 && used + bytes > maxBytes) {
+        throw new DatabaseException(String.format(
+            "There is no more memory available in the in-memory database. "
+                + "%d of %d bytes are in use.", used, maxBytes),
+            DatabaseException.Error.DATABASE_DOWN);
+      }
+    } while (!usedBytes.compareAndSet(used, used + bytes));
+  }
+
+  private byte[] encode(User user) {
+    try {
+      return mapper.writeValueAsBytes(user);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private User decode(byte[] record) {
+    try {
+      return mapper.readValue(record, User.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long sizeOf(byte[] record) {
+    return record != null ? record.length : 0;
+  }
+}
@@ -0,0 +1,233 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.models.User;
+
+import io.dropwizard.util.Duration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a {@link UserStore} that keeps every user in another store and records every change
+ * in a {@link WriteAheadLog}, so that the users survive a restart. A change is appended to the
+ * log while the user's entry is locked, and {@link #flush()} completes once the change has been
+ * forced to disk.
+ *
+ * <p>A snapshot of every user is written periodically so that the log does not grow forever.
+ * Snapshots are taken without blocking writes: the log is first rotated to a new segment, then
+ * every user is copied into the snapshot. Replay on startup loads the latest snapshot and then
+ * applies the segment that was current when the snapshot started and every segment after it.
+ * Each record holds the full user, so a change that the snapshot already includes can be applied
+ * again safely. Older segments are deleted once the snapshot is on disk.
+ *
+ * @see WriteAheadLog
+ */
+public class DurableUserStore implements UserStore, Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(DurableUserStore.class);
+
+  static final String SNAPSHOT_FILE = "snapshot.dat";
+
+  private final UserStore delegate;
+  private final ObjectMapper mapper;
+  private final Path directory;
+  private final WriteAheadLog log;
+  private final ScheduledExecutorService snapshots;
+
+  /**
+   * Constructs a new {@code DurableUserStore}, loading any users saved in the given directory
+   * into the delegate store.
+   *
+   * @param delegate the store that holds the users in memory
+   * @param mapper the mapper used to serialize and deserialize users on disk
+   * @param directory the directory that holds the snapshot and log segments
+   * @param snapshotInterval the time between snapshots
+   * @param metrics the {@code MetricRegistry} instance used to register log metrics
+   * @throws IOException if the saved users cannot be read or the log cannot be opened
+   */
+  public DurableUserStore(UserStore delegate,
+                          ObjectMapper mapper,
+                          Path directory,
+                          Duration snapshotInterval,
+                          MetricRegistry metrics) throws IOException {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.mapper = Objects.requireNonNull(mapper);
+    this.directory = Objects.requireNonNull(directory);
+
+    recover();
+
+    this.log = new WriteAheadLog(directory, metrics);
+    this.snapshots = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("thunder-snapshot").daemon().factory());
+
+    long interval = snapshotInterval.toMilliseconds();
+    snapshots.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public User get(String email) {
+    return delegate.get(email);
+  }
+
+  @Override
+  public User compute(String email,
+                      BiFunction<String, User, User> remapping,
+                      ChangeListener listener) {
+    return delegate.compute(email, remapping, (key, oldUser, newUser) -> {
+      // Log the change first, so that a change that cannot be logged is not applied
+      log.append(key, newUser != null ? encode(newUser) : null);
+      listener.onChange(key, oldUser, newUser);
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> flush() {
+    return log.sync();
+  }
+
+  @Override
+  public Set<String> emails() {
+    return delegate.emails();
+  }
+
+  @Override
+  public Stream<String> emails(int segment, int totalSegments) {
+    return delegate.emails(segment, totalSegments);
+  }
+
+  @Override
+  public int segments() {
+    return delegate.segments();
+  }
+
+  @Override
+  public int size() {
+    return delegate.size();
+  }
+
+  /**
+   * Writes a snapshot of every user and deletes the log segments that are no longer needed.
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  public void snapshot() throws IOException {
+    // Changes that were being made during the rotation may have gone to the previous segment
+    // without being visible to the copy below, so replay must start at that segment
+    long replayFrom = log.rotate() - 1;
+    long count = 0;
+
+    Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      out.writeLong(replayFrom);
+
+      for (String email : delegate.emails()) {
+        User user = delegate.get(email);
+
+        if (user != null) {
+          ByteBuffer record = WriteAheadLog.encode(email, encode(user));
+          out.write(record.array(), record.arrayOffset(), record.remaining());
+          count++;
+        }
+      }
+
+      out.flush();
+      channel.force(true);
+    }
+
+    Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    // The rename must be durable before the segments it replaces are deleted
+    WriteAheadLog.syncDirectory(directory);
+    log.deleteSegmentsBefore(replayFrom);
+
+    LOG.info("Wrote a snapshot of {} users to the in-memory database directory.", count);
+  }
+
+  @Override
+  public void close() throws IOException {
+    snapshots.shutdownNow();
+    log.close();
+  }
+
+  /**
+   * Loads the latest snapshot, if there is one, and replays the log segments written after it.
+   *
+   * @throws IOException if the snapshot or log cannot be read
+   */
+  private void recover() throws IOException {
+    Path snapshot = directory.resolve(SNAPSHOT_FILE);
+    long replayFrom = 0;
+    long loaded = 0;
+
+    if (Files.exists(snapshot)) {
+      try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+        replayFrom = in.readLong();
+        loaded = WriteAheadLog.readAll(in, 0, this::restore);
+      }
+    }
+
+    long replayed = WriteAheadLog.replay(directory, replayFrom, this::restore);
+
+    LOG.info("Loaded {} users from the in-memory database snapshot and replayed {} changes.",
+        loaded, replayed);
+  }
+
+  private void restore(String email, byte[] record, WriteAheadLog.Position position) {
+    User user = record != null ? decode(record) : null;
+
+    delegate.compute(email, (key, current) -> user, (key, oldUser, newUser) -> { });
+  }
+
+  private void snapshotQuietly() {
+    try {
+      snapshot();
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Unable to write a snapshot of the in-memory database.", e);
+    }
+  }
+
+  private byte[] encode(User user) {
+    try {
+      return mapper.writeValueAsBytes(user);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private User decode(byte[] record) {
+    try {
+      return mapper.readValue(record, User.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
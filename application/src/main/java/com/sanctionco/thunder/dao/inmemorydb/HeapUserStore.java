@@ -0,0 +1,86 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.models.User;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Provides a {@link UserStore} that keeps each {@code User} object on the heap as-is. New users
+ * are rejected once the JVM has used more than the allowed percentage of its memory. Since used
+ * memory includes garbage that has not been collected yet, the point of rejection depends on the
+ * garbage collector.
+ *
+ * @see CompactUserStore
+ */
+public class HeapUserStore implements UserStore {
+  private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+
+  private final MemoryInfo currentMemory;
+  private final int maxPercentageOfMemoryToUse;
+
+  /**
+   * Constructs a new {@code HeapUserStore}.
+   *
+   * @param memoryInfo the {@link MemoryInfo} instanced used to get information about JVM memory
+   * @param maxPercentageOfMemoryToUse the maximum percentage of JVM memory that can be used
+   *                                   before new users are rejected
+   */
+  public HeapUserStore(MemoryInfo memoryInfo, int maxPercentageOfMemoryToUse) {
+    this.currentMemory = memoryInfo;
+    this.maxPercentageOfMemoryToUse = maxPercentageOfMemoryToUse;
+  }
+
+  @Override
+  public User get(String email) {
+    return users.get(email);
+  }
+
+  @Override
+  public User compute(String email,
+                      BiFunction<String, User, User> remapping,
+                      ChangeListener listener) {
+    return users.compute(email, (key, current) -> {
+      User updated = remapping.apply(key, current);
+
+      if (updated == current) {
+        return current;
+      }
+
+      if (current == null && !memoryAvailable()) {
+        throw new DatabaseException("There is no more memory available in the in-memory database.",
+            DatabaseException.Error.DATABASE_DOWN);
+      }
+
+      listener.onChange(key, current, updated);
+      return updated;
+    });
+  }
+
+  @Override
+  public Set<String> emails() {
+    return users.keySet();
+  }
+
+  @Override
+  public int size() {
+    return users.size();
+  }
+
+  /**
+   * Determine if there is memory available in the JVM based on the allowed
+   * {@code maxPercentageOfMemoryToUse}.
+   *
+   * @return true if there is memory available, false otherwise
+   */
+  private boolean memoryAvailable() {
+    var maxMemory = currentMemory.maxMemory();
+    var usedMemory = currentMemory.totalMemory() - currentMemory.freeMemory();
+    var percentageUsed = ((double) (usedMemory) / maxMemory) * 100;
+
+    return percentageUsed < maxPercentageOfMemoryToUse;
+  }
+}
@@ -1,16 +1,32 @@
 package com.sanctionco.thunder.dao.inmemorydb;
 
 import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.PropertyIndexes;
+import com.sanctionco.thunder.dao.SegmentedScanPublisher;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import jakarta.annotation.Nullable;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,16 +34,31 @@ import org.slf4j.LoggerFactory;
 /**
  * Provides the in-memory implementation for {@link UsersDao}. Provides methods to
  * insert, update, get, and delete a {@code User} (in the {@code api} module) in the database.
+ * The users themselves are held by a {@link UserStore}. Writes complete once the store reports
+ * that they are durable, which is immediately unless the store persists users to disk.
+ *
+ * <p>Each indexed property has a secondary map from indexed value to the emails of the users
+ * with that value. The secondary maps are updated while the user's entry is locked, so they
+ * always match the stored users.
+ *
+ * <p>The first scan builds a sorted set of every email, which is kept up to date in the same way
+ * after that. Each page of a scan continues from the previous page's last email in that set, so
+ * reading every page of a segment walks the set once instead of sorting the store for each page.
  *
  * @see UsersDao
  */
 public class InMemoryDbUsersDao implements UsersDao {
   private static final Logger LOG = LoggerFactory.getLogger(InMemoryDbUsersDao.class);
 
-  private final ConcurrentMap<String, User> database = new ConcurrentHashMap<>();
+  private final UserStore database;
+  private final Map<String, ConcurrentMap<String, Set<String>>> indexes;
 
-  private final MemoryInfo currentMemory;
-  private final int maxPercentageOfMemoryToUse;
+  // Every email in the store in order, built by the first scan. Changes are tracked from just
+  // before the set is filled, so a user deleted while it is filled may be left in the set, and is
+  // removed once a scan finds it missing from the store.
+  private final NavigableSet<String> sortedEmails = new ConcurrentSkipListSet<>();
+  private volatile boolean trackingEmails;
+  private volatile boolean sortedEmailsReady;
 
   /**
    * Construct a new {@code InMemoryDbUsersDao}.
@@ -37,28 +68,70 @@ public class InMemoryDbUsersDao implements UsersDao {
    *                                   before {@link #insert(User)} requests fail
    */
   public InMemoryDbUsersDao(MemoryInfo memoryInfo, int maxPercentageOfMemoryToUse) {
-    this.currentMemory = memoryInfo;
-    this.maxPercentageOfMemoryToUse = maxPercentageOfMemoryToUse;
+    this(memoryInfo, maxPercentageOfMemoryToUse, Set.of());
   }
 
-  @Override
-  public CompletableFuture<User> insert(User user) {
-    if (!memoryAvailable()) {
-      return CompletableFuture.failedFuture(
-          new DatabaseException("There is no more memory available in the in-memory database.",
-              DatabaseException.Error.DATABASE_DOWN));
+  /**
+   * Construct a new {@code InMemoryDbUsersDao} that indexes the given properties.
+   *
+   * @param memoryInfo the {@link MemoryInfo} instanced used to get information about JVM memory
+   * @param maxPercentageOfMemoryToUse the maximum percentage of JVM memory that can be used
+   *                                   before {@link #insert(User)} requests fail
+   * @param indexedProperties the names of the properties that users can be looked up by
+   */
+  public InMemoryDbUsersDao(MemoryInfo memoryInfo,
+                            int maxPercentageOfMemoryToUse,
+                            Set<String> indexedProperties) {
+    this(new HeapUserStore(memoryInfo, maxPercentageOfMemoryToUse), indexedProperties);
+  }
+
+  /**
+   * Construct a new {@code InMemoryDbUsersDao} that keeps users in the given store and indexes
+   * the given properties.
+   *
+   * @param store the store that holds the users
+   * @param indexedProperties the names of the properties that users can be looked up by
+   */
+  public InMemoryDbUsersDao(UserStore store, Set<String> indexedProperties) {
+    this.database = Objects.requireNonNull(store);
+    this.indexes = indexedProperties.stream()
+        .collect(Collectors.toUnmodifiableMap(
+            property -> property, property -> new ConcurrentHashMap<>()));
+
+    // The store may already hold users, such as users loaded from disk
+    if (!indexes.isEmpty()) {
+      database.emails().forEach(email -> {
+        User user = database.get(email);
+
+        if (user != null) {
+          reindex(email, null, user);
+        }
+      });
     }
+  }
 
+  @Override
+  public CompletableFuture<User> insert(User user) {
     Objects.requireNonNull(user);
 
     var now = Instant.now().toEpochMilli();
     var userWithTime = user.withTime(now, now);
+    var conflict = new AtomicBoolean();
 
-    return database.putIfAbsent(userWithTime.getEmail().getAddress(), userWithTime) == null
-        ? CompletableFuture.completedFuture(userWithTime)
-        : CompletableFuture.failedFuture(
+    try {
+      database.compute(userWithTime.getEmail().getAddress(), (key, existing) -> {
+        conflict.set(existing != null);
+        return existing != null ? existing : userWithTime;
+      }, this::reindex);
+    } catch (DatabaseException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return conflict.get()
+        ? CompletableFuture.failedFuture(
             new DatabaseException("A user with the same email address already exists.",
-                DatabaseException.Error.CONFLICT));
+                DatabaseException.Error.CONFLICT))
+        : database.flush().thenApply(ignored -> userWithTime);
   }
 
   @Override
@@ -74,41 +147,325 @@ public class InMemoryDbUsersDao implements UsersDao {
 
     // Different email (primary key) means we need to delete and insert
     if (existingEmail != null && !existingEmail.equals(user.getEmail().getAddress())) {
-      LOG.info("User to update has new email. The user will be deleted and then reinserted.");
+      LOG.info("User to update has new email. The user will be moved to the new email.");
       return updateEmail(existingEmail, user);
     }
 
     var now = Instant.now().toEpochMilli();
 
-    return userOrNotFound(database.computeIfPresent(user.getEmail().getAddress(),
-        (key, oldUser) -> user.withTime((long) oldUser.getProperties().get("creationTime"), now)));
+    try {
+      return flushed(database.compute(user.getEmail().getAddress(),
+          (key, oldUser) -> oldUser == null ? null
+              : user.withTime((long) oldUser.getProperties().get("creationTime"), now),
+          this::reindex));
+    } catch (DatabaseException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Marks the user as verified while the user's entry is locked, so the stored token is compared
+   * with the user that is written.
+   *
+   * @param email the email of the user to verify
+   * @param token the verification token that the user provided
+   * @return the verified user
+   */
+  @Override
+  public CompletableFuture<User> markVerified(String email, String token) {
+    Objects.requireNonNull(email);
+    Objects.requireNonNull(token);
+
+    var now = Instant.now().toEpochMilli();
+    var rejected = new AtomicReference<RequestValidationException>();
+
+    try {
+      User verified = database.compute(email, (key, existing) -> {
+        if (existing == null) {
+          return null;
+        }
+
+        try {
+          UsersDao.checkVerificationToken(existing.getEmail().getVerificationToken(), token);
+        } catch (RequestValidationException e) {
+          rejected.set(e);
+          return existing;
+        }
+
+        return new User(existing.getEmail().verifiedCopy(), existing.getPassword(),
+            existing.getProperties())
+            .withTime((long) existing.getProperties().get("creationTime"), now);
+      }, this::reindex);
+
+      return rejected.get() != null
+          ? CompletableFuture.failedFuture(rejected.get())
+          : flushed(verified);
+    } catch (DatabaseException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Moves the user to the new email with two compare-and-swap steps. The new email is first
+   * claimed only if no user has it, and the existing user is then removed only if it has not
+   * changed since it was read. If the existing user changed, the new email is released again.
+   * A concurrent reader may briefly find the user under both emails, but never under neither.
+   *
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object to put in the database
+   * @return the user that was updated
+   */
+  @Override
+  public CompletableFuture<User> updateEmail(String existingEmail, User user) {
+    Objects.requireNonNull(existingEmail);
+    Objects.requireNonNull(user);
+
+    User current = database.get(existingEmail);
+
+    if (current == null) {
+      return userOrNotFound(null);
+    }
+
+    var now = Instant.now().toEpochMilli();
+    var moved = user.withTime((long) current.getProperties().get("creationTime"), now);
+    var email = moved.getEmail().getAddress();
+    var conflict = new AtomicBoolean();
+    var removed = new AtomicReference<User>();
+
+    try {
+      database.compute(email, (key, existing) -> {
+        conflict.set(existing != null);
+        return existing != null ? existing : moved;
+      }, this::reindex);
+
+      if (conflict.get()) {
+        LOG.warn("A user with the new email {} already exists.", email);
+        return CompletableFuture.failedFuture(
+            new DatabaseException("A user with the new email address already exists.",
+                DatabaseException.Error.CONFLICT));
+      }
+
+      database.compute(existingEmail, (key, existing) -> {
+        if (!current.equals(existing)) {
+          return existing;
+        }
+
+        removed.set(existing);
+        return null;
+      }, this::reindex);
+
+      if (removed.get() == null) {
+        // Release the new email, unless it has been changed since it was claimed
+        database.compute(email,
+            (key, existing) -> moved.equals(existing) ? null : existing, this::reindex);
+      }
+    } catch (DatabaseException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    if (removed.get() == null) {
+      LOG.warn("The user {} was changed while its email was being updated.", existingEmail);
+      return database.flush().thenCompose(ignored -> CompletableFuture.<User>failedFuture(
+          new DatabaseException("The user was changed by another request. Please try again.",
+              DatabaseException.Error.CONFLICT)));
+    }
+
+    return database.flush().thenApply(ignored -> moved);
   }
 
   @Override
   public CompletableFuture<User> delete(String email) {
     Objects.requireNonNull(email);
 
-    return userOrNotFound(database.remove(email));
+    AtomicReference<User> deleted = new AtomicReference<>();
+
+    try {
+      database.compute(email, (key, oldUser) -> {
+        deleted.set(oldUser);
+        return null;
+      }, this::reindex);
+    } catch (DatabaseException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return flushed(deleted.get());
   }
 
-  private CompletableFuture<User> userOrNotFound(User user) {
-    return user != null ? CompletableFuture.completedFuture(user)
-        : CompletableFuture.failedFuture(
-            new DatabaseException("User not found in the database.",
-                DatabaseException.Error.USER_NOT_FOUND));
+  @Override
+  public CompletableFuture<List<String>> findEmailsByProperty(String property,
+                                                             String value,
+                                                             int limit) {
+    Objects.requireNonNull(property);
+    Objects.requireNonNull(value);
+
+    ConcurrentMap<String, Set<String>> index = indexes.get(property);
+
+    if (index == null) {
+      return CompletableFuture.failedFuture(new DatabaseException(
+          String.format("The property %s is not indexed.", property),
+          DatabaseException.Error.REQUEST_REJECTED));
+    }
+
+    return CompletableFuture.completedFuture(index.getOrDefault(value, Set.of()).stream()
+        .sorted()
+        .limit(limit)
+        .toList());
+  }
+
+  @Override
+  public CompletableFuture<UsersPage> scan(int segment,
+                                           int totalSegments,
+                                           @Nullable String startToken,
+                                           int limit) {
+    // Users are assigned to segments by the hash of their email, and read in email order so that
+    // the last email of a page can be used to resume the scan
+    NavigableSet<String> sorted = sortedEmails();
+    List<String> emails = (startToken == null ? sorted : sorted.tailSet(startToken, false))
+        .stream()
+        .filter(email -> Math.floorMod(email.hashCode(), totalSegments) == segment)
+        .limit(limit)
+        .toList();
+
+    // Only the users on this page are read, and any that were deleted in the meantime are skipped
+    List<User> users = new ArrayList<>(emails.size());
+
+    for (String email : emails) {
+      User user = database.get(email);
+
+      if (user != null) {
+        users.add(user);
+      } else {
+        forgetIfMissing(email);
+      }
+    }
+
+    return CompletableFuture.completedFuture(new UsersPage(users,
+        emails.size() < limit ? null : emails.getLast()));
+  }
+
+  @Override
+  public Flow.Publisher<User> scanAll() {
+    // Read each segment that the store prefers, such as each of its shards, in parallel
+    return new SegmentedScanPublisher(
+        (segment, totalSegments, token, limit) -> scan(segment, totalSegments, token, limit).join(),
+        database.segments(), SegmentedScanPublisher.DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Provides the sorted set of every email, filling it from the store on the first call.
+   *
+   * @return the sorted emails
+   */
+  private NavigableSet<String> sortedEmails() {
+    if (!sortedEmailsReady) {
+      synchronized (sortedEmails) {
+        if (!sortedEmailsReady) {
+          // Track changes before copying the emails, so that no change made during the copy is
+          // missed
+          trackingEmails = true;
+          sortedEmails.addAll(database.emails());
+          sortedEmailsReady = true;
+        }
+      }
+    }
+
+    return sortedEmails;
   }
 
   /**
-   * Determine if there is memory available in the JVM based on the allowed
-   * {@code maxPercentageOfMemoryToUse}.
+   * Removes an email from the sorted emails if the store no longer has a user with that email,
+   * checking the store while the user's entry is locked so that a concurrent insert is kept.
    *
-   * @return true if there is memory available, false otherwise
+   * @param email the email that was not found in the store
    */
-  private boolean memoryAvailable() {
-    var maxMemory = currentMemory.maxMemory();
-    var usedMemory = currentMemory.totalMemory() - currentMemory.freeMemory();
-    var percentageUsed = ((double) (usedMemory) / maxMemory) * 100;
+  private void forgetIfMissing(String email) {
+    database.compute(email, (key, current) -> {
+      if (current == null) {
+        sortedEmails.remove(key);
+      }
 
-    return percentageUsed < maxPercentageOfMemoryToUse;
+      return current;
+    }, this::reindex);
+  }
+
+  /**
+   * Moves the user's email from the index entries of the old user to the index entries of the
+   * new user, and adds it to or removes it from the sorted emails once a scan has built them.
+   * This is called by the {@link UserStore} while the user's entry is locked.
+   *
+   * @param email the email of the user
+   * @param oldUser the user that was stored, or {@code null} if the user is being inserted
+   * @param newUser the user that will be stored, or {@code null} if the user is being deleted
+   */
+  private void reindex(String email, @Nullable User oldUser, @Nullable User newUser) {
+    if (trackingEmails) {
+      if (newUser == null) {
+        sortedEmails.remove(email);
+      } else if (oldUser == null) {
+        sortedEmails.add(email);
+      }
+    }
+
+    Map<String, String> oldValues = oldUser == null
+        ? Map.of()
+        : PropertyIndexes.valuesOf(oldUser, indexes.keySet());
+    Map<String, String> newValues = newUser == null
+        ? Map.of()
+        : PropertyIndexes.valuesOf(newUser, indexes.keySet());
+
+    indexes.forEach((property, index) -> {
+      String oldValue = oldValues.get(property);
+      String newValue = newValues.get(property);
+
+      if (Objects.equals(oldValue, newValue)) {
+        return;
+      }
+
+      if (oldValue != null) {
+        index.computeIfPresent(oldValue, (value, emails) -> {
+          emails.remove(email);
+          return emails.isEmpty() ? null : emails;
+        });
+      }
+
+      if (newValue != null) {
+        index.compute(newValue, (value, emails) -> {
+          Set<String> updated = emails != null ? emails : ConcurrentHashMap.newKeySet();
+          updated.add(email);
+          return updated;
+        });
+      }
+    });
+  }
+
+  /**
+   * Closes the store if it holds open files or background threads.
+   *
+   * @throws IOException if the store cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    if (database instanceof Closeable closeable) {
+      closeable.close();
+    }
+  }
+
+  /**
+   * Waits for the store to make the latest changes durable before completing with the user.
+   *
+   * @param user the user that was written, or {@code null} if the user was not found
+   * @return a future that completes with the user once it is durable
+   */
+  private CompletableFuture<User> flushed(@Nullable User user) {
+    return user != null
+        ? database.flush().thenApply(ignored -> user)
+        : userOrNotFound(null);
+  }
+
+  private CompletableFuture<User> userOrNotFound(User user) {
+    return user != null ? CompletableFuture.completedFuture(user)
+        : CompletableFuture.failedFuture(
+            new DatabaseException("User not found in the database.",
+                DatabaseException.Error.USER_NOT_FOUND));
   }
 }
@@ -1,5 +1,6 @@
 package com.sanctionco.thunder.dao.inmemorydb;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -7,9 +8,16 @@ import com.sanctionco.thunder.dao.DatabaseHealthCheck;
 import com.sanctionco.thunder.dao.UsersDao;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,7 +26,11 @@ import org.slf4j.LoggerFactory;
  * to construct new UsersDao and DatabaseHealthCheck objects that interact with an in-memory DB.
  *
  * <p>The application configuration file should use {@code type: memory} in order to use this
- * factory.
+ * factory. By default users are kept on the heap as objects. Set {@code compact.enabled} to keep
+ * them as compact serialized records instead, limited to {@code compact.maxSize} bytes and split
+ * across {@code compact.shards} independent shards. Set
+ * {@code persistence.enabled} to also save users to {@code persistence.directory} so that they
+ * survive a restart.
  *
  * <p>This class must be registered in
  * {@code /resources/META-INF/services/com.sanctionco.thunder.dao.UsersDaoFactory}.
@@ -26,23 +38,95 @@ import org.slf4j.LoggerFactory;
  * @see UsersDaoFactory
  */
 @JsonTypeName("memory")
-public class InMemoryDbUsersDaoFactory implements UsersDaoFactory {
+public class InMemoryDbUsersDaoFactory extends UsersDaoFactory {
   private static final Logger LOG = LoggerFactory.getLogger(InMemoryDbUsersDaoFactory.class);
 
   @Min(1) @Max(100) @JsonProperty("maxMemoryPercentage")
   private final Integer maxMemoryPercentage = 75;
 
+  @Valid @JsonProperty("compact")
+  private final CompactStorageConfiguration compactConfiguration = null;
+
+  @Valid @JsonProperty("persistence")
+  private final PersistenceConfiguration persistenceConfiguration = null;
+
   public Integer getMaxMemoryPercentage() {
     return maxMemoryPercentage;
   }
 
+  /**
+   * Provides the configuration for compact user storage.
+   *
+   * @return the configured compact storage options or defaults, which leave it disabled
+   */
+  public CompactStorageConfiguration getCompactConfiguration() {
+    return Optional.ofNullable(compactConfiguration)
+        .orElseGet(CompactStorageConfiguration::new);
+  }
+
+  /**
+   * Provides the configuration for saving users to disk.
+   *
+   * @return the configured persistence options or defaults, which leave it disabled
+   */
+  public PersistenceConfiguration getPersistenceConfiguration() {
+    return Optional.ofNullable(persistenceConfiguration)
+        .orElseGet(PersistenceConfiguration::new);
+  }
+
   @Override
   public UsersDao createUsersDao(ObjectMapper mapper) {
+    return newUsersDao(mapper, new MetricRegistry(), Set.of());
+  }
+
+  @Override
+  public UsersDao createUsersDao(ObjectMapper mapper,
+                                 MetricRegistry metrics,
+                                 Set<String> indexedProperties) {
+    return newUsersDao(mapper, metrics, indexedProperties);
+  }
+
+  private UsersDao newUsersDao(ObjectMapper mapper,
+                               MetricRegistry metrics,
+                               Set<String> indexedProperties) {
     LOG.warn("CAUTION! Creating in-memory implementation of UsersDao. This configuration"
         + " should NOT be used in a production environment!");
+    LOG.info("In-memory database indexed properties: {}", indexedProperties);
+
+    UserStore store = newUserStore(mapper, metrics);
+    PersistenceConfiguration persistence = getPersistenceConfiguration();
+
+    if (persistence.isEnabled()) {
+      LOG.info("In-memory database will save users to {} with a snapshot every {}.",
+          persistence.getDirectory(), persistence.getSnapshotInterval());
+
+      try {
+        store = new DurableUserStore(store, mapper, Path.of(persistence.getDirectory()),
+            persistence.getSnapshotInterval(), metrics);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to load the in-memory database from disk.", e);
+      }
+    }
+
+    return new InMemoryDbUsersDao(store, indexedProperties);
+  }
+
+  private UserStore newUserStore(ObjectMapper mapper, MetricRegistry metrics) {
+    CompactStorageConfiguration compact = getCompactConfiguration();
+
+    if (compact.isEnabled()) {
+      LOG.info("In-memory database will store users as compact records using up to {}"
+          + " across {} shards.", compact.getMaxSize(), compact.getShards());
+
+      return compact.getShards() > 1
+          ? CompactUserStore.sharded(
+              mapper, compact.getMaxSize().toBytes(), compact.getShards(), metrics)
+          : new CompactUserStore(mapper, compact.getMaxSize().toBytes(), metrics);
+    }
+
     LOG.info("In-memory database will use up to {}% of available JVM memory.", maxMemoryPercentage);
 
-    return new InMemoryDbUsersDao(new RuntimeMemoryInfo(Runtime.getRuntime()), maxMemoryPercentage);
+    return new HeapUserStore(new RuntimeMemoryInfo(Runtime.getRuntime()), maxMemoryPercentage);
   }
 
   @Override
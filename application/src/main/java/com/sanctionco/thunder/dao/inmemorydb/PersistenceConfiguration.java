@@ -0,0 +1,48 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * Provides optional configuration options for saving in-memory users to disk, so that they
+ * survive a restart. See the {@code InMemoryDbUsersDaoFactory} class for more details.
+ */
+public class PersistenceConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final String DEFAULT_DIRECTORY = "thunder-data";
+  private static final Duration DEFAULT_SNAPSHOT_INTERVAL = Duration.minutes(10);
+
+  /**
+   * Constructs a new instance of {@code PersistenceConfiguration} with default values.
+   */
+  public PersistenceConfiguration() {
+    this.enabled = DEFAULT_ENABLED;
+    this.directory = DEFAULT_DIRECTORY;
+    this.snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+  }
+
+  @Valid @JsonProperty("enabled")
+  private final Boolean enabled;
+
+  @NotEmpty @JsonProperty("directory")
+  private final String directory;
+
+  @Valid @JsonProperty("snapshotInterval")
+  private final Duration snapshotInterval;
+
+  public Boolean isEnabled() {
+    return enabled;
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public Duration getSnapshotInterval() {
+    return snapshotInterval;
+  }
+}
@@ -0,0 +1,110 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.sanctionco.thunder.models.User;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Provides a {@link UserStore} that splits users across a fixed number of independent shards by
+ * the hash of their email. Each shard has its own map and its own capacity, so a shard that is
+ * full rejects new users without checking the others, and writes to different shards never
+ * contend with each other.
+ *
+ * <p>Users are assigned to shards the same way that scans assign users to segments, so a scan
+ * with a number of segments that is a multiple of the number of shards only reads one shard per
+ * segment.
+ *
+ * @see UserStore
+ */
+public class ShardedUserStore implements UserStore {
+  private final List<UserStore> shards;
+  private final Set<String> emails = new ShardedEmails();
+
+  /**
+   * Constructs a new {@code ShardedUserStore}.
+   *
+   * @param shards the stores that each hold one shard of the users
+   */
+  public ShardedUserStore(List<? extends UserStore> shards) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one shard.");
+    }
+
+    this.shards = List.copyOf(shards);
+  }
+
+  @Override
+  public User get(String email) {
+    return shardFor(email).get(email);
+  }
+
+  @Override
+  public User compute(String email,
+                      BiFunction<String, User, User> remapping,
+                      ChangeListener listener) {
+    return shardFor(email).compute(email, remapping, listener);
+  }
+
+  @Override
+  public CompletableFuture<Void> flush() {
+    return CompletableFuture.allOf(shards.stream()
+        .map(UserStore::flush)
+        .toArray(CompletableFuture[]::new));
+  }
+
+  @Override
+  public Set<String> emails() {
+    return emails;
+  }
+
+  @Override
+  public Stream<String> emails(int segment, int totalSegments) {
+    if (totalSegments % shards.size() != 0) {
+      return UserStore.super.emails(segment, totalSegments);
+    }
+
+    // Every email in the segment has the same hash modulo the number of shards as the segment
+    return shards.get(segment % shards.size()).emails(segment, totalSegments);
+  }
+
+  @Override
+  public int segments() {
+    return shards.size();
+  }
+
+  @Override
+  public int size() {
+    return shards.stream().mapToInt(UserStore::size).sum();
+  }
+
+  private UserStore shardFor(Object email) {
+    return shards.get(Math.floorMod(email.hashCode(), shards.size()));
+  }
+
+  /**
+   * A weakly consistent view of the emails in every shard.
+   */
+  private class ShardedEmails extends AbstractSet<String> {
+
+    @Override
+    public Iterator<String> iterator() {
+      return shards.stream().flatMap(shard -> shard.emails().stream()).iterator();
+    }
+
+    @Override
+    public int size() {
+      return ShardedUserStore.this.size();
+    }
+
+    @Override
+    public boolean contains(Object email) {
+      return email != null && shardFor(email).emails().contains(email);
+    }
+  }
+}
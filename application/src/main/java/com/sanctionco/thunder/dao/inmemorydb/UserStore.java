@@ -0,0 +1,110 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Holds the users of the in-memory database, keyed by email address. Implementations decide how
+ * users are represented in memory and how much memory they are allowed to use.
+ *
+ * @see InMemoryDbUsersDao
+ */
+public interface UserStore {
+
+  /**
+   * Gets the user stored with the given email.
+   *
+   * @param email the email of the user
+   * @return the stored user, or {@code null} if there is no user with the email
+   */
+  @Nullable
+  User get(String email);
+
+  /**
+   * Atomically computes the user stored with the given email, in the same way as
+   * {@link java.util.concurrent.ConcurrentMap#compute}. If the function returns the instance it
+   * was given, the stored user is left unchanged. Otherwise, the listener is called with the old
+   * and new users once the store has accepted the new user, while the entry is still locked.
+   *
+   * @param email the email of the user
+   * @param remapping the function that receives the stored user (or {@code null}) and returns the
+   *                  user to store (or {@code null} to remove the user)
+   * @param listener the listener to notify when the stored user changes
+   * @return the user stored after the computation, or {@code null} if there is none
+   * @throws DatabaseException if there is not enough room in the store for the new user
+   */
+  @Nullable
+  User compute(String email,
+               BiFunction<String, User, User> remapping,
+               ChangeListener listener);
+
+  /**
+   * Waits for every change made so far to be durable. Stores that only keep users in memory
+   * have nothing to wait for.
+   *
+   * @return a future that completes once the changes are durable
+   */
+  default CompletableFuture<Void> flush() {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Provides a weakly consistent view of the emails of every stored user.
+   *
+   * @return the stored emails
+   */
+  Set<String> emails();
+
+  /**
+   * Provides the emails of the stored users that belong to one segment of a parallel scan. A user
+   * belongs to the segment given by the hash of their email modulo the total number of segments.
+   *
+   * @param segment the segment to read, from {@code 0} to {@code totalSegments - 1}
+   * @param totalSegments the total number of segments in the scan
+   * @return the emails in the segment
+   */
+  default Stream<String> emails(int segment, int totalSegments) {
+    return emails().stream()
+        .filter(email -> Math.floorMod(email.hashCode(), totalSegments) == segment);
+  }
+
+  /**
+   * Gets the number of segments that a scan of every user should be split into, so that the
+   * segments can be read in parallel.
+   *
+   * @return the preferred number of scan segments
+   */
+  default int segments() {
+    return 1;
+  }
+
+  /**
+   * Gets the number of stored users.
+   *
+   * @return the number of users
+   */
+  int size();
+
+  /**
+   * Receives every change made to a {@link UserStore}.
+   */
+  @FunctionalInterface
+  interface ChangeListener {
+
+    /**
+     * Called when the user stored with the given email changes.
+     *
+     * @param email the email of the user
+     * @param oldUser the user that was stored, or {@code null} if the user is being inserted
+     * @param newUser the user that will be stored, or {@code null} if the user is being deleted
+     */
+    void onChange(String email, @Nullable User oldUser, @Nullable User newUser);
+  }
+}
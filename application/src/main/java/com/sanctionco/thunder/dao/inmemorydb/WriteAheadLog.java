@@ -0,0 +1,626 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.sanctionco.thunder.dao.DatabaseException;
+
+import jakarta.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides an append-only log of changes to users, split into numbered segment files in a
+ * directory. Each record holds an email and the serialized user, or no user if the user was
+ * deleted, and is protected by a checksum so that a record torn by a crash is detected on replay.
+ *
+ * <p>Appends are written straight to the current segment but are not forced to disk. A single
+ * background thread forces the log whenever {@link #sync()} has been called, and completes every
+ * waiting future with one {@code fsync}. Writes that arrive while a sync is running are batched
+ * into the next one, so the number of {@code fsync} calls stays low under heavy write load.
+ *
+ * <p>The directory is locked while the log is open, so that two logs can never write to the
+ * same directory.
+ *
+ * <p>Every record is identified by its {@link Position}, so the log can also be used as a data
+ * file that records are read back from.
+ *
+ * <p>Metrics for the number of records per sync and the time taken by each sync are reported
+ * under {@code com.sanctionco.thunder.dao.inmemorydb.WriteAheadLog}, unless another prefix is
+ * given when the log is opened.
+ */
+public class WriteAheadLog implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(WriteAheadLog.class);
+
+  private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{1,18})\\.log");
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+  private final Path directory;
+  private final FileChannel lockChannel;
+  private final Thread syncThread;
+  private final ConcurrentMap<Long, FileChannel> readers = new ConcurrentHashMap<>();
+
+  private final Histogram batchSize;
+  private final Timer syncTime;
+
+  // Guarded by this
+  private final List<FileChannel> retired = new ArrayList<>();
+  private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+  private FileChannel channel;
+  private long segment;
+  private long segmentOffset;
+  private long written;
+  private long synced;
+  private long pendingRecords;
+  private boolean failed;
+  private boolean closed;
+
+  /**
+   * Opens the log in the given directory. New records are appended to a new segment that comes
+   * after any existing segments, so that a segment torn by a crash is never appended to.
+   *
+   * @param directory the directory that holds the segment files
+   * @param metrics the {@code MetricRegistry} instance used to register log metrics
+   * @throws IOException if the directory is already in use, or if the directory or the new
+   *                     segment cannot be created
+   */
+  public WriteAheadLog(Path directory, MetricRegistry metrics) throws IOException {
+    this(directory, metrics, MetricRegistry.name(WriteAheadLog.class));
+  }
+
+  /**
+   * Opens the log in the given directory, reporting its metrics under the given prefix so that
+   * they are kept apart from the metrics of any other log.
+   *
+   * @param directory the directory that holds the segment files
+   * @param metrics the {@code MetricRegistry} instance used to register log metrics
+   * @param metricPrefix the name that the log metrics are reported under
+   * @throws IOException if the directory is already in use, or if the directory or the new
+   *                     segment cannot be created
+   */
+  public WriteAheadLog(Path directory,
+                       MetricRegistry metrics,
+                       String metricPrefix) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.lockChannel = lock(directory);
+    this.segment = segments(directory).stream().mapToLong(Long::longValue).max().orElse(0L) + 1;
+    this.channel = open(directory, segment);
+
+    syncDirectory(directory);
+
+    this.batchSize = metrics.histogram(MetricRegistry.name(metricPrefix, "batch-size"));
+    this.syncTime = metrics.timer(MetricRegistry.name(metricPrefix, "sync-time"));
+
+    this.syncThread = Thread.ofPlatform()
+        .name("thunder-wal-sync")
+        .daemon()
+        .start(this::runSync);
+  }
+
+  /**
+   * Appends a record to the current segment.
+   *
+   * @param email the email of the user that changed
+   * @param user the serialized user, or {@code null} if the user was deleted
+   * @return the position of the new record
+   * @throws DatabaseException if the record could not be written
+   */
+  public synchronized Position append(String email, @Nullable byte[] user) {
+    if (failed || closed) {
+      throw new DatabaseException("The in-memory database log is not accepting writes.",
+          DatabaseException.Error.DATABASE_DOWN);
+    }
+
+    ByteBuffer record = encode(email, user);
+    int size = record.remaining();
+
+    try {
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+    } catch (IOException e) {
+      // A partial record would hide every record after it on replay, so stop accepting writes
+      failed = true;
+      LOG.error("Unable to write to the in-memory database log.", e);
+
+      throw new DatabaseException("Unable to write to the in-memory database log.",
+          DatabaseException.Error.DATABASE_DOWN);
+    }
+
+    Position position = new Position(segment, segmentOffset, size);
+
+    segmentOffset += size;
+    written += size;
+    pendingRecords++;
+
+    return position;
+  }
+
+  /**
+   * Reads the serialized user from the record at the given position.
+   *
+   * @param position the position of the record
+   * @return the serialized user, or {@code null} if the record is for a deleted user
+   * @throws UncheckedIOException if the record cannot be read or fails its checksum
+   */
+  public byte[] read(Position position) {
+    FileChannel reader = readers.computeIfAbsent(position.segment(), number -> {
+      try {
+        return FileChannel.open(segmentPath(directory, number), StandardOpenOption.READ);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+
+    ByteBuffer record = ByteBuffer.allocate(position.size());
+
+    try {
+      while (record.hasRemaining()) {
+        if (reader.read(record, position.offset() + record.position()) < 0) {
+          throw new EOFException("The record at " + position + " is past the end of the log.");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    record.flip();
+    int size = record.getInt();
+    int checksum = record.getInt();
+    byte[] payload = new byte[size];
+    record.get(payload);
+
+    if (!matches(payload, checksum)) {
+      throw new UncheckedIOException(
+          new IOException("The record at " + position + " failed its checksum."));
+    }
+
+    return decode(payload, (email, user, ignored) -> { }, position);
+  }
+
+  /**
+   * Waits for every record appended so far to be forced to disk.
+   *
+   * @return a future that completes once the records are durable, or completes exceptionally
+   *         with a {@link DatabaseException} if the log could not be forced
+   */
+  public synchronized CompletableFuture<Void> sync() {
+    if (closed) {
+      return CompletableFuture.failedFuture(new DatabaseException(
+          "The in-memory database log is closed.", DatabaseException.Error.DATABASE_DOWN));
+    }
+
+    // After a failed write or force, records may be lost, so nothing can be acknowledged again
+    if (failed) {
+      return CompletableFuture.failedFuture(new DatabaseException(
+          "The in-memory database log has failed.", DatabaseException.Error.DATABASE_DOWN));
+    }
+
+    if (written == synced) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    CompletableFuture<Void> waiter = new CompletableFuture<>();
+    waiters.add(waiter);
+    notifyAll();
+
+    return waiter;
+  }
+
+  /**
+   * Determines whether the log is accepting writes.
+   *
+   * @return true if records can be appended, false if the log is closed or a write failed
+   */
+  public synchronized boolean isWritable() {
+    return !failed && !closed;
+  }
+
+  /**
+   * Starts a new segment. Records appended after this call go to the new segment.
+   *
+   * @return the number of the new segment
+   * @throws IOException if the new segment cannot be created
+   */
+  public synchronized long rotate() throws IOException {
+    FileChannel next = open(directory, segment + 1);
+
+    // The new segment must still exist after a crash, or the records written to it are lost
+    try {
+      syncDirectory(directory);
+    } catch (IOException e) {
+      next.close();
+      throw e;
+    }
+
+    // The sync thread forces and closes the old segment, so it is never closed during a force
+    retired.add(channel);
+    channel = next;
+    segmentOffset = 0;
+
+    return ++segment;
+  }
+
+  /**
+   * Deletes every segment with a number lower than the given segment.
+   *
+   * @param first the number of the first segment to keep
+   * @return the number of bytes deleted
+   * @throws IOException if a segment cannot be deleted
+   */
+  public long deleteSegmentsBefore(long first) throws IOException {
+    long deleted = 0;
+
+    for (long number : segments(directory)) {
+      if (number < first) {
+        FileChannel reader = readers.remove(number);
+
+        if (reader != null) {
+          reader.close();
+        }
+
+        Path path = segmentPath(directory, number);
+        deleted += Files.size(path);
+        Files.deleteIfExists(path);
+      }
+    }
+
+    return deleted;
+  }
+
+  /**
+   * Reads every complete record from the segments in the given directory, starting at the given
+   * segment, in the order they were written. Reading a segment stops at the first record that is
+   * incomplete or fails its checksum, since it can only have been torn by a crash.
+   *
+   * @param directory the directory that holds the segment files
+   * @param first the number of the first segment to read
+   * @param consumer receives each record
+   * @return the number of records read
+   * @throws IOException if a segment cannot be read
+   */
+  public static long replay(Path directory, long first, RecordConsumer consumer)
+      throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+
+    long count = 0;
+
+    for (long number : segments(directory)) {
+      if (number < first) {
+        continue;
+      }
+
+      try (var in = new DataInputStream(new BufferedInputStream(
+          Files.newInputStream(segmentPath(directory, number))))) {
+        count += readAll(in, number, consumer);
+      }
+    }
+
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      closed = true;
+      notifyAll();
+    }
+
+    try {
+      syncThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    for (FileChannel reader : readers.values()) {
+      reader.close();
+    }
+
+    synchronized (this) {
+      for (FileChannel old : retired) {
+        old.close();
+      }
+
+      channel.force(false);
+      channel.close();
+    }
+
+    lockChannel.close();
+  }
+
+  /**
+   * Encodes a record as a length, a CRC32 checksum, and a payload holding the email followed by
+   * the serialized user, if there is one.
+   *
+   * @param email the email of the user
+   * @param user the serialized user, or {@code null} if the user was deleted
+   * @return a buffer that is ready to be written
+   */
+  static ByteBuffer encode(String email, @Nullable byte[] user) {
+    byte[] address = email.getBytes(StandardCharsets.UTF_8);
+    int payloadSize = Short.BYTES + address.length + (user != null ? user.length : 0);
+
+    ByteBuffer payload = ByteBuffer.allocate(payloadSize)
+        .putShort((short) address.length)
+        .put(address);
+
+    if (user != null) {
+      payload.put(user);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(payload.array());
+
+    return ByteBuffer.allocate(HEADER_BYTES + payloadSize)
+        .putInt(payloadSize)
+        .putInt((int) crc.getValue())
+        .put(payload.array())
+        .flip();
+  }
+
+  /**
+   * Reads records written by {@link #encode(String, byte[])} until the stream ends or a record
+   * is incomplete or corrupt.
+   *
+   * @param in the stream to read from
+   * @param segment the number of the segment being read, used for the position of each record
+   * @param consumer receives each record
+   * @return the number of records read
+   * @throws IOException if the stream cannot be read
+   */
+  static long readAll(DataInputStream in, long segment, RecordConsumer consumer)
+      throws IOException {
+    long count = 0;
+    long offset = 0;
+
+    while (true) {
+      byte[] payload;
+      int checksum;
+
+      try {
+        int size = in.readInt();
+        checksum = in.readInt();
+
+        if (size < Short.BYTES) {
+          LOG.warn("Ignoring a corrupt record at the end of the in-memory database log.");
+          return count;
+        }
+
+        payload = in.readNBytes(size);
+
+        if (payload.length < size) {
+          LOG.warn("Ignoring a torn record at the end of the in-memory database log.");
+          return count;
+        }
+      } catch (EOFException e) {
+        return count;
+      }
+
+      if (!matches(payload, checksum)) {
+        LOG.warn("Ignoring a corrupt record at the end of the in-memory database log.");
+        return count;
+      }
+
+      Position position = new Position(segment, offset, HEADER_BYTES + payload.length);
+
+      decode(payload, consumer, position);
+      offset += position.size();
+      count++;
+    }
+  }
+
+  /**
+   * Splits a record payload into its email and serialized user and passes them to the consumer.
+   *
+   * @param payload the payload of the record
+   * @param consumer receives the record
+   * @param position the position of the record
+   * @return the serialized user, or {@code null} if the record is for a deleted user
+   */
+  private static byte[] decode(byte[] payload, RecordConsumer consumer, Position position) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload);
+    byte[] address = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(address);
+
+    byte[] user = buffer.hasRemaining() ? new byte[buffer.remaining()] : null;
+
+    if (user != null) {
+      buffer.get(user);
+    }
+
+    consumer.accept(new String(address, StandardCharsets.UTF_8), user, position);
+
+    return user;
+  }
+
+  private static boolean matches(byte[] payload, int checksum) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+
+    return (int) crc.getValue() == checksum;
+  }
+
+  /**
+   * Forces the log to disk each time there is a waiter, completing every waiter that was present
+   * when the force started.
+   */
+  private void runSync() {
+    while (true) {
+      List<CompletableFuture<Void>> batch;
+      List<FileChannel> toClose;
+      FileChannel current;
+      long target;
+      long records;
+
+      synchronized (this) {
+        while (waiters.isEmpty() && !closed) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+
+        if (waiters.isEmpty()) {
+          return;
+        }
+
+        batch = List.copyOf(waiters);
+        toClose = List.copyOf(retired);
+        current = channel;
+        target = written;
+        records = pendingRecords;
+
+        waiters.clear();
+        retired.clear();
+        pendingRecords = 0;
+      }
+
+      try (Timer.Context ignored = syncTime.time()) {
+        for (FileChannel old : toClose) {
+          old.force(false);
+          old.close();
+        }
+
+        current.force(false);
+      } catch (IOException e) {
+        LOG.error("Unable to sync the in-memory database log.", e);
+
+        List<CompletableFuture<Void>> remaining;
+
+        // A failed force can drop dirty pages, and the retired segments are already closed, so a
+        // later force cannot make the records durable. Stop acknowledging them for good.
+        synchronized (this) {
+          failed = true;
+          remaining = List.copyOf(waiters);
+          waiters.clear();
+        }
+
+        Stream.concat(batch.stream(), remaining.stream())
+            .forEach(waiter -> waiter.completeExceptionally(new DatabaseException(
+                "Unable to sync the in-memory database log.",
+                DatabaseException.Error.DATABASE_DOWN)));
+        continue;
+      }
+
+      synchronized (this) {
+        synced = Math.max(synced, target);
+      }
+
+      batchSize.update(records);
+      batch.forEach(waiter -> waiter.complete(null));
+    }
+  }
+
+  /**
+   * Takes an exclusive lock on the lock file in the given directory.
+   *
+   * @param directory the directory to lock
+   * @return the channel that holds the lock, which releases the lock when closed
+   * @throws IOException if the directory is already locked
+   */
+  private static FileChannel lock(Path directory) throws IOException {
+    FileChannel channel = FileChannel.open(directory.resolve("lock"),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    FileLock lock;
+
+    try {
+      lock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+
+    if (lock == null) {
+      channel.close();
+      throw new IOException("The directory " + directory + " is already in use.");
+    }
+
+    return channel;
+  }
+
+  /**
+   * Forces the directory entries of the given directory to disk, so that files created, renamed,
+   * or deleted in it are still there after a crash.
+   *
+   * @param directory the directory to force
+   * @throws IOException if the directory cannot be forced
+   */
+  public static void syncDirectory(Path directory) throws IOException {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  private static List<Long> segments(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(path -> path.getFileName().toString())
+          .map(SEGMENT_NAME::matcher)
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static Path segmentPath(Path directory, long number) {
+    return directory.resolve(String.format("wal-%018d.log", number));
+  }
+
+  private static FileChannel open(Path directory, long number) throws IOException {
+    return FileChannel.open(segmentPath(directory, number),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * The location of a record in the log.
+   *
+   * @param segment the number of the segment that holds the record
+   * @param offset the offset of the record within the segment
+   * @param size the size of the record in bytes, including its header
+   */
+  public record Position(long segment, long offset, int size) {
+  }
+
+  /**
+   * Receives the records read from the log.
+   */
+  @FunctionalInterface
+  public interface RecordConsumer {
+
+    /**
+     * Called for each record read from the log.
+     *
+     * @param email the email of the user that changed
+     * @param user the serialized user, or {@code null} if the user was deleted
+     * @param position the position of the record
+     */
+    void accept(String email, @Nullable byte[] user, Position position);
+  }
+}
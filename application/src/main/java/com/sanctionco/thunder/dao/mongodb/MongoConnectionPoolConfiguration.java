@@ -0,0 +1,72 @@
+package com.sanctionco.thunder.dao.mongodb;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mongodb.connection.ConnectionPoolSettings;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides optional configuration options for the MongoDB connection pool. Only the options that
+ * are set are applied, so any option left out keeps the value from the connection string, or
+ * the driver default if the connection string does not set it either. See the
+ * {@code MongoDbUsersDaoFactory} class for more details.
+ */
+public class MongoConnectionPoolConfiguration {
+
+  @Min(0) @JsonProperty("minSize")
+  private final Integer minSize = null;
+
+  @Min(1) @JsonProperty("maxSize")
+  private final Integer maxSize = null;
+
+  @Min(1) @JsonProperty("maxConnecting")
+  private final Integer maxConnecting = null;
+
+  @Valid @JsonProperty("maxWaitTime")
+  private final Duration maxWaitTime = null;
+
+  @Valid @JsonProperty("maxConnectionIdleTime")
+  private final Duration maxConnectionIdleTime = null;
+
+  public Optional<Integer> getMinSize() {
+    return Optional.ofNullable(minSize);
+  }
+
+  public Optional<Integer> getMaxSize() {
+    return Optional.ofNullable(maxSize);
+  }
+
+  public Optional<Integer> getMaxConnecting() {
+    return Optional.ofNullable(maxConnecting);
+  }
+
+  public Optional<Duration> getMaxWaitTime() {
+    return Optional.ofNullable(maxWaitTime);
+  }
+
+  public Optional<Duration> getMaxConnectionIdleTime() {
+    return Optional.ofNullable(maxConnectionIdleTime);
+  }
+
+  /**
+   * Applies the configured options to the driver's connection pool settings. Options that are
+   * not configured are left unchanged.
+   *
+   * @param builder the connection pool settings builder to apply the options to
+   */
+  void applyTo(ConnectionPoolSettings.Builder builder) {
+    getMinSize().ifPresent(builder::minSize);
+    getMaxSize().ifPresent(builder::maxSize);
+    getMaxConnecting().ifPresent(builder::maxConnecting);
+    getMaxWaitTime().ifPresent(time ->
+        builder.maxWaitTime(time.toMilliseconds(), TimeUnit.MILLISECONDS));
+    getMaxConnectionIdleTime().ifPresent(time ->
+        builder.maxConnectionIdleTime(time.toMilliseconds(), TimeUnit.MILLISECONDS));
+  }
+}
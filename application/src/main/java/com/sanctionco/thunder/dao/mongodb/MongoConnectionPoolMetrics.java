@@ -0,0 +1,80 @@
+package com.sanctionco.thunder.dao.mongodb;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the state of the MongoDB connection pool and publishes it to a {@link MetricRegistry}.
+ * The listener is attached to the client when it is created, and the metrics are registered
+ * once a registry is available. The values are totals across the pools for every server that
+ * the client is connected to.
+ */
+class MongoConnectionPoolMetrics implements ConnectionPoolListener {
+  private final AtomicLong size = new AtomicLong();
+  private final AtomicLong checkedOut = new AtomicLong();
+  private final AtomicLong waiting = new AtomicLong();
+
+  private final Timer waitTimer = new Timer();
+  private final Counter checkOutFailures = new Counter();
+
+  /**
+   * Registers the connection pool metrics with the given registry.
+   *
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   */
+  void register(MetricRegistry metrics) {
+    String prefix = MetricRegistry.name(MongoConnectionPoolMetrics.class);
+
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "size"), () -> size::get);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "checked-out"), () -> checkedOut::get);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "wait-queue-size"), () -> waiting::get);
+
+    metrics.register(MetricRegistry.name(prefix, "wait-time"), waitTimer);
+    metrics.register(MetricRegistry.name(prefix, "check-out-failures"), checkOutFailures);
+  }
+
+  @Override
+  public void connectionCreated(ConnectionCreatedEvent event) {
+    size.incrementAndGet();
+  }
+
+  @Override
+  public void connectionClosed(ConnectionClosedEvent event) {
+    size.decrementAndGet();
+  }
+
+  @Override
+  public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+    waiting.incrementAndGet();
+  }
+
+  @Override
+  public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+    waiting.decrementAndGet();
+    checkedOut.incrementAndGet();
+    waitTimer.update(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+    waiting.decrementAndGet();
+    checkOutFailures.inc();
+  }
+
+  @Override
+  public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+    checkedOut.decrementAndGet();
+  }
+}
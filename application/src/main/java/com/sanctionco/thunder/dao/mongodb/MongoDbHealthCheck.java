@@ -1,6 +1,6 @@
 package com.sanctionco.thunder.dao.mongodb;
 
-import com.mongodb.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClient;
 import com.sanctionco.thunder.dao.DatabaseHealthCheck;
 
 import java.util.Objects;
@@ -33,7 +33,7 @@ public class MongoDbHealthCheck extends DatabaseHealthCheck {
   protected Result check() {
     LOG.info("Checking health of MongoDB...");
 
-    return mongoClient.listDatabaseNames().iterator().hasNext()
+    return Publishers.first(mongoClient.listDatabaseNames().first()).join() != null
         ? Result.healthy()
         : Result.unhealthy("No databases in MongoDB");
   }
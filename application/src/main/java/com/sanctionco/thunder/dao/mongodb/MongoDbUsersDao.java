@@ -1,40 +1,80 @@
 package com.sanctionco.thunder.dao.mongodb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
 import com.mongodb.MongoTimeoutException;
 import com.mongodb.MongoWriteException;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.sanctionco.thunder.dao.BatchResult;
 import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.PropertyIndexes;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import jakarta.annotation.Nullable;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
 
 /**
  * Provides the MongoDB implementation for the {@link UsersDao}. Provides methods to
  * insert, update, get, and delete a {@code User} (in the {@code api} module) in the database.
  *
+ * <p>All operations use the MongoDB reactive streams driver, so no thread is blocked while
+ * waiting for the database to respond.
+ *
+ * <p>The values of the indexed properties are copied into the {@code indexed} field of each
+ * stored document, which has a database index for each indexed property.
+ *
  * @see UsersDao
  */
 public class MongoDbUsersDao implements UsersDao {
   private static final Logger LOG = LoggerFactory.getLogger(MongoDbUsersDao.class);
 
+  // The error code of a transaction started on a server that is not part of a replica set
+  private static final int ILLEGAL_OPERATION_ERROR_CODE = 20;
+
   private final MongoCollection<Document> mongoCollection;
   private final ObjectMapper mapper;
+  private final Set<String> indexedProperties;
+  @Nullable private final MongoClient mongoClient;
+
+  // Set once the database has rejected a transaction, such as when it is a standalone server
+  private volatile boolean transactionsSupported = true;
 
   /**
    * Constructs a new {@code MongoDbUsersDao} object with the given mongoCollection and mapper.
@@ -43,8 +83,42 @@ public class MongoDbUsersDao implements UsersDao {
    * @param mapper the mapper used to serialize and deserialize JSON
    */
   public MongoDbUsersDao(MongoCollection<Document> mongoCollection, ObjectMapper mapper) {
+    this(mongoCollection, mapper, Set.of());
+  }
+
+  /**
+   * Constructs a new {@code MongoDbUsersDao} object with the given mongoCollection, mapper,
+   * and indexed properties.
+   *
+   * @param mongoCollection the MongoCollection instance to perform operations on
+   * @param mapper the mapper used to serialize and deserialize JSON
+   * @param indexedProperties the names of the properties that users can be looked up by
+   */
+  public MongoDbUsersDao(MongoCollection<Document> mongoCollection,
+                         ObjectMapper mapper,
+                         Set<String> indexedProperties) {
+    this(mongoCollection, mapper, indexedProperties, null);
+  }
+
+  /**
+   * Constructs a new {@code MongoDbUsersDao} object with the given mongoCollection, mapper,
+   * indexed properties, and client. The client is used to start the sessions of the
+   * transactions that change the email of a user.
+   *
+   * @param mongoCollection the MongoCollection instance to perform operations on
+   * @param mapper the mapper used to serialize and deserialize JSON
+   * @param indexedProperties the names of the properties that users can be looked up by
+   * @param mongoClient the client that owns the collection, or {@code null} to change emails
+   *     without a transaction
+   */
+  public MongoDbUsersDao(MongoCollection<Document> mongoCollection,
+                         ObjectMapper mapper,
+                         Set<String> indexedProperties,
+                         @Nullable MongoClient mongoClient) {
     this.mongoCollection = Objects.requireNonNull(mongoCollection);
     this.mapper = Objects.requireNonNull(mapper);
+    this.indexedProperties = Set.copyOf(indexedProperties);
+    this.mongoClient = mongoClient;
   }
 
   @Override
@@ -53,29 +127,26 @@ public class MongoDbUsersDao implements UsersDao {
 
     long now = Instant.now().toEpochMilli();
 
-    Document doc = new Document("_id", user.getEmail().getAddress()) // _id is the primary key
-        .append("id", UUID.randomUUID().toString())
-        .append("version", UUID.randomUUID().toString())
-        .append("creation_time", now)
-        .append("update_time", now)
-        .append("document", UsersDao.toJson(mapper, user));
-
-    return CompletableFuture.supplyAsync(() -> mongoCollection.insertOne(doc))
+    return Publishers.first(mongoCollection.insertOne(newDocument(user, now)))
         .thenApply(result -> {
           LOG.info("Done inserting user {}", user.getEmail().getAddress());
           return user.withTime(now, now);
         })
         .exceptionally(throwable -> {
-          throw convertToDatabaseException(throwable.getCause(), user.getEmail().getAddress());
+          throw convertToDatabaseException(throwable, user.getEmail().getAddress());
         });
   }
 
   @Override
   public CompletableFuture<User> findByEmail(String email) {
+    return findVersionedByEmail(email).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> findVersionedByEmail(String email) {
     Objects.requireNonNull(email);
 
-    return CompletableFuture.supplyAsync(() -> mongoCollection.find(eq("_id", email)))
-        .thenApply(MongoIterable::first)
+    return Publishers.first(mongoCollection.find(eq("_id", email)).first())
         .thenApply(doc -> {
           if (doc == null) {
             LOG.warn("The email {} was not found in the database.", email);
@@ -83,102 +154,604 @@ public class MongoDbUsersDao implements UsersDao {
                 DatabaseException.Error.USER_NOT_FOUND);
           }
 
-          return UsersDao.fromJson(mapper, doc.getString("document")).withTime(
-              doc.getLong("creation_time"),
-              doc.getLong("update_time"));
+          return new VersionedUser(toUser(doc), doc.getString("version"));
+        }).exceptionally(throwable -> {
+          throw convertToDatabaseException(throwable, email);
+        });
+  }
+
+  @Override
+  public CompletableFuture<String> findPasswordByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return Publishers.first(mongoCollection.find(eq("_id", email))
+            .projection(Projections.include("password_hash"))
+            .first())
+        .thenCompose(doc -> {
+          if (doc == null) {
+            LOG.warn("The email {} was not found in the database.", email);
+            throw new DatabaseException("User not found in the database.",
+                DatabaseException.Error.USER_NOT_FOUND);
+          }
+
+          // Users that have not been written since the password field was added
+          // only have the password in the document
+          return doc.containsKey("password_hash")
+              ? CompletableFuture.completedFuture(doc.getString("password_hash"))
+              : findByEmail(email).thenApply(User::getPassword);
         }).exceptionally(throwable -> {
-          throw convertToDatabaseException(throwable.getCause(), email);
+          throw convertToDatabaseException(throwable, email);
         });
   }
 
   @Override
   public CompletableFuture<User> update(@Nullable String existingEmail, User user) {
+    return update(existingEmail, user, null).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> update(@Nullable String existingEmail,
+                                                 User user,
+                                                 @Nullable String expectedVersion) {
     Objects.requireNonNull(user);
 
     // Different email (primary key) means we need to delete and insert
     if (existingEmail != null && !existingEmail.equals(user.getEmail().getAddress())) {
-      LOG.info("User to update has new email. The user will be deleted and then reinserted.");
-      return updateEmail(existingEmail, user);
+      LOG.info("User to update has new email. The user will be moved to the new email.");
+      return moveEmail(existingEmail, user, expectedVersion);
     }
 
     long now = Instant.now().toEpochMilli();
+    String email = user.getEmail().getAddress();
+    String newVersion = UUID.randomUUID().toString();
+
+    // The user must exist, and if the caller read a version it must not have changed since
+    Bson filter = expectedVersion == null
+        ? eq("_id", email)
+        : new Document("_id", email).append("version", expectedVersion);
+
+    return Publishers.first(mongoCollection.findOneAndUpdate(
+            filter,
+            Updates.combine(
+                Updates.set("version", newVersion),
+                Updates.set("update_time", now),
+                Updates.set("password_hash", user.getPassword()),
+                Updates.set("indexed", indexedValues(user)),
+                Updates.set("verified", user.getEmail().isVerified()),
+                Updates.set("verification_token", user.getEmail().getVerificationToken()),
+                Updates.set("document", UsersDao.toJson(mapper, user))),
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)))
+        .thenCompose(doc -> {
+          if (doc != null) {
+            return CompletableFuture.completedFuture(new VersionedUser(
+                user.withTime(doc.getLong("creation_time"), now), newVersion));
+          }
 
-    return CompletableFuture
-        .supplyAsync(() -> mongoCollection.find(eq("_id", user.getEmail().getAddress())))
-        .thenApply(MongoIterable::first)
-        .thenCompose(existingUser -> {
-          if (existingUser == null) {
-            LOG.warn("The user {} was not found in the database.", user.getEmail().getAddress());
+          if (expectedVersion == null) {
+            LOG.warn("The user {} was not found in the database.", email);
             throw new DatabaseException("User not found in the database.",
                 DatabaseException.Error.USER_NOT_FOUND);
           }
 
-          // Compute the new data
-          String newVersion = UUID.randomUUID().toString();
-          String document = UsersDao.toJson(mapper, user);
-
-          return CompletableFuture.supplyAsync(() -> {
-            mongoCollection.updateOne(
-                eq("version", existingUser.getString("version")),
-                Updates.combine(
-                    Updates.set("version", newVersion),
-                    Updates.set("update_time", now),
-                    Updates.set("document", document)));
+          // Nothing matched, so find out if the user is missing or the version has changed
+          return Publishers.first(mongoCollection.find(eq("_id", email)).first())
+              .thenApply(existing -> {
+                if (existing == null) {
+                  LOG.warn("The user {} was not found in the database.", email);
+                  throw new DatabaseException("User not found in the database.",
+                      DatabaseException.Error.USER_NOT_FOUND);
+                }
 
-            return existingUser.getLong("creation_time");
-          });
+                LOG.warn("The user {} was modified after version {} was read.",
+                    email, expectedVersion);
+                throw new DatabaseException("The user was modified by another request.",
+                    DatabaseException.Error.CONFLICT);
+              });
         })
-        .thenApply(creationTime -> user.withTime(creationTime, now))
         .exceptionally(throwable -> {
-          throw convertToDatabaseException(throwable.getCause(), user.getEmail().getAddress());
+          throw convertToDatabaseException(throwable, email);
         });
   }
 
+  /**
+   * Marks the user as verified with a single {@code findOneAndUpdate}, which only matches the
+   * document if its {@code verification_token} field is the given token. If nothing matches, the
+   * document is read again to find out why. Users that have not been written since the field was
+   * added are verified with the default steps of {@link UsersDao#markVerified(String, String)}.
+   *
+   * @param email the email of the user to verify
+   * @param token the verification token that the user provided
+   * @return the verified user
+   */
+  @Override
+  public CompletableFuture<User> markVerified(String email, String token) {
+    Objects.requireNonNull(email);
+    Objects.requireNonNull(token);
+
+    long now = Instant.now().toEpochMilli();
+
+    return Publishers.first(mongoCollection.findOneAndUpdate(
+            new Document("_id", email).append("verification_token", token),
+            Updates.combine(
+                Updates.set("verified", true),
+                Updates.set("version", UUID.randomUUID().toString()),
+                Updates.set("update_time", now)),
+            new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)))
+        .thenCompose(doc -> doc != null
+            ? CompletableFuture.completedFuture(toUser(doc))
+            : Publishers.first(mongoCollection.find(eq("_id", email)).first())
+                .thenCompose(existing -> {
+                  if (existing == null) {
+                    LOG.warn("The email {} was not found in the database.", email);
+                    throw new DatabaseException("User not found in the database.",
+                        DatabaseException.Error.USER_NOT_FOUND);
+                  }
+
+                  // Users written before the verification token field was added only have
+                  // the token in the document
+                  if (!existing.containsKey("verification_token")) {
+                    return markVerifiedWithoutCondition(email, token);
+                  }
+
+                  UsersDao.checkVerificationToken(existing.getString("verification_token"), token);
+
+                  // The token matched, so the document changed between the two requests
+                  throw new DatabaseException(
+                      "The user was changed by another request. Please try again.",
+                      DatabaseException.Error.CONFLICT);
+                }))
+        .exceptionally(throwable -> {
+          Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+              ? throwable.getCause()
+              : throwable;
+
+          if (cause instanceof RequestValidationException e) {
+            throw e;
+          }
+
+          throw convertToDatabaseException(throwable, email);
+        });
+  }
+
+  private CompletableFuture<User> markVerifiedWithoutCondition(String email, String token) {
+    return UsersDao.super.markVerified(email, token);
+  }
+
+  /**
+   * Moves the user to the new email in a multi-document transaction, which deletes the document
+   * under the old email and inserts the document under the new email. Either both writes are
+   * applied or neither is. Transactions require MongoDB to run as a replica set or a sharded
+   * cluster. If this DAO was constructed without a {@code MongoClient}, or the database rejects
+   * transactions, the default steps of {@link UsersDao#updateEmail(String, User)} are used
+   * instead.
+   *
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object to put in the database
+   * @return the user that was updated
+   */
+  @Override
+  public CompletableFuture<User> updateEmail(String existingEmail, User user) {
+    return moveEmail(existingEmail, user, null).thenApply(VersionedUser::user);
+  }
+
+  /**
+   * Moves the user to the new email, as described in {@link #updateEmail(String, User)}. If an
+   * expected version is given, the document under the old email is only deleted if it still has
+   * that version. Without a transaction, the version is checked before the move instead, and the
+   * new version is not returned.
+   *
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object to put in the database
+   * @param expectedVersion the version the caller read, or {@code null} to move the user
+   *                        regardless of its version
+   * @return the user that was updated and the version of the document under the new email
+   */
+  private CompletableFuture<VersionedUser> moveEmail(String existingEmail,
+                                                     User user,
+                                                     @Nullable String expectedVersion) {
+    if (mongoClient == null || !transactionsSupported) {
+      return updateEmailWithoutTransaction(existingEmail, user, expectedVersion);
+    }
+
+    Objects.requireNonNull(existingEmail);
+    Objects.requireNonNull(user);
+
+    String email = user.getEmail().getAddress();
+
+    return Publishers.first(mongoClient.startSession())
+        .thenCompose(session -> {
+          session.startTransaction();
+
+          return moveUser(session, existingEmail, user, expectedVersion)
+              .handle((moved, throwable) -> throwable == null
+                  ? Publishers.first(session.commitTransaction()).thenApply(ignored -> moved)
+                  : Publishers.first(session.abortTransaction())
+                      .handle((ignored, abortFailure) ->
+                          CompletableFuture.<VersionedUser>failedFuture(throwable))
+                      .thenCompose(Function.identity()))
+              .thenCompose(Function.identity())
+              .whenComplete((moved, throwable) -> session.close());
+        })
+        .handle((moved, throwable) -> {
+          if (throwable == null) {
+            return CompletableFuture.completedFuture(moved);
+          }
+
+          if (isTransactionUnsupported(throwable)) {
+            LOG.warn("The database does not support transactions. Emails will be changed"
+                + " without a transaction.");
+            transactionsSupported = false;
+
+            return updateEmailWithoutTransaction(existingEmail, user, expectedVersion);
+          }
+
+          return CompletableFuture.<VersionedUser>failedFuture(
+              convertTransactionException(throwable, existingEmail, email));
+        })
+        .thenCompose(Function.identity());
+  }
+
+  private CompletableFuture<VersionedUser> updateEmailWithoutTransaction(
+      String existingEmail, User user, @Nullable String expectedVersion) {
+    CompletableFuture<Void> checked = expectedVersion == null
+        ? CompletableFuture.completedFuture(null)
+        : findVersionedByEmail(existingEmail).thenAccept(existing -> {
+          if (!expectedVersion.equals(existing.version())) {
+            LOG.warn("The user {} was modified after version {} was read.",
+                existingEmail, expectedVersion);
+            throw new DatabaseException("The user was modified by another request.",
+                DatabaseException.Error.CONFLICT);
+          }
+        });
+
+    return checked
+        .thenCompose(ignored -> UsersDao.super.updateEmail(existingEmail, user))
+        .thenApply(updated -> new VersionedUser(updated, null));
+  }
+
+  /**
+   * Determines if the given throwable was caused by a MongoDB deployment that does not support
+   * transactions, such as a standalone server.
+   *
+   * @param throwable the throwable to check
+   * @return true if transactions are not supported, false otherwise
+   */
+  private static boolean isTransactionUnsupported(Throwable throwable) {
+    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+
+    return cause instanceof MongoCommandException e
+        && e.getErrorCode() == ILLEGAL_OPERATION_ERROR_CODE;
+  }
+
   @Override
   public CompletableFuture<User> delete(String email) {
     Objects.requireNonNull(email);
 
-    return findByEmail(email)
-        .thenCompose(user -> CompletableFuture.supplyAsync(
-            () -> {
-              mongoCollection.deleteOne(eq("_id", email));
-              return user;
-            }))
+    return Publishers.first(mongoCollection.findOneAndDelete(eq("_id", email)))
+        .thenApply(doc -> {
+          if (doc == null) {
+            LOG.warn("The email {} was not found in the database.", email);
+            throw new DatabaseException("User not found in the database.",
+                DatabaseException.Error.USER_NOT_FOUND);
+          }
+
+          return toUser(doc);
+        })
+        .exceptionally(throwable -> {
+          throw convertToDatabaseException(throwable, email);
+        });
+  }
+
+  @Override
+  public CompletableFuture<List<String>> findEmailsByProperty(String property,
+                                                             String value,
+                                                             int limit) {
+    Objects.requireNonNull(property);
+    Objects.requireNonNull(value);
+
+    if (!indexedProperties.contains(property)) {
+      return CompletableFuture.failedFuture(new DatabaseException(
+          String.format("The property %s is not indexed.", property),
+          DatabaseException.Error.REQUEST_REJECTED));
+    }
+
+    // Only the _id is projected, so the query is answered from the index and the _id index
+    return Publishers.all(mongoCollection.find(eq(indexedField(property), value))
+            .projection(Projections.include("_id"))
+            .limit(limit))
+        .thenApply(documents -> documents.stream().map(doc -> doc.getString("_id")).toList())
+        .exceptionally(throwable -> {
+          throw convertToDatabaseException(throwable, property);
+        });
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> insertAll(List<User> users) {
+    Objects.requireNonNull(users);
+
+    long now = Instant.now().toEpochMilli();
+    List<String> emails = users.stream().map(user -> user.getEmail().getAddress()).toList();
+
+    // Only the first occurrence of each email is inserted, the rest are conflicts
+    Map<String, User> distinct = new LinkedHashMap<>();
+    users.forEach(user -> distinct.putIfAbsent(user.getEmail().getAddress(), user));
+
+    List<String> toInsert = List.copyOf(distinct.keySet());
+    List<Document> documents = distinct.values().stream()
+        .map(user -> newDocument(user, now))
+        .toList();
+
+    CompletableFuture<Map<String, DatabaseException>> inserted = documents.isEmpty()
+        ? CompletableFuture.completedFuture(Map.of())
+        : Publishers.first(mongoCollection.insertMany(documents,
+                new InsertManyOptions().ordered(false)))
+            .handle((result, throwable) -> {
+              Map<String, DatabaseException> failures = new HashMap<>();
+
+              if (throwable == null) {
+                return failures;
+              }
+
+              // An unordered insert attempts every document, and reports which ones failed
+              if (throwable instanceof MongoBulkWriteException e
+                  && !e.getWriteErrors().isEmpty()) {
+                e.getWriteErrors().forEach(error -> failures.put(toInsert.get(error.getIndex()),
+                    convertWriteError(error.getCategory(), toInsert.get(error.getIndex()), e)));
+              } else {
+                toInsert.forEach(email -> failures.put(email,
+                    convertToDatabaseException(throwable, email)));
+              }
+
+              return failures;
+            });
+
+    return inserted.thenApply(failures -> {
+      List<BatchResult> results = new ArrayList<>();
+      Set<String> seen = new HashSet<>();
+
+      for (String email : emails) {
+        if (!seen.add(email)) {
+          results.add(BatchResult.failure(email, new DatabaseException(
+              "A user with the same email address already exists.",
+              DatabaseException.Error.CONFLICT)));
+        } else if (failures.containsKey(email)) {
+          results.add(BatchResult.failure(email, failures.get(email)));
+        } else {
+          results.add(BatchResult.success(distinct.get(email).withTime(now, now)));
+        }
+      }
+
+      return results;
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> findAllByEmail(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    return findAll(emails).thenApply(found -> emails.stream().map(found::get).toList());
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> deleteAll(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    // deleteMany does not return the deleted documents, so read them first
+    return findAll(emails).thenCompose(found -> {
+      List<String> existing = found.values().stream()
+          .filter(result -> result.error() == null)
+          .map(BatchResult::email)
+          .toList();
+
+      if (existing.isEmpty()) {
+        return CompletableFuture.completedFuture(emails.stream().map(found::get).toList());
+      }
+
+      return Publishers.first(mongoCollection.deleteMany(in("_id", existing)))
+          .handle((result, throwable) -> emails.stream()
+              .map(email -> throwable != null && existing.contains(email)
+                  ? BatchResult.failure(email, convertToDatabaseException(throwable, email))
+                  : found.get(email))
+              .toList());
+    });
+  }
+
+  @Override
+  public CompletableFuture<UsersPage> scan(int segment,
+                                           int totalSegments,
+                                           @Nullable String startToken,
+                                           int limit) {
+    // MongoDB cannot split a collection scan, so segment 0 contains every user
+    if (segment != 0) {
+      return CompletableFuture.completedFuture(new UsersPage(List.of(), null));
+    }
+
+    // Resume after the last email of the previous page, using the _id index
+    Bson filter = startToken == null ? new Document() : gt("_id", startToken);
+
+    return Publishers.all(mongoCollection.find(filter).sort(Sorts.ascending("_id")).limit(limit))
+        .thenApply(documents -> new UsersPage(
+            documents.stream().map(this::toUser).toList(),
+            documents.size() < limit
+                ? null
+                : documents.getLast().getString("_id")))
         .exceptionally(throwable -> {
-          throw convertToDatabaseException(throwable.getCause(), email);
+          throw convertToDatabaseException(throwable, "scan");
+        });
+  }
+
+  /**
+   * Reads the users with the given emails using a single {@code $in} query.
+   *
+   * @param emails the emails to read
+   * @return a future that is completed with the result for each email. This future is never
+   *         completed exceptionally.
+   */
+  private CompletableFuture<Map<String, BatchResult>> findAll(List<String> emails) {
+    List<String> distinct = emails.stream().distinct().toList();
+
+    return Publishers.all(mongoCollection.find(in("_id", distinct)))
+        .handle((documents, throwable) -> {
+          Map<String, BatchResult> results = new HashMap<>();
+
+          if (throwable != null) {
+            distinct.forEach(email -> results.put(email,
+                BatchResult.failure(email, convertToDatabaseException(throwable, email))));
+
+            return results;
+          }
+
+          documents.forEach(doc -> results.put(doc.getString("_id"),
+              BatchResult.success(toUser(doc))));
+
+          distinct.forEach(email -> results.computeIfAbsent(email, ignored -> BatchResult
+              .failure(email, new DatabaseException("User not found in the database.",
+                  DatabaseException.Error.USER_NOT_FOUND))));
+
+          return results;
         });
   }
 
+  /**
+   * Builds the document to store in MongoDB for a new user.
+   *
+   * @param user the user to store
+   * @param now the creation time of the user
+   * @return the new document
+   */
+  private Document newDocument(User user, long now) {
+    return new Document("_id", user.getEmail().getAddress()) // _id is the primary key
+        .append("id", UUID.randomUUID().toString())
+        .append("version", UUID.randomUUID().toString())
+        .append("creation_time", now)
+        .append("update_time", now)
+        .append("password_hash", user.getPassword())
+        .append("indexed", indexedValues(user))
+        .append("verified", user.getEmail().isVerified())
+        .append("verification_token", user.getEmail().getVerificationToken())
+        .append("document", UsersDao.toJson(mapper, user));
+  }
+
+  /**
+   * Deletes the document under the existing email and inserts the user under its new email,
+   * keeping the creation time of the existing document, as part of the session's transaction.
+   *
+   * @param session the session with the transaction in progress
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object to put in the database
+   * @param expectedVersion the version that the existing document must have, or {@code null}
+   * @return a future that completes with the moved user and its new version
+   */
+  private CompletableFuture<VersionedUser> moveUser(ClientSession session,
+                                                    String existingEmail,
+                                                    User user,
+                                                    @Nullable String expectedVersion) {
+    Bson filter = expectedVersion == null
+        ? eq("_id", existingEmail)
+        : new Document("_id", existingEmail).append("version", expectedVersion);
+
+    return Publishers.first(mongoCollection.findOneAndDelete(session, filter))
+        .thenCompose(existing -> {
+          if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+          }
+
+          if (expectedVersion == null) {
+            LOG.warn("The email {} was not found in the database.", existingEmail);
+            throw new DatabaseException("User not found in the database.",
+                DatabaseException.Error.USER_NOT_FOUND);
+          }
+
+          // Nothing matched, so find out if the user is missing or the version has changed
+          return Publishers.first(mongoCollection.find(session, eq("_id", existingEmail)).first())
+              .thenApply(current -> {
+                if (current == null) {
+                  LOG.warn("The email {} was not found in the database.", existingEmail);
+                  throw new DatabaseException("User not found in the database.",
+                      DatabaseException.Error.USER_NOT_FOUND);
+                }
+
+                LOG.warn("The user {} was modified after version {} was read.",
+                    existingEmail, expectedVersion);
+                throw new DatabaseException("The user was modified by another request.",
+                    DatabaseException.Error.CONFLICT);
+              });
+        })
+        .thenCompose(existing -> {
+          long now = Instant.now().toEpochMilli();
+          long creationTime = existing.getLong("creation_time");
+
+          Document document = newDocument(user, creationTime).append("update_time", now);
+
+          return Publishers.first(mongoCollection.insertOne(session, document))
+              .thenApply(result -> new VersionedUser(
+                  user.withTime(creationTime, now), document.getString("version")));
+        });
+  }
+
+  /**
+   * Builds the {@code indexed} field of a stored document, which holds the value of each indexed
+   * property that the user has.
+   *
+   * @param user the user to index
+   * @return the indexed values
+   */
+  private Document indexedValues(User user) {
+    return new Document(new HashMap<>(PropertyIndexes.valuesOf(user, indexedProperties)));
+  }
+
+  /**
+   * Provides the name of the document field that holds the value of an indexed property.
+   *
+   * @param property the name of the indexed property
+   * @return the field name
+   */
+  static String indexedField(String property) {
+    return "indexed." + property;
+  }
+
+  /**
+   * Converts a document stored in MongoDB into a {@link User}.
+   *
+   * @param doc the stored document
+   * @return the user, including its creation and update times
+   */
+  private User toUser(Document doc) {
+    User user = UsersDao.fromJson(mapper, doc.getString("document"));
+
+    // markVerified sets the verified field without rewriting the document
+    if (Boolean.TRUE.equals(doc.getBoolean("verified")) && !user.getEmail().isVerified()) {
+      user = new User(user.getEmail().verifiedCopy(), user.getPassword(), user.getProperties());
+    }
+
+    return user.withTime(
+        doc.getLong("creation_time"),
+        doc.getLong("update_time"));
+  }
+
   /**
    * Converts a throwable received from MongoDB into a {@link DatabaseException}.
    *
-   * @param throwable the throwable to convert
+   * @param throwable the throwable to convert, which may be wrapped in a
+   *                  {@link CompletionException}
    * @param email the email address that was operated on
    * @return a new {@link DatabaseException}
    */
   private DatabaseException convertToDatabaseException(Throwable throwable, String email) {
+    // Failures from a dependent stage are wrapped, but failures signaled directly by the
+    // driver are not
+    if (throwable instanceof CompletionException && throwable.getCause() != null) {
+      throwable = throwable.getCause();
+    }
+
     if (throwable instanceof DatabaseException e) {
       return e;
     }
 
     if (throwable instanceof MongoWriteException e) {
-      switch (e.getError().getCategory()) {
-        case DUPLICATE_KEY -> {
-          LOG.error("The user {} already exists in the database.", email, e);
-          throw new DatabaseException("A user with the same email address already exists.",
-              DatabaseException.Error.CONFLICT);
-        }
-        case EXECUTION_TIMEOUT -> {
-          LOG.error("The operation for user {} timed out.", email, e);
-          throw new DatabaseException("The operation timed out.",
-              DatabaseException.Error.DATABASE_DOWN);
-        }
-        default -> {
-          LOG.error("The operation for {} was rejected for an unknown reason.", email, e);
-          throw new DatabaseException("The database rejected the request."
-              + " Check your data and try again.", DatabaseException.Error.REQUEST_REJECTED);
-        }
-      }
+      return convertWriteError(e.getError().getCategory(), email, e);
     }
 
     if (throwable instanceof MongoCommandException e) {
@@ -199,4 +772,63 @@ public class MongoDbUsersDao implements UsersDao {
     return new DatabaseException("Unknown database error. Please try again later.",
         DatabaseException.Error.DATABASE_DOWN);
   }
+
+  /**
+   * Converts a throwable received from an email change transaction into a
+   * {@link DatabaseException}.
+   *
+   * @param throwable the throwable to convert
+   * @param existingEmail the email of the user before the update
+   * @param email the new email of the user
+   * @return a new {@link DatabaseException}
+   */
+  private DatabaseException convertTransactionException(Throwable throwable,
+                                                        String existingEmail,
+                                                        String email) {
+    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+
+    // Another request wrote one of the same documents while the transaction was in progress
+    if (cause instanceof MongoException e
+        && e.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+      LOG.warn("The email update from {} to {} conflicted with another write.",
+          existingEmail, email, e);
+      return new DatabaseException("The user was changed by another request. Please try again.",
+          DatabaseException.Error.CONFLICT);
+    }
+
+    return convertToDatabaseException(cause, email);
+  }
+
+  /**
+   * Converts the category of a write error received from MongoDB into a
+   * {@link DatabaseException}.
+   *
+   * @param category the category of the write error
+   * @param email the email address that was operated on
+   * @param cause the exception that contained the write error
+   * @return a new {@link DatabaseException}
+   */
+  private DatabaseException convertWriteError(ErrorCategory category,
+                                              String email,
+                                              Throwable cause) {
+    return switch (category) {
+      case DUPLICATE_KEY -> {
+        LOG.error("The user {} already exists in the database.", email, cause);
+        yield new DatabaseException("A user with the same email address already exists.",
+            DatabaseException.Error.CONFLICT);
+      }
+      case EXECUTION_TIMEOUT -> {
+        LOG.error("The operation for user {} timed out.", email, cause);
+        yield new DatabaseException("The operation timed out.",
+            DatabaseException.Error.DATABASE_DOWN);
+      }
+      default -> {
+        LOG.error("The operation for {} was rejected for an unknown reason.", email, cause);
+        yield new DatabaseException("The database rejected the request."
+            + " Check your data and try again.", DatabaseException.Error.REQUEST_REJECTED);
+      }
+    };
+  }
 }
@@ -1,19 +1,28 @@
 package com.sanctionco.thunder.dao.mongodb;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
 import com.sanctionco.thunder.dao.DatabaseHealthCheck;
 import com.sanctionco.thunder.dao.UsersDao;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.bson.Document;
 import org.slf4j.Logger;
@@ -24,7 +33,11 @@ import org.slf4j.LoggerFactory;
  * to construct new UsersDao and DatabaseHealthCheck objects that interact with MongoDB.
  *
  * <p>The application configuration file should use {@code type: mongodb} in order to use this
- * factory.
+ * factory. The optional {@code connectionPool} section configures the driver's connection pool.
+ * Each option that it sets takes precedence over the same option in the connection string.
+ *
+ * <p>An index is created in the background for each indexed user property. Creating an index
+ * that already exists has no effect.
  *
  * <p>This class must be registered in
  * {@code /resources/META-INF/services/com.sanctionco.thunder.dao.UsersDaoFactory}.
@@ -32,9 +45,11 @@ import org.slf4j.LoggerFactory;
  * @see UsersDaoFactory
  */
 @JsonTypeName("mongodb")
-public class MongoDbUsersDaoFactory implements UsersDaoFactory {
+public class MongoDbUsersDaoFactory extends UsersDaoFactory {
   private static final Logger LOG = LoggerFactory.getLogger(MongoDbUsersDaoFactory.class);
 
+  private final MongoConnectionPoolMetrics poolMetrics = new MongoConnectionPoolMetrics();
+
   private MongoClient mongoClient;
 
   @NotEmpty @JsonProperty("connectionString")
@@ -46,6 +61,9 @@ public class MongoDbUsersDaoFactory implements UsersDaoFactory {
   @NotEmpty @JsonProperty("collectionName")
   private final String collectionName = null;
 
+  @Valid @JsonProperty("connectionPool")
+  private final MongoConnectionPoolConfiguration connectionPoolConfiguration = null;
+
   public String getConnectionString() {
     return connectionString;
   }
@@ -58,6 +76,16 @@ public class MongoDbUsersDaoFactory implements UsersDaoFactory {
     return collectionName;
   }
 
+  /**
+   * Provides the configuration for the MongoDB connection pool.
+   *
+   * @return the configured connection pool options, which are empty if none are configured
+   */
+  public MongoConnectionPoolConfiguration getConnectionPoolConfiguration() {
+    return Optional.ofNullable(connectionPoolConfiguration)
+        .orElseGet(MongoConnectionPoolConfiguration::new);
+  }
+
   /**
    * Constructs a new {@link MongoDbUsersDao} instance.
    *
@@ -65,8 +93,45 @@ public class MongoDbUsersDaoFactory implements UsersDaoFactory {
    * @return the created {@link MongoDbUsersDao} instance
    */
   @Override
-  @SuppressWarnings("ConstantConditions")
   public UsersDao createUsersDao(ObjectMapper mapper) {
+    return newUsersDao(mapper, Set.of());
+  }
+
+  /**
+   * Constructs a new {@link MongoDbUsersDao} instance and registers the connection pool metrics
+   * with the given registry.
+   *
+   * @param mapper the ObjectMapper instance to use
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   * @return the created {@link MongoDbUsersDao} instance
+   */
+  @Override
+  public UsersDao createUsersDao(ObjectMapper mapper, MetricRegistry metrics) {
+    return createUsersDao(mapper, metrics, Set.of());
+  }
+
+  /**
+   * Constructs a new {@link MongoDbUsersDao} instance that indexes the given properties, and
+   * registers the connection pool metrics with the given registry.
+   *
+   * @param mapper the ObjectMapper instance to use
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   * @param indexedProperties the names of the properties to index
+   * @return the created {@link MongoDbUsersDao} instance
+   */
+  @Override
+  public UsersDao createUsersDao(ObjectMapper mapper,
+                                 MetricRegistry metrics,
+                                 Set<String> indexedProperties) {
+    UsersDao usersDao = newUsersDao(mapper, indexedProperties);
+
+    poolMetrics.register(metrics);
+
+    return usersDao;
+  }
+
+  @SuppressWarnings("ConstantConditions")
+  private UsersDao newUsersDao(ObjectMapper mapper, Set<String> indexedProperties) {
     LOG.info("Creating MongoDB implementation of UsersDao");
 
     initializeMongoClient();
@@ -77,7 +142,21 @@ public class MongoDbUsersDaoFactory implements UsersDaoFactory {
     MongoDatabase database = mongoClient.getDatabase(databaseName);
     MongoCollection<Document> collection = database.getCollection(collectionName);
 
-    return new MongoDbUsersDao(collection, mapper);
+    // Don't wait for the indexes, so that startup does not depend on the database being up
+    indexedProperties.forEach(property -> {
+      String field = MongoDbUsersDao.indexedField(property);
+
+      Publishers.first(collection.createIndex(Indexes.ascending(field)))
+          .whenComplete((name, throwable) -> {
+            if (throwable != null) {
+              LOG.error("Unable to create the MongoDB index on {}.", field, throwable);
+            } else {
+              LOG.info("Created the MongoDB index {} on {}.", name, field);
+            }
+          });
+    });
+
+    return new MongoDbUsersDao(collection, mapper, indexedProperties, mongoClient);
   }
 
   /**
@@ -98,14 +177,42 @@ public class MongoDbUsersDaoFactory implements UsersDaoFactory {
    * Initializes the MongoDB client that will be passed into the DAO and
    * HealthCheck instances.
    */
-  @SuppressWarnings("ConstantConditions")
   private synchronized void initializeMongoClient() {
     if (this.mongoClient != null) {
       return;
     }
 
+    MongoClientSettings settings = buildClientSettings();
+    ConnectionPoolSettings pool = settings.getConnectionPoolSettings();
+
+    LOG.info("MongoDB connection pool: minSize: {}, maxSize: {}, maxConnecting: {},"
+            + " maxWaitTime: {}ms, maxConnectionIdleTime: {}ms",
+        pool.getMinSize(), pool.getMaxSize(), pool.getMaxConnecting(),
+        pool.getMaxWaitTime(TimeUnit.MILLISECONDS),
+        pool.getMaxConnectionIdleTime(TimeUnit.MILLISECONDS));
+
+    this.mongoClient = MongoClients.create(settings);
+  }
+
+  /**
+   * Builds the MongoDB client settings from the connection string. Only the connection pool
+   * options that are configured in the {@code connectionPool} section override the pool options
+   * from the connection string.
+   *
+   * @return the client settings
+   */
+  @SuppressWarnings("ConstantConditions")
+  MongoClientSettings buildClientSettings() {
     Objects.requireNonNull(connectionString);
 
-    this.mongoClient = MongoClients.create(connectionString);
+    MongoConnectionPoolConfiguration pool = getConnectionPoolConfiguration();
+
+    return MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(connectionString))
+        .applyToConnectionPoolSettings(builder -> {
+          pool.applyTo(builder);
+          builder.addConnectionPoolListener(poolMetrics);
+        })
+        .build();
   }
 }
@@ -0,0 +1,101 @@
+package com.sanctionco.thunder.dao.mongodb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Provides methods to bridge the publishers returned by the MongoDB reactive streams driver
+ * to {@link CompletableFuture CompletableFutures}, without blocking a thread while the
+ * operation is in flight.
+ */
+final class Publishers {
+
+  private Publishers() {
+  }
+
+  /**
+   * Subscribes to the given publisher and returns a future that completes with its first item.
+   *
+   * @param publisher the publisher to subscribe to
+   * @param <T> the type of item emitted by the publisher
+   * @return a future that is completed with the first item, completed with {@code null} if the
+   *         publisher completes without emitting an item, or completed exceptionally with the
+   *         error signaled by the publisher
+   */
+  static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+
+    publisher.subscribe(new Subscriber<T>() {
+      private Subscription subscription;
+
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(T item) {
+        // Only one item is needed, so stop the publisher once it has been received
+        if (future.complete(item)) {
+          subscription.cancel();
+        }
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        future.completeExceptionally(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        future.complete(null);
+      }
+    });
+
+    return future;
+  }
+
+  /**
+   * Subscribes to the given publisher and returns a future that completes with every item.
+   *
+   * @param publisher the publisher to subscribe to
+   * @param <T> the type of item emitted by the publisher
+   * @return a future that is completed with the items in the order they were emitted once the
+   *         publisher completes, or completed exceptionally with the error signaled by the
+   *         publisher
+   */
+  static <T> CompletableFuture<List<T>> all(Publisher<T> publisher) {
+    CompletableFuture<List<T>> future = new CompletableFuture<>();
+    List<T> items = new ArrayList<>();
+
+    publisher.subscribe(new Subscriber<T>() {
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(T item) {
+        items.add(item);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        future.completeExceptionally(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        future.complete(items);
+      }
+    });
+
+    return future;
+  }
+}
@@ -0,0 +1,242 @@
+package com.sanctionco.thunder.dao.singleflight;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.dao.BatchResult;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+/**
+ * Provides a {@link UsersDao} that collapses concurrent lookups of the same email into a single
+ * call to another {@code UsersDao}. The first lookup of an email calls the database, and every
+ * lookup of the same email that arrives before it completes receives the same result, including
+ * any failure. Nothing is kept once the call completes, so unlike a cache this never returns a
+ * user that was read before the lookup started.
+ *
+ * <p>A write through this DAO detaches any lookup of the written email that is still in flight,
+ * so lookups that arrive after the write completes always call the database again.
+ *
+ * <p>The number of lookups and the number of lookups that were collapsed into another are
+ * reported under {@code com.sanctionco.thunder.dao.singleflight.SingleFlightUsersDao}.
+ *
+ * @see UsersDao
+ */
+public class SingleFlightUsersDao implements UsersDao {
+  private final UsersDao delegate;
+
+  private final ConcurrentMap<String, CompletableFuture<User>> users = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<VersionedUser>> versionedUsers
+      = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<String>> passwords
+      = new ConcurrentHashMap<>();
+
+  private final Counter requests;
+  private final Counter collapsed;
+
+  /**
+   * Constructs a new {@code SingleFlightUsersDao} that collapses lookups made to the given DAO.
+   *
+   * @param delegate the DAO to send lookups and all writes to
+   * @param metrics the {@code MetricRegistry} instance used to register lookup metrics
+   */
+  public SingleFlightUsersDao(UsersDao delegate, MetricRegistry metrics) {
+    this.delegate = Objects.requireNonNull(delegate);
+
+    String prefix = MetricRegistry.name(SingleFlightUsersDao.class);
+
+    this.requests = metrics.counter(MetricRegistry.name(prefix, "requests"));
+    this.collapsed = metrics.counter(MetricRegistry.name(prefix, "collapsed"));
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(prefix, "in-flight"),
+        () -> () -> users.size() + versionedUsers.size() + passwords.size());
+  }
+
+  @Override
+  public CompletableFuture<User> insert(User user) {
+    Objects.requireNonNull(user);
+
+    return delegate.insert(user)
+        .whenComplete((result, throwable) -> detach(user.getEmail().getAddress()));
+  }
+
+  @Override
+  public CompletableFuture<User> findByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return coalesce(users, email, delegate::findByEmail);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> findVersionedByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return coalesce(versionedUsers, email, delegate::findVersionedByEmail);
+  }
+
+  @Override
+  public CompletableFuture<String> findPasswordByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return coalesce(passwords, email, delegate::findPasswordByEmail);
+  }
+
+  @Override
+  public CompletableFuture<User> update(@Nullable String existingEmail, User user) {
+    Objects.requireNonNull(user);
+
+    return delegate.update(existingEmail, user)
+        .whenComplete((result, throwable) -> detach(existingEmail, user));
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> update(@Nullable String existingEmail,
+                                                 User user,
+                                                 @Nullable String expectedVersion) {
+    Objects.requireNonNull(user);
+
+    return delegate.update(existingEmail, user, expectedVersion)
+        .whenComplete((result, throwable) -> detach(existingEmail, user));
+  }
+
+  @Override
+  public CompletableFuture<User> markVerified(String email, String token) {
+    Objects.requireNonNull(email);
+
+    return delegate.markVerified(email, token)
+        .whenComplete((result, throwable) -> detach(email));
+  }
+
+  @Override
+  public CompletableFuture<User> delete(String email) {
+    Objects.requireNonNull(email);
+
+    return delegate.delete(email)
+        .whenComplete((result, throwable) -> detach(email));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> findEmailsByProperty(String property,
+                                                             String value,
+                                                             int limit) {
+    return delegate.findEmailsByProperty(property, value, limit);
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> insertAll(List<User> users) {
+    Objects.requireNonNull(users);
+
+    return delegate.insertAll(users)
+        .whenComplete((results, throwable) -> users
+            .forEach(user -> detach(user.getEmail().getAddress())));
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> findAllByEmail(List<String> emails) {
+    // The database may read every email in a single batch, which is better than collapsing
+    return delegate.findAllByEmail(emails);
+  }
+
+  @Override
+  public CompletableFuture<List<BatchResult>> deleteAll(List<String> emails) {
+    Objects.requireNonNull(emails);
+
+    return delegate.deleteAll(emails)
+        .whenComplete((results, throwable) -> emails.forEach(this::detach));
+  }
+
+  @Override
+  public CompletableFuture<UsersPage> scan(int segment,
+                                           int totalSegments,
+                                           @Nullable String startToken,
+                                           int limit) {
+    return delegate.scan(segment, totalSegments, startToken, limit);
+  }
+
+  @Override
+  public Flow.Publisher<User> scanAll() {
+    return delegate.scanAll();
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+
+  /**
+   * Joins the lookup of the given email that is in flight, or starts a new one if there is none.
+   *
+   * @param inFlight the lookups in flight, by email
+   * @param email the email to look up
+   * @param lookup the function that calls the database
+   * @param <T> the type of the lookup result
+   * @return a future that completes with the result of the shared lookup
+   */
+  private <T> CompletableFuture<T> coalesce(ConcurrentMap<String, CompletableFuture<T>> inFlight,
+                                            String email,
+                                            Function<String, CompletableFuture<T>> lookup) {
+    requests.inc();
+
+    CompletableFuture<T> shared = new CompletableFuture<>();
+    CompletableFuture<T> existing = inFlight.putIfAbsent(email, shared);
+
+    if (existing != null) {
+      collapsed.inc();
+
+      // Give each caller its own future, so that one caller cannot complete it for the others
+      return existing.copy();
+    }
+
+    CompletableFuture<T> result;
+
+    try {
+      result = lookup.apply(email);
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+
+    result.whenComplete((value, throwable) -> {
+      inFlight.remove(email, shared);
+
+      if (throwable != null) {
+        shared.completeExceptionally(throwable);
+      } else {
+        shared.complete(value);
+      }
+    });
+
+    return shared.copy();
+  }
+
+  private void detach(@Nullable String existingEmail, User user) {
+    if (existingEmail != null) {
+      detach(existingEmail);
+    }
+
+    detach(user.getEmail().getAddress());
+  }
+
+  /**
+   * Stops new lookups of the given email from joining a lookup that started before a write.
+   *
+   * @param email the email that was written
+   */
+  private void detach(String email) {
+    users.remove(email);
+    versionedUsers.remove(email);
+    passwords.remove(email);
+  }
+}
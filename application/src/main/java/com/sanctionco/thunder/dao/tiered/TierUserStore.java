@@ -0,0 +1,241 @@
+package com.sanctionco.thunder.dao.tiered;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.dao.inmemorydb.UserStore;
+import com.sanctionco.thunder.models.User;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.annotation.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Provides the {@link UserStore} that holds the users of the in-memory tier. Every change made
+ * through {@link #compute(String, BiFunction, ChangeListener)} pins the user, so that it stays in
+ * memory until the change has been written to the database and {@link #lock(String, BiFunction)}
+ * unpins it. Users that are not pinned are evicted once more than {@code maxSize} of them are
+ * held, and expire {@code expireAfterWrite} after they were read from or written to the database,
+ * so that changes made to the database by other instances are eventually seen.
+ *
+ * <p>Every user in memory has a version, which changes with every change to the user, along with
+ * the version of the user in the database that the change will be written on top of. A deleted
+ * user is kept without a user until the deletion has been written, so that the version in the
+ * database is not lost.
+ */
+class TierUserStore implements UserStore {
+  private final Cache<String, Entry> users;
+
+  /**
+   * Constructs a new {@code TierUserStore}.
+   *
+   * @param maxSize the maximum number of users that are not pinned to keep in memory
+   * @param expireAfterWrite the time after which a user that is not pinned is read again
+   */
+  TierUserStore(long maxSize, Duration expireAfterWrite) {
+    long expiry = expireAfterWrite.toNanoseconds();
+
+    // Pinned users weigh nothing and never expire, so that no policy can remove them
+    this.users = Caffeine.newBuilder()
+        .maximumWeight(maxSize)
+        .<String, Entry>weigher((email, entry) -> entry.pinned() ? 0 : 1)
+        .expireAfter(new Expiry<String, Entry>() {
+          @Override
+          public long expireAfterCreate(String email, Entry entry, long currentTime) {
+            return entry.pinned() ? Long.MAX_VALUE : expiry;
+          }
+
+          @Override
+          public long expireAfterUpdate(String email, Entry entry, long currentTime,
+                                        long currentDuration) {
+            return entry.pinned() ? Long.MAX_VALUE : expiry;
+          }
+
+          @Override
+          public long expireAfterRead(String email, Entry entry, long currentTime,
+                                      long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .build();
+  }
+
+  @Override
+  public User get(String email) {
+    Entry entry = users.getIfPresent(email);
+
+    return entry != null ? entry.user() : null;
+  }
+
+  /**
+   * Gets the user stored with the given email, along with its version.
+   *
+   * @param email the email of the user
+   * @return the stored user and its version, or {@code null} if there is no user with the email
+   */
+  @Nullable
+  VersionedUser find(String email) {
+    return versioned(users.getIfPresent(email));
+  }
+
+  @Override
+  public User compute(String email,
+                      BiFunction<String, User, User> remapping,
+                      ChangeListener listener) {
+    VersionedUser result = computeVersioned(email,
+        (key, current) -> remapping.apply(key, current != null ? current.user() : null),
+        listener);
+
+    return result != null ? result.user() : null;
+  }
+
+  /**
+   * Computes the user stored with the given email in the same way as
+   * {@link #compute(String, BiFunction, ChangeListener)}, except that the function also receives
+   * the version of the stored user, so that it can leave the user unchanged if the version is not
+   * the expected one. Every change gives the user a new version.
+   *
+   * @param email the email of the user
+   * @param remapping the function that receives the stored user and its version (or {@code null})
+   *                  and returns the user to store (or {@code null} to remove the user)
+   * @param listener the listener to notify when the stored user changes
+   * @return the user stored after the computation and its version, or {@code null} if there is
+   *         none
+   */
+  @Nullable
+  VersionedUser computeVersioned(String email,
+                                 BiFunction<String, VersionedUser, User> remapping,
+                                 ChangeListener listener) {
+    Entry result = users.asMap().compute(email, (key, current) -> {
+      VersionedUser currentUser = versioned(current);
+      User oldUser = currentUser != null ? currentUser.user() : null;
+      User updated = remapping.apply(key, currentUser);
+
+      if (updated == oldUser) {
+        return current;
+      }
+
+      listener.onChange(key, oldUser, updated);
+
+      String version = updated != null ? newVersion() : null;
+
+      // The user in the database does not change until the change has been written
+      return current != null
+          ? new Entry(updated, version, true, current.stored(), current.storedVersion())
+          : new Entry(updated, version, true, false, null);
+    });
+
+    return versioned(result);
+  }
+
+  /**
+   * Keeps a user that was read from the database, if there is no user in memory yet and the
+   * given condition still holds while the user's entry is locked. The user is not pinned. If the
+   * database does not track versions, the user is given a new version in memory.
+   *
+   * @param email the email of the user
+   * @param found the user read from the database and its version
+   * @param condition checks whether the user can be kept, given the email
+   * @return the user in memory and its version, or the given user if it was not kept
+   */
+  VersionedUser keep(String email, VersionedUser found, Predicate<String> condition) {
+    Entry result = users.asMap().compute(email, (key, current) -> {
+      if (current != null || !condition.test(key)) {
+        return current;
+      }
+
+      String version = found.version() != null ? found.version() : newVersion();
+
+      return new Entry(found.user(), version, false, true, found.version());
+    });
+
+    VersionedUser kept = versioned(result);
+
+    return kept != null ? kept : found;
+  }
+
+  /**
+   * Runs the given action while the user's entry is locked. The action receives the entry, or
+   * {@code null} if there is none, and returns the entry to keep, or {@code null} to remove it.
+   *
+   * @param email the email of the user
+   * @param action the action to run
+   */
+  void lock(String email, BiFunction<String, Entry, Entry> action) {
+    users.asMap().compute(email, action);
+  }
+
+  @Override
+  public Set<String> emails() {
+    return users.asMap().entrySet().stream()
+        .filter(entry -> entry.getValue().user() != null)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  @Override
+  public int size() {
+    return (int) users.asMap().values().stream()
+        .filter(entry -> entry.user() != null)
+        .count();
+  }
+
+  @Nullable
+  private static VersionedUser versioned(@Nullable Entry entry) {
+    return entry != null && entry.user() != null
+        ? new VersionedUser(entry.user(), entry.version())
+        : null;
+  }
+
+  private static String newVersion() {
+    return UUID.randomUUID().toString();
+  }
+
+  /**
+   * A user held in memory.
+   *
+   * @param user the user, or {@code null} if the user was deleted and the deletion has not been
+   *             written to the database yet
+   * @param version the version of the user in memory, or {@code null} if the user was deleted
+   * @param pinned whether the user has a change that has not been written to the database yet
+   * @param stored whether the database has the user, as far as this instance knows
+   * @param storedVersion the version of the user in the database, or {@code null} if the
+   *                      database does not track versions
+   */
+  record Entry(@Nullable User user,
+               @Nullable String version,
+               boolean pinned,
+               boolean stored,
+               @Nullable String storedVersion) {
+
+    /**
+     * Creates a copy of this entry that can be evicted.
+     *
+     * @return the unpinned entry
+     */
+    Entry unpinned() {
+      return new Entry(user, version, false, stored, storedVersion);
+    }
+
+    /**
+     * Creates a copy of this entry for once a change to the user has been written to the
+     * database, so that the next change is written on top of it.
+     *
+     * @param written the user that the database now has and its version, or {@code null} if
+     *                the user was deleted
+     * @return the updated entry
+     */
+    Entry written(@Nullable VersionedUser written) {
+      return new Entry(user, version, pinned, written != null,
+          written != null ? written.version() : null);
+    }
+  }
+}
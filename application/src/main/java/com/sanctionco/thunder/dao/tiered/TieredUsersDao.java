@@ -0,0 +1,759 @@
+package com.sanctionco.thunder.dao.tiered;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.dao.inmemorydb.InMemoryDbUsersDao;
+import com.sanctionco.thunder.dao.inmemorydb.UserStore;
+import com.sanctionco.thunder.models.User;
+
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a {@link UsersDao} that keeps users in an in-memory tier in front of another database,
+ * such as DynamoDB. Lookups by email are served from memory, and a user that is not in memory yet
+ * is read from the database once and then kept. Writes are applied to memory and complete right
+ * away, and are written to the database in the background by a write-behind queue.
+ *
+ * <p>The queue holds at most one change per email. A change to a user whose previous change has
+ * not been sent yet replaces it, so a user that is updated many times between flushes is written
+ * once. Every {@code flushInterval}, the queued changes are sent in batches of {@code batchSize}
+ * concurrent requests. A change that fails is retried with exponential backoff, and is kept in the
+ * queue for the next flush if every retry fails. A change that the database rejects is dropped.
+ *
+ * <p>Once {@code maxPendingWrites} users have queued changes, a new write either waits for the
+ * queue to be flushed before it completes (write-through) or is rejected, depending on the
+ * configuration. A write that waits has already been queued, so it succeeds even if the flush
+ * fails to write some of the queued changes, which stay queued for the next flush. Queued changes
+ * are lost if the process stops before they are flushed, unless {@link #close()} is called first.
+ *
+ * <p>At most {@code maxSize} users without queued changes are kept in memory, and each of them
+ * is read from the database again {@code expireAfterWrite} after it was read or written, so that
+ * changes made by other instances are picked up. Users with queued changes are always kept until
+ * the change has been written.
+ *
+ * <p>Every user in memory has its own version, so that conditional updates are checked against
+ * memory. A queued change is only written if the user in the database still has the version that
+ * this instance last read or wrote, and a new user is only written if the database does not have
+ * it yet. If another instance changed the user in the meantime, the change is dropped, along with
+ * the user in memory, so that the user is read from the database again. Deletions are written
+ * regardless of the version, in the same way as deletions made through the API.
+ *
+ * <p>Property lookups and scans read the database directly, so they do not include changes that
+ * are still queued. The number of queued changes, the age of the oldest one, and the outcome of
+ * every write are reported under {@code com.sanctionco.thunder.dao.tiered.TieredUsersDao}.
+ *
+ * @see WriteBehindConfiguration
+ */
+public class TieredUsersDao implements UsersDao {
+  private static final Logger LOG = LoggerFactory.getLogger(TieredUsersDao.class);
+
+  private static final int GENERATION_STRIPES = 1024;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  private final UsersDao database;
+  private final TierUserStore tier;
+  private final QueueingUserStore store;
+  private final UsersDao memory;
+  private final WriteBehindConfiguration configuration;
+  private final ScheduledExecutorService flusher;
+
+  private final ConcurrentMap<String, PendingWrite> pending = new ConcurrentHashMap<>();
+  private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+  private final Counter written;
+  private final Counter coalesced;
+  private final Counter retries;
+  private final Counter failures;
+  private final Counter conflicts;
+  private final Counter writeThroughs;
+  private final Timer flushTime;
+
+  /**
+   * Constructs a new {@code TieredUsersDao}.
+   *
+   * @param database the database that every change is eventually written to
+   * @param configuration the in-memory tier and write-behind queue configuration
+   * @param metrics the {@code MetricRegistry} instance used to register queue metrics
+   */
+  public TieredUsersDao(UsersDao database,
+                        WriteBehindConfiguration configuration,
+                        MetricRegistry metrics) {
+    this.database = Objects.requireNonNull(database);
+    this.configuration = Objects.requireNonNull(configuration);
+    this.tier = new TierUserStore(configuration.getMaxSize(), configuration.getExpireAfterWrite());
+    this.store = new QueueingUserStore();
+    this.memory = new InMemoryDbUsersDao(store, Set.of());
+
+    String prefix = MetricRegistry.name(TieredUsersDao.class);
+
+    this.written = metrics.counter(MetricRegistry.name(prefix, "written"));
+    this.coalesced = metrics.counter(MetricRegistry.name(prefix, "coalesced"));
+    this.retries = metrics.counter(MetricRegistry.name(prefix, "retries"));
+    this.failures = metrics.counter(MetricRegistry.name(prefix, "failures"));
+    this.conflicts = metrics.counter(MetricRegistry.name(prefix, "conflicts"));
+    this.writeThroughs = metrics.counter(MetricRegistry.name(prefix, "write-throughs"));
+    this.flushTime = metrics.timer(MetricRegistry.name(prefix, "flush-time"));
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(prefix, "pending"),
+        () -> pending::size);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "lag"),
+        () -> this::lagMillis);
+
+    this.flusher = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("thunder-write-behind").daemon().factory());
+
+    long interval = configuration.getFlushInterval().toMilliseconds();
+    flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public CompletableFuture<User> insert(User user) {
+    Objects.requireNonNull(user);
+
+    // The user must be in memory if it exists, so that the insert is rejected as a conflict
+    return load(user.getEmail().getAddress())
+        .thenCompose(ignored -> memory.insert(user));
+  }
+
+  @Override
+  public CompletableFuture<User> findByEmail(String email) {
+    return findVersionedByEmail(email).thenApply(VersionedUser::user);
+  }
+
+  @Override
+  public CompletableFuture<VersionedUser> findVersionedByEmail(String email) {
+    Objects.requireNonNull(email);
+
+    return load(email).thenCompose(user -> user != null
+        ? CompletableFuture.completedFuture(user)
+        : CompletableFuture.failedFuture(notFound()));
+  }
+
+  @Override
+  public CompletableFuture<User> update(@Nullable String existingEmail, User user) {
+    return update(existingEmail, user, null).thenApply(VersionedUser::user);
+  }
+
+  /**
+   * Updates the user in memory, only if the user in memory still has the expected version. The
+   * version is the one that {@link #findVersionedByEmail(String)} returned, which changes with
+   * every change made through this instance, even before the change is written to the database.
+   *
+   * @param existingEmail the email of the user before the update. If the user's email is
+   *                      being updated, then this must not be {@code null}.
+   * @param user the updated user object to put in the database
+   * @param expectedVersion the version returned by {@link #findVersionedByEmail(String)}, or
+   *                        {@code null} to update regardless of the current version
+   * @return the user that was updated and its new version
+   */
+  @Override
+  public CompletableFuture<VersionedUser> update(@Nullable String existingEmail,
+                                                 User user,
+                                                 @Nullable String expectedVersion) {
+    Objects.requireNonNull(user);
+
+    String email = user.getEmail().getAddress();
+
+    if (existingEmail != null && !existingEmail.equals(email)) {
+      return CompletableFuture.allOf(load(existingEmail), load(email))
+          .thenCompose(ignored -> move(existingEmail, user, expectedVersion));
+    }
+
+    return load(email).thenCompose(ignored -> {
+      long now = Instant.now().toEpochMilli();
+      AtomicBoolean conflict = new AtomicBoolean();
+      VersionedUser updated;
+
+      try {
+        updated = store.compute(email, (key, existing) -> {
+          if (existing == null) {
+            return null;
+          }
+
+          if (!matches(expectedVersion, existing)) {
+            conflict.set(true);
+            return existing.user();
+          }
+
+          return user.withTime(creationTime(existing.user()), now);
+        });
+      } catch (DatabaseException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+
+      if (conflict.get()) {
+        return CompletableFuture.failedFuture(changed());
+      }
+
+      return updated != null
+          ? store.flush().thenApply(flushed -> updated)
+          : CompletableFuture.failedFuture(notFound());
+    });
+  }
+
+  @Override
+  public CompletableFuture<User> markVerified(String email, String token) {
+    Objects.requireNonNull(email);
+
+    return load(email).thenCompose(ignored -> memory.markVerified(email, token));
+  }
+
+  @Override
+  public CompletableFuture<User> delete(String email) {
+    Objects.requireNonNull(email);
+
+    return load(email).thenCompose(ignored -> memory.delete(email));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> findEmailsByProperty(String property,
+                                                             String value,
+                                                             int limit) {
+    return database.findEmailsByProperty(property, value, limit);
+  }
+
+  @Override
+  public CompletableFuture<UsersPage> scan(int segment,
+                                           int totalSegments,
+                                           @Nullable String startToken,
+                                           int limit) {
+    return database.scan(segment, totalSegments, startToken, limit);
+  }
+
+  @Override
+  public Flow.Publisher<User> scanAll() {
+    return database.scanAll();
+  }
+
+  /**
+   * Moves the user in memory to the new email in the same way as
+   * {@link InMemoryDbUsersDao#updateEmail(String, User)}, except that the existing user is only
+   * removed if it still has the expected version.
+   *
+   * @param existingEmail the email of the user before the update
+   * @param user the updated user object, with the new email
+   * @param expectedVersion the version that the existing user must have, or {@code null} to move
+   *                        the user regardless of its version
+   * @return the user that was moved and its new version
+   */
+  private CompletableFuture<VersionedUser> move(String existingEmail,
+                                                User user,
+                                                @Nullable String expectedVersion) {
+    VersionedUser current = tier.find(existingEmail);
+
+    if (current == null) {
+      return CompletableFuture.failedFuture(notFound());
+    }
+
+    if (!matches(expectedVersion, current)) {
+      return CompletableFuture.failedFuture(changed());
+    }
+
+    long now = Instant.now().toEpochMilli();
+    User moved = user.withTime(creationTime(current.user()), now);
+    String email = moved.getEmail().getAddress();
+    AtomicBoolean conflict = new AtomicBoolean();
+    AtomicBoolean removed = new AtomicBoolean();
+    VersionedUser claimed;
+
+    try {
+      claimed = store.compute(email, (key, existing) -> {
+        conflict.set(existing != null);
+        return existing != null ? existing.user() : moved;
+      });
+
+      if (conflict.get()) {
+        LOG.warn("A user with the new email {} already exists.", email);
+        return CompletableFuture.failedFuture(
+            new DatabaseException("A user with the new email address already exists.",
+                DatabaseException.Error.CONFLICT));
+      }
+
+      store.compute(existingEmail, (key, existing) -> {
+        if (existing == null || !existing.version().equals(current.version())) {
+          return existing != null ? existing.user() : null;
+        }
+
+        removed.set(true);
+        return null;
+      });
+
+      if (!removed.get()) {
+        // Release the new email, unless it has been changed since it was claimed
+        store.compute(email, (key, existing) ->
+            existing != null && !existing.version().equals(claimed.version())
+                ? existing.user()
+                : null);
+      }
+    } catch (DatabaseException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    if (!removed.get()) {
+      LOG.warn("The user {} was changed while its email was being updated.", existingEmail);
+      return store.flush().thenCompose(ignored ->
+          CompletableFuture.<VersionedUser>failedFuture(changed()));
+    }
+
+    return store.flush().thenApply(ignored -> claimed);
+  }
+
+  /**
+   * Writes every change that is currently queued to the database.
+   *
+   * @return a future that completes once the changes have been written, or completes
+   *     exceptionally with a {@link DatabaseException} if any of them could not be written
+   */
+  public CompletableFuture<Void> flush() {
+    return CompletableFuture.runAsync(() -> {
+      if (!flushPending()) {
+        throw new DatabaseException("Unable to write every queued change to the database.",
+            DatabaseException.Error.DATABASE_DOWN);
+      }
+    }, flusher);
+  }
+
+  /**
+   * Writes every queued change to the database and stops the background flushes, waiting up to
+   * 30 seconds for the final flush to complete. The database is closed afterwards.
+   *
+   * @throws IOException if the database cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    CompletableFuture<Void> flushed = flush();
+    flusher.shutdown();
+
+    try {
+      flushed.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      LOG.error("Unable to write {} queued changes to the database before shutting down.",
+          pending.size(), e);
+    }
+
+    database.close();
+  }
+
+  /**
+   * Gets the user with the given email from memory, reading it from the database and keeping it
+   * in memory if it is not there yet.
+   *
+   * @param email the email of the user
+   * @return a future that completes with the user and its version in memory, or with
+   *     {@code null} if there is no user
+   */
+  private CompletableFuture<VersionedUser> load(String email) {
+    VersionedUser user = tier.find(email);
+
+    // A queued change for a user that is not in memory is a deletion that may not have been
+    // written yet, so the database must not be read
+    if (user != null || pending.containsKey(email)) {
+      return CompletableFuture.completedFuture(user);
+    }
+
+    int stripe = stripe(email);
+    long generation = generations.get(stripe);
+
+    return database.findVersionedByEmail(email)
+        .exceptionallyCompose(throwable ->
+            hasError(throwable, DatabaseException.Error.USER_NOT_FOUND)
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.failedFuture(throwable))
+        .thenApply(found -> found != null ? keep(email, found, stripe, generation) : null);
+  }
+
+  /**
+   * Puts a user read from the database into memory, unless a change to the user has been made or
+   * written to the database since the read started, in which case the read may be out of date.
+   */
+  private VersionedUser keep(String email, VersionedUser found, int stripe, long generation) {
+    return tier.keep(email, found,
+        key -> !pending.containsKey(key) && generations.get(stripe) == generation);
+  }
+
+  /**
+   * Queues a change to the given user. This is called while the user's entry is locked.
+   */
+  private void enqueue(String email, @Nullable User user) {
+    long now = Instant.now().toEpochMilli();
+
+    pending.compute(email, (key, existing) -> {
+      // A change that has not been taken by a flush yet is replaced, keeping its age
+      if (existing != null && !existing.taken) {
+        coalesced.inc();
+        return new PendingWrite(user, existing.queuedAt);
+      }
+
+      return new PendingWrite(user, now);
+    });
+  }
+
+  /**
+   * Writes the queued changes to the database in batches. Only changes queued before the flush
+   * started are written, so that a steady stream of new changes cannot keep the flush running.
+   *
+   * @return true if every change was written, false otherwise
+   */
+  private boolean flushPending() {
+    long cutoff = Instant.now().toEpochMilli();
+    Set<String> failed = new HashSet<>();
+
+    try (Timer.Context ignored = flushTime.time()) {
+      for (var batch = take(cutoff, failed); !batch.isEmpty(); batch = take(cutoff, failed)) {
+        Map<String, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+
+        batch.forEach((email, write) -> results.put(email, write(email, write, 0)
+            .handle((stored, throwable) -> finish(email, write, stored, throwable))));
+
+        results.forEach((email, result) -> {
+          if (!result.join()) {
+            failed.add(email);
+          }
+        });
+      }
+    }
+
+    return failed.isEmpty();
+  }
+
+  private void flushQuietly() {
+    try {
+      flushPending();
+    } catch (RuntimeException e) {
+      LOG.error("Unable to flush queued changes to the database.", e);
+    }
+  }
+
+  /**
+   * Marks up to {@code batchSize} queued changes as taken by the current flush.
+   */
+  private Map<String, PendingWrite> take(long cutoff, Set<String> skipped) {
+    Map<String, PendingWrite> batch = new LinkedHashMap<>();
+
+    for (String email : pending.keySet()) {
+      if (batch.size() >= configuration.getBatchSize()) {
+        break;
+      }
+
+      if (skipped.contains(email)) {
+        continue;
+      }
+
+      // Lock the user's entry without changing it, so that the change cannot be replaced
+      // while it is being taken
+      tier.lock(email, (key, entry) -> {
+        PendingWrite write = pending.get(key);
+
+        if (write != null && !write.taken && write.queuedAt <= cutoff) {
+          // The change is written on top of the user that the database had when it was last
+          // read or written
+          write.taken = true;
+          write.stored = entry != null && entry.stored();
+          write.storedVersion = entry != null ? entry.storedVersion() : null;
+          batch.put(key, write);
+        }
+
+        return entry;
+      });
+    }
+
+    return batch;
+  }
+
+  /**
+   * Writes a single change to the database, retrying with exponential backoff if it fails.
+   * Changes that conflict with the database or are rejected by it are not retried.
+   */
+  private CompletableFuture<VersionedUser> write(String email, PendingWrite write, int attempt) {
+    return send(email, write).exceptionallyCompose(throwable -> {
+      if (attempt >= configuration.getMaxRetries()
+          || hasError(throwable, DatabaseException.Error.REQUEST_REJECTED)
+          || isConflict(throwable)) {
+        return CompletableFuture.failedFuture(throwable);
+      }
+
+      retries.inc();
+
+      long delay = configuration.getRetryBackoff().toMilliseconds() << attempt;
+
+      return CompletableFuture
+          .runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+          .thenCompose(ignored -> write(email, write, attempt + 1));
+    });
+  }
+
+  /**
+   * Sends a single change to the database. A user that the database has is updated only if it
+   * still has the version that this instance last saw, and a new user is inserted only if the
+   * database does not have it, so that changes made by other instances are never overwritten.
+   *
+   * @return a future that completes with the user in the database and its version, or with
+   *     {@code null} if the database no longer has the user
+   */
+  private CompletableFuture<VersionedUser> send(String email, PendingWrite write) {
+    if (write.user == null) {
+      // A user that was never written does not have to be deleted
+      return !write.stored
+          ? CompletableFuture.completedFuture(null)
+          : database.delete(email)
+              .<VersionedUser>thenApply(deleted -> null)
+              .exceptionallyCompose(throwable ->
+                  hasError(throwable, DatabaseException.Error.USER_NOT_FOUND)
+                      ? CompletableFuture.completedFuture(null)
+                      : CompletableFuture.failedFuture(throwable));
+    }
+
+    if (write.stored) {
+      return database.update(null, write.user, write.storedVersion);
+    }
+
+    // The insert does not return the version of the new user, so read it for the next change.
+    // If the read fails, the next change is written regardless of the version.
+    return database.insert(write.user).thenCompose(inserted ->
+        database.findVersionedByEmail(email)
+            .exceptionally(throwable -> new VersionedUser(inserted, null)));
+  }
+
+  /**
+   * Removes a change from the queue once it has been written or rejected, or returns it to the
+   * queue so that it is tried again at the next flush. If the change conflicts with the database,
+   * the user is dropped from memory along with any later change to it, so that the user is read
+   * from the database again.
+   *
+   * @return true if the change was written, false otherwise
+   */
+  private boolean finish(String email,
+                         PendingWrite write,
+                         @Nullable VersionedUser stored,
+                         @Nullable Throwable throwable) {
+    boolean rejected = hasError(throwable, DatabaseException.Error.REQUEST_REJECTED);
+    boolean conflict = isConflict(throwable);
+    boolean retry = throwable != null && !rejected && !conflict;
+
+    tier.lock(email, (key, entry) -> {
+      if (conflict) {
+        // Every change to the user in memory was made on top of a user that is out of date
+        pending.remove(key);
+        generations.incrementAndGet(stripe(key));
+        return null;
+      }
+
+      if (retry && pending.get(key) == write) {
+        write.taken = false;
+        return entry;
+      }
+
+      // A later change to the user is written on top of the user that the database now has
+      TierUserStore.Entry updated = throwable == null && entry != null
+          ? entry.written(stored)
+          : entry;
+
+      if (pending.remove(key, write)) {
+        // Reads of the database that started before this point may be out of date
+        generations.incrementAndGet(stripe(key));
+
+        // Once the latest change to the user is gone from the queue, the user can be evicted
+        return updated != null && updated.user() != null ? updated.unpinned() : null;
+      }
+
+      return updated;
+    });
+
+    if (throwable == null) {
+      written.inc();
+      return true;
+    }
+
+    failures.inc();
+
+    if (conflict) {
+      conflicts.inc();
+      LOG.error("The user {} was changed in the database by another request. The queued change"
+          + " was dropped, and the user will be read from the database again.", email, throwable);
+    } else if (rejected) {
+      LOG.error("The database rejected the queued change to user {}. The change was dropped.",
+          email, throwable);
+    } else {
+      LOG.warn("Unable to write the queued change to user {}. It will be retried later.",
+          email, throwable);
+    }
+
+    return false;
+  }
+
+  private boolean isFull() {
+    return pending.size() >= configuration.getMaxPendingWrites();
+  }
+
+  private long lagMillis() {
+    long now = Instant.now().toEpochMilli();
+
+    return pending.values().stream()
+        .mapToLong(write -> now - write.queuedAt)
+        .max()
+        .orElse(0L);
+  }
+
+  private static int stripe(String email) {
+    return Math.floorMod(email.hashCode(), GENERATION_STRIPES);
+  }
+
+  /**
+   * Checks whether the database had a different user than the one that a change was made on top
+   * of. An update of a user that the database no longer has is a conflict as well, so that the
+   * user is not written again after another instance deleted it.
+   */
+  private static boolean isConflict(@Nullable Throwable throwable) {
+    return hasError(throwable, DatabaseException.Error.CONFLICT)
+        || hasError(throwable, DatabaseException.Error.USER_NOT_FOUND);
+  }
+
+  private static boolean matches(@Nullable String expectedVersion, VersionedUser existing) {
+    return expectedVersion == null || expectedVersion.equals(existing.version());
+  }
+
+  private static long creationTime(User user) {
+    return (long) user.getProperties().get("creationTime");
+  }
+
+  private static DatabaseException notFound() {
+    return new DatabaseException("User not found in the database.",
+        DatabaseException.Error.USER_NOT_FOUND);
+  }
+
+  private static DatabaseException changed() {
+    return new DatabaseException("The user was changed by another request. Please try again.",
+        DatabaseException.Error.CONFLICT);
+  }
+
+  private static boolean hasError(@Nullable Throwable throwable, DatabaseException.Error error) {
+    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+
+    return cause instanceof DatabaseException e && e.getError() == error;
+  }
+
+  /**
+   * The latest change to a user that has not been written to the database yet. A {@code null}
+   * user means that the user was deleted.
+   */
+  private static final class PendingWrite {
+    private final User user;
+    private final long queuedAt;
+
+    // Only read or changed while the user's entry in the tier is locked
+    private volatile boolean taken;
+
+    // Whether the database had the user, and its version, when the change was taken by a flush
+    private volatile boolean stored;
+    private volatile String storedVersion;
+
+    private PendingWrite(@Nullable User user, long queuedAt) {
+      this.user = user;
+      this.queuedAt = queuedAt;
+    }
+  }
+
+  /**
+   * Keeps users in the tier and queues every change to them. Once the queue is full, writes
+   * either wait for a flush or are rejected before they are applied.
+   */
+  private class QueueingUserStore implements UserStore {
+
+    @Override
+    public User get(String email) {
+      return tier.get(email);
+    }
+
+    @Override
+    public User compute(String email,
+                        BiFunction<String, User, User> remapping,
+                        ChangeListener listener) {
+      checkCapacity(email);
+
+      return tier.compute(email, remapping, (key, oldUser, newUser) -> {
+        listener.onChange(key, oldUser, newUser);
+        enqueue(key, newUser);
+      });
+    }
+
+    /**
+     * Computes the user in the same way as {@link #compute(String, BiFunction, ChangeListener)},
+     * giving the function the version of the user as well.
+     */
+    @Nullable
+    VersionedUser compute(String email, BiFunction<String, VersionedUser, User> remapping) {
+      checkCapacity(email);
+
+      return tier.computeVersioned(email, remapping,
+          (key, oldUser, newUser) -> enqueue(key, newUser));
+    }
+
+    private void checkCapacity(String email) {
+      if (!configuration.isWriteThroughWhenFull() && isFull() && !pending.containsKey(email)) {
+        throw new DatabaseException("The write-behind queue is full.",
+            DatabaseException.Error.DATABASE_DOWN);
+      }
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+      if (!isFull() || !configuration.isWriteThroughWhenFull()) {
+        return CompletableFuture.completedFuture(null);
+      }
+
+      writeThroughs.inc();
+
+      // The change is already queued and is kept for the next flush if it cannot be written, so
+      // a failed flush only slows the write down and does not fail it
+      return TieredUsersDao.this.flush().exceptionally(throwable -> {
+        LOG.warn("Unable to write every queued change while the write-behind queue is full.",
+            throwable);
+        return null;
+      });
+    }
+
+    @Override
+    public Set<String> emails() {
+      return tier.emails();
+    }
+
+    @Override
+    public int size() {
+      return tier.size();
+    }
+  }
+}
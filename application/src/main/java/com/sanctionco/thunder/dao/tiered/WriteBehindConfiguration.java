@@ -0,0 +1,103 @@
+package com.sanctionco.thunder.dao.tiered;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional configuration options for the in-memory tier and write-behind queue that can
+ * sit in front of the database. See the {@code UsersDaoFactory} class for more details.
+ */
+public class WriteBehindConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_MAX_PENDING_WRITES = 10_000;
+  private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.seconds(1);
+  private static final int DEFAULT_BATCH_SIZE = 25;
+  private static final int DEFAULT_MAX_RETRIES = 3;
+  private static final Duration DEFAULT_RETRY_BACKOFF = Duration.milliseconds(100);
+  private static final boolean DEFAULT_WRITE_THROUGH_WHEN_FULL = true;
+  private static final long DEFAULT_MAX_SIZE = 100_000L;
+  private static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.minutes(1);
+
+  /**
+   * Constructs a new instance of {@code WriteBehindConfiguration} with default values.
+   */
+  public WriteBehindConfiguration() {
+    this.enabled = DEFAULT_ENABLED;
+    this.maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+    this.flushInterval = DEFAULT_FLUSH_INTERVAL;
+    this.batchSize = DEFAULT_BATCH_SIZE;
+    this.maxRetries = DEFAULT_MAX_RETRIES;
+    this.retryBackoff = DEFAULT_RETRY_BACKOFF;
+    this.writeThroughWhenFull = DEFAULT_WRITE_THROUGH_WHEN_FULL;
+    this.maxSize = DEFAULT_MAX_SIZE;
+    this.expireAfterWrite = DEFAULT_EXPIRE_AFTER_WRITE;
+  }
+
+  @Valid @JsonProperty("enabled")
+  private final Boolean enabled;
+
+  @Min(1) @JsonProperty("maxPendingWrites")
+  private final Integer maxPendingWrites;
+
+  @Valid @JsonProperty("flushInterval")
+  private final Duration flushInterval;
+
+  @Min(1) @JsonProperty("batchSize")
+  private final Integer batchSize;
+
+  @Min(0) @Max(30) @JsonProperty("maxRetries")
+  private final Integer maxRetries;
+
+  @Valid @JsonProperty("retryBackoff")
+  private final Duration retryBackoff;
+
+  @Valid @JsonProperty("writeThroughWhenFull")
+  private final Boolean writeThroughWhenFull;
+
+  @Min(1) @JsonProperty("maxSize")
+  private final Long maxSize;
+
+  @Valid @JsonProperty("expireAfterWrite")
+  private final Duration expireAfterWrite;
+
+  public Boolean isEnabled() {
+    return enabled;
+  }
+
+  public Integer getMaxPendingWrites() {
+    return maxPendingWrites;
+  }
+
+  public Duration getFlushInterval() {
+    return flushInterval;
+  }
+
+  public Integer getBatchSize() {
+    return batchSize;
+  }
+
+  public Integer getMaxRetries() {
+    return maxRetries;
+  }
+
+  public Duration getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  public Boolean isWriteThroughWhenFull() {
+    return writeThroughWhenFull;
+  }
+
+  public Long getMaxSize() {
+    return maxSize;
+  }
+
+  public Duration getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+}
@@ -1,21 +1,32 @@
 package com.sanctionco.thunder.email;
 
 import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.secrets.SecretProvider;
 
 import dagger.Module;
 import dagger.Provides;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.util.Objects;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
- * Provides object dependencies needed to send verification emails, including the email service
- * and message options.
+ * Provides object dependencies needed to send verification emails, including the email service,
+ * message options, and verification token service. When the outbox is enabled, the email service
+ * queues each email and sends it in the background until the application stops.
  *
  * @see com.sanctionco.thunder.ThunderComponent
  */
 @Module
 public class EmailModule {
+  private static final Logger LOG = LoggerFactory.getLogger(EmailModule.class);
+
   private final EmailServiceFactory emailServiceFactory;
 
   /**
@@ -30,7 +41,23 @@ public class EmailModule {
   @Singleton
   @Provides
   EmailService provideEmailService(MetricRegistry metrics) {
-    return emailServiceFactory.createEmailService(metrics);
+    EmailService emailService = emailServiceFactory.createEmailService(metrics);
+    OutboxConfiguration outboxConfiguration = emailServiceFactory.getOutboxConfiguration();
+
+    if (emailService == null || !outboxConfiguration.isEnabled()) {
+      return emailService;
+    }
+
+    LOG.info("Email outbox: maxMessagesPerSecond: {}, batchSize: {}, journalDirectory: {}",
+        outboxConfiguration.getMaxMessagesPerSecond(),
+        outboxConfiguration.getBatchSize(),
+        outboxConfiguration.getJournalDirectory());
+
+    try {
+      return new OutboxEmailService(emailService, outboxConfiguration, metrics);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to load the email outbox journal from disk.", e);
+    }
   }
 
   @Singleton
@@ -38,4 +65,28 @@ public class EmailModule {
   EmailHealthCheck provideEmailHealthCheck() {
     return emailServiceFactory.createHealthCheck();
   }
+
+  @Singleton
+  @Provides
+  VerificationTokenService provideVerificationTokenService(SecretProvider secretProvider) {
+    VerificationTokenConfiguration configuration
+        = emailServiceFactory.getVerificationTokenConfiguration();
+
+    if (!configuration.isSigned()) {
+      return new VerificationTokenService();
+    }
+
+    String key = secretProvider.lookup(configuration.getSecretName());
+
+    if (key == null) {
+      throw new IllegalStateException(String.format(
+          "The verification token key %s was not found.", configuration.getSecretName()));
+    }
+
+    LOG.info("Verification tokens will be signed and expire after {}.",
+        configuration.getExpiration());
+
+    return new VerificationTokenService(key.getBytes(StandardCharsets.UTF_8),
+        configuration.getExpiration().toJavaDuration(), Clock.systemUTC());
+  }
 }
@@ -4,6 +4,8 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.sanctionco.thunder.models.Email;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
@@ -18,18 +20,25 @@ public abstract class EmailService {
   private static final Logger LOG = LoggerFactory.getLogger(EmailService.class);
 
   private final MessageOptions messageOptions;
+  private final MessageTemplate htmlTemplate;
+  private final MessageTemplate textTemplate;
 
   private final Counter emailSendSuccessCounter;
   private final Counter emailSendFailureCounter;
 
   /**
-   * Constructs a new instance of {@code EmailService}.
+   * Constructs a new instance of {@code EmailService}. The message bodies are compiled into
+   * templates here, so that they are not searched for placeholders each time an email is sent.
    *
    * @param messageOptions the configurable content of email messages
    * @param metrics the metric registry used to initialize metrics
    */
   public EmailService(MessageOptions messageOptions, MetricRegistry metrics) {
     this.messageOptions = Objects.requireNonNull(messageOptions);
+    this.htmlTemplate = compileTemplate(messageOptions.bodyHtml(),
+        messageOptions.bodyHtmlUrlPlaceholder());
+    this.textTemplate = compileTemplate(messageOptions.bodyText(),
+        messageOptions.bodyTextUrlPlaceholder());
 
     emailSendSuccessCounter = metrics.counter(MetricRegistry.name(
         EmailService.class, "email-send-success"));
@@ -45,10 +54,29 @@ public abstract class EmailService {
    * @return {@code true} if the message was successfully sent; {@code false} otherwise
    */
   public CompletableFuture<Boolean> sendVerificationEmail(Email to, String verificationUrl) {
-    var htmlBody = replaceUrlPlaceholder(messageOptions.bodyHtml(),
-        messageOptions.bodyHtmlUrlPlaceholder(), verificationUrl);
-    var textBody = replaceUrlPlaceholder(messageOptions.bodyText(),
-        messageOptions.bodyTextUrlPlaceholder(), verificationUrl);
+    return sendVerificationEmail(to, verificationUrl, Map.of());
+  }
+
+  /**
+   * Sends a verification email to the provided email address, filling in the given values for
+   * any of the other placeholders in the message bodies, such as the expiry or locale.
+   *
+   * @param to the message recipient's email information
+   * @param verificationUrl the URL that the recipient should click to verify their email address
+   * @param values the values of any other placeholders in the message bodies
+   * @return {@code true} if the message was successfully sent; {@code false} otherwise
+   */
+  public CompletableFuture<Boolean> sendVerificationEmail(
+      Email to, String verificationUrl, Map<MessageTemplate.Placeholder, String> values) {
+    var allValues = new EnumMap<MessageTemplate.Placeholder, String>(
+        MessageTemplate.Placeholder.class);
+
+    allValues.putAll(values);
+    allValues.put(MessageTemplate.Placeholder.URL, verificationUrl);
+    allValues.put(MessageTemplate.Placeholder.EMAIL, to.getAddress());
+
+    var htmlBody = htmlTemplate.render(allValues);
+    var textBody = textTemplate.render(allValues);
 
     return sendEmail(to, messageOptions.subject(), htmlBody, textBody)
         .thenApply(res -> {
@@ -71,6 +99,15 @@ public abstract class EmailService {
     return messageOptions.successHtml();
   }
 
+  /**
+   * Provides the configured content of email messages.
+   *
+   * @return the message options
+   */
+  MessageOptions getMessageOptions() {
+    return messageOptions;
+  }
+
   /**
    * Sends an email with the given subject and body to the given email address.
    *
@@ -86,19 +123,30 @@ public abstract class EmailService {
                                                        String bodyString);
 
   /**
-   * Replaces the placeholder inside the given file contents with the given URL.
+   * Compiles the given message body into a template, using the given string for the URL
+   * placeholder and the default string for every other placeholder.
    *
-   * @param fileContents the file contents that contain the placeholder
-   * @param placeholder the placeholder string that exists in the file contents
-   * @param url the URL to insert in place of the placeholder
-   * @return the modified file contents
+   * @param contents the message body
+   * @param urlPlaceholder the placeholder string for the URL
+   * @return the compiled template
    */
-  String replaceUrlPlaceholder(String fileContents, String placeholder, String url) {
-    if (!fileContents.contains(placeholder)) {
+  static MessageTemplate compileTemplate(String contents, String urlPlaceholder) {
+    var placeholderStrings = new EnumMap<MessageTemplate.Placeholder, String>(
+        MessageTemplate.Placeholder.class);
+
+    for (var placeholder : MessageTemplate.Placeholder.values()) {
+      placeholderStrings.put(placeholder, placeholder.getDefaultString());
+    }
+
+    placeholderStrings.put(MessageTemplate.Placeholder.URL, urlPlaceholder);
+
+    MessageTemplate template = MessageTemplate.compile(contents, placeholderStrings);
+
+    if (!template.contains(MessageTemplate.Placeholder.URL)) {
       LOG.warn("The file contents do not contain any instances of the URL placeholder {}",
-          placeholder);
+          urlPlaceholder);
     }
 
-    return fileContents.replaceAll(placeholder, url);
+    return template;
   }
 }
@@ -9,6 +9,7 @@ import com.sanctionco.thunder.util.FileUtilities;
 import io.dropwizard.jackson.Discoverable;
 
 import jakarta.annotation.Nullable;
+import jakarta.validation.Valid;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -62,6 +63,21 @@ public abstract class EmailServiceFactory implements Discoverable {
     return fromAddress;
   }
 
+  @Valid @JsonProperty("verificationTokens")
+  private final VerificationTokenConfiguration verificationTokenConfiguration = null;
+
+  public VerificationTokenConfiguration getVerificationTokenConfiguration() {
+    return Optional.ofNullable(verificationTokenConfiguration)
+        .orElseGet(VerificationTokenConfiguration::new);
+  }
+
+  @Valid @JsonProperty("outbox")
+  private final OutboxConfiguration outboxConfiguration = null;
+
+  public OutboxConfiguration getOutboxConfiguration() {
+    return Optional.ofNullable(outboxConfiguration).orElseGet(OutboxConfiguration::new);
+  }
+
   /**
    * Returns whether or not email verification is enabled.
    *
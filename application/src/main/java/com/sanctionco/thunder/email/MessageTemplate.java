@@ -0,0 +1,152 @@
+package com.sanctionco.thunder.email;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Provides an email body that has been split into literal text and placeholders once, so that
+ * each email can be built by appending the literal text and the placeholder values, without
+ * searching the body again.
+ *
+ * <p>A placeholder that has no value when the template is rendered is left in the output as it
+ * was written in the template.
+ */
+public final class MessageTemplate {
+
+  /**
+   * The values that can be inserted into an email body, along with the string that marks each
+   * of them in the body by default.
+   */
+  public enum Placeholder {
+    URL("CODEGEN-URL"),
+    EMAIL("CODEGEN-EMAIL"),
+    EXPIRY("CODEGEN-EXPIRY"),
+    LOCALE("CODEGEN-LOCALE");
+
+    private final String defaultString;
+
+    Placeholder(String defaultString) {
+      this.defaultString = defaultString;
+    }
+
+    public String getDefaultString() {
+      return defaultString;
+    }
+  }
+
+  // The literal text before, between, and after each placeholder in the template
+  private final String[] literals;
+  private final Placeholder[] placeholders;
+  private final String[] placeholderStrings;
+  private final int literalLength;
+
+  private MessageTemplate(List<String> literals,
+                          List<Placeholder> placeholders,
+                          List<String> placeholderStrings) {
+    this.literals = literals.toArray(String[]::new);
+    this.placeholders = placeholders.toArray(Placeholder[]::new);
+    this.placeholderStrings = placeholderStrings.toArray(String[]::new);
+    this.literalLength = literals.stream().mapToInt(String::length).sum();
+  }
+
+  /**
+   * Splits the given contents into literal text and placeholders. Where two placeholder strings
+   * start at the same position, the longer one is used.
+   *
+   * @param contents the email body
+   * @param placeholderStrings the string that marks each placeholder in the body. A placeholder
+   *                           that is not in the map, or has an empty string, is not replaced.
+   * @return the compiled template
+   */
+  public static MessageTemplate compile(String contents,
+                                        Map<Placeholder, String> placeholderStrings) {
+    Objects.requireNonNull(contents);
+    Objects.requireNonNull(placeholderStrings);
+
+    List<String> literals = new ArrayList<>();
+    List<Placeholder> placeholders = new ArrayList<>();
+    List<String> strings = new ArrayList<>();
+
+    int start = 0;
+
+    while (true) {
+      Placeholder next = null;
+      int nextIndex = -1;
+
+      for (var entry : placeholderStrings.entrySet()) {
+        String string = entry.getValue();
+
+        if (string == null || string.isEmpty()) {
+          continue;
+        }
+
+        int index = contents.indexOf(string, start);
+
+        if (index >= 0 && (nextIndex < 0 || index < nextIndex
+            || (index == nextIndex && string.length() > placeholderStrings.get(next).length()))) {
+          next = entry.getKey();
+          nextIndex = index;
+        }
+      }
+
+      if (next == null) {
+        literals.add(contents.substring(start));
+        return new MessageTemplate(literals, placeholders, strings);
+      }
+
+      String string = placeholderStrings.get(next);
+
+      literals.add(contents.substring(start, nextIndex));
+      placeholders.add(next);
+      strings.add(string);
+
+      start = nextIndex + string.length();
+    }
+  }
+
+  /**
+   * Determines whether the template contains the given placeholder.
+   *
+   * @param placeholder the placeholder to look for
+   * @return true if the placeholder appears at least once in the template
+   */
+  public boolean contains(Placeholder placeholder) {
+    for (Placeholder existing : placeholders) {
+      if (existing == placeholder) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Builds the email body with each placeholder replaced by its value. Values are inserted as
+   * they are, so they can safely contain any character.
+   *
+   * @param values the value of each placeholder
+   * @return the email body
+   */
+  public String render(Map<Placeholder, String> values) {
+    String[] resolved = new String[placeholders.length];
+    int length = literalLength;
+
+    for (int i = 0; i < placeholders.length; i++) {
+      String value = values.get(placeholders[i]);
+
+      resolved[i] = value != null ? value : placeholderStrings[i];
+      length += resolved[i].length();
+    }
+
+    // The exact length is known, so the builder never has to grow
+    StringBuilder builder = new StringBuilder(length).append(literals[0]);
+
+    for (int i = 0; i < resolved.length; i++) {
+      builder.append(resolved[i]).append(literals[i + 1]);
+    }
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,96 @@
+package com.sanctionco.thunder.email;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Provides optional configuration options for the outbox that queues verification emails and
+ * sends them in the background. When a journal directory is set, queued emails are saved to disk
+ * so that they are still sent after a restart. See the {@code EmailServiceFactory} class for more
+ * details.
+ */
+public class OutboxConfiguration {
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_MAX_PENDING_MESSAGES = 10_000;
+  private static final double DEFAULT_MAX_MESSAGES_PER_SECOND = 14.0;
+  private static final Duration DEFAULT_DISPATCH_INTERVAL = Duration.seconds(1);
+  private static final int DEFAULT_BATCH_SIZE = 50;
+  private static final int DEFAULT_MAX_RETRIES = 5;
+  private static final Duration DEFAULT_RETRY_BACKOFF = Duration.seconds(1);
+
+  /**
+   * Constructs a new instance of {@code OutboxConfiguration} with default values.
+   */
+  public OutboxConfiguration() {
+    this.enabled = DEFAULT_ENABLED;
+    this.journalDirectory = null;
+    this.maxPendingMessages = DEFAULT_MAX_PENDING_MESSAGES;
+    this.maxMessagesPerSecond = DEFAULT_MAX_MESSAGES_PER_SECOND;
+    this.dispatchInterval = DEFAULT_DISPATCH_INTERVAL;
+    this.batchSize = DEFAULT_BATCH_SIZE;
+    this.maxRetries = DEFAULT_MAX_RETRIES;
+    this.retryBackoff = DEFAULT_RETRY_BACKOFF;
+  }
+
+  @Valid @JsonProperty("enabled")
+  private final Boolean enabled;
+
+  @JsonProperty("journalDirectory")
+  private final String journalDirectory;
+
+  @Min(1) @JsonProperty("maxPendingMessages")
+  private final Integer maxPendingMessages;
+
+  @DecimalMin(value = "0", inclusive = false) @JsonProperty("maxMessagesPerSecond")
+  private final Double maxMessagesPerSecond;
+
+  @Valid @JsonProperty("dispatchInterval")
+  private final Duration dispatchInterval;
+
+  @Min(1) @JsonProperty("batchSize")
+  private final Integer batchSize;
+
+  @Min(0) @Max(30) @JsonProperty("maxRetries")
+  private final Integer maxRetries;
+
+  @Valid @JsonProperty("retryBackoff")
+  private final Duration retryBackoff;
+
+  public Boolean isEnabled() {
+    return enabled;
+  }
+
+  public String getJournalDirectory() {
+    return journalDirectory;
+  }
+
+  public Integer getMaxPendingMessages() {
+    return maxPendingMessages;
+  }
+
+  public Double getMaxMessagesPerSecond() {
+    return maxMessagesPerSecond;
+  }
+
+  public Duration getDispatchInterval() {
+    return dispatchInterval;
+  }
+
+  public Integer getBatchSize() {
+    return batchSize;
+  }
+
+  public Integer getMaxRetries() {
+    return maxRetries;
+  }
+
+  public Duration getRetryBackoff() {
+    return retryBackoff;
+  }
+}
@@ -0,0 +1,496 @@
+package com.sanctionco.thunder.email;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.RateLimiter;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.inmemorydb.WriteAheadLog;
+import com.sanctionco.thunder.models.Email;
+
+import jakarta.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides an {@link EmailService} that queues each email and sends it from a background thread
+ * through another {@code EmailService}. An email is acknowledged as soon as it is queued, so the
+ * request that sent it does not wait for the email provider.
+ *
+ * <p>When a journal directory is configured, each email is saved to a {@link WriteAheadLog} in
+ * that directory before it is acknowledged, and every email that was not sent is loaded from the
+ * journal when the service starts. An email may be sent twice if the service stops after it was
+ * sent but before that was recorded. Without a journal, queued emails are lost if the JVM exits
+ * before {@link #close()} is called.
+ *
+ * <p>Queued emails are sent in batches, no faster than the configured number of emails per
+ * second, so that the email provider's sending quota is never exceeded. An email that could not
+ * be sent is tried again after an exponential backoff, and is dropped once it has been retried
+ * the configured number of times.
+ *
+ * <p>The number of queued emails, the age of the oldest queued email, and counts of the emails
+ * that were sent, retried, dropped, or rejected because the outbox was full are reported under
+ * {@code com.sanctionco.thunder.email.OutboxEmailService}, and the journal metrics under
+ * {@code com.sanctionco.thunder.email.OutboxEmailService.journal}. Since an email succeeds as
+ * soon as it is queued, the {@code email-send-success} and {@code email-send-failure} counters
+ * of {@link EmailService} count the emails that were queued or rejected, not the emails that were
+ * delivered. Deliveries are counted by the {@code sent} and {@code dropped} counters.
+ *
+ * @see OutboxConfiguration
+ */
+public class OutboxEmailService extends EmailService implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(OutboxEmailService.class);
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  // The number of journal records for emails that are no longer queued before it is compacted
+  private static final long COMPACTION_THRESHOLD = 1_000;
+
+  private final EmailService delegate;
+  private final OutboxConfiguration configuration;
+  private final RateLimiter rateLimiter;
+  @Nullable private final WriteAheadLog journal;
+  private final ScheduledExecutorService dispatcher;
+
+  // Every email that has not been sent or dropped, by id
+  private final ConcurrentMap<String, QueuedEmail> queued = new ConcurrentHashMap<>();
+
+  // The queued emails that are not waiting for a retry backoff, in the order they were queued
+  private final Queue<QueuedEmail> ready = new ConcurrentLinkedQueue<>();
+
+  // Guards journal appends together with changes to the queued emails, so that a compaction
+  // never misses an email. Also guards journalRecords.
+  private final Object journalLock = new Object();
+  private long journalRecords;
+
+  private final Counter sent;
+  private final Counter retries;
+  private final Counter dropped;
+  private final Counter rejected;
+
+  /**
+   * Constructs a new {@code OutboxEmailService}, loading any emails that were saved in the
+   * configured journal directory but not sent.
+   *
+   * @param delegate the email service that queued emails are sent through
+   * @param configuration the outbox configuration
+   * @param metrics the {@code MetricRegistry} instance used to register outbox metrics
+   * @throws IOException if the journal cannot be read or opened
+   */
+  public OutboxEmailService(EmailService delegate,
+                            OutboxConfiguration configuration,
+                            MetricRegistry metrics) throws IOException {
+    super(delegate.getMessageOptions(), metrics);
+
+    this.delegate = delegate;
+    this.configuration = Objects.requireNonNull(configuration);
+    this.rateLimiter = RateLimiter.create(configuration.getMaxMessagesPerSecond());
+
+    String prefix = MetricRegistry.name(OutboxEmailService.class);
+
+    this.sent = metrics.counter(MetricRegistry.name(prefix, "sent"));
+    this.retries = metrics.counter(MetricRegistry.name(prefix, "retries"));
+    this.dropped = metrics.counter(MetricRegistry.name(prefix, "dropped"));
+    this.rejected = metrics.counter(MetricRegistry.name(prefix, "rejected"));
+
+    metrics.<Gauge<Integer>>gauge(MetricRegistry.name(prefix, "pending"),
+        () -> queued::size);
+    metrics.<Gauge<Long>>gauge(MetricRegistry.name(prefix, "age"),
+        () -> this::ageMillis);
+
+    if (configuration.getJournalDirectory() != null) {
+      Path directory = Path.of(configuration.getJournalDirectory());
+
+      recover(directory);
+      this.journal = new WriteAheadLog(directory, metrics, MetricRegistry.name(prefix, "journal"));
+    } else {
+      this.journal = null;
+    }
+
+    this.dispatcher = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("thunder-email-outbox").daemon().factory());
+
+    long interval = configuration.getDispatchInterval().toMilliseconds();
+    dispatcher.scheduleWithFixedDelay(this::dispatchQuietly, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queues an email to be sent in the background. If a journal is configured, the returned future
+   * completes once the email has been saved to disk.
+   *
+   * @param to the message recipient's email information
+   * @param subjectString the subject of the message
+   * @param htmlBodyString the HTML body of the message
+   * @param bodyString the text body of the message
+   * @return {@code true} if the message was queued; {@code false} if the outbox is full or the
+   *         message could not be saved
+   */
+  @Override
+  public CompletableFuture<Boolean> sendEmail(Email to,
+                                              String subjectString,
+                                              String htmlBodyString,
+                                              String bodyString) {
+    Objects.requireNonNull(to);
+
+    if (queued.size() >= configuration.getMaxPendingMessages()) {
+      rejected.inc();
+      LOG.warn("The email outbox is full. The email to {} was not sent.", to.getAddress());
+
+      return CompletableFuture.completedFuture(false);
+    }
+
+    var email = new QueuedEmail(new OutboxMessage(UUID.randomUUID().toString(), to.getAddress(),
+        subjectString, htmlBodyString, bodyString, Instant.now().toEpochMilli()));
+
+    if (journal == null) {
+      queued.put(email.message.id(), email);
+      ready.add(email);
+
+      return CompletableFuture.completedFuture(true);
+    }
+
+    try {
+      synchronized (journalLock) {
+        journal.append(email.message.id(), encode(email.message));
+        journalRecords++;
+        queued.put(email.message.id(), email);
+      }
+    } catch (DatabaseException e) {
+      LOG.error("Unable to save the email to {} to the outbox journal.", to.getAddress(), e);
+
+      return CompletableFuture.completedFuture(false);
+    }
+
+    return journal.sync().handle((ignored, throwable) -> {
+      if (throwable != null) {
+        LOG.error("Unable to save the email to {} to the outbox journal.",
+            to.getAddress(), throwable);
+
+        // The record may still reach the disk, so remove it from the journal as well, or the
+        // email would be sent after a restart even though it was rejected
+        remove(email);
+        return false;
+      }
+
+      ready.add(email);
+      return true;
+    });
+  }
+
+  /**
+   * Sends every queued email that is not waiting for a retry backoff.
+   *
+   * @return a future that completes once each of those emails has been sent or has failed
+   */
+  public CompletableFuture<Void> flush() {
+    return CompletableFuture.runAsync(this::dispatch, dispatcher);
+  }
+
+  /**
+   * Sends the queued emails and stops the background dispatch, waiting up to 30 seconds for the
+   * final dispatch to complete. Emails that are still queued remain in the journal, if there is
+   * one, and are sent the next time the service starts.
+   */
+  @Override
+  public void close() {
+    CompletableFuture<Void> flushed = flush();
+    dispatcher.shutdown();
+
+    try {
+      flushed.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      LOG.error("Unable to send {} queued emails before shutting down.", queued.size(), e);
+    }
+
+    if (journal != null) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        LOG.error("Unable to close the email outbox journal.", e);
+      }
+    }
+  }
+
+  /**
+   * Sends the emails that were ready when the dispatch started in batches, waiting for each batch
+   * to complete before starting the next so that the number of requests to the email provider
+   * that are in flight stays bounded. Only those emails are sent, so that a steady stream of new
+   * emails cannot keep the dispatch running.
+   */
+  private void dispatch() {
+    int remaining = ready.size();
+
+    while (remaining > 0) {
+      List<CompletableFuture<Void>> batch = new ArrayList<>();
+
+      for (QueuedEmail email = ready.poll(); email != null; email = ready.poll()) {
+        batch.add(send(email));
+        remaining--;
+
+        if (remaining == 0 || batch.size() >= configuration.getBatchSize()) {
+          break;
+        }
+      }
+
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      CompletableFuture.allOf(batch.toArray(CompletableFuture[]::new)).join();
+    }
+  }
+
+  private void dispatchQuietly() {
+    try {
+      dispatch();
+    } catch (RuntimeException e) {
+      LOG.error("Unable to send queued emails.", e);
+    }
+
+    try {
+      compactIfNeeded();
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Unable to compact the email outbox journal.", e);
+    }
+  }
+
+  /**
+   * Sends a single email once the rate limiter allows it.
+   */
+  private CompletableFuture<Void> send(QueuedEmail email) {
+    rateLimiter.acquire();
+
+    OutboxMessage message = email.message;
+    CompletableFuture<Boolean> result;
+
+    try {
+      result = delegate.sendEmail(Email.unverified(message.to()),
+          message.subject(), message.html(), message.text());
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+
+    return result.handle((success, throwable) -> {
+      finish(email, throwable == null && Boolean.TRUE.equals(success));
+      return null;
+    });
+  }
+
+  /**
+   * Removes an email from the outbox once it has been sent or has failed too many times, or
+   * schedules it to be tried again after a backoff.
+   */
+  private void finish(QueuedEmail email, boolean success) {
+    if (success) {
+      remove(email);
+      sent.inc();
+      return;
+    }
+
+    email.attempts++;
+
+    if (email.attempts > configuration.getMaxRetries()) {
+      remove(email);
+      dropped.inc();
+      LOG.error("Unable to send the email to {} after {} attempts. The email was dropped.",
+          email.message.to(), email.attempts);
+      return;
+    }
+
+    retries.inc();
+
+    long delay = configuration.getRetryBackoff().toMilliseconds() << (email.attempts - 1);
+
+    LOG.warn("Unable to send the email to {}. It will be retried in {} ms.",
+        email.message.to(), delay);
+
+    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+        .execute(() -> ready.add(email));
+  }
+
+  private void remove(QueuedEmail email) {
+    synchronized (journalLock) {
+      queued.remove(email.message.id(), email);
+
+      if (journal == null) {
+        return;
+      }
+
+      try {
+        journal.append(email.message.id(), null);
+        journalRecords++;
+      } catch (DatabaseException e) {
+        LOG.warn("Unable to record that the email to {} left the outbox."
+            + " It may be sent again after a restart.", email.message.to(), e);
+      }
+    }
+  }
+
+  /**
+   * Rewrites the emails that are still queued to a new journal segment and deletes the older
+   * segments, once enough of the journal is made of emails that are no longer queued.
+   *
+   * @throws IOException if the journal cannot be rotated or the old segments cannot be deleted
+   */
+  private void compactIfNeeded() throws IOException {
+    if (journal == null) {
+      return;
+    }
+
+    long first;
+
+    synchronized (journalLock) {
+      if (journalRecords - queued.size() < COMPACTION_THRESHOLD) {
+        return;
+      }
+
+      first = journal.rotate();
+
+      for (QueuedEmail email : queued.values()) {
+        journal.append(email.message.id(), encode(email.message));
+      }
+
+      journalRecords = queued.size();
+    }
+
+    // The old segments are only deleted once the copies of the queued emails are on disk
+    journal.sync().join();
+    journal.deleteSegmentsBefore(first);
+  }
+
+  /**
+   * Loads the emails that were saved in the given journal directory but not sent.
+   */
+  private void recover(Path directory) throws IOException {
+    Map<String, OutboxMessage> recovered = new LinkedHashMap<>();
+
+    long replayed = WriteAheadLog.replay(directory, 0, (id, record, position) -> {
+      if (record != null) {
+        recovered.put(id, decode(id, record));
+      } else {
+        recovered.remove(id);
+      }
+    });
+
+    recovered.values().stream()
+        .sorted(Comparator.comparingLong(OutboxMessage::queuedAt))
+        .map(QueuedEmail::new)
+        .forEach(email -> {
+          queued.put(email.message.id(), email);
+          ready.add(email);
+        });
+
+    journalRecords = replayed;
+
+    LOG.info("Loaded {} queued emails from the outbox journal.", recovered.size());
+  }
+
+  private long ageMillis() {
+    long now = Instant.now().toEpochMilli();
+
+    return queued.values().stream()
+        .mapToLong(email -> now - email.message.queuedAt())
+        .max()
+        .orElse(0L);
+  }
+
+  /**
+   * Encodes a message as the time it was queued followed by each of its fields, each prefixed
+   * with its length. The id is the key of the journal record, so it is not included.
+   */
+  private static byte[] encode(OutboxMessage message) {
+    byte[][] fields = {
+      message.to().getBytes(StandardCharsets.UTF_8),
+      message.subject().getBytes(StandardCharsets.UTF_8),
+      message.html().getBytes(StandardCharsets.UTF_8),
+      message.text().getBytes(StandardCharsets.UTF_8)
+    };
+
+    int length = Long.BYTES;
+
+    for (byte[] field : fields) {
+      length += Integer.BYTES + field.length;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length).putLong(message.queuedAt());
+
+    for (byte[] field : fields) {
+      buffer.putInt(field.length).put(field);
+    }
+
+    return buffer.array();
+  }
+
+  private static OutboxMessage decode(String id, byte[] record) {
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+
+    long queuedAt = buffer.getLong();
+    String to = readString(buffer);
+    String subject = readString(buffer);
+    String html = readString(buffer);
+    String text = readString(buffer);
+
+    return new OutboxMessage(id, to, subject, html, text, queuedAt);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * An email as it is saved in the journal.
+   */
+  private record OutboxMessage(String id,
+                               String to,
+                               String subject,
+                               String html,
+                               String text,
+                               long queuedAt) {
+  }
+
+  /**
+   * An email in the outbox along with the number of times it has failed to send.
+   */
+  private static final class QueuedEmail {
+    private final OutboxMessage message;
+
+    // Only changed when a send of this email completes, and an email is only sent again after
+    // that, so the change is always visible to the next send
+    private int attempts;
+
+    private QueuedEmail(OutboxMessage message) {
+      this.message = message;
+    }
+  }
+}
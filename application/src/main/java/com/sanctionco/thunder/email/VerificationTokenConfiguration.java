@@ -0,0 +1,53 @@
+package com.sanctionco.thunder.email;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides optional configuration options for the tokens included in verification emails. By
+ * default, a random token is stored with the user. When signed tokens are enabled, the token is
+ * instead signed with a key read from the configured secret provider, and nothing is stored.
+ * See the {@code EmailServiceFactory} class for more details.
+ */
+public class VerificationTokenConfiguration {
+  private static final boolean DEFAULT_SIGNED = false;
+  private static final String DEFAULT_SECRET_NAME = "THUNDER_VERIFICATION_TOKEN_KEY";
+  private static final Duration DEFAULT_EXPIRATION = Duration.hours(24);
+
+  /**
+   * Constructs a new instance of {@code VerificationTokenConfiguration} with default values.
+   */
+  public VerificationTokenConfiguration() {
+    this.signed = DEFAULT_SIGNED;
+    this.secretName = DEFAULT_SECRET_NAME;
+    this.expiration = DEFAULT_EXPIRATION;
+  }
+
+  @Valid @JsonProperty("signed")
+  private final Boolean signed;
+
+  @NotEmpty @JsonProperty("secretName")
+  private final String secretName;
+
+  @MinDuration(value = 1, unit = TimeUnit.MINUTES) @JsonProperty("expiration")
+  private final Duration expiration;
+
+  public Boolean isSigned() {
+    return signed;
+  }
+
+  public String getSecretName() {
+    return secretName;
+  }
+
+  public Duration getExpiration() {
+    return expiration;
+  }
+}
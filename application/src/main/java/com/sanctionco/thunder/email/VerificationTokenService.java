@@ -0,0 +1,241 @@
+package com.sanctionco.thunder.email;
+
+import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
+
+import jakarta.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Provides the tokens that are sent in verification emails, and checks the tokens that users
+ * send back to verify their email address.
+ *
+ * <p>By default each token is random, and must be stored with the user so that it can be
+ * compared when the user verifies. When the service is constructed with a key, each token is
+ * instead signed with an HMAC of that key, so nothing needs to be stored when the email is sent,
+ * and a forged or expired token is rejected before the database is read.
+ *
+ * <p>A signed token holds the time it was issued and a fingerprint of the user's password hash.
+ * The signature also covers the email address, so a token is only valid for the user it was sent
+ * to, and it stops working once the user's password changes.
+ */
+public class VerificationTokenService {
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int MIN_KEY_LENGTH = 32;
+  private static final int FINGERPRINT_LENGTH = 8;
+  private static final int PAYLOAD_LENGTH = Long.BYTES + FINGERPRINT_LENGTH;
+
+  // Each HMAC input starts with its purpose, so that one can never be mistaken for the other
+  private static final byte SIGNATURE_INPUT = 1;
+  private static final byte FINGERPRINT_INPUT = 2;
+
+  // Tokens are sent as a query parameter, so they must be URL safe
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  @Nullable private final ThreadLocal<Mac> mac;
+  private final Duration expiration;
+  private final Clock clock;
+
+  /**
+   * Constructs a new {@code VerificationTokenService} that generates random tokens, which must be
+   * stored with the user.
+   */
+  public VerificationTokenService() {
+    this.mac = null;
+    this.expiration = Duration.ZERO;
+    this.clock = Clock.systemUTC();
+  }
+
+  /**
+   * Constructs a new {@code VerificationTokenService} that generates signed tokens.
+   *
+   * @param key the HMAC key used to sign tokens, which must be at least 32 bytes long
+   * @param expiration the amount of time that a token is valid for after it is issued
+   * @param clock the clock used to issue and expire tokens
+   * @throws IllegalArgumentException if the key is too short
+   */
+  public VerificationTokenService(byte[] key, Duration expiration, Clock clock) {
+    Objects.requireNonNull(key);
+
+    if (key.length < MIN_KEY_LENGTH) {
+      throw new IllegalArgumentException(String.format(
+          "The verification token key must be at least %d bytes long.", MIN_KEY_LENGTH));
+    }
+
+    SecretKeySpec keySpec = new SecretKeySpec(key, HMAC_ALGORITHM);
+
+    this.mac = ThreadLocal.withInitial(() -> {
+      try {
+        Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+        instance.init(keySpec);
+
+        return instance;
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("Unable to initialize the verification token HMAC", e);
+      }
+    });
+    this.expiration = Objects.requireNonNull(expiration);
+    this.clock = Objects.requireNonNull(clock);
+  }
+
+  /**
+   * Determines whether tokens are signed. Tokens that are not signed must be stored with the user.
+   *
+   * @return true if tokens are signed, false if they are random
+   */
+  public boolean isSigned() {
+    return mac != null;
+  }
+
+  /**
+   * Provides the amount of time that a token is valid for after it is issued. Random tokens do
+   * not expire.
+   *
+   * @return the expiration of signed tokens, or an empty {@code Optional} if tokens are random
+   */
+  public Optional<Duration> getExpiration() {
+    return isSigned() ? Optional.of(expiration) : Optional.empty();
+  }
+
+  /**
+   * Determines whether the given token is a signed token. A random token that was stored before
+   * signing was enabled is not, and must be compared with the stored token instead.
+   *
+   * @param token the token to check
+   * @return true if tokens are signed and the token has the form of a signed token
+   */
+  public boolean isSignedToken(String token) {
+    return isSigned() && token.indexOf('.') > 0;
+  }
+
+  /**
+   * Generates a new verification token for the given user.
+   *
+   * @param user the user that the token will be sent to
+   * @return the new token
+   */
+  public String generate(User user) {
+    if (!isSigned()) {
+      return UUID.randomUUID().toString();
+    }
+
+    byte[] payload = ByteBuffer.allocate(PAYLOAD_LENGTH)
+        .putLong(clock.millis())
+        .put(fingerprint(user.getPassword()))
+        .array();
+
+    return ENCODER.encodeToString(payload)
+        + '.' + ENCODER.encodeToString(sign(user.getEmail().getAddress(), payload));
+  }
+
+  /**
+   * Checks that the given signed token was issued by this service for the given email, and has
+   * not expired. This does not need the stored user.
+   *
+   * @param email the email address that is being verified
+   * @param token the signed token
+   * @throws RequestValidationException if the token is malformed, was not issued for the email,
+   *     or has expired
+   */
+  public void verify(String email, String token) {
+    byte[] payload = decode(token, 0)
+        .filter(decoded -> decoded.length == PAYLOAD_LENGTH)
+        .orElseThrow(() -> RequestValidationException.incorrectToken(
+            "Incorrect verification token."));
+    byte[] signature = decode(token, 1)
+        .orElseThrow(() -> RequestValidationException.incorrectToken(
+            "Incorrect verification token."));
+
+    if (!MessageDigest.isEqual(sign(email, payload), signature)) {
+      throw RequestValidationException.incorrectToken("Incorrect verification token.");
+    }
+
+    long issuedAt = ByteBuffer.wrap(payload).getLong();
+
+    if (clock.millis() - issuedAt > expiration.toMillis()) {
+      throw RequestValidationException.incorrectToken("The verification token has expired.");
+    }
+  }
+
+  /**
+   * Checks that the given signed token was issued while the user had their current password.
+   * The token must already have been checked with {@link #verify(String, String)}.
+   *
+   * @param token the signed token
+   * @param user the stored user
+   * @throws RequestValidationException if the user's password has changed since the token was
+   *     issued
+   */
+  public void verifyUser(String token, User user) {
+    byte[] payload = decode(token, 0).orElseThrow(() -> RequestValidationException
+        .incorrectToken("Incorrect verification token."));
+    byte[] issuedFingerprint = Arrays.copyOfRange(payload, Long.BYTES, PAYLOAD_LENGTH);
+
+    if (!MessageDigest.isEqual(fingerprint(user.getPassword()), issuedFingerprint)) {
+      throw RequestValidationException.incorrectToken(
+          "The verification token is no longer valid.");
+    }
+  }
+
+  private byte[] sign(String email, byte[] payload) {
+    Mac instance = Objects.requireNonNull(mac).get();
+
+    instance.update(SIGNATURE_INPUT);
+    instance.update(email.getBytes(StandardCharsets.UTF_8));
+
+    return instance.doFinal(payload);
+  }
+
+  /**
+   * Builds a short fingerprint of the given password hash. The fingerprint is an HMAC, so the
+   * token does not reveal anything about the password hash.
+   *
+   * @param password the user's password hash
+   * @return the fingerprint
+   */
+  private byte[] fingerprint(@Nullable String password) {
+    Mac instance = Objects.requireNonNull(mac).get();
+
+    instance.update(FINGERPRINT_INPUT);
+
+    byte[] digest = instance.doFinal(Optional.ofNullable(password).orElse("")
+        .getBytes(StandardCharsets.UTF_8));
+
+    return Arrays.copyOf(digest, FINGERPRINT_LENGTH);
+  }
+
+  /**
+   * Decodes one of the two parts of a signed token.
+   *
+   * @param token the signed token
+   * @param part the index of the part to decode
+   * @return the decoded part, or an empty optional if the token is malformed
+   */
+  private static Optional<byte[]> decode(String token, int part) {
+    String[] parts = token.split("\\.", -1);
+
+    if (parts.length != 2) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.of(DECODER.decode(parts[part]));
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+}
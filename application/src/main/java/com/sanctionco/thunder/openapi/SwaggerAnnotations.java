@@ -1,10 +1,14 @@
 package com.sanctionco.thunder.openapi;
 
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
+import com.sanctionco.thunder.resources.AdminResource;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
@@ -18,11 +22,13 @@ import java.lang.annotation.Target;
 /**
  * The {@code SwaggerAnnotations} annotation type contains annotation definitions
  * that are meta-annotations for Swagger annotations. These are defined here to keep
- * methods in {@code UserResource} and {@code VerificationResource} cleaner.
+ * methods in {@code UserResource}, {@code VerificationResource}, and {@code AdminResource}
+ * cleaner.
  */
 public @interface SwaggerAnnotations {
   String JSON = "application/json";
   String HTML = "text/html";
+  String NDJSON = "application/x-ndjson";
 
   // Response codes
   String OK = "200";
@@ -32,6 +38,7 @@ public @interface SwaggerAnnotations {
   String UNAUTHORIZED = "401";
   String NOT_FOUND = "404";
   String CONFLICT = "409";
+  String PRECONDITION_FAILED = "412";
   String SERVER_ERROR = "500";
   String SERVICE_UNAVAILABLE = "503";
 
@@ -53,6 +60,9 @@ public @interface SwaggerAnnotations {
   // Email query param
   String EMAIL = "email";
 
+  // Version (ETag) header
+  String IF_MATCH = "If-Match";
+
   /**
    * Defines meta-annotations for HTTP methods.
    */
@@ -89,8 +99,13 @@ public @interface SwaggerAnnotations {
     String UPDATE_CONFLICT_DESCRIPTION = "A user with the new email address already exists";
     String UPDATE_BODY_DESCRIPTION = "The updated user object to insert";
 
+    String UPDATE_PRECONDITION_DESCRIPTION = "The user was modified since the version given"
+        + " in the If-Match header";
+
     String EXISTING_EMAIL_DESC = "The existing email address of the user. Only necessary if"
         + " the email address is to be changed.";
+    String IF_MATCH_DESC = "The ETag returned when the user was last read. If present, the"
+        + " update is only applied if the user has not been modified since.";
 
     /**
      * The PUT (update) users method.
@@ -106,6 +121,8 @@ public @interface SwaggerAnnotations {
             @ApiResponse(responseCode = UNAUTHORIZED, description = UNAUTHORIZED_DESCRIPTION),
             @ApiResponse(responseCode = NOT_FOUND, description = NOT_FOUND_DESCRIPTION),
             @ApiResponse(responseCode = CONFLICT, description = UPDATE_CONFLICT_DESCRIPTION),
+            @ApiResponse(responseCode = PRECONDITION_FAILED,
+                description = UPDATE_PRECONDITION_DESCRIPTION),
             @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION),
             @ApiResponse(responseCode = SERVICE_UNAVAILABLE, description = UNAVAILABLE_DESCRIPTION)
         },
@@ -113,6 +130,8 @@ public @interface SwaggerAnnotations {
             @Parameter(name = PASSWORD, description = PASSWORD_DESCRIPTION, in = ParameterIn.HEADER,
                 schema = @Schema(type = "string")),
             @Parameter(name = EMAIL, description = EXISTING_EMAIL_DESC, in = ParameterIn.QUERY,
+                schema = @Schema(type = "string")),
+            @Parameter(name = IF_MATCH, description = IF_MATCH_DESC, in = ParameterIn.HEADER,
                 schema = @Schema(type = "string"))
         },
         requestBody = @RequestBody(description = UPDATE_BODY_DESCRIPTION, required = true,
@@ -124,7 +143,13 @@ public @interface SwaggerAnnotations {
     String GET_DESCRIPTION = "Retrieves a user from the database and returns the user.";
     String GET_OK_DESCRIPTION = "The user was found and returned";
 
-    String GET_EMAIL_DESC = "The email address of the user to retrieve.";
+    String GET_EMAIL_DESC = "The email address of the user to retrieve. Required unless the"
+        + " user is looked up by property.";
+    String GET_PROPERTY_DESC = "The name of an indexed property to look up the user by, instead"
+        + " of the email address.";
+    String GET_VALUE_DESC = "The value of the indexed property. Required when looking up the user"
+        + " by property.";
+    String GET_CONFLICT_DESCRIPTION = "More than one user has the requested property value";
 
     /**
      * The GET users method.
@@ -139,13 +164,18 @@ public @interface SwaggerAnnotations {
             @ApiResponse(responseCode = BAD_REQUEST, description = BAD_REQUEST_DESCRIPTION),
             @ApiResponse(responseCode = UNAUTHORIZED, description = UNAUTHORIZED_DESCRIPTION),
             @ApiResponse(responseCode = NOT_FOUND, description = NOT_FOUND_DESCRIPTION),
+            @ApiResponse(responseCode = CONFLICT, description = GET_CONFLICT_DESCRIPTION),
             @ApiResponse(responseCode = SERVICE_UNAVAILABLE, description = UNAVAILABLE_DESCRIPTION)
         },
         parameters = {
             @Parameter(name = PASSWORD, description = PASSWORD_DESCRIPTION, in = ParameterIn.HEADER,
                 schema = @Schema(type = "string")),
             @Parameter(name = EMAIL, description = GET_EMAIL_DESC, in = ParameterIn.QUERY,
-                schema = @Schema(type = "string"), required = true)
+                schema = @Schema(type = "string")),
+            @Parameter(name = "property", description = GET_PROPERTY_DESC, in = ParameterIn.QUERY,
+                schema = @Schema(type = "string")),
+            @Parameter(name = "value", description = GET_VALUE_DESC, in = ParameterIn.QUERY,
+                schema = @Schema(type = "string"))
         })
     @interface Get {
     }
@@ -180,6 +210,130 @@ public @interface SwaggerAnnotations {
     @interface Delete {
     }
 
+    String BATCH_OK_DESCRIPTION = "The batch was processed. Each item in the response has"
+        + " the status code that the item would have received as a single request.";
+    String BATCH_BAD_REQUEST_DESCRIPTION = "The batch was empty, too large, or the password"
+        + " header check is enabled";
+
+    String BATCH_CREATE_SUMMARY = "Create a batch of new users";
+    String BATCH_CREATE_DESCRIPTION = "Creates each of the given users in the database and"
+        + " returns the result for each user, in the same order.";
+    String BATCH_CREATE_BODY_DESCRIPTION = "The list of user objects to create";
+
+    /**
+     * The POST (create) batch users method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @Operation(summary = BATCH_CREATE_SUMMARY, description = BATCH_CREATE_DESCRIPTION,
+        tags = { "users" },
+        responses = {
+            @ApiResponse(responseCode = OK, description = BATCH_OK_DESCRIPTION,
+                content = @Content(mediaType = JSON, array = @ArraySchema(
+                    schema = @Schema(implementation = BatchItemResult.class)))),
+            @ApiResponse(responseCode = BAD_REQUEST, description = BATCH_BAD_REQUEST_DESCRIPTION),
+            @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION)
+        },
+        requestBody = @RequestBody(description = BATCH_CREATE_BODY_DESCRIPTION, required = true,
+            content = @Content(mediaType = JSON, array = @ArraySchema(
+                schema = @Schema(implementation = User.class)))))
+    @interface BatchCreate {
+    }
+
+    String BATCH_GET_SUMMARY = "Retrieve a batch of users from the database";
+    String BATCH_GET_DESCRIPTION = "Retrieves each of the users with the given email addresses"
+        + " and returns the result for each user, in the same order.";
+
+    String BATCH_GET_EMAIL_DESC = "The email address of a user to retrieve. Repeat the parameter"
+        + " once for each user.";
+
+    /**
+     * The GET batch users method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @Operation(summary = BATCH_GET_SUMMARY, description = BATCH_GET_DESCRIPTION,
+        tags = { "users" },
+        responses = {
+            @ApiResponse(responseCode = OK, description = BATCH_OK_DESCRIPTION,
+                content = @Content(mediaType = JSON, array = @ArraySchema(
+                    schema = @Schema(implementation = BatchItemResult.class)))),
+            @ApiResponse(responseCode = BAD_REQUEST, description = BATCH_BAD_REQUEST_DESCRIPTION),
+            @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION)
+        },
+        parameters = {
+            @Parameter(name = EMAIL, description = BATCH_GET_EMAIL_DESC, in = ParameterIn.QUERY,
+                array = @ArraySchema(schema = @Schema(type = "string")), required = true)
+        })
+    @interface BatchGet {
+    }
+
+    String BATCH_DELETE_SUMMARY = "Delete a batch of users from the database";
+    String BATCH_DELETE_DESCRIPTION = "Deletes each of the users with the given email addresses"
+        + " and returns the result for each deleted user, in the same order.";
+
+    String BATCH_DELETE_EMAIL_DESC = "The email address of a user to delete. Repeat the"
+        + " parameter once for each user.";
+
+    /**
+     * The DELETE batch users method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @Operation(summary = BATCH_DELETE_SUMMARY, description = BATCH_DELETE_DESCRIPTION,
+        tags = { "users" },
+        responses = {
+            @ApiResponse(responseCode = OK, description = BATCH_OK_DESCRIPTION,
+                content = @Content(mediaType = JSON, array = @ArraySchema(
+                    schema = @Schema(implementation = BatchItemResult.class)))),
+            @ApiResponse(responseCode = BAD_REQUEST, description = BATCH_BAD_REQUEST_DESCRIPTION),
+            @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION)
+        },
+        parameters = {
+            @Parameter(name = EMAIL, description = BATCH_DELETE_EMAIL_DESC, in = ParameterIn.QUERY,
+                array = @ArraySchema(schema = @Schema(type = "string")), required = true)
+        })
+    @interface BatchDelete {
+    }
+
+    String LIST_SUMMARY = "List the users in the database, one page at a time";
+    String LIST_DESCRIPTION = "Returns a page of users from the database, along with a token"
+        + " that can be used to request the next page. A page may contain fewer users than the"
+        + " limit even when there are more users to list. The last page has no token.";
+    String LIST_OK_DESCRIPTION = "The page of users";
+    String LIST_BAD_REQUEST_DESCRIPTION = "The limit or token was invalid, or the password header"
+        + " check is enabled";
+
+    String LIST_LIMIT_DESC = "The maximum number of users to return.";
+    String LIST_TOKEN_DESC = "The token returned with the previous page. Leave this out to"
+        + " request the first page.";
+    String LIST_VERIFIED_DESC = "Only return users whose email verification status matches.";
+
+    /**
+     * The GET list users method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @Operation(summary = LIST_SUMMARY, description = LIST_DESCRIPTION, tags = { "users" },
+        responses = {
+            @ApiResponse(responseCode = OK, description = LIST_OK_DESCRIPTION,
+                content = @Content(
+                    mediaType = JSON, schema = @Schema(implementation = UserList.class))),
+            @ApiResponse(responseCode = BAD_REQUEST, description = LIST_BAD_REQUEST_DESCRIPTION),
+            @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION),
+            @ApiResponse(responseCode = SERVICE_UNAVAILABLE, description = UNAVAILABLE_DESCRIPTION)
+        },
+        parameters = {
+            @Parameter(name = "limit", description = LIST_LIMIT_DESC,
+                in = ParameterIn.QUERY, schema = @Schema(type = "integer", defaultValue = "100")),
+            @Parameter(name = "token", description = LIST_TOKEN_DESC,
+                in = ParameterIn.QUERY, schema = @Schema(type = "string")),
+            @Parameter(name = "verified", description = LIST_VERIFIED_DESC,
+                in = ParameterIn.QUERY, schema = @Schema(type = "boolean"))
+        })
+    @interface ListUsers {
+    }
+
     String EMAIL_SUMMARY = "Send a verification email to the specified email address";
     String EMAIL_DESCRIPTION = "Initiates the user verification process by sending a verification"
         + " email to the email address provided as a query parameter. The user in the database will"
@@ -317,5 +471,57 @@ public @interface SwaggerAnnotations {
         })
     @interface Success {
     }
+
+    String EXPORT_SUMMARY = "Export every user in the database";
+    String EXPORT_DESCRIPTION = "Streams every user in the database as newline-delimited JSON,"
+        + " one user per line. Exported users include their password hashes.";
+    String EXPORT_OK_DESCRIPTION = "The stream of every user in the database";
+
+    /**
+     * The GET export users method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @Operation(summary = EXPORT_SUMMARY, description = EXPORT_DESCRIPTION, tags = { "admin" },
+        responses = {
+            @ApiResponse(responseCode = OK, description = EXPORT_OK_DESCRIPTION,
+                content = @Content(
+                    mediaType = NDJSON, schema = @Schema(implementation = User.class))),
+            @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION),
+            @ApiResponse(responseCode = SERVICE_UNAVAILABLE, description = UNAVAILABLE_DESCRIPTION)
+        })
+    @interface Export {
+    }
+
+    String IMPORT_SUMMARY = "Import users into the database";
+    String IMPORT_DESCRIPTION = "Creates each user in a stream of newline-delimited JSON, one"
+        + " user per line, and returns a summary of the users that were imported and the users"
+        + " that failed.";
+    String IMPORT_OK_DESCRIPTION = "The summary of the import";
+    String IMPORT_BODY_DESCRIPTION = "The users to create, one JSON user per line";
+
+    String IMPORT_HASHED_DESC = "Whether the passwords in the stream are already hashed, such as"
+        + " the passwords in an export.";
+
+    /**
+     * The POST import users method.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.METHOD)
+    @Operation(summary = IMPORT_SUMMARY, description = IMPORT_DESCRIPTION, tags = { "admin" },
+        responses = {
+            @ApiResponse(responseCode = OK, description = IMPORT_OK_DESCRIPTION,
+                content = @Content(mediaType = JSON,
+                    schema = @Schema(implementation = AdminResource.ImportSummary.class))),
+            @ApiResponse(responseCode = SERVER_ERROR, description = SERVER_ERROR_DESCRIPTION)
+        },
+        parameters = {
+            @Parameter(name = "hashed", description = IMPORT_HASHED_DESC,
+                in = ParameterIn.QUERY, schema = @Schema(type = "boolean", defaultValue = "false"))
+        },
+        requestBody = @RequestBody(description = IMPORT_BODY_DESCRIPTION, required = true,
+            content = @Content(mediaType = NDJSON, schema = @Schema(implementation = User.class))))
+    @interface Import {
+    }
   }
 }
@@ -0,0 +1,457 @@
+package com.sanctionco.thunder.resources;
+
+import com.codahale.metrics.annotation.Metered;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.ThunderException;
+import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.dao.BatchResult;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.openapi.SwaggerAnnotations;
+import com.sanctionco.thunder.validation.RequestValidationException;
+import com.sanctionco.thunder.validation.RequestValidator;
+
+import io.dropwizard.auth.Auth;
+import io.swagger.v3.oas.annotations.Parameter;
+
+import jakarta.annotation.Nullable;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides API methods to export every {@code User} (in the {@code api} module) in the database
+ * and to import users in bulk. Users are exported and imported as newline-delimited JSON, one
+ * user per line, so that neither operation needs to hold the whole table in memory. The methods
+ * contained in this class are available at the {@code /admin/users} endpoint, and are only
+ * registered if admin endpoints are enabled in the {@link RequestOptions}.
+ */
+@Path("/admin/users")
+@Produces(MediaType.APPLICATION_JSON)
+public class AdminResource {
+  private static final Logger LOG = LoggerFactory.getLogger(AdminResource.class);
+
+  static final String NDJSON = "application/x-ndjson";
+
+  static final int IMPORT_BATCH_SIZE = 25;
+  static final int MAX_REPORTED_FAILURES = 100;
+
+  private static final List<String> GENERATED_PROPERTIES
+      = List.of("creationTime", "lastUpdateTime");
+
+  private final HashService hashService;
+  private final ObjectMapper mapper;
+  private final RequestValidator requestValidator;
+  private final UsersDao usersDao;
+
+  /**
+   * Constructs a new {@code AdminResource} with the given users DAO, request validator,
+   * hash service, and object mapper.
+   *
+   * @param usersDao the DAO used to connect to the database
+   * @param requestValidator the validator used to validate imported users
+   * @param hashService the service used to hash the passwords of imported users
+   * @param mapper the mapper used to read and write users as JSON
+   */
+  @Inject
+  public AdminResource(UsersDao usersDao,
+                       RequestValidator requestValidator,
+                       HashService hashService,
+                       ObjectMapper mapper) {
+    this.usersDao = Objects.requireNonNull(usersDao);
+    this.requestValidator = Objects.requireNonNull(requestValidator);
+    this.hashService = Objects.requireNonNull(hashService);
+    this.mapper = Objects.requireNonNull(mapper);
+  }
+
+  /**
+   * Streams every user in the database as newline-delimited JSON. Users are written as the
+   * database scan reads them, and the scan waits whenever the client falls behind, so memory use
+   * does not depend on the number of users. Exported users include their password hashes. The
+   * order of the users is not defined.
+   *
+   * @param auth the auth principal required to access the resource
+   * @return the response containing the stream of users
+   */
+  @GET
+  @Path("export")
+  @Produces(NDJSON)
+  @Metered(name = "export-requests")
+  @SwaggerAnnotations.Methods.Export
+  public Response exportUsers(@Parameter(hidden = true) @Auth Principal auth) {
+    LOG.info("Attempting to export all users.");
+
+    StreamingOutput stream = output -> {
+      ExportSubscriber subscriber = new ExportSubscriber(output);
+      usersDao.scanAll().subscribe(subscriber);
+
+      long exported;
+
+      try {
+        exported = subscriber.exported.get();
+      } catch (ExecutionException e) {
+        LOG.error("Error exporting users. Caused by: {}", e.getCause().getMessage());
+
+        if (e.getCause() instanceof IOException cause) {
+          throw cause;
+        }
+
+        throw new WebApplicationException(
+            ThunderException.responseFromThrowable(e.getCause(), "export"));
+      } catch (InterruptedException e) {
+        subscriber.cancel();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("The export was interrupted.");
+      }
+
+      output.flush();
+      LOG.info("Successfully exported {} users.", exported);
+    };
+
+    return Response.ok(stream, NDJSON).build();
+  }
+
+  /**
+   * Creates each user in the given stream of newline-delimited JSON. The stream is read one line
+   * at a time, and users are written to the database in small batches while the rest of the
+   * stream is still being read. Each user is validated and created independently, so the
+   * response summarizes how many users were imported and why any others failed.
+   *
+   * @param auth the auth principal required to access the resource
+   * @param hashed {@code true} if the passwords in the stream are already hashed, such as the
+   *               passwords in an export, in which case they are stored as they are
+   * @param body the stream of users, one JSON user per line
+   * @return the response containing the import summary
+   * @throws IOException if the request body could not be read
+   */
+  @POST
+  @Path("import")
+  @Consumes(NDJSON)
+  @Metered(name = "import-requests")
+  @SwaggerAnnotations.Methods.Import
+  public Response importUsers(@Parameter(hidden = true) @Auth Principal auth,
+                              @Parameter(hidden = true) @QueryParam("hashed")
+                                @DefaultValue("false") boolean hashed,
+                              InputStream body) throws IOException {
+    LOG.info("Attempting to import users (passwords already hashed: {}).", hashed);
+
+    ImportProgress progress = new ImportProgress();
+    CompletableFuture<List<ImportFailure>> pending = CompletableFuture.completedFuture(List.of());
+    List<ImportLine> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(body, StandardCharsets.UTF_8))) {
+      long number = 0;
+      String line;
+
+      while ((line = reader.readLine()) != null) {
+        number++;
+
+        if (line.isBlank()) {
+          continue;
+        }
+
+        ImportLine parsed = parse(number, line, progress);
+
+        if (parsed != null) {
+          batch.add(parsed);
+        }
+
+        if (batch.size() == IMPORT_BATCH_SIZE) {
+          pending = importBatch(List.copyOf(batch), hashed, pending, progress);
+          batch.clear();
+        }
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      pending = importBatch(List.copyOf(batch), hashed, pending, progress);
+    }
+
+    progress.complete(pending.join());
+
+    ImportSummary summary = progress.summary();
+    LOG.info("Finished importing users. Imported: {}, failed: {}.",
+        summary.imported(), summary.failed());
+
+    return Response.ok(summary).build();
+  }
+
+  /**
+   * Parses and validates one line of an import. A line that fails is recorded in the progress.
+   *
+   * @param number the line number, starting from 1
+   * @param line the line to parse
+   * @param progress the progress of the import
+   * @return the parsed line, or {@code null} if the line could not be imported
+   */
+  @Nullable
+  private ImportLine parse(long number, String line, ImportProgress progress) {
+    User user;
+
+    try {
+      user = mapper.readValue(line, User.class);
+    } catch (JsonProcessingException e) {
+      progress.reject(new ImportFailure(number, null,
+          Response.Status.BAD_REQUEST.getStatusCode(), "The line is not a valid user."));
+      return null;
+    }
+
+    String email = Optional.ofNullable(user)
+        .map(User::getEmail)
+        .map(Email::getAddress)
+        .orElse("null");
+
+    // Exported users include the times that the database added, which are not user properties
+    if (user != null) {
+      Map<String, Object> properties = new HashMap<>(user.getProperties());
+      GENERATED_PROPERTIES.forEach(properties::remove);
+
+      user = new User(user.getEmail(), user.getPassword(), properties);
+    }
+
+    try {
+      requestValidator.validate(user);
+    } catch (RequestValidationException e) {
+      progress.reject(ImportFailure.of(number, email, e));
+      return null;
+    }
+
+    return new ImportLine(number, user);
+  }
+
+  /**
+   * Hashes the passwords of a batch of users, then writes the batch to the database once the
+   * previous batch has been written. Only one batch is written at a time, but the next batch
+   * can be hashed while the previous one is being written.
+   *
+   * @param batch the lines to import
+   * @param hashed {@code true} if the passwords are already hashed
+   * @param previous the write of the previous batch
+   * @param progress the progress of the import, updated with the result of the previous batch
+   * @return a future that is completed with the failures in the batch
+   */
+  private CompletableFuture<List<ImportFailure>> importBatch(
+      List<ImportLine> batch,
+      boolean hashed,
+      CompletableFuture<List<ImportFailure>> previous,
+      ImportProgress progress) {
+    // The hashing executor bounds how many of these run at once
+    List<CompletableFuture<String>> passwords = batch.stream()
+        .map(line -> hashed
+            ? CompletableFuture.completedFuture(line.user().getPassword())
+            : hashService.hashAsync(line.user().getPassword()))
+        .toList();
+
+    // Wait for the previous write so that at most two batches are held in memory
+    progress.complete(previous.join());
+    progress.submit(batch.size());
+
+    return CompletableFuture.allOf(passwords.stream()
+            .map(password -> password.exceptionally(throwable -> null))
+            .toArray(CompletableFuture[]::new))
+        .thenCompose(ignored -> {
+          List<ImportFailure> failures = new ArrayList<>();
+          List<ImportLine> toInsert = new ArrayList<>();
+
+          for (int i = 0; i < batch.size(); i++) {
+            ImportLine line = batch.get(i);
+            String email = line.user().getEmail().getAddress();
+            CompletableFuture<String> password = passwords.get(i);
+
+            if (password.isCompletedExceptionally()) {
+              failures.add(ImportFailure.of(line.number(), email, password.exceptionNow()));
+              continue;
+            }
+
+            toInsert.add(new ImportLine(line.number(), new User(
+                line.user().getEmail(), password.join(), line.user().getProperties())));
+          }
+
+          if (toInsert.isEmpty()) {
+            return CompletableFuture.completedFuture(failures);
+          }
+
+          return usersDao.insertAll(toInsert.stream().map(ImportLine::user).toList())
+              .thenApply(results -> {
+                for (int i = 0; i < results.size(); i++) {
+                  BatchResult result = results.get(i);
+
+                  if (result.error() != null) {
+                    failures.add(ImportFailure.of(toInsert.get(i).number(),
+                        result.email(), result.error()));
+                  }
+                }
+
+                return failures;
+              });
+        })
+        .exceptionally(throwable -> batch.stream()
+            .map(line -> ImportFailure.of(line.number(),
+                line.user().getEmail().getAddress(), throwable))
+            .toList());
+  }
+
+  /**
+   * Writes each user that is published by a scan to the response as a line of JSON. The scan
+   * only reads ahead of the writes by a bounded buffer, so a slow client slows down the scan.
+   */
+  private class ExportSubscriber implements Flow.Subscriber<User> {
+    private final CompletableFuture<Long> exported = new CompletableFuture<>();
+    private final OutputStream output;
+
+    private Flow.Subscription subscription;
+    private long count;
+
+    ExportSubscriber(OutputStream output) {
+      this.output = output;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(User user) {
+      try {
+        output.write(mapper.writeValueAsBytes(user));
+        output.write('\n');
+        count++;
+      } catch (IOException e) {
+        // The client went away, so stop reading the database
+        cancel();
+        exported.completeExceptionally(e);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      exported.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      exported.complete(count);
+    }
+
+    void cancel() {
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+  }
+
+  /**
+   * Represents one line of an import that was parsed and validated.
+   *
+   * @param number the line number, starting from 1
+   * @param user the user on the line
+   */
+  private record ImportLine(long number, User user) {
+  }
+
+  /**
+   * Represents one user that could not be imported.
+   *
+   * @param line the line number of the user in the request, starting from 1
+   * @param email the email address of the user, or {@code null} if the line could not be read
+   * @param status the HTTP status code that the user would have received as a single request
+   * @param message a description of the failure
+   */
+  public record ImportFailure(long line, @Nullable String email, int status, String message) {
+
+    /**
+     * Creates a failure with the status code and message that a single request would have
+     * received for the same failure.
+     *
+     * @param line the line number of the user
+     * @param email the email address of the user
+     * @param throwable the reason the user could not be imported
+     * @return the new failure
+     */
+    static ImportFailure of(long line, String email, Throwable throwable) {
+      Response failed = ThunderException.responseFromThrowable(throwable, email);
+
+      return new ImportFailure(line, email, failed.getStatus(), (String) failed.getEntity());
+    }
+  }
+
+  /**
+   * Represents the result of an import.
+   *
+   * @param imported the number of users that were imported
+   * @param failed the number of users that could not be imported
+   * @param failures up to the first 100 users that could not be imported, in line order
+   */
+  public record ImportSummary(long imported, long failed, List<ImportFailure> failures) {
+  }
+
+  /**
+   * Counts the users of an import as they complete. The list of failures is capped so that an
+   * import of a badly formatted file does not use unbounded memory.
+   */
+  private static class ImportProgress {
+    private final List<ImportFailure> failures = new ArrayList<>();
+    private long submitted;
+    private long failed;
+    private long failedWrites;
+
+    void submit(int count) {
+      submitted += count;
+    }
+
+    void reject(ImportFailure failure) {
+      failed++;
+
+      if (failures.size() < MAX_REPORTED_FAILURES) {
+        failures.add(failure);
+      }
+    }
+
+    void complete(List<ImportFailure> batchFailures) {
+      failedWrites += batchFailures.size();
+      batchFailures.forEach(this::reject);
+    }
+
+    ImportSummary summary() {
+      failures.sort(Comparator.comparingLong(ImportFailure::line));
+
+      return new ImportSummary(submitted - failedWrites, failed, List.copyOf(failures));
+    }
+  }
+}
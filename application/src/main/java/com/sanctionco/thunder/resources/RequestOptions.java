@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.util.Duration;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
 import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.core.Response;
 
@@ -17,18 +18,35 @@ import java.util.concurrent.TimeUnit;
  */
 public class RequestOptions {
   private static final Duration DEFAULT_OPERATION_TIMEOUT = Duration.seconds(30);
+  private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
 
   public RequestOptions() {
     this.operationTimeout = DEFAULT_OPERATION_TIMEOUT;
+    this.maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    this.adminEndpoints = false;
   }
 
   @Valid @JsonProperty("operationTimeout")
   private final Duration operationTimeout;
 
+  @Min(1) @JsonProperty("maxBatchSize")
+  private final Integer maxBatchSize;
+
+  @JsonProperty("adminEndpoints")
+  private final Boolean adminEndpoints;
+
   public Duration operationTimeout() {
     return operationTimeout;
   }
 
+  public Integer maxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public Boolean adminEndpointsEnabled() {
+    return adminEndpoints;
+  }
+
   /**
    * Set the timeout and timeout handler for the given {@code AsyncResponse} instance.
    *
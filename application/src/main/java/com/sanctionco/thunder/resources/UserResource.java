@@ -5,9 +5,14 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.annotation.Metered;
 import com.sanctionco.thunder.ThunderException;
 import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.dao.BatchResult;
+import com.sanctionco.thunder.dao.DatabaseException;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
 import com.sanctionco.thunder.openapi.SwaggerAnnotations;
 import com.sanctionco.thunder.util.MetricNameUtil;
 import com.sanctionco.thunder.validation.RequestValidationException;
@@ -16,7 +21,9 @@ import com.sanctionco.thunder.validation.RequestValidator;
 import io.dropwizard.auth.Auth;
 import io.swagger.v3.oas.annotations.Parameter;
 
+import jakarta.annotation.Nullable;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
@@ -26,12 +33,25 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.container.AsyncResponse;
 import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -56,6 +76,10 @@ public class UserResource {
   private final Counter getTimeoutCounter;
   private final Counter updateTimeoutCounter;
   private final Counter deleteTimeoutCounter;
+  private final Counter batchCreateTimeoutCounter;
+  private final Counter batchGetTimeoutCounter;
+  private final Counter batchDeleteTimeoutCounter;
+  private final Counter listTimeoutCounter;
 
   /**
    * Constructs a new {@code UserResource} with the given users DAO, request validator,
@@ -82,6 +106,10 @@ public class UserResource {
     this.getTimeoutCounter = metrics.counter(MetricNameUtil.GET_TIMEOUTS);
     this.updateTimeoutCounter = metrics.counter(MetricNameUtil.UPDATE_TIMEOUTS);
     this.deleteTimeoutCounter = metrics.counter(MetricNameUtil.DELETE_TIMEOUTS);
+    this.batchCreateTimeoutCounter = metrics.counter(MetricNameUtil.BATCH_CREATE_TIMEOUTS);
+    this.batchGetTimeoutCounter = metrics.counter(MetricNameUtil.BATCH_GET_TIMEOUTS);
+    this.batchDeleteTimeoutCounter = metrics.counter(MetricNameUtil.BATCH_DELETE_TIMEOUTS);
+    this.listTimeoutCounter = metrics.counter(MetricNameUtil.LIST_TIMEOUTS);
   }
 
   /**
@@ -113,13 +141,11 @@ public class UserResource {
     String email = user.getEmail().getAddress();
     LOG.info("Attempting to create new user {}.", email);
 
-    // Hash the user's password
-    String finalPassword = hashService.hash(user.getPassword());
-
-    // Make sure the user is not verified, as this is a new user
-    User userToInsert = new User(Email.unverified(email), finalPassword, user.getProperties());
-
-    usersDao.insert(userToInsert)
+    // Hash the user's password on the hashing executor
+    hashService.hashAsync(user.getPassword())
+        // Make sure the user is not verified, as this is a new user
+        .thenCompose(finalPassword -> usersDao.insert(
+            new User(Email.unverified(email), finalPassword, user.getProperties())))
         .whenComplete((result, throwable) -> {
           if (Objects.isNull(throwable)) {
             LOG.info("Successfully created new user {}.", result.getEmail().getAddress());
@@ -132,11 +158,16 @@ public class UserResource {
   }
 
   /**
-   * Updates the user in the database.
+   * Updates the user in the database. If an {@code If-Match} header is supplied, the update is
+   * only applied if the stored user still has that version (as returned in the {@code ETag}
+   * header of a previous request). The response includes the new {@code ETag}.
    *
    * @param response the async response object used to notify that the operation has completed
    * @param auth the auth principal required to access the resource
    * @param password the user's password. This should be the existing password prior to any updates.
+   * @param ifMatch the version of the user that the client last read. This can be {@code null}
+   *                if the update should be applied regardless of concurrent changes. It is
+   *                ignored if the database does not track versions.
    * @param existingEmail the user's existing email. This can be {@code null} if the user's email
    *                      will stay the same. It must be present if the email is to be changed.
    * @param user the user with updated properties
@@ -147,6 +178,8 @@ public class UserResource {
   public void updateUser(@Suspended AsyncResponse response,
                          @Parameter(hidden = true) @Auth Principal auth,
                          @Parameter(hidden = true) @HeaderParam("password") String password,
+                         @Parameter(hidden = true) @HeaderParam(HttpHeaders.IF_MATCH)
+                           String ifMatch,
                          @Parameter(hidden = true) @QueryParam("email") String existingEmail,
                          User user) {
     requestOptions.setTimeout(response, updateTimeoutCounter);
@@ -166,41 +199,61 @@ public class UserResource {
     String email = Optional.ofNullable(existingEmail).orElse(user.getEmail().getAddress());
     LOG.info("Attempting to update user with existing email address {}.", email);
 
-    usersDao.findByEmail(email)
-        .thenApply(foundUser -> {
-          // Check that the password is correct for the user to update
-          requestValidator.verifyPasswordHeader(password, foundUser.getPassword());
-
-          // Determine what verification information to use for the updated user object.
-          // If it's a new email address, reset verification status.
-          // If it's the same, keep the existing verification status.
-          boolean verified = email.equals(user.getEmail().getAddress())
-              && foundUser.getEmail().isVerified();
-
-          String verificationToken = email.equals(user.getEmail().getAddress())
-              ? foundUser.getEmail().getVerificationToken()
-              : null;
+    Optional<Set<String>> expectedVersions = parseVersions(ifMatch);
 
-          // Hash the password if it is a new password
-          String finalPassword = foundUser.getPassword();
+    usersDao.findVersionedByEmail(email)
+        .thenCompose(found -> {
+          User foundUser = found.user();
 
-          if (!hashService.isMatch(user.getPassword(), foundUser.getPassword())) {
-            finalPassword = hashService.hash(user.getPassword());
+          // Databases that do not track versions cannot evaluate the precondition
+          if (expectedVersions.isPresent() && found.version() == null) {
+            LOG.warn("The database does not track versions, so If-Match is ignored for {}.",
+                email);
           }
 
-          LOG.info("Using verified status: {} and token: {} for the updated user.",
-              verified, verificationToken);
+          // Fail fast if the client is updating a version of the user that is no longer current
+          if (expectedVersions.isPresent() && found.version() != null
+              && !expectedVersions.get().contains(found.version())) {
+            LOG.warn("The user {} has been modified since version {} was read.", email, ifMatch);
+            throw RequestValidationException
+                .preconditionFailed("The user has been modified since it was last read.");
+          }
 
-          return new User(
-              new Email(user.getEmail().getAddress(), verified, verificationToken),
-              finalPassword,
-              user.getProperties());
+          // Check that the password is correct for the user to update
+          return requestValidator.verifyPasswordHeaderAsync(password, foundUser.getPassword())
+              // Hash the password if it is a new password or the hash parameters are outdated
+              .thenCompose(ignored -> hashService
+                  .isMatchAsync(user.getPassword(), foundUser.getPassword()))
+              .thenCompose(isMatch -> isMatch && !hashService.needsRehash(foundUser.getPassword())
+                  ? CompletableFuture.completedFuture(foundUser.getPassword())
+                  : hashService.hashAsync(user.getPassword()))
+              .thenApply(finalPassword -> {
+                // Determine what verification information to use for the updated user object.
+                // If it's a new email address, reset verification status.
+                // If it's the same, keep the existing verification status.
+                boolean verified = email.equals(user.getEmail().getAddress())
+                    && foundUser.getEmail().isVerified();
+
+                String verificationToken = email.equals(user.getEmail().getAddress())
+                    ? foundUser.getEmail().getVerificationToken()
+                    : null;
+
+                LOG.info("Using verified status: {} and token: {} for the updated user.",
+                    verified, verificationToken);
+
+                return new User(
+                    new Email(user.getEmail().getAddress(), verified, verificationToken),
+                    finalPassword,
+                    user.getProperties());
+              })
+              // Pass along the version that was read so the database does not read it again
+              .thenCompose(updatedUser -> usersDao
+                  .update(existingEmail, updatedUser, found.version()));
         })
-        .thenCompose(updatedUser -> usersDao.update(existingEmail, updatedUser))
         .whenComplete((result, throwable) -> {
           if (Objects.isNull(throwable)) {
             LOG.info("Successfully updated user {}.", email);
-            response.resume(Response.ok(result).build());
+            response.resume(versioned(result).build());
           } else {
             LOG.error("Error updating user {}. Caused by: {}", email, throwable.getMessage());
             response.resume(ThunderException.responseFromThrowable(throwable, email));
@@ -209,12 +262,16 @@ public class UserResource {
   }
 
   /**
-   * Retrieves the user with the given email from the database.
+   * Retrieves the user with the given email from the database. Instead of an email, the user
+   * can be looked up by the value of an indexed property, as long as exactly one user has that
+   * value.
    *
    * @param response the async response object used to notify that the operation has completed
    * @param auth the auth principal required to access the resource
    * @param password the user's password
    * @param email the email of the user
+   * @param property the name of an indexed property to look up the user by instead of the email
+   * @param value the value of the property
    */
   @GET
   @Metered(name = "get-requests")
@@ -222,29 +279,47 @@ public class UserResource {
   public void getUser(@Suspended AsyncResponse response,
                       @Parameter(hidden = true) @Auth Principal auth,
                       @Parameter(hidden = true) @HeaderParam("password") String password,
-                      @Parameter(hidden = true) @QueryParam("email") String email) {
+                      @Parameter(hidden = true) @QueryParam("email") String email,
+                      @Parameter(hidden = true) @QueryParam("property") @Nullable String property,
+                      @Parameter(hidden = true) @QueryParam("value") @Nullable String value) {
     requestOptions.setTimeout(response, getTimeoutCounter);
 
+    // Identifies the requested user in logs and error messages
+    String requested = property == null ? email : String.format("%s=%s", property, value);
+
     try {
-      requestValidator.validate(password, email, false);
+      if (property == null) {
+        requestValidator.validate(password, email, false);
+      } else if (email != null) {
+        throw RequestValidationException.invalidParameters(
+            "The email and property query parameters cannot be used together.");
+      } else {
+        requestValidator.validatePropertyLookup(password, property, value);
+      }
     } catch (RequestValidationException e) {
-      response.resume(e.response(email));
+      response.resume(e.response(requested));
       return;
     }
 
-    LOG.info("Attempting to get user {}.", email);
-
-    usersDao.findByEmail(email)
-        .thenAccept(user -> {
-          // Check that the password is correct for the user that was requested
-          requestValidator.verifyPasswordHeader(password, user.getPassword());
-
-          LOG.info("Successfully retrieved user {}.", email);
-          response.resume(Response.ok(user).build());
+    LOG.info("Attempting to get user {}.", requested);
+
+    CompletableFuture<String> lookup = property == null
+        ? CompletableFuture.completedFuture(email)
+        : findEmailByProperty(property, value);
+
+    lookup.thenCompose(usersDao::findVersionedByEmail)
+        // Check that the password is correct for the user that was requested
+        .thenCompose(found -> requestValidator
+            .verifyPasswordHeaderAsync(password, found.user().getPassword())
+            .thenApply(ignored -> found))
+        .thenCompose(found -> upgradePasswordHash(password, found))
+        .thenAccept(found -> {
+          LOG.info("Successfully retrieved user {}.", requested);
+          response.resume(versioned(found).build());
         })
         .exceptionally(throwable -> {
-          LOG.error("Error retrieving user {}. Caused by: {}", email, throwable.getMessage());
-          response.resume(ThunderException.responseFromThrowable(throwable, email));
+          LOG.error("Error retrieving user {}. Caused by: {}", requested, throwable.getMessage());
+          response.resume(ThunderException.responseFromThrowable(throwable, requested));
           return null;
         });
   }
@@ -275,16 +350,10 @@ public class UserResource {
 
     LOG.info("Attempting to delete user {}.", email);
 
-    usersDao.findByEmail(email)
-        // Get the user to make sure the password header is correct (if enabled)
-        .thenAccept(user -> {
-          if (requestValidator.isPasswordHeaderCheckEnabled()
-              && !hashService.isMatch(password, user.getPassword())) {
-            LOG.error("The password for user {} was incorrect.", email);
-            throw RequestValidationException
-                .incorrectPassword("Unable to validate user with provided credentials.");
-          }
-        })
+    usersDao.findPasswordByEmail(email)
+        // Get the stored password to make sure the password header is correct (if enabled)
+        .thenCompose(storedPassword -> requestValidator
+            .verifyPasswordHeaderAsync(password, storedPassword))
         // Once we verify the password header, delete the user
         .thenCompose(Void -> usersDao.delete(email))
         // Send the success/failure result
@@ -298,4 +367,447 @@ public class UserResource {
           }
         });
   }
+
+  /**
+   * Creates each of the given users in the database. Each user is created independently, so the
+   * response contains one result per user, in the same order as the request.
+   *
+   * @param response the async response object used to notify that the operation has completed
+   * @param auth the auth principal required to access the resource
+   * @param users the users to create in the database
+   */
+  @POST
+  @Path("batch")
+  @Metered(name = "batch-post-requests")
+  @SwaggerAnnotations.Methods.BatchCreate
+  public void postUsers(@Suspended AsyncResponse response,
+                        @Parameter(hidden = true) @Auth Principal auth,
+                        List<User> users) {
+    requestOptions.setTimeout(response, batchCreateTimeoutCounter);
+
+    try {
+      requestValidator.validateBatch(users, requestOptions.maxBatchSize(), false);
+    } catch (RequestValidationException e) {
+      response.resume(e.response("batch"));
+      return;
+    }
+
+    LOG.info("Attempting to create a batch of {} new users.", users.size());
+
+    BatchItemResult[] results = new BatchItemResult[users.size()];
+    Map<Integer, User> toInsert = new LinkedHashMap<>();
+
+    // Hash the passwords one at a time, so that a large batch does not fill up the hashing
+    // executor and delay single requests
+    CompletableFuture<Void> hashed = CompletableFuture.completedFuture(null);
+
+    for (int i = 0; i < users.size(); i++) {
+      int index = i;
+      User user = users.get(index);
+      String email = Optional.ofNullable(user)
+          .map(User::getEmail)
+          .map(Email::getAddress)
+          .orElse("null");
+
+      try {
+        requestValidator.validate(user);
+      } catch (RequestValidationException e) {
+        results[index] = failure(e, email);
+        continue;
+      }
+
+      hashed = hashed.thenCompose(ignored -> hashService.hashAsync(user.getPassword())
+          .handle((finalPassword, throwable) -> {
+            if (throwable == null) {
+              // Make sure the user is not verified, as this is a new user
+              toInsert.put(index,
+                  new User(Email.unverified(email), finalPassword, user.getProperties()));
+            } else {
+              results[index] = failure(throwable, email);
+            }
+
+            return null;
+          }));
+    }
+
+    hashed.thenCompose(ignored -> toInsert.isEmpty()
+            ? CompletableFuture.completedFuture(List.<BatchResult>of())
+            : usersDao.insertAll(new ArrayList<>(toInsert.values())))
+        .thenApply(inserted -> {
+          int position = 0;
+
+          for (int index : toInsert.keySet()) {
+            results[index] = toItemResult(inserted.get(position++), Response.Status.CREATED);
+          }
+
+          return Arrays.asList(results);
+        })
+        .whenComplete((result, throwable) -> {
+          if (Objects.isNull(throwable)) {
+            LOG.info("Finished creating a batch of {} new users.", result.size());
+            response.resume(Response.ok(result).build());
+          } else {
+            LOG.error("Error creating a batch of new users. Caused by {}", throwable.getMessage());
+            response.resume(ThunderException.responseFromThrowable(throwable, "batch"));
+          }
+        });
+  }
+
+  /**
+   * Retrieves each of the users with the given emails from the database. The response contains
+   * one result per email, in the same order as the request. This is not available if the
+   * password header check is enabled.
+   *
+   * @param response the async response object used to notify that the operation has completed
+   * @param auth the auth principal required to access the resource
+   * @param emails the emails of the users
+   */
+  @GET
+  @Path("batch")
+  @Metered(name = "batch-get-requests")
+  @SwaggerAnnotations.Methods.BatchGet
+  public void getUsers(@Suspended AsyncResponse response,
+                       @Parameter(hidden = true) @Auth Principal auth,
+                       @Parameter(hidden = true) @QueryParam("email") List<String> emails) {
+    requestOptions.setTimeout(response, batchGetTimeoutCounter);
+
+    processBatch(response, emails, usersDao::findAllByEmail, "retrieve");
+  }
+
+  /**
+   * Deletes each of the users with the given emails from the database. The response contains
+   * one result per email, in the same order as the request. This is not available if the
+   * password header check is enabled.
+   *
+   * @param response the async response object used to notify that the operation has completed
+   * @param auth the auth principal required to access the resource
+   * @param emails the emails of the users
+   */
+  @DELETE
+  @Path("batch")
+  @Metered(name = "batch-delete-requests")
+  @SwaggerAnnotations.Methods.BatchDelete
+  public void deleteUsers(@Suspended AsyncResponse response,
+                          @Parameter(hidden = true) @Auth Principal auth,
+                          @Parameter(hidden = true) @QueryParam("email") List<String> emails) {
+    requestOptions.setTimeout(response, batchDeleteTimeoutCounter);
+
+    processBatch(response, emails, usersDao::deleteAll, "delete");
+  }
+
+  /**
+   * Retrieves one page of users from the database. The token returned with each page is opaque
+   * to the client and is passed back to request the next page. Pages are read directly from the
+   * database, so a page may contain fewer users than the limit even when there are more to list,
+   * and the last page has no token. This is not available if the password header check is
+   * enabled.
+   *
+   * @param response the async response object used to notify that the operation has completed
+   * @param auth the auth principal required to access the resource
+   * @param limit the maximum number of users to return
+   * @param token the token returned with the previous page, or {@code null} for the first page
+   * @param verified if not {@code null}, only users with this verification status are returned
+   */
+  @GET
+  @Path("list")
+  @Metered(name = "list-requests")
+  @SwaggerAnnotations.Methods.ListUsers
+  public void listUsers(@Suspended AsyncResponse response,
+                        @Parameter(hidden = true) @Auth Principal auth,
+                        @Parameter(hidden = true) @QueryParam("limit") @DefaultValue("100")
+                            int limit,
+                        @Parameter(hidden = true) @QueryParam("token") @Nullable String token,
+                        @Parameter(hidden = true) @QueryParam("verified") @Nullable
+                            Boolean verified) {
+    requestOptions.setTimeout(response, listTimeoutCounter);
+
+    String startToken;
+
+    try {
+      requestValidator.validateList(limit, requestOptions.maxBatchSize());
+      startToken = decodeToken(token);
+    } catch (RequestValidationException e) {
+      response.resume(e.response("list"));
+      return;
+    }
+
+    LOG.info("Attempting to list a page of up to {} users.", limit);
+
+    usersDao.scan(0, 1, startToken, limit)
+        .thenApply(page -> new UserList(
+            page.users().stream()
+                .filter(user -> verified == null
+                    || verified == user.getEmail().isVerified())
+                .toList(),
+            encodeToken(page.nextToken())))
+        .whenComplete((result, throwable) -> {
+          if (Objects.isNull(throwable)) {
+            LOG.info("Listed a page of {} users.", result.getUsers().size());
+            response.resume(Response.ok(result).build());
+          } else {
+            LOG.error("Error listing users. Caused by: {}", throwable.getMessage());
+            response.resume(ThunderException.responseFromThrowable(throwable, "list"));
+          }
+        });
+  }
+
+  /**
+   * Encodes the position of a database scan into the token returned to the client.
+   *
+   * @param scanToken the next token of the database scan
+   * @return the token for the client, or {@code null} if there are no more users
+   */
+  @Nullable
+  static String encodeToken(@Nullable String scanToken) {
+    return scanToken == null
+        ? null
+        : Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(scanToken.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a token sent by the client into the position of a database scan.
+   *
+   * @param token the token sent by the client
+   * @return the start token of the database scan, or {@code null} to start from the beginning
+   * @throws RequestValidationException if the token is not valid
+   */
+  @Nullable
+  static String decodeToken(@Nullable String token) {
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+
+    try {
+      return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Attempted to list users with an invalid token {}.", token);
+      throw RequestValidationException.invalidParameters("Invalid token query parameter.");
+    }
+  }
+
+  /**
+   * Validates the batch of emails, then runs the given batch operation for every valid email
+   * and resumes the response with one result per email.
+   *
+   * @param response the async response object used to notify that the operation has completed
+   * @param emails the emails of the users to operate on
+   * @param operation the batch database operation to run
+   * @param action a description of the operation, used for logging
+   */
+  private void processBatch(AsyncResponse response,
+                            List<String> emails,
+                            Function<List<String>, CompletableFuture<List<BatchResult>>> operation,
+                            String action) {
+    try {
+      requestValidator.validateBatch(emails, requestOptions.maxBatchSize(), true);
+    } catch (RequestValidationException e) {
+      response.resume(e.response("batch"));
+      return;
+    }
+
+    LOG.info("Attempting to {} a batch of {} users.", action, emails.size());
+
+    BatchItemResult[] results = new BatchItemResult[emails.size()];
+    Map<Integer, String> valid = new LinkedHashMap<>();
+
+    for (int i = 0; i < emails.size(); i++) {
+      String email = emails.get(i);
+
+      if (email == null || email.isEmpty()) {
+        results[i] = failure(RequestValidationException
+            .invalidParameters("Incorrect or missing email query parameter."), email);
+      } else {
+        valid.put(i, email);
+      }
+    }
+
+    CompletableFuture<List<BatchResult>> processed = valid.isEmpty()
+        ? CompletableFuture.completedFuture(List.of())
+        : operation.apply(new ArrayList<>(valid.values()));
+
+    processed
+        .thenApply(batch -> {
+          int position = 0;
+
+          for (int index : valid.keySet()) {
+            results[index] = toItemResult(batch.get(position++), Response.Status.OK);
+          }
+
+          return Arrays.asList(results);
+        })
+        .whenComplete((result, throwable) -> {
+          if (Objects.isNull(throwable)) {
+            LOG.info("Finished a batch request to {} {} users.", action, result.size());
+            response.resume(Response.ok(result).build());
+          } else {
+            LOG.error("Error in a batch request to {} users. Caused by: {}",
+                action, throwable.getMessage());
+            response.resume(ThunderException.responseFromThrowable(throwable, "batch"));
+          }
+        });
+  }
+
+  /**
+   * Converts the result of a batch database operation into the result returned to the client.
+   *
+   * @param result the result of the database operation for one user
+   * @param successStatus the status to use if the operation succeeded
+   * @return the result to return to the client
+   */
+  private static BatchItemResult toItemResult(BatchResult result, Response.Status successStatus) {
+    return result.error() == null
+        ? BatchItemResult.success(successStatus.getStatusCode(), result.user())
+        : failure(result.error(), result.email());
+  }
+
+  /**
+   * Builds a failed batch item result with the status code and message that a single request
+   * would have received for the same failure.
+   *
+   * @param throwable the reason the item failed
+   * @param email the email of the user that the item was for
+   * @return the failed result
+   */
+  private static BatchItemResult failure(Throwable throwable, String email) {
+    Response failed = ThunderException.responseFromThrowable(throwable, email);
+
+    return BatchItemResult.failure(email, failed.getStatus(), (String) failed.getEntity());
+  }
+
+  /**
+   * Finds the email of the only user whose indexed property has the given value.
+   *
+   * @param property the name of the indexed property
+   * @param value the value of the property
+   * @return a future that is completed with the email, or completed exceptionally with a
+   *         {@link DatabaseException} if no user or more than one user has the value
+   */
+  private CompletableFuture<String> findEmailByProperty(String property, String value) {
+    // Two emails are enough to tell that the value does not identify a single user
+    return usersDao.findEmailsByProperty(property, value, 2)
+        .thenApply(emails -> {
+          if (emails.isEmpty()) {
+            LOG.warn("No user has the value {} for the property {}.", value, property);
+            throw new DatabaseException("User not found in the database.",
+                DatabaseException.Error.USER_NOT_FOUND);
+          }
+
+          if (emails.size() > 1) {
+            LOG.warn("More than one user has the value {} for the property {}.", value, property);
+            throw new DatabaseException("More than one user has the requested property value.",
+                DatabaseException.Error.CONFLICT);
+          }
+
+          return emails.getFirst();
+        });
+  }
+
+  /**
+   * Recomputes and stores the user's password hash if it was computed with different cost
+   * parameters than the ones currently configured. This should only be called after the
+   * supplied password has been verified. Failing to store the new hash does not fail the
+   * request, since the existing hash is still valid.
+   *
+   * @param password the verified plaintext password supplied in the request
+   * @param found the user that was verified, along with the version that was read
+   * @return a future that is completed with the updated user, or the original user if no
+   *         upgrade was needed or the upgrade failed
+   */
+  private CompletableFuture<VersionedUser> upgradePasswordHash(String password,
+                                                               VersionedUser found) {
+    User user = found.user();
+
+    if (!requestValidator.isPasswordHeaderCheckEnabled()
+        || !hashService.needsRehash(user.getPassword())) {
+      return CompletableFuture.completedFuture(found);
+    }
+
+    String email = user.getEmail().getAddress();
+    LOG.info("Upgrading the password hash parameters for user {}.", email);
+
+    return hashService.hashAsync(password)
+        .thenCompose(hashed -> usersDao.update(null,
+            new User(user.getEmail(), hashed, user.getProperties()), found.version()))
+        .exceptionally(throwable -> {
+          LOG.warn("Unable to upgrade the password hash for user {}. Caused by: {}",
+              email, throwable.getMessage());
+          return found;
+        });
+  }
+
+  /**
+   * Parses the versions out of an {@code If-Match} header value, which is either the wildcard
+   * {@code *} or a comma-separated list of entity tags. {@code If-Match} requires the strong
+   * comparison function (RFC 9110, section 13.1.1), so weak tags ({@code W/"..."}) are left out
+   * and can never match. The wildcard matches any version, so it is treated the same as an
+   * absent header.
+   *
+   * @param ifMatch the value of the {@code If-Match} header
+   * @return the strong versions that the header accepts, or an empty optional if any version
+   *     should be accepted
+   */
+  static Optional<Set<String>> parseVersions(@Nullable String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank()) {
+      return Optional.empty();
+    }
+
+    Set<String> versions = new HashSet<>();
+    int length = ifMatch.length();
+    int index = 0;
+
+    while (index < length) {
+      char current = ifMatch.charAt(index);
+
+      if (current == ',' || Character.isWhitespace(current)) {
+        index++;
+        continue;
+      }
+
+      if (current == '*') {
+        return Optional.empty();
+      }
+
+      boolean weak = ifMatch.startsWith("W/", index);
+      int start = weak ? index + 2 : index;
+      String tag;
+
+      if (start < length && ifMatch.charAt(start) == '"') {
+        // Quoted tags may contain commas, so they end at the closing quote
+        int end = ifMatch.indexOf('"', start + 1);
+        end = end < 0 ? length : end;
+
+        tag = ifMatch.substring(start + 1, end);
+        index = end + 1;
+      } else {
+        // Be lenient with clients that send an unquoted version
+        int end = ifMatch.indexOf(',', start);
+        end = end < 0 ? length : end;
+
+        tag = ifMatch.substring(start, end).trim();
+        index = end;
+      }
+
+      if (!weak) {
+        versions.add(tag);
+      }
+    }
+
+    return Optional.of(versions);
+  }
+
+  /**
+   * Builds a successful response containing the user, with an {@code ETag} header set to the
+   * user's version if the database provided one.
+   *
+   * @param found the user and its version
+   * @return the response builder
+   */
+  private static Response.ResponseBuilder versioned(VersionedUser found) {
+    Response.ResponseBuilder builder = Response.ok(found.user());
+
+    return found.version() == null
+        ? builder
+        : builder.tag(new EntityTag(found.version()));
+  }
 }
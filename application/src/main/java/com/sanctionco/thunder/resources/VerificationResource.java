@@ -5,7 +5,10 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.annotation.Metered;
 import com.sanctionco.thunder.ThunderException;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.VersionedUser;
 import com.sanctionco.thunder.email.EmailService;
+import com.sanctionco.thunder.email.MessageTemplate;
+import com.sanctionco.thunder.email.VerificationTokenService;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.ResponseType;
 import com.sanctionco.thunder.models.User;
@@ -34,8 +37,10 @@ import jakarta.ws.rs.core.UriInfo;
 
 import java.net.URI;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -55,6 +60,7 @@ public class VerificationResource {
   private final RequestOptions requestOptions;
   private final RequestValidator requestValidator;
   private final EmailService emailService;
+  private final VerificationTokenService verificationTokens;
 
   private final Counter sendEmailTimeoutCounter;
   private final Counter verifyTimeoutCounter;
@@ -62,7 +68,7 @@ public class VerificationResource {
 
   /**
    * Constructs a new {@code VerificationResource} with the given users DAO, metrics, email service,
-   * hash service, and message options.
+   * hash service, and message options. Verification tokens are random and stored with the user.
    *
    * @param usersDao the DAO used to connect to the database
    * @param requestOptions the set of request options to use for each incoming request
@@ -70,16 +76,38 @@ public class VerificationResource {
    * @param emailService the email service used to send verification emails
    * @param metrics the {@code MetricRegistry} instance used to register metrics
    */
+  public VerificationResource(UsersDao usersDao,
+                              RequestOptions requestOptions,
+                              RequestValidator requestValidator,
+                              EmailService emailService,
+                              MetricRegistry metrics) {
+    this(usersDao, requestOptions, requestValidator, emailService,
+        new VerificationTokenService(), metrics);
+  }
+
+  /**
+   * Constructs a new {@code VerificationResource} with the given users DAO, metrics, email service,
+   * verification token service, hash service, and message options.
+   *
+   * @param usersDao the DAO used to connect to the database
+   * @param requestOptions the set of request options to use for each incoming request
+   * @param requestValidator the validator used to validate incoming requests
+   * @param emailService the email service used to send verification emails
+   * @param verificationTokens the service used to generate and check verification tokens
+   * @param metrics the {@code MetricRegistry} instance used to register metrics
+   */
   @Inject
   public VerificationResource(UsersDao usersDao,
                               RequestOptions requestOptions,
                               RequestValidator requestValidator,
                               EmailService emailService,
+                              VerificationTokenService verificationTokens,
                               MetricRegistry metrics) {
     this.usersDao = Objects.requireNonNull(usersDao);
     this.requestOptions = Objects.requireNonNull(requestOptions);
     this.requestValidator = Objects.requireNonNull(requestValidator);
     this.emailService = Objects.requireNonNull(emailService);
+    this.verificationTokens = Objects.requireNonNull(verificationTokens);
 
     this.sendEmailTimeoutCounter = metrics.counter(MetricNameUtil.SEND_EMAIL_TIMEOUTS);
     this.verifyTimeoutCounter = metrics.counter(MetricNameUtil.VERIFY_TIMEOUTS);
@@ -88,8 +116,9 @@ public class VerificationResource {
 
   /**
    * Sends an email message to the given email address. The email message will contain
-   * a custom URL that can be called to verify the email address. This method will update the user
-   * in the database to include the generated verification token.
+   * a custom URL that can be called to verify the email address. If verification tokens are not
+   * signed, this method will update the user in the database to include the generated
+   * verification token. Signed tokens are not stored, so the user is only read.
    *
    * @param uriInfo the HTTP metadata of the incoming request
    * @param response the async response object used to notify that the operation has completed
@@ -118,21 +147,33 @@ public class VerificationResource {
 
     LOG.info("Attempting to send verification email to user {}", email);
 
-    usersDao.findByEmail(email)
-        .thenApply(user -> {
-          // Check that the supplied password is correct for the user's account
-          requestValidator.verifyPasswordHeader(password, user.getPassword());
+    usersDao.findVersionedByEmail(email)
+        // Check that the supplied password is correct for the user's account
+        .thenCompose(found -> requestValidator
+            .verifyPasswordHeaderAsync(password, found.user().getPassword())
+            .thenApply(ignored -> found))
+        .thenCompose(found -> {
+          User user = found.user();
 
           // Generate the unique verification token
-          String token = generateVerificationToken();
+          String token = verificationTokens.generate(user);
+
+          // A signed token can be checked without the database, so there is nothing to store
+          if (verificationTokens.isSigned()) {
+            return CompletableFuture.completedFuture(new User(
+                new Email(user.getEmail().getAddress(), user.getEmail().isVerified(), token),
+                user.getPassword(),
+                user.getProperties()));
+          }
 
-          // Update the user's verification token
-          return new User(
+          // Update the user's verification token, as long as the user has not changed
+          // since it was read
+          return usersDao.update(user.getEmail().getAddress(), new User(
               new Email(user.getEmail().getAddress(), false, token),
               user.getPassword(),
-              user.getProperties());
+              user.getProperties()), found.version())
+              .thenApply(VersionedUser::user);
         })
-        .thenCompose(user -> usersDao.update(user.getEmail().getAddress(), user))
         .thenCompose(result -> {
           // Build the verification URL
           String verificationUrl = uriInfo.getBaseUriBuilder().path("/verify")
@@ -143,8 +184,13 @@ public class VerificationResource {
 
           LOG.info("Built verification URL {}", verificationUrl);
 
+          // Tell the user how long the link is valid for, if tokens expire
+          Map<MessageTemplate.Placeholder, String> values = verificationTokens.getExpiration()
+              .map(expiration -> Map.of(MessageTemplate.Placeholder.EXPIRY, describe(expiration)))
+              .orElse(Map.of());
+
           // Send the email to the user's email address
-          return emailService.sendVerificationEmail(result.getEmail(), verificationUrl)
+          return emailService.sendVerificationEmail(result.getEmail(), verificationUrl, values)
               .thenApply(success -> {
                 if (!success) {
                   LOG.error("Error sending email to address {}", result.getEmail().getAddress());
@@ -167,8 +213,11 @@ public class VerificationResource {
 
   /**
    * Verifies the given email, marking it as verified in the database if the token matches the
-   * stored verification token. Depending on the given response type, the method will either return
-   * a response that contains the updated verified user or will redirect to an HTML success page.
+   * stored verification token. The stored token is compared by the same database write that
+   * marks the email as verified. A signed token is checked before the database is read, and is
+   * then only compared with the user's current password. Depending on the given response type,
+   * the method will either return a response that contains the updated verified user or will
+   * redirect to an HTML success page.
    *
    * @param response the async response object used to notify that the operation has completed
    * @param email the email to verify
@@ -195,46 +244,68 @@ public class VerificationResource {
       return;
     }
 
+    // Reject a forged or expired signed token without reading the database
+    boolean signed = verificationTokens.isSignedToken(token);
+
+    if (signed) {
+      try {
+        verificationTokens.verify(email, token);
+      } catch (RequestValidationException e) {
+        LOG.warn("User provided an invalid signed verification token for {}.", email);
+        response.resume(e.response(email));
+        return;
+      }
+    }
+
     LOG.info("Attempting to verify email {}", email);
 
-    usersDao.findByEmail(email)
-        .thenApply(user -> {
-          String verificationToken = user.getEmail().getVerificationToken();
-          if (verificationToken == null || verificationToken.isEmpty()) {
-            LOG.warn("Tried to read null or empty verification token");
-            throw RequestValidationException
-                .tokenNotSet("Bad value found for user verification token.");
-          }
+    // A stored token is compared by the database as part of the write
+    CompletableFuture<User> verified = signed
+        ? verifySignedUser(email, token)
+        : usersDao.markVerified(email, token);
+
+    verified.whenComplete((result, throwable) -> {
+      if (Objects.isNull(throwable)) {
+        LOG.info("Successfully verified email {}.", email);
+
+        if (responseType.equals(ResponseType.JSON)) {
+          LOG.info("Returning JSON in the response.");
+          response.resume(Response.ok(result).build());
+        } else {
+          LOG.info("Redirecting to /verify/success in order to return HTML.");
+          URI uri = UriBuilder.fromUri("/verify/success").build();
+          response.resume(Response.seeOther(uri).build());
+        }
+      } else {
+        LOG.error("Error verifying email {}. Caused by: {}", email, throwable.getMessage());
+        response.resume(ThunderException.responseFromThrowable(throwable, email));
+      }
+    });
+  }
 
-          if (!token.equals(verificationToken)) {
-            LOG.warn("User provided verification token does not match DB verification token.");
-            throw RequestValidationException.incorrectToken("Incorrect verification token.");
-          }
+  /**
+   * Marks the user with the given email as verified, after checking that the signed token was
+   * issued while the user had their current password.
+   *
+   * @param email the email to verify
+   * @param token the signed token, which has already been checked with
+   *     {@link VerificationTokenService#verify(String, String)}
+   * @return a future that completes with the verified user
+   */
+  private CompletableFuture<User> verifySignedUser(String email, String token) {
+    return usersDao.findVersionedByEmail(email)
+        .thenCompose(found -> {
+          User user = found.user();
+
+          verificationTokens.verifyUser(token, user);
 
-          // Create the verified user
-          return new User(
+          // Store the verified user, as long as the user has not changed since it was read
+          return usersDao.update(email, new User(
               user.getEmail().verifiedCopy(),
               user.getPassword(),
-              user.getProperties());
+              user.getProperties()), found.version());
         })
-        .thenCompose(updatedUser -> usersDao.update(email, updatedUser))
-        .whenComplete((result, throwable) -> {
-          if (Objects.isNull(throwable)) {
-            LOG.info("Successfully verified email {}.", email);
-
-            if (responseType.equals(ResponseType.JSON)) {
-              LOG.info("Returning JSON in the response.");
-              response.resume(Response.ok(result).build());
-            } else {
-              LOG.info("Redirecting to /verify/success in order to return HTML.");
-              URI uri = UriBuilder.fromUri("/verify/success").build();
-              response.resume(Response.seeOther(uri).build());
-            }
-          } else {
-            LOG.error("Error verifying email {}. Caused by: {}", email, throwable.getMessage());
-            response.resume(ThunderException.responseFromThrowable(throwable, email));
-          }
-        });
+        .thenApply(VersionedUser::user);
   }
 
   /**
@@ -264,17 +335,16 @@ public class VerificationResource {
 
     LOG.info("Attempting to reset verification status for user {}", email);
 
-    usersDao.findByEmail(email)
-        .thenApply(user -> {
-          // Check that the supplied password is correct for the user's account
-          requestValidator.verifyPasswordHeader(password, user.getPassword());
-
-          return new User(
-              new Email(user.getEmail().getAddress(), false, null),
-              user.getPassword(),
-              user.getProperties());
-        })
-        .thenCompose(user -> usersDao.update(null, user))
+    usersDao.findVersionedByEmail(email)
+        // Check that the supplied password is correct for the user's account
+        .thenCompose(found -> requestValidator
+            .verifyPasswordHeaderAsync(password, found.user().getPassword())
+            .thenApply(ignored -> found))
+        .thenCompose(found -> usersDao.update(null, new User(
+            new Email(found.user().getEmail().getAddress(), false, null),
+            found.user().getPassword(),
+            found.user().getProperties()), found.version()))
+        .thenApply(VersionedUser::user)
         .whenComplete((result, throwable) -> {
           if (Objects.isNull(throwable)) {
             LOG.info("Successfully reset verification status for user {}.", email);
@@ -300,11 +370,27 @@ public class VerificationResource {
   }
 
   /**
-   * Generates a random unique token.
+   * Describes a token expiration in the largest whole unit of days, hours, or minutes, such as
+   * {@code 1 day} or {@code 90 minutes}, to be inserted into verification emails.
    *
-   * @return the token
+   * @param expiration the token expiration
+   * @return the description of the expiration
    */
-  private String generateVerificationToken() {
-    return UUID.randomUUID().toString();
+  static String describe(Duration expiration) {
+    long minutes = expiration.toMinutes();
+
+    if (minutes > 0 && minutes % Duration.ofDays(1).toMinutes() == 0) {
+      return plural(minutes / Duration.ofDays(1).toMinutes(), "day");
+    }
+
+    if (minutes > 0 && minutes % Duration.ofHours(1).toMinutes() == 0) {
+      return plural(minutes / Duration.ofHours(1).toMinutes(), "hour");
+    }
+
+    return plural(minutes, "minute");
+  }
+
+  private static String plural(long count, String unit) {
+    return count + " " + unit + (count == 1 ? "" : "s");
   }
 }
@@ -22,6 +22,14 @@ public class MetricNameUtil {
       UserResource.class, "update.timeouts");
   public static String DELETE_TIMEOUTS = MetricRegistry.name(
       UserResource.class, "delete.timeouts");
+  public static String BATCH_CREATE_TIMEOUTS = MetricRegistry.name(
+      UserResource.class, "batch-create.timeouts");
+  public static String BATCH_GET_TIMEOUTS = MetricRegistry.name(
+      UserResource.class, "batch-get.timeouts");
+  public static String BATCH_DELETE_TIMEOUTS = MetricRegistry.name(
+      UserResource.class, "batch-delete.timeouts");
+  public static String LIST_TIMEOUTS = MetricRegistry.name(
+      UserResource.class, "list.timeouts");
   public static String SEND_EMAIL_TIMEOUTS = MetricRegistry.name(
       UserResource.class, "send-email.timeouts");
   public static String VERIFY_TIMEOUTS = MetricRegistry.name(
@@ -6,6 +6,8 @@ import jakarta.validation.Valid;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Provides optional configuration options for property validation, including the validated
@@ -44,4 +46,16 @@ public class PropertyValidationConfiguration {
   public List<PropertyValidationRule> getValidationRules() {
     return validationRules;
   }
+
+  /**
+   * Provides the names of the properties that are indexed in the database.
+   *
+   * @return the names of the indexed properties
+   */
+  public Set<String> getIndexedProperties() {
+    return validationRules.stream()
+        .filter(PropertyValidationRule::isIndexed)
+        .map(PropertyValidationRule::getName)
+        .collect(Collectors.toUnmodifiableSet());
+  }
 }
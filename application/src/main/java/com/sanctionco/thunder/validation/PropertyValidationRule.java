@@ -1,31 +1,69 @@
 package com.sanctionco.thunder.validation;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.regex.Pattern;
 
 /**
  * Represents a rule for {@code User} (in the {@code api} module) property validation. Provides
  * access to the name and type of the property. These rules define what additional properties
  * a user should have in their property map.
  *
+ * <p>A rule can also mark its property as indexed, so that users can be looked up by the value
+ * of the property. Only properties with a name made up of letters, digits, {@code _}, and
+ * {@code -} can be indexed, and list and map properties cannot be indexed.
+ *
  * @see PropertyValidator
  */
 public class PropertyValidationRule {
+  private static final Pattern INDEXED_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
   private final String name;
   private final Class<?> type;
+  private final boolean indexed;
+
+  /**
+   * Constructs a new {@code PropertyValidationRule} with the given name and type, for a property
+   * that is not indexed.
+   *
+   * @param name the property's name
+   * @param type the property's type
+   */
+  public PropertyValidationRule(String name, String type) {
+    this(name, type, false);
+  }
 
   /**
    * Constructs a new {@code PropertyValidationRule} with the given name and type.
    *
    * @param name the property's name
    * @param type the property's type
+   * @param indexed whether users can be looked up by the value of the property
+   * @throws IllegalArgumentException if the property is indexed but its name or type cannot be
+   *     indexed
    */
+  @JsonCreator
   public PropertyValidationRule(@JsonProperty("name") String name,
-                                @JsonProperty("type") String type) {
+                                @JsonProperty("type") String type,
+                                @JsonProperty("indexed") Boolean indexed) {
     this.name = Objects.requireNonNull(name);
     this.type = PropertyValidator.getType(Objects.requireNonNull(type));
+    this.indexed = Boolean.TRUE.equals(indexed);
+
+    if (this.indexed && !INDEXED_NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException(String.format(
+          "The indexed property %s may only contain letters, digits, _, and -.", name));
+    }
+
+    if (this.indexed && (List.class.equals(this.type) || Map.class.equals(this.type))) {
+      throw new IllegalArgumentException(String.format(
+          "The property %s cannot be indexed because it is a %s.", name, type));
+    }
   }
 
   public String getName() {
@@ -36,6 +74,10 @@ public class PropertyValidationRule {
     return type;
   }
 
+  public boolean isIndexed() {
+    return indexed;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (this == obj) {
@@ -47,12 +89,13 @@ public class PropertyValidationRule {
     }
 
     return Objects.equals(this.name, other.name)
-        && Objects.equals(this.type, other.type);
+        && Objects.equals(this.type, other.type)
+        && this.indexed == other.indexed;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(name, type);
+    return Objects.hash(name, type, indexed);
   }
 
   @Override
@@ -60,6 +103,7 @@ public class PropertyValidationRule {
     return new StringJoiner(", ", "PropertyValidationRule [", "]")
         .add(String.format("name=%s", name))
         .add(String.format("type=%s", type))
+        .add(String.format("indexed=%s", indexed))
         .toString();
   }
 }
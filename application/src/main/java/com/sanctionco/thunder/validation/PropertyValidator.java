@@ -3,6 +3,7 @@ package com.sanctionco.thunder.validation;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -16,6 +17,7 @@ public class PropertyValidator {
 
   private final PropertyValidationConfiguration validationOptions;
   private final Map<String, Class<?>> allowedMap;
+  private final Set<String> indexedProperties;
 
   /**
    * Constructs a new {@code PropertyValidator} with the given validation configuration.
@@ -28,6 +30,17 @@ public class PropertyValidator {
         .collect(Collectors.toMap(
             PropertyValidationRule::getName,
             PropertyValidationRule::getType));
+    this.indexedProperties = validationOptions.getIndexedProperties();
+  }
+
+  /**
+   * Determines if users can be looked up by the value of the given property.
+   *
+   * @param name the name of the property
+   * @return {@code true} if the property is indexed; {@code false} otherwise
+   */
+  public boolean isIndexed(String name) {
+    return indexedProperties.contains(name);
   }
 
   /**
@@ -51,6 +51,8 @@ public class RequestValidationException extends ThunderException {
           .entity(message).build();
       case INCORRECT_PASSWORD -> Response.status(Response.Status.UNAUTHORIZED)
           .entity(message).build();
+      case PRECONDITION_FAILED -> Response.status(Response.Status.PRECONDITION_FAILED)
+          .entity(message).build();
       // TOKEN_NOT_SET is same as default
       default -> Response.serverError().entity(message).build();
     };
@@ -139,6 +141,17 @@ public class RequestValidationException extends ThunderException {
     return new RequestValidationException(message, Error.TOKEN_NOT_SET);
   }
 
+  /**
+   * Construct a new {@code RequestValidationException} caused by a conditional request whose
+   * precondition (such as an {@code If-Match} header) did not match the current user.
+   *
+   * @param message a description of the exception
+   * @return the new {@code RequestValidationException}
+   */
+  public static RequestValidationException preconditionFailed(String message) {
+    return new RequestValidationException(message, Error.PRECONDITION_FAILED);
+  }
+
   /**
    * The allowed types of errors to associate with a {@code RequestValidationException}.
    */
@@ -146,6 +159,7 @@ public class RequestValidationException extends ThunderException {
     INVALID_PARAMETERS,
     INCORRECT_PASSWORD,
     TOKEN_NOT_SET,
-    INCORRECT_TOKEN
+    INCORRECT_TOKEN,
+    PRECONDITION_FAILED
   }
 }
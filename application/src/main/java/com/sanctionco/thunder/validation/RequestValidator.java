@@ -4,6 +4,8 @@ import com.sanctionco.jmail.EmailValidator;
 import com.sanctionco.thunder.crypto.HashService;
 import com.sanctionco.thunder.models.User;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -106,6 +108,36 @@ public class RequestValidator {
     }
   }
 
+  /**
+   * Determines if a request to look up a user by the value of a property is valid. Checks to
+   * ensure that the property is indexed and that the value is present. If the password header
+   * check is enabled, the password must be present as well.
+   *
+   * @param password the password of the user
+   * @param property the name of the property to look up the user by
+   * @param value the value of the property
+   * @throws RequestValidationException if validation fails
+   */
+  public void validatePropertyLookup(String password, String property, String value) {
+    if (!propertyValidator.isIndexed(property)) {
+      LOG.warn("Attempted to look up a user by the property {}, which is not indexed.", property);
+      throw RequestValidationException.invalidParameters(
+          String.format("Users cannot be looked up by the property %s.", property));
+    }
+
+    if (value == null || value.isEmpty()) {
+      LOG.warn("Attempted to look up a user by the property {} without a value.", property);
+      throw RequestValidationException
+          .invalidParameters("Incorrect or missing value query parameter.");
+    }
+
+    if (passwordHeaderCheckEnabled && (password == null || password.isEmpty())) {
+      LOG.warn("Attempted to look up a user by the property {} without a password.", property);
+      throw RequestValidationException
+          .invalidParameters("Credentials are required to access this resource.");
+    }
+  }
+
   /**
    * Determines if the given password, email, and User object are valid. In this method,
    * the email is not checked.
@@ -128,6 +160,60 @@ public class RequestValidator {
     }
   }
 
+  /**
+   * Determines if the given batch of items is valid. Checks to ensure that the batch is not
+   * null or empty and that it does not contain more than the maximum number of items. Batches
+   * that operate on existing users cannot supply a password for each user, so they are rejected
+   * if the password header check is enabled.
+   *
+   * @param items the items in the batch
+   * @param maxSize the maximum number of items allowed in a single batch
+   * @param existingUsers {@code true} if the batch operates on existing users;
+   *                      {@code false} otherwise
+   * @throws RequestValidationException if validation fails
+   */
+  public void validateBatch(List<?> items, int maxSize, boolean existingUsers) {
+    if (existingUsers && passwordHeaderCheckEnabled) {
+      LOG.warn("Attempted to operate on a batch of users with the password header check enabled.");
+      throw RequestValidationException.invalidParameters("Batch requests for existing users"
+          + " are not available when headerPasswordCheck is enabled.");
+    }
+
+    if (items == null || items.isEmpty()) {
+      LOG.warn("Attempted to operate on an empty batch.");
+      throw RequestValidationException.invalidParameters("Cannot operate on an empty batch.");
+    }
+
+    if (items.size() > maxSize) {
+      LOG.warn("Attempted to operate on a batch of {} users.", items.size());
+      throw RequestValidationException.invalidParameters(
+          String.format("A batch cannot contain more than %d users.", maxSize));
+    }
+  }
+
+  /**
+   * Determines if a request to list users is valid. Checks to ensure that the page size is
+   * positive and not more than the maximum. Listing users cannot supply a password for each
+   * user, so it is rejected if the password header check is enabled.
+   *
+   * @param limit the maximum number of users to return in the page
+   * @param maxLimit the largest limit that is allowed
+   * @throws RequestValidationException if validation fails
+   */
+  public void validateList(int limit, int maxLimit) {
+    if (passwordHeaderCheckEnabled) {
+      LOG.warn("Attempted to list users with the password header check enabled.");
+      throw RequestValidationException.invalidParameters(
+          "Listing users is not available when headerPasswordCheck is enabled.");
+    }
+
+    if (limit < 1 || limit > maxLimit) {
+      LOG.warn("Attempted to list users with a limit of {}.", limit);
+      throw RequestValidationException.invalidParameters(
+          String.format("The limit query parameter must be between 1 and %d.", maxLimit));
+    }
+  }
+
   /**
    * Returns {@code true} if the validator is checking for the password header;
    * {@code false} otherwise.
@@ -158,6 +244,32 @@ public class RequestValidator {
     }
   }
 
+  /**
+   * Verify if the supplied password in a request matches the actual password, without blocking
+   * the calling thread while the password hash is computed.
+   *
+   * @param suppliedPassword the password supplied in the request headers
+   * @param actualPassword the actual password to verify against
+   * @return a {@link CompletableFuture} that is eventually completed when the password has been
+   *         verified, or completed exceptionally with a {@link RequestValidationException} if the
+   *         password does not match
+   */
+  public CompletableFuture<Void> verifyPasswordHeaderAsync(String suppliedPassword,
+                                                           String actualPassword) {
+    if (!passwordHeaderCheckEnabled) {
+      // Header check is disabled, nothing to do
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return hashService.isMatchAsync(suppliedPassword, actualPassword).thenAccept(isMatch -> {
+      if (!isMatch) {
+        LOG.error("The password supplied in the header was incorrect.");
+        throw RequestValidationException
+            .incorrectPassword("Unable to validate user with provided credentials.");
+      }
+    });
+  }
+
   /**
    * Determines if the given email is valid.
    *
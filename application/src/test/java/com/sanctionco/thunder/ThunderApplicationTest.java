@@ -6,11 +6,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sanctionco.thunder.dao.DatabaseHealthCheck;
 import com.sanctionco.thunder.dao.UsersDao;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
+import com.sanctionco.thunder.dao.tiered.WriteBehindConfiguration;
 import com.sanctionco.thunder.email.EmailHealthCheck;
 import com.sanctionco.thunder.email.EmailService;
 import com.sanctionco.thunder.email.EmailServiceFactory;
+import com.sanctionco.thunder.email.OutboxConfiguration;
+import com.sanctionco.thunder.email.VerificationTokenConfiguration;
 import com.sanctionco.thunder.openapi.OpenApiBundle;
 import com.sanctionco.thunder.openapi.OpenApiConfiguration;
+import com.sanctionco.thunder.resources.AdminResource;
+import com.sanctionco.thunder.resources.RequestOptions;
 import com.sanctionco.thunder.resources.UserResource;
 import com.sanctionco.thunder.resources.VerificationResource;
 import com.sanctionco.thunder.secrets.SecretSourceProvider;
@@ -19,6 +25,8 @@ import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.jersey.setup.JerseyEnvironment;
+import io.dropwizard.lifecycle.AutoCloseableManager;
+import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
 
 import java.util.List;
 
@@ -32,6 +40,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doNothing;
@@ -60,9 +69,16 @@ class ThunderApplicationTest {
     when(EMAIL_FACTORY.isEnabled()).thenReturn(true);
     when(EMAIL_FACTORY.createEmailService(any(MetricRegistry.class))).thenReturn(EMAIL_SERVICE);
     when(EMAIL_FACTORY.createHealthCheck()).thenReturn(EMAIL_HEALTH_CHECK);
+    when(EMAIL_FACTORY.getVerificationTokenConfiguration())
+        .thenReturn(new VerificationTokenConfiguration());
+    when(EMAIL_FACTORY.getOutboxConfiguration()).thenReturn(new OutboxConfiguration());
 
     when(DAO_FACTORY.createHealthCheck()).thenReturn(DATABASE_HEALTH_CHECK);
-    when(DAO_FACTORY.createUsersDao(any(ObjectMapper.class))).thenReturn(USERS_DAO);
+    when(DAO_FACTORY.createUsersDao(
+        any(ObjectMapper.class), any(MetricRegistry.class), anySet()))
+        .thenReturn(USERS_DAO);
+    when(DAO_FACTORY.getCacheConfiguration()).thenReturn(new CacheConfiguration());
+    when(DAO_FACTORY.getWriteBehindConfiguration()).thenReturn(new WriteBehindConfiguration());
 
     when(CONFIG.getUsersDaoFactory()).thenReturn(DAO_FACTORY);
     when(CONFIG.getEmailServiceFactory()).thenReturn(EMAIL_FACTORY);
@@ -110,10 +126,12 @@ class ThunderApplicationTest {
     var jersey = mock(JerseyEnvironment.class);
     var healthChecks = mock(HealthCheckRegistry.class);
     var metrics = mock(MetricRegistry.class);
+    var lifecycle = mock(LifecycleEnvironment.class);
 
     when(environment.jersey()).thenReturn(jersey);
     when(environment.healthChecks()).thenReturn(healthChecks);
     when(environment.metrics()).thenReturn(metrics);
+    when(environment.lifecycle()).thenReturn(lifecycle);
 
     var captor = ArgumentCaptor.forClass(Object.class);
 
@@ -124,6 +142,9 @@ class ThunderApplicationTest {
     verify(healthChecks, times(1)).register(eq("Database"), any(DatabaseHealthCheck.class));
     verify(healthChecks, times(1)).register(eq("Email"), any(EmailHealthCheck.class));
 
+    // Verify the database is closed when the server stops
+    verify(lifecycle, times(1)).manage(any(AutoCloseableManager.class));
+
     // Make sure each class that should have been registered on jersey was registered
     List<Object> values = captor.getAllValues();
 
@@ -133,7 +154,9 @@ class ThunderApplicationTest {
         () -> assertEquals(1,
             values.stream().filter(v -> v instanceof UserResource).count()),
         () -> assertEquals(1,
-            values.stream().filter(v -> v instanceof VerificationResource).count()));
+            values.stream().filter(v -> v instanceof VerificationResource).count()),
+        () -> assertEquals(0,
+            values.stream().filter(v -> v instanceof AdminResource).count()));
   }
 
   @Test
@@ -142,11 +165,13 @@ class ThunderApplicationTest {
     var jersey = mock(JerseyEnvironment.class);
     var healthChecks = mock(HealthCheckRegistry.class);
     var metrics = mock(MetricRegistry.class);
+    var lifecycle = mock(LifecycleEnvironment.class);
     var config = spy(ThunderConfiguration.class);
 
     when(environment.jersey()).thenReturn(jersey);
     when(environment.healthChecks()).thenReturn(healthChecks);
     when(environment.metrics()).thenReturn(metrics);
+    when(environment.lifecycle()).thenReturn(lifecycle);
 
     when(config.getUsersDaoFactory()).thenReturn(DAO_FACTORY);
 
@@ -168,6 +193,37 @@ class ThunderApplicationTest {
         () -> assertEquals(1,
             values.stream().filter(v -> v instanceof UserResource).count()),
         () -> assertEquals(0,
-            values.stream().filter(v -> v instanceof VerificationResource).count()));
+            values.stream().filter(v -> v instanceof VerificationResource).count()),
+        () -> assertEquals(0,
+            values.stream().filter(v -> v instanceof AdminResource).count()));
+  }
+
+  @Test
+  void testRunWithAdminEndpoints() {
+    var environment = mock(Environment.class);
+    var jersey = mock(JerseyEnvironment.class);
+    var healthChecks = mock(HealthCheckRegistry.class);
+    var metrics = mock(MetricRegistry.class);
+    var lifecycle = mock(LifecycleEnvironment.class);
+    var config = spy(ThunderConfiguration.class);
+    var options = spy(RequestOptions.class);
+
+    when(environment.jersey()).thenReturn(jersey);
+    when(environment.healthChecks()).thenReturn(healthChecks);
+    when(environment.metrics()).thenReturn(metrics);
+    when(environment.lifecycle()).thenReturn(lifecycle);
+
+    when(config.getUsersDaoFactory()).thenReturn(DAO_FACTORY);
+    when(config.getRequestOptions()).thenReturn(options);
+    when(options.adminEndpointsEnabled()).thenReturn(true);
+
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+
+    application.run(config, environment);
+
+    verify(jersey, atLeastOnce()).register(captor.capture());
+
+    assertEquals(1,
+        captor.getAllValues().stream().filter(v -> v instanceof AdminResource).count());
   }
 }
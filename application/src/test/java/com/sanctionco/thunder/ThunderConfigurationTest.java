@@ -12,6 +12,7 @@ import com.sanctionco.thunder.validation.PropertyValidationRule;
 import io.dropwizard.util.Duration;
 
 import java.util.Collections;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
@@ -54,10 +55,15 @@ class ThunderConfigurationTest {
 
     assertTrue(configuration.getValidationConfiguration().allowSubset());
     assertFalse(configuration.getValidationConfiguration().allowSuperset());
-    assertEquals(1, configuration.getValidationConfiguration().getValidationRules().size());
+    assertEquals(2, configuration.getValidationConfiguration().getValidationRules().size());
     assertEquals(
         new PropertyValidationRule("testProperty", "list"),
         configuration.getValidationConfiguration().getValidationRules().get(0));
+    assertEquals(
+        new PropertyValidationRule("username", "string", true),
+        configuration.getValidationConfiguration().getValidationRules().get(1));
+    assertEquals(Set.of("username"),
+        configuration.getValidationConfiguration().getIndexedProperties());
 
     // This config should use the default hash configuration
     assertEquals(HashAlgorithm.SIMPLE, configuration.getHashConfiguration().getAlgorithm());
@@ -74,7 +80,11 @@ class ThunderConfigurationTest {
         () -> assertEquals("Thunder API", configuration.getOpenApiConfiguration().getTitle()));
 
     // This config should use the default request options
-    assertEquals(Duration.seconds(30), configuration.getRequestOptions().operationTimeout());
+    assertAll("Request options are correct",
+        () -> assertEquals(Duration.seconds(30),
+            configuration.getRequestOptions().operationTimeout()),
+        () -> assertEquals(1000, configuration.getRequestOptions().maxBatchSize()),
+        () -> assertFalse(configuration.getRequestOptions().adminEndpointsEnabled()));
   }
 
   @Test
@@ -113,8 +123,12 @@ class ThunderConfigurationTest {
     // This config should use an explicit local secrets fetcher
     assertTrue(configuration.getSecretProvider() instanceof EnvironmentSecretProvider);
 
-    // This config should have a 20s default timeout
-    assertEquals(Duration.seconds(20), configuration.getRequestOptions().operationTimeout());
+    // This config should have a 20s default timeout, a smaller batch size, and admin endpoints
+    assertAll("Request options are correct",
+        () -> assertEquals(Duration.seconds(20),
+            configuration.getRequestOptions().operationTimeout()),
+        () -> assertEquals(50, configuration.getRequestOptions().maxBatchSize()),
+        () -> assertTrue(configuration.getRequestOptions().adminEndpointsEnabled()));
   }
 
   @Test
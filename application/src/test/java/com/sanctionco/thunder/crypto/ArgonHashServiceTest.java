@@ -1,11 +1,20 @@
 package com.sanctionco.thunder.crypto;
 
+import io.dropwizard.util.Duration;
+
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class ArgonHashServiceTest {
+  private static final String OUTDATED_HASH = "$argon2id$v=19$m=15,t=2,p=1$and1aHgwcThpM2EwM"
+      + "DAwMA$+GgRQ1NSPghlIAUWlO1mVTktSQVSj35tUNvLiVfWiB0";
+
   private final HashService hashService = new ArgonHashService(true, false);
 
   @Test
@@ -25,4 +34,54 @@ class ArgonHashServiceTest {
 
     assertFalse(hashService.isMatch(plaintext, hashed));
   }
+
+  @Test
+  void testHashUsesConfiguredCost() {
+    var hashService = new ArgonHashService(true, false, configuration(true));
+
+    String hashed = hashService.hash("password");
+
+    assertAll("The configured cost is used",
+        () -> assertTrue(hashed.contains("m=64,t=1,p=1")),
+        () -> assertTrue(hashService.isMatch("password", hashed)),
+        () -> assertFalse(hashService.needsRehash(hashed)),
+        () -> assertTrue(hashService.needsRehash(OUTDATED_HASH)),
+        () -> assertFalse(hashService.needsRehash("not-an-argon-hash")));
+  }
+
+  @Test
+  void testNeedsRehashDisabled() {
+    assertAll("Hashes are never upgraded when disabled",
+        () -> assertFalse(new ArgonHashService(true, false, configuration(false))
+            .needsRehash(OUTDATED_HASH)),
+        () -> assertFalse(new ArgonHashService(false, false, configuration(true))
+            .needsRehash(OUTDATED_HASH)),
+        () -> assertFalse(new ArgonHashService(true, true, configuration(true))
+            .needsRehash(OUTDATED_HASH)));
+  }
+
+  @Test
+  void testCalibrationIsUsed() {
+    var configuration = configuration(true);
+    var calibration = mock(HashCalibrationConfiguration.class);
+
+    when(calibration.isEnabled()).thenReturn(true);
+    when(calibration.getTargetTime()).thenReturn(Duration.nanoseconds(1));
+    when(configuration.getCalibration()).thenReturn(calibration);
+
+    var hashService = new ArgonHashService(true, false, configuration);
+
+    // A target faster than the configured cost keeps the configured cost
+    assertEquals(1, hashService.getConfiguration().getIterations());
+  }
+
+  private static PasswordHashConfiguration configuration(boolean rehashOnVerify) {
+    var configuration = mock(PasswordHashConfiguration.class);
+
+    when(configuration.getArgon()).thenReturn(new ArgonConfiguration(64, 1, 1));
+    when(configuration.getCalibration()).thenReturn(new HashCalibrationConfiguration());
+    when(configuration.rehashOnVerify()).thenReturn(rehashOnVerify);
+
+    return configuration;
+  }
 }
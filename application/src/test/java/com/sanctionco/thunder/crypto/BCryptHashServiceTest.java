@@ -2,8 +2,11 @@ package com.sanctionco.thunder.crypto;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class BCryptHashServiceTest {
   private final HashService hashService = new BCryptHashService(true, false);
@@ -23,4 +26,30 @@ class BCryptHashServiceTest {
 
     assertFalse(hashService.isMatch(plaintext, hashed));
   }
+
+  @Test
+  void testNeedsRehash() {
+    var configuration = mock(PasswordHashConfiguration.class);
+
+    when(configuration.getBcrypt()).thenReturn(new BCryptConfiguration(4));
+    when(configuration.getCalibration()).thenReturn(new HashCalibrationConfiguration());
+    when(configuration.rehashOnVerify()).thenReturn(true);
+
+    var hashService = new BCryptHashService(true, false, configuration);
+    String hashed = hashService.hash("password");
+
+    assertAll("Hashes with a different cost should be upgraded",
+        () -> assertTrue(hashed.matches("^\\$2[aby]\\$04\\$.*")),
+        () -> assertTrue(hashService.isMatch("password", hashed)),
+        () -> assertFalse(hashService.needsRehash(hashed)),
+        () -> assertTrue(hashService.needsRehash(
+            "$2a$10$ARMWj7IH.TENN4iaH2W0Eu8loAX2iAa46GFMmMIuGhvYEGnWYL6Jy")),
+        () -> assertFalse(hashService.needsRehash("not-a-bcrypt-hash")));
+  }
+
+  @Test
+  void testNeedsRehashDisabledByDefaultCost() {
+    assertFalse(hashService.needsRehash(
+        "$2a$10$ARMWj7IH.TENN4iaH2W0Eu8loAX2iAa46GFMmMIuGhvYEGnWYL6Jy"));
+  }
 }
@@ -0,0 +1,97 @@
+package com.sanctionco.thunder.crypto;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingHashServiceTest {
+  private static final PasswordHashConfiguration CONFIG = TestResources.readResourceYaml(
+      PasswordHashConfiguration.class,
+      "fixtures/configuration/crypto/password-hash-config.yaml");
+
+  @Test
+  void matchShouldOnlyBeComputedOnce() {
+    var delegate = mock(HashService.class);
+    var metrics = new MetricRegistry();
+    var hashService = new CachingHashService(delegate, CONFIG.getMatchCache(), metrics);
+
+    when(delegate.isMatch("password", "hashed")).thenReturn(true);
+
+    assertTrue(hashService.isMatch("password", "hashed"));
+    assertTrue(hashService.isMatch("password", "hashed"));
+
+    verify(delegate, times(1)).isMatch("password", "hashed");
+
+    assertEquals(1, metrics.counter(
+        "com.sanctionco.thunder.crypto.CachingHashService.hits").getCount());
+    assertEquals(1, metrics.counter(
+        "com.sanctionco.thunder.crypto.CachingHashService.misses").getCount());
+  }
+
+  @Test
+  void asyncMatchShouldOnlyBeComputedOnce() {
+    var delegate = mock(HashService.class);
+    var hashService = new CachingHashService(
+        delegate, CONFIG.getMatchCache(), new MetricRegistry());
+
+    when(delegate.isMatchAsync("password", "hashed"))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    assertTrue(hashService.isMatchAsync("password", "hashed").join());
+    assertTrue(hashService.isMatchAsync("password", "hashed").join());
+    assertTrue(hashService.isMatch("password", "hashed"));
+
+    verify(delegate, times(1)).isMatchAsync("password", "hashed");
+    verify(delegate, never()).isMatch("password", "hashed");
+  }
+
+  @Test
+  void mismatchShouldNotBeCached() {
+    var delegate = mock(HashService.class);
+    var hashService = new CachingHashService(
+        delegate, CONFIG.getMatchCache(), new MetricRegistry());
+
+    when(delegate.isMatch("incorrect", "hashed")).thenReturn(false);
+
+    assertFalse(hashService.isMatch("incorrect", "hashed"));
+    assertFalse(hashService.isMatch("incorrect", "hashed"));
+
+    verify(delegate, times(2)).isMatch("incorrect", "hashed");
+  }
+
+  @Test
+  void changedHashShouldNotMatchCachedEntry() {
+    var delegate = new SimpleHashService(true, false);
+    var hashService = new CachingHashService(
+        delegate, CONFIG.getMatchCache(), new MetricRegistry());
+
+    assertTrue(hashService.isMatch("password", "password"));
+
+    // The same supplied password should not match once the stored hash changes
+    assertFalse(hashService.isMatch("password", "newPassword"));
+  }
+
+  @Test
+  void hashShouldUseDelegate() {
+    var delegate = new Sha256HashService(true, false);
+    var hashService = new CachingHashService(
+        delegate, CONFIG.getMatchCache(), new MetricRegistry());
+
+    var hashed = hashService.hash("password");
+
+    assertTrue(delegate.isMatch("password", hashed));
+    assertTrue(hashService.isMatchExact("password", hashed));
+  }
+}
@@ -0,0 +1,101 @@
+package com.sanctionco.thunder.crypto;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+
+import jakarta.ws.rs.core.Response;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExecutorHashServiceTest {
+  private static final PasswordHashConfiguration CONFIG = TestResources.readResourceYaml(
+      PasswordHashConfiguration.class,
+      "fixtures/configuration/crypto/password-hash-config.yaml");
+
+  @Test
+  void asyncOperationsShouldRunOnExecutor() {
+    var delegate = new Sha256HashService(true, false);
+    var hashService = new ExecutorHashService(delegate, CONFIG.getExecutor(), new MetricRegistry());
+
+    var hashed = hashService.hashAsync("password").join();
+
+    assertAll("Async operations use the delegate",
+        () -> assertNotEquals("password", hashed),
+        () -> assertTrue(delegate.isMatch("password", hashed)),
+        () -> assertTrue(hashService.isMatchAsync("password", hashed).join()),
+        () -> assertFalse(hashService.isMatchAsync("incorrect", hashed).join()));
+  }
+
+  @Test
+  void syncOperationsShouldUseDelegate() {
+    var delegate = new Sha256HashService(true, false);
+    var hashService = new ExecutorHashService(delegate, CONFIG.getExecutor(), new MetricRegistry());
+
+    var hashed = hashService.hash("password");
+
+    assertAll("Sync operations use the delegate",
+        () -> assertTrue(delegate.isMatch("password", hashed)),
+        () -> assertTrue(hashService.isMatch("password", hashed)),
+        () -> assertTrue(hashService.isMatchExact("password", hashed)),
+        () -> assertTrue(hashService.serverSideHashEnabled()));
+  }
+
+  @Test
+  void fullQueueShouldRejectWithServiceUnavailable() throws Exception {
+    var configuration = mock(HashExecutorConfiguration.class);
+    when(configuration.getThreads()).thenReturn(1);
+    when(configuration.getQueueSize()).thenReturn(1);
+
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var delegate = mock(HashService.class);
+
+    doAnswer(invocation -> {
+      started.countDown();
+      release.await();
+      return true;
+    }).when(delegate).isMatch("password", "hashed");
+
+    var metrics = new MetricRegistry();
+    var hashService = new ExecutorHashService(delegate, configuration, metrics);
+
+    // The first request occupies the only thread and the second fills the queue
+    var running = hashService.isMatchAsync("password", "hashed");
+    started.await();
+    var queued = hashService.isMatchAsync("password", "hashed");
+
+    assertEquals(1, metrics.getGauges()
+        .get("com.sanctionco.thunder.crypto.ExecutorHashService.queue-depth").getValue());
+
+    var rejected = hashService.isMatchAsync("password", "hashed");
+
+    CompletionException e = assertThrows(CompletionException.class, rejected::join);
+    HashServiceBusyException cause = assertInstanceOf(HashServiceBusyException.class, e.getCause());
+
+    assertEquals(Response.Status.SERVICE_UNAVAILABLE,
+        cause.response("test@test.com").getStatusInfo());
+    assertEquals(1, metrics.counter(
+        "com.sanctionco.thunder.crypto.ExecutorHashService.rejected").getCount());
+
+    release.countDown();
+
+    assertTrue(running.join());
+    assertTrue(queued.join());
+    assertEquals(2, metrics.timer(
+        "com.sanctionco.thunder.crypto.ExecutorHashService.wait-time").getCount());
+  }
+}
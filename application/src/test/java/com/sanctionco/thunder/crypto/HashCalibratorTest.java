@@ -0,0 +1,70 @@
+package com.sanctionco.thunder.crypto;
+
+import io.dropwizard.util.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HashCalibratorTest {
+
+  @Test
+  void argonShouldScaleIterations() {
+    var start = new ArgonConfiguration(1024, 2, 1);
+
+    // 2 iterations take 50ms, so 10 iterations should take about 250ms
+    var result = HashCalibrator.calibrate(start, Duration.milliseconds(250), c -> 50_000_000L);
+
+    assertAll("Only iterations are changed",
+        () -> assertEquals(1024, result.getMemory()),
+        () -> assertEquals(10, result.getIterations()),
+        () -> assertEquals(1, result.getParallelism()));
+  }
+
+  @Test
+  void argonShouldNeverWeakenConfiguration() {
+    var start = new ArgonConfiguration(1024, 4, 2);
+
+    var result = HashCalibrator.calibrate(start, Duration.milliseconds(10), c -> 50_000_000L);
+
+    assertEquals(4, result.getIterations());
+  }
+
+  @Test
+  void argonShouldCapIterations() {
+    var start = new ArgonConfiguration(8, 1, 1);
+
+    var result = HashCalibrator.calibrate(start, Duration.seconds(10), c -> 1L);
+
+    assertEquals(64, result.getIterations());
+  }
+
+  @Test
+  void bcryptShouldDoubleCostUntilTarget() {
+    var start = new BCryptConfiguration(10);
+
+    // Cost 10 takes 50ms: cost 11 takes 100ms, 12 takes 200ms, 13 would take 400ms
+    var result = HashCalibrator.calibrate(start, Duration.milliseconds(250), c -> 50_000_000L);
+
+    assertEquals(12, result.getCost());
+  }
+
+  @Test
+  void bcryptShouldNeverWeakenConfiguration() {
+    var start = new BCryptConfiguration(12);
+
+    var result = HashCalibrator.calibrate(start, Duration.milliseconds(10), c -> 50_000_000L);
+
+    assertEquals(12, result.getCost());
+  }
+
+  @Test
+  void bcryptShouldCalibrateWithRealHashes() {
+    var start = new BCryptConfiguration(4);
+
+    var result = HashCalibrator.calibrate(start, Duration.nanoseconds(1));
+
+    assertEquals(4, result.getCost());
+  }
+}
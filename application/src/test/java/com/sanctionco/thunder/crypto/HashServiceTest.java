@@ -125,4 +125,16 @@ class HashServiceTest {
     // No hashing should be performed
     assertEquals(plaintext, result);
   }
+
+  @ParameterizedTest
+  @EnumSource(HashAlgorithm.class)
+  void testAsyncMethodsMatchSync(HashAlgorithm algorithm) {
+    HashService hashService = algorithm.newHashService(true, false);
+
+    String hashed = hashService.hashAsync("password").join();
+
+    assertTrue(hashService.isMatch("password", hashed));
+    assertTrue(hashService.isMatchAsync("password", hashed).join());
+    assertFalse(hashService.isMatchAsync("incorrect", hashed).join());
+  }
 }
@@ -2,6 +2,8 @@ package com.sanctionco.thunder.crypto;
 
 import com.sanctionco.thunder.TestResources;
 
+import io.dropwizard.util.Duration;
+
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
@@ -21,6 +23,43 @@ public class PasswordHashConfigurationTest {
         () -> assertEquals(HashAlgorithm.BCRYPT, configuration.getAlgorithm()),
         () -> assertTrue(configuration.serverSideHash()),
         () -> assertFalse(configuration.isHeaderCheckEnabled()),
-        () -> assertTrue(configuration.allowCommonMistakes()));
+        () -> assertTrue(configuration.allowCommonMistakes()),
+        () -> assertTrue(configuration.getMatchCache().isEnabled()),
+        () -> assertEquals(100L, configuration.getMatchCache().getMaximumSize()),
+        () -> assertEquals(Duration.seconds(10),
+            configuration.getMatchCache().getExpireAfterWrite()),
+        () -> assertEquals(2, configuration.getExecutor().getThreads()),
+        () -> assertEquals(16, configuration.getExecutor().getQueueSize()),
+        () -> assertEquals(1024, configuration.getArgon().getMemory()),
+        () -> assertEquals(3, configuration.getArgon().getIterations()),
+        () -> assertEquals(2, configuration.getArgon().getParallelism()),
+        () -> assertEquals(12, configuration.getBcrypt().getCost()),
+        () -> assertTrue(configuration.getCalibration().isEnabled()),
+        () -> assertEquals(Duration.milliseconds(100),
+            configuration.getCalibration().getTargetTime()),
+        () -> assertFalse(configuration.rehashOnVerify()));
+  }
+
+  @Test
+  void testDefaults() {
+    PasswordHashConfiguration configuration = new PasswordHashConfiguration();
+
+    assertAll("All default options are set correctly",
+        () -> assertEquals(HashAlgorithm.SIMPLE, configuration.getAlgorithm()),
+        () -> assertFalse(configuration.serverSideHash()),
+        () -> assertTrue(configuration.isHeaderCheckEnabled()),
+        () -> assertFalse(configuration.allowCommonMistakes()),
+        () -> assertFalse(configuration.getMatchCache().isEnabled()),
+        () -> assertEquals(Runtime.getRuntime().availableProcessors(),
+            configuration.getExecutor().getThreads()),
+        () -> assertEquals(256, configuration.getExecutor().getQueueSize()),
+        () -> assertEquals(15360, configuration.getArgon().getMemory()),
+        () -> assertEquals(2, configuration.getArgon().getIterations()),
+        () -> assertEquals(1, configuration.getArgon().getParallelism()),
+        () -> assertEquals(10, configuration.getBcrypt().getCost()),
+        () -> assertFalse(configuration.getCalibration().isEnabled()),
+        () -> assertEquals(Duration.milliseconds(250),
+            configuration.getCalibration().getTargetTime()),
+        () -> assertTrue(configuration.rehashOnVerify()));
   }
 }
@@ -1,12 +1,23 @@
 package com.sanctionco.thunder.dao;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.cache.CacheConfiguration;
+import com.sanctionco.thunder.dao.cache.CachingUsersDao;
+import com.sanctionco.thunder.dao.singleflight.SingleFlightUsersDao;
+import com.sanctionco.thunder.dao.tiered.TieredUsersDao;
+import com.sanctionco.thunder.dao.tiered.WriteBehindConfiguration;
+
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -23,11 +34,64 @@ class DaoModuleTest {
     var factory = mock(UsersDaoFactory.class);
     var usersDao = mock(UsersDao.class);
 
-    when(factory.createUsersDao(any(ObjectMapper.class))).thenReturn(usersDao);
+    when(factory.createUsersDao(
+        any(ObjectMapper.class), any(MetricRegistry.class), eq(Set.of("username"))))
+        .thenReturn(usersDao);
+    when(factory.getCacheConfiguration()).thenReturn(new CacheConfiguration());
+    when(factory.getWriteBehindConfiguration()).thenReturn(new WriteBehindConfiguration());
+
+    DaoModule module = new DaoModule(factory, Set.of("username"));
+
+    assertEquals(usersDao, module.provideUsersDao(new ObjectMapper(), new MetricRegistry()));
+  }
+
+  @Test
+  void testProvideCachingUsersDao() {
+    var factory = TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/inmemorydb-cache-config.yaml");
+
+    DaoModule module = new DaoModule(factory);
+
+    assertInstanceOf(CachingUsersDao.class,
+        module.provideUsersDao(new ObjectMapper(), new MetricRegistry()));
+  }
+
+  @Test
+  void testProvideSingleFlightUsersDao() {
+    var factory = mock(UsersDaoFactory.class);
+
+    when(factory.createUsersDao(
+        any(ObjectMapper.class), any(MetricRegistry.class), eq(Set.of())))
+        .thenReturn(mock(UsersDao.class));
+    when(factory.getCacheConfiguration()).thenReturn(new CacheConfiguration());
+    when(factory.getWriteBehindConfiguration()).thenReturn(new WriteBehindConfiguration());
+    when(factory.isCoalesceReadsEnabled()).thenReturn(true);
+
+    DaoModule module = new DaoModule(factory);
+
+    assertInstanceOf(SingleFlightUsersDao.class,
+        module.provideUsersDao(new ObjectMapper(), new MetricRegistry()));
+  }
+
+  @Test
+  void testProvideTieredUsersDao() {
+    var factory = mock(UsersDaoFactory.class);
+    var writeBehindConfiguration = TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/dynamodb-write-behind-config.yaml")
+        .getWriteBehindConfiguration();
+
+    when(factory.createUsersDao(
+        any(ObjectMapper.class), any(MetricRegistry.class), eq(Set.of())))
+        .thenReturn(mock(UsersDao.class));
+    when(factory.getCacheConfiguration()).thenReturn(new CacheConfiguration());
+    when(factory.getWriteBehindConfiguration()).thenReturn(writeBehindConfiguration);
 
     DaoModule module = new DaoModule(factory);
 
-    assertEquals(usersDao, module.provideUsersDao(new ObjectMapper()));
+    assertInstanceOf(TieredUsersDao.class,
+        module.provideUsersDao(new ObjectMapper(), new MetricRegistry()));
   }
 
   @Test
@@ -1,5 +1,7 @@
 package com.sanctionco.thunder.dao;
 
+import com.sanctionco.thunder.validation.RequestValidationException;
+
 import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -28,4 +30,21 @@ public class DatabaseTestUtil {
 
     assertEquals(expectedError, exp.getError());
   }
+
+  /**
+   * Assert that a {@link CompletionException} is thrown when executing the given operation,
+   * and that the cause is a {@link RequestValidationException} with the expected error.
+   *
+   * @param expectedError the expected validation error that occurs within the operation
+   * @param op the operation to run
+   */
+  public static void assertValidationError(RequestValidationException.Error expectedError,
+                                           Runnable op) {
+    CompletionException e = assertThrowsExactly(CompletionException.class, op::run);
+
+    assertInstanceOf(RequestValidationException.class, e.getCause());
+    var exp = (RequestValidationException) e.getCause();
+
+    assertEquals(expectedError, exp.getError());
+  }
 }
@@ -0,0 +1,39 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PropertyIndexesTest {
+
+  @Test
+  void valueOf_shouldOnlyIndexScalarValues() {
+    assertAll("Scalar values are indexed by their string form",
+        () -> assertEquals("name", PropertyIndexes.valueOf("name")),
+        () -> assertEquals("10", PropertyIndexes.valueOf(10)),
+        () -> assertEquals("1.5", PropertyIndexes.valueOf(1.5)),
+        () -> assertEquals("true", PropertyIndexes.valueOf(true)),
+        () -> assertNull(PropertyIndexes.valueOf("")),
+        () -> assertNull(PropertyIndexes.valueOf(null)),
+        () -> assertNull(PropertyIndexes.valueOf(List.of("name"))),
+        () -> assertNull(PropertyIndexes.valueOf(Map.of("name", "value"))));
+  }
+
+  @Test
+  void valuesOf_shouldOnlyIncludeIndexedPropertiesWithValues() {
+    User user = new User(Email.unverified("test@test.com"), "password",
+        Map.of("username", "tester", "age", 30, "tags", List.of("a")));
+
+    assertEquals(Map.of("username", "tester", "age", "30"),
+        PropertyIndexes.valuesOf(user, Set.of("username", "age", "tags", "missing")));
+  }
+}
@@ -0,0 +1,157 @@
+package com.sanctionco.thunder.dao;
+
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedScanPublisherTest {
+
+  @Test
+  void constructor_shouldRejectInvalidArguments() {
+    SegmentedScanPublisher.PageReader reader
+        = (segment, total, token, limit) -> new UsersPage(List.of(), null);
+
+    assertAll("Segments and page size must be positive",
+        () -> assertThrows(NullPointerException.class,
+            () -> new SegmentedScanPublisher(null, 1, 1)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new SegmentedScanPublisher(reader, 0, 1)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new SegmentedScanPublisher(reader, 1, 0)));
+  }
+
+  @Test
+  void subscribe_shouldPublishEveryPageOfEverySegment() throws Exception {
+    // Each of the 3 segments has 25 users, read in pages of 10
+    SegmentedScanPublisher.PageReader reader = (segment, total, token, limit) -> {
+      int start = token == null ? 0 : Integer.parseInt(token);
+      int end = Math.min(start + limit, 25);
+
+      List<User> users = IntStream.range(start, end)
+          .mapToObj(i -> user(segment + "-" + i))
+          .toList();
+
+      return new UsersPage(users, end < 25 ? String.valueOf(end) : null);
+    };
+
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    new SegmentedScanPublisher(reader, 3, 10).subscribe(subscriber);
+
+    Set<String> emails = subscriber.done.get(5, TimeUnit.SECONDS).stream()
+        .map(user -> user.getEmail().getAddress())
+        .collect(Collectors.toSet());
+
+    assertAll("Every user is published exactly once",
+        () -> assertEquals(75, subscriber.received.size()),
+        () -> assertEquals(75, emails.size()),
+        () -> assertTrue(emails.contains("2-24@test.com")));
+  }
+
+  @Test
+  void subscribe_shouldPropagateReadFailure() {
+    SegmentedScanPublisher.PageReader reader = (segment, total, token, limit) -> {
+      if (segment == 1) {
+        throw new DatabaseException("Down", DatabaseException.Error.DATABASE_DOWN);
+      }
+
+      return new UsersPage(List.of(user(segment + "")), null);
+    };
+
+    CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    new SegmentedScanPublisher(reader, 2, 10).subscribe(subscriber);
+
+    var e = assertThrows(ExecutionException.class,
+        () -> subscriber.done.get(5, TimeUnit.SECONDS));
+
+    assertInstanceOf(DatabaseException.class, e.getCause());
+    assertEquals(DatabaseException.Error.DATABASE_DOWN,
+        ((DatabaseException) e.getCause()).getError());
+  }
+
+  @Test
+  void subscribe_shouldStopReadingWhenCancelled() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+
+    // An endless segment, so the scan only stops once the subscriber cancels
+    SegmentedScanPublisher.PageReader reader = (segment, total, token, limit) -> {
+      int page = reads.incrementAndGet();
+
+      return new UsersPage(List.of(user("page-" + page)), String.valueOf(page));
+    };
+
+    CollectingSubscriber subscriber = new CollectingSubscriber(3);
+    new SegmentedScanPublisher(reader, 1, 1).subscribe(subscriber);
+
+    subscriber.done.get(5, TimeUnit.SECONDS);
+    int readsAfterCancel = reads.get();
+
+    Thread.sleep(100);
+
+    assertAll("No more pages are read after cancelling",
+        () -> assertEquals(3, subscriber.received.size()),
+        () -> assertTrue(reads.get() <= readsAfterCancel + 1));
+  }
+
+  private static User user(String name) {
+    return new User(Email.unverified(name + "@test.com"), "password");
+  }
+
+  /**
+   * Collects every user it receives, cancelling once it has received the given number of users.
+   */
+  private static class CollectingSubscriber implements Flow.Subscriber<User> {
+    private final Set<User> received = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Set<User>> done = new CompletableFuture<>();
+    private final long max;
+
+    private Flow.Subscription subscription;
+
+    CollectingSubscriber(long max) {
+      this.max = max;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(max);
+    }
+
+    @Override
+    public void onNext(User item) {
+      received.add(item);
+
+      if (received.size() == max) {
+        subscription.cancel();
+        done.complete(received);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      done.complete(received);
+    }
+  }
+}
@@ -2,16 +2,19 @@ package com.sanctionco.thunder.dao;
 
 import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.dao.dynamodb.DynamoDbUsersDaoFactory;
+import com.sanctionco.thunder.dao.embedded.EmbeddedUsersDaoFactory;
 import com.sanctionco.thunder.dao.inmemorydb.InMemoryDbUsersDaoFactory;
 import com.sanctionco.thunder.dao.mongodb.MongoDbUsersDaoFactory;
 
 import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.util.Duration;
 
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class UsersDaoFactoryTest {
@@ -23,6 +26,7 @@ class UsersDaoFactoryTest {
     // Make sure the types we specified in META-INF gets picked up
     assertTrue(discoveredTypes.containsAll(List.of(
         DynamoDbUsersDaoFactory.class,
+        EmbeddedUsersDaoFactory.class,
         InMemoryDbUsersDaoFactory.class,
         MongoDbUsersDaoFactory.class)));
   }
@@ -51,6 +55,55 @@ class UsersDaoFactoryTest {
 
     InMemoryDbUsersDaoFactory inMemoryDaoFactory = (InMemoryDbUsersDaoFactory) usersDaoFactory;
     assertEquals(40, inMemoryDaoFactory.getMaxMemoryPercentage());
+
+    // The cache should be disabled by default
+    assertFalse(usersDaoFactory.getCacheConfiguration().isEnabled());
+    assertEquals(10_000L, usersDaoFactory.getCacheConfiguration().getMaximumSize());
+    assertEquals(Duration.minutes(1),
+        usersDaoFactory.getCacheConfiguration().getExpireAfterWrite());
+
+    // Lookups should not be coalesced by default
+    assertFalse(usersDaoFactory.isCoalesceReadsEnabled());
+
+    // The write-behind tier should be disabled by default
+    assertFalse(usersDaoFactory.getWriteBehindConfiguration().isEnabled());
+    assertEquals(10_000, usersDaoFactory.getWriteBehindConfiguration().getMaxPendingWrites());
+    assertTrue(usersDaoFactory.getWriteBehindConfiguration().isWriteThroughWhenFull());
+    assertEquals(100_000L, usersDaoFactory.getWriteBehindConfiguration().getMaxSize());
+    assertEquals(Duration.minutes(1),
+        usersDaoFactory.getWriteBehindConfiguration().getExpireAfterWrite());
+  }
+
+  @Test
+  void testCacheFromYaml() {
+    UsersDaoFactory usersDaoFactory = TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/inmemorydb-cache-config.yaml");
+
+    assertTrue(usersDaoFactory.getCacheConfiguration().isEnabled());
+    assertEquals(500L, usersDaoFactory.getCacheConfiguration().getMaximumSize());
+    assertEquals(Duration.seconds(30),
+        usersDaoFactory.getCacheConfiguration().getExpireAfterWrite());
+    assertTrue(usersDaoFactory.isCoalesceReadsEnabled());
+  }
+
+  @Test
+  void testWriteBehindFromYaml() {
+    UsersDaoFactory usersDaoFactory = TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/dynamodb-write-behind-config.yaml");
+
+    var writeBehind = usersDaoFactory.getWriteBehindConfiguration();
+
+    assertTrue(writeBehind.isEnabled());
+    assertEquals(500, writeBehind.getMaxPendingWrites());
+    assertEquals(Duration.milliseconds(250), writeBehind.getFlushInterval());
+    assertEquals(10, writeBehind.getBatchSize());
+    assertEquals(5, writeBehind.getMaxRetries());
+    assertEquals(Duration.milliseconds(50), writeBehind.getRetryBackoff());
+    assertFalse(writeBehind.isWriteThroughWhenFull());
+    assertEquals(5000L, writeBehind.getMaxSize());
+    assertEquals(Duration.seconds(30), writeBehind.getExpireAfterWrite());
   }
 
   @Test
@@ -5,11 +5,21 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,4 +51,169 @@ class UsersDaoTest {
         () -> UsersDao.fromJson(MOCKED_MAPPER, userJson));
     verify(MOCKED_MAPPER, times(1)).readValue(userJson, User.class);
   }
+
+  @Test
+  void testFindVersionedByEmailDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    assertEquals(new VersionedUser(TEST_USER, null), usersDao.findVersionedByEmail("test").join());
+  }
+
+  @Test
+  void testFindPasswordByEmailDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    assertEquals(TEST_USER.getPassword(), usersDao.findPasswordByEmail("test").join());
+  }
+
+  @Test
+  void testVersionedUpdateDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.update(null, TEST_USER)).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    assertEquals(new VersionedUser(TEST_USER, null),
+        usersDao.update(null, TEST_USER, "version").join());
+    verify(usersDao, times(1)).update(null, TEST_USER);
+  }
+
+  @Test
+  void testInsertAllDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+    var otherUser = new User(Email.unverified("other"), "password", null);
+
+    when(usersDao.insert(TEST_USER)).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+    when(usersDao.insert(otherUser)).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Conflict", DatabaseException.Error.CONFLICT)));
+
+    var results = usersDao.insertAll(List.of(TEST_USER, otherUser)).join();
+
+    assertAll("Each user is inserted independently",
+        () -> assertEquals(BatchResult.success(TEST_USER), results.get(0)),
+        () -> assertEquals("other", results.get(1).email()),
+        () -> assertEquals(DatabaseException.Error.CONFLICT, results.get(1).error().getError()));
+  }
+
+  @Test
+  void testFindAllByEmailDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+    when(usersDao.findByEmail("missing")).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Not found", DatabaseException.Error.USER_NOT_FOUND)));
+
+    var results = usersDao.findAllByEmail(List.of("missing", "test")).join();
+
+    assertAll("Each email has a result, in order",
+        () -> assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+            results.get(0).error().getError()),
+        () -> assertEquals(BatchResult.success(TEST_USER), results.get(1)));
+  }
+
+  @Test
+  void testUpdateEmailDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(notFound());
+    when(usersDao.insert(TEST_USER)).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+    when(usersDao.delete("old")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    assertEquals(TEST_USER, usersDao.updateEmail("old", TEST_USER).join());
+    verify(usersDao, never()).delete("test");
+  }
+
+  @Test
+  void testUpdateEmailDefaultConflict() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    DatabaseTestUtil.assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> usersDao.updateEmail("old", TEST_USER).join());
+    verify(usersDao, never()).insert(any(User.class));
+  }
+
+  @Test
+  void testUpdateEmailDefaultLookupFailure() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Down", DatabaseException.Error.DATABASE_DOWN)));
+
+    DatabaseTestUtil.assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+        () -> usersDao.updateEmail("old", TEST_USER).join());
+    verify(usersDao, never()).insert(any(User.class));
+  }
+
+  @Test
+  void testUpdateEmailDefaultRemovesNewUserWhenDeleteFails() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(notFound());
+    when(usersDao.insert(TEST_USER)).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+    when(usersDao.delete("old")).thenReturn(notFound());
+    when(usersDao.delete("test")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    DatabaseTestUtil.assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> usersDao.updateEmail("old", TEST_USER).join());
+    verify(usersDao, times(1)).delete("test");
+  }
+
+  @Test
+  void testMarkVerifiedDefault() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+    var verified = new User(TEST_USER.getEmail().verifiedCopy(), "password", null);
+
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(TEST_USER, "version")))
+        .when(usersDao).findVersionedByEmail("test");
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(verified, "newVersion")))
+        .when(usersDao).update("test", verified, "version");
+
+    assertEquals(verified, usersDao.markVerified("test", "token").join());
+    verify(usersDao, times(1)).update("test", verified, "version");
+  }
+
+  @Test
+  void testMarkVerifiedDefaultIncorrectToken() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.completedFuture(TEST_USER));
+
+    DatabaseTestUtil.assertValidationError(RequestValidationException.Error.INCORRECT_TOKEN,
+        () -> usersDao.markVerified("test", "otherToken").join());
+    verify(usersDao, never()).update(any(), any(User.class));
+  }
+
+  @Test
+  void testMarkVerifiedDefaultTokenNotSet() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.findByEmail("test")).thenReturn(CompletableFuture.completedFuture(
+        new User(Email.unverified("test"), "password", null)));
+
+    DatabaseTestUtil.assertValidationError(RequestValidationException.Error.TOKEN_NOT_SET,
+        () -> usersDao.markVerified("test", "token").join());
+    verify(usersDao, never()).update(any(), any(User.class));
+  }
+
+  @Test
+  void testDeleteAllDefaultWrapsUnknownFailures() {
+    var usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
+
+    when(usersDao.delete("test")).thenReturn(CompletableFuture.failedFuture(
+        new IllegalStateException("Unknown")));
+
+    var results = usersDao.deleteAll(List.of("test")).join();
+
+    assertEquals(DatabaseException.Error.DATABASE_DOWN, results.get(0).error().getError());
+  }
+
+  private static CompletableFuture<User> notFound() {
+    return CompletableFuture.failedFuture(
+        new DatabaseException("Not found", DatabaseException.Error.USER_NOT_FOUND));
+  }
 }
@@ -0,0 +1,374 @@
+package com.sanctionco.thunder.dao.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.BatchResult;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.SegmentedScanPublisher;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersDaoFactory;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingUsersDaoTest {
+  private static final Email EMAIL = new Email("test@test.com", true, "testToken");
+  private static final User USER = new User(EMAIL, "password",
+      Collections.singletonMap("testProperty", "test"));
+  private static final User UPDATED_USER = new User(EMAIL, "newPassword",
+      Collections.singletonMap("testProperty", "updated"));
+  private static final VersionedUser VERSIONED_USER = new VersionedUser(USER, "version");
+  private static final VersionedUser VERSIONED_UPDATED_USER
+      = new VersionedUser(UPDATED_USER, "newVersion");
+
+  private static final CacheConfiguration CONFIG = TestResources.readResourceYaml(
+      UsersDaoFactory.class,
+      "fixtures/configuration/dao/inmemorydb-cache-config.yaml").getCacheConfiguration();
+
+  @Test
+  void findByEmail_ShouldOnlyReadDatabaseOnce() {
+    var delegate = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = new CachingUsersDao(delegate, CONFIG, metrics);
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(1)).findVersionedByEmail(EMAIL.getAddress());
+
+    assertEquals(1, metrics.counter("com.sanctionco.thunder.dao.cache.CachingUsersDao.hits")
+        .getCount());
+    assertEquals(1, metrics.counter("com.sanctionco.thunder.dao.cache.CachingUsersDao.misses")
+        .getCount());
+  }
+
+  @Test
+  void findByEmail_ShouldNotCacheFailures() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.failedFuture(new DatabaseException("Not found",
+            DatabaseException.Error.USER_NOT_FOUND)))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void findVersionedByEmail_ShouldShareCacheWithFindByEmail() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(VERSIONED_USER, dao.findVersionedByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(1)).findVersionedByEmail(EMAIL.getAddress());
+    verify(delegate, never()).findByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void findPasswordByEmail_ShouldUseCachedUser() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    assertEquals("password", dao.findPasswordByEmail(EMAIL.getAddress()).join());
+    verify(delegate, never()).findPasswordByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void findPasswordByEmail_ShouldNotLoadUserOnMiss() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findPasswordByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture("password"));
+
+    assertEquals("password", dao.findPasswordByEmail(EMAIL.getAddress()).join());
+    verify(delegate, never()).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void versionedUpdate_ShouldCacheNewVersion() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.update(null, UPDATED_USER, "version"))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_UPDATED_USER));
+
+    assertEquals(VERSIONED_UPDATED_USER, dao.update(null, UPDATED_USER, "version").join());
+    assertEquals(VERSIONED_UPDATED_USER, dao.findVersionedByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, never()).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void update_WithoutVersionShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER))
+        .thenReturn(CompletableFuture.completedFuture(new VersionedUser(UPDATED_USER, null)));
+    when(delegate.update(null, UPDATED_USER, null))
+        .thenReturn(CompletableFuture.completedFuture(new VersionedUser(UPDATED_USER, null)));
+
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(UPDATED_USER, dao.update(null, UPDATED_USER).join());
+    assertEquals(UPDATED_USER, dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void insert_ShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.insert(USER)).thenReturn(CompletableFuture.completedFuture(USER));
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    assertEquals(USER, dao.insert(USER).join());
+    assertEquals(VERSIONED_USER, dao.findVersionedByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(1)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void update_ShouldRefreshCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+    when(delegate.update(null, UPDATED_USER, null))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_UPDATED_USER));
+
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(UPDATED_USER, dao.update(null, UPDATED_USER).join());
+    assertEquals(UPDATED_USER, dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(1)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void update_NewEmailShouldInvalidateExistingEmail() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+    var newUser = new User(Email.unverified("new@test.com"), "password");
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER))
+        .thenReturn(CompletableFuture.failedFuture(new DatabaseException("Not found",
+            DatabaseException.Error.USER_NOT_FOUND)));
+    when(delegate.update(EMAIL.getAddress(), newUser, null))
+        .thenReturn(CompletableFuture.completedFuture(new VersionedUser(newUser, "version")));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+    dao.update(EMAIL.getAddress(), newUser).join();
+
+    assertEquals(newUser, dao.findByEmail("new@test.com").join());
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+  }
+
+  @Test
+  void update_FailureShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+    when(delegate.update(null, UPDATED_USER, "version"))
+        .thenReturn(CompletableFuture.failedFuture(new DatabaseException("Conflict",
+            DatabaseException.Error.CONFLICT)));
+
+    dao.findVersionedByEmail(EMAIL.getAddress()).join();
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> dao.update(null, UPDATED_USER, "version").join());
+
+    dao.findVersionedByEmail(EMAIL.getAddress()).join();
+
+    verify(delegate, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void markVerified_ShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_UPDATED_USER));
+    when(delegate.markVerified(EMAIL.getAddress(), "testToken"))
+        .thenReturn(CompletableFuture.completedFuture(UPDATED_USER));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    assertEquals(UPDATED_USER, dao.markVerified(EMAIL.getAddress(), "testToken").join());
+    assertEquals(UPDATED_USER, dao.findByEmail(EMAIL.getAddress()).join());
+    verify(delegate, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void delete_ShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER))
+        .thenReturn(CompletableFuture.failedFuture(new DatabaseException("Not found",
+            DatabaseException.Error.USER_NOT_FOUND)));
+    when(delegate.delete(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    assertEquals(USER, dao.delete(EMAIL.getAddress()).join());
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+  }
+
+  @Test
+  void findAllByEmail_ShouldOnlyReadMissesFromDatabase() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+    var missing = BatchResult.failure("missing@test.com", new DatabaseException("Not found",
+        DatabaseException.Error.USER_NOT_FOUND));
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+    when(delegate.findAllByEmail(List.of("missing@test.com")))
+        .thenReturn(CompletableFuture.completedFuture(List.of(missing)));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    var results = dao.findAllByEmail(List.of("missing@test.com", EMAIL.getAddress())).join();
+
+    assertEquals(List.of(missing, BatchResult.success(USER)), results);
+    verify(delegate, times(1)).findAllByEmail(List.of("missing@test.com"));
+  }
+
+  @Test
+  void findAllByEmail_ShouldNotReadDatabaseWhenAllCached() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    assertEquals(List.of(BatchResult.success(USER)),
+        dao.findAllByEmail(List.of(EMAIL.getAddress())).join());
+    verify(delegate, never()).findAllByEmail(anyList());
+  }
+
+  @Test
+  void insertAll_ShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+    when(delegate.insertAll(List.of(USER)))
+        .thenReturn(CompletableFuture.completedFuture(List.of(BatchResult.success(USER))));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+    dao.insertAll(List.of(USER)).join();
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    verify(delegate, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void deleteAll_ShouldInvalidateCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+    when(delegate.deleteAll(List.of(EMAIL.getAddress())))
+        .thenReturn(CompletableFuture.completedFuture(List.of(BatchResult.success(USER))));
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+    dao.deleteAll(List.of(EMAIL.getAddress())).join();
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    verify(delegate, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void findEmailsByProperty_ShouldUseDelegate() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+
+    when(delegate.findEmailsByProperty("username", "tester", 2))
+        .thenReturn(CompletableFuture.completedFuture(List.of(EMAIL.getAddress())));
+
+    assertEquals(List.of(EMAIL.getAddress()),
+        dao.findEmailsByProperty("username", "tester", 2).join());
+  }
+
+  @Test
+  void scan_ShouldNotUseCache() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+    var page = new UsersPage(List.of(USER), null);
+
+    when(delegate.scan(0, 1, null, 10)).thenReturn(CompletableFuture.completedFuture(page));
+    when(delegate.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(VERSIONED_USER));
+
+    assertEquals(page, dao.scan(0, 1, null, 10).join());
+
+    dao.findByEmail(EMAIL.getAddress()).join();
+
+    verify(delegate, times(1)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void scanAll_ShouldUseDelegatePublisher() {
+    var delegate = mock(UsersDao.class);
+    var dao = new CachingUsersDao(delegate, CONFIG, new MetricRegistry());
+    var publisher = new SegmentedScanPublisher((s, t, token, limit) -> null, 1, 1);
+
+    when(delegate.scanAll()).thenReturn(publisher);
+
+    assertSame(publisher, dao.scanAll());
+  }
+}
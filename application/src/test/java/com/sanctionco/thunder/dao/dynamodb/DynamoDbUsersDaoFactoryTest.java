@@ -1,16 +1,28 @@
 package com.sanctionco.thunder.dao.dynamodb;
 
+import com.codahale.metrics.MetricRegistry;
 import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
 
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.CreateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableResponse;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
 import software.amazon.awssdk.services.dynamodb.model.ListTablesResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateTableResponse;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -34,6 +46,24 @@ class DynamoDbUsersDaoFactoryTest {
     assertTrue(healthCheck instanceof DynamoDbHealthCheck);
   }
 
+  @Test
+  void testScanConfiguration() {
+    var defaults = (DynamoDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/dynamodb-config.yaml");
+    var configured = (DynamoDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/dynamodb-scan-config.yaml");
+
+    assertAll("The scan configuration is read, with defaults when missing",
+        () -> assertEquals(4, defaults.getScanConfiguration().getSegments()),
+        () -> assertEquals(100, defaults.getScanConfiguration().getPageSize()),
+        () -> assertEquals(0, defaults.getScanConfiguration().getReadCapacityPerSecond()),
+        () -> assertEquals(8, configured.getScanConfiguration().getSegments()),
+        () -> assertEquals(50, configured.getScanConfiguration().getPageSize()),
+        () -> assertEquals(200, configured.getScanConfiguration().getReadCapacityPerSecond()));
+  }
+
   @Test
   void testDynamoClientCreatedOnce() {
     UsersDaoFactory usersDaoFactory = TestResources.readResourceYaml(
@@ -104,4 +134,68 @@ class DynamoDbUsersDaoFactoryTest {
     verify(client, times(1)).listTables();
     verify(client, times(1)).createTable(any(CreateTableRequest.class));
   }
+
+  @Test
+  void testCreateUsersDaoTableNotExistsCreatesIndexes() {
+    var factory = (DynamoDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/dynamodb-config.yaml");
+
+    DynamoDbAsyncClient client = mock(DynamoDbAsyncClient.class);
+    when(client.listTables())
+        .thenReturn(CompletableFuture.completedFuture(
+            ListTablesResponse.builder().tableNames("wrong-test-table").build()));
+
+    factory.dynamoDbClient = client;
+
+    var captor = ArgumentCaptor.forClass(CreateTableRequest.class);
+
+    factory.createUsersDao(TestResources.MAPPER, new MetricRegistry(), Set.of("username"));
+
+    verify(client, times(1)).createTable(captor.capture());
+
+    var index = captor.getValue().globalSecondaryIndexes().get(0);
+
+    assertAll("The table is created with a keys-only index for the property",
+        () -> assertEquals(2, captor.getValue().attributeDefinitions().size()),
+        () -> assertEquals("property_username-index", index.indexName()),
+        () -> assertEquals("property_username", index.keySchema().get(0).attributeName()),
+        () -> assertEquals(ProjectionType.KEYS_ONLY, index.projection().projectionType()));
+  }
+
+  @Test
+  void testCreateUsersDaoTableExistsCreatesMissingIndexes() {
+    var factory = (DynamoDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/dynamodb-config.yaml");
+
+    DynamoDbAsyncClient client = mock(DynamoDbAsyncClient.class);
+    when(client.listTables())
+        .thenReturn(CompletableFuture.completedFuture(
+            ListTablesResponse.builder().tableNames("test-table").build()));
+    when(client.describeTable(any(DescribeTableRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(DescribeTableResponse.builder()
+            .table(TableDescription.builder()
+                .globalSecondaryIndexes(GlobalSecondaryIndexDescription.builder()
+                    .indexName("property_username-index")
+                    .build())
+                .build())
+            .build()));
+    when(client.updateTable(any(UpdateTableRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(UpdateTableResponse.builder().build()));
+
+    factory.dynamoDbClient = client;
+
+    var captor = ArgumentCaptor.forClass(UpdateTableRequest.class);
+
+    factory.createUsersDao(
+        TestResources.MAPPER, new MetricRegistry(), Set.of("username", "nickname"));
+
+    // Only the index that does not exist yet should be created
+    verify(client, times(0)).createTable(any(CreateTableRequest.class));
+    verify(client, times(1)).updateTable(captor.capture());
+
+    assertEquals("property_nickname-index",
+        captor.getValue().globalSecondaryIndexUpdates().get(0).create().indexName());
+  }
 }
@@ -2,16 +2,25 @@ package com.sanctionco.thunder.dao.dynamodb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.BatchResult;
 import com.sanctionco.thunder.dao.DatabaseException;
 import com.sanctionco.thunder.dao.UsersDao;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -23,30 +32,54 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.NullSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
 import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertValidationError;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.failedFuture;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -67,6 +100,16 @@ class DynamoDbUsersDaoTest {
           AttributeValue.builder().s(USER.getEmail().getAddress()).build()))
       .build();
 
+  private static final GetItemRequest EXISTING_GET_REQUEST = GetItemRequest.builder()
+      .tableName(TABLE_NAME)
+      .key(Collections.singletonMap("email", AttributeValue.builder().s("existingEmail").build()))
+      .build();
+
+  private static final GetItemRequest PASSWORD_GET_REQUEST = GET_REQUEST.toBuilder()
+      .projectionExpression("#email, #password_hash")
+      .expressionAttributeNames(Map.of("#email", "email", "#password_hash", "password_hash"))
+      .build();
+
   private static final GetItemResponse NULL_GET_RESPONSE = GetItemResponse.builder()
       .item(null).build();
   private static final GetItemResponse EMPTY_GET_RESPONSE = GetItemResponse.builder()
@@ -78,6 +121,7 @@ class DynamoDbUsersDaoTest {
     ITEM.put("document", AttributeValue.builder().s(UsersDao.toJson(MAPPER, USER)).build());
     ITEM.put("creation_time", AttributeValue.builder().n(String.valueOf(CURR_TIME)).build());
     ITEM.put("update_time", AttributeValue.builder().n(String.valueOf(CURR_TIME)).build());
+    ITEM.put("version", AttributeValue.builder().s("version").build());
   }
 
   @Test
@@ -94,12 +138,15 @@ class DynamoDbUsersDaoTest {
       var dynamodb = mock(DynamoDbAsyncClient.class);
       var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
 
-      when(dynamodb.putItem(any(PutItemRequest.class)))
+      var captor = ArgumentCaptor.forClass(PutItemRequest.class);
+
+      when(dynamodb.putItem(captor.capture()))
           .thenReturn(completedFuture(PutItemResponse.builder().build()));
 
       var insertedUser = dao.insert(USER).join();
 
       verify(dynamodb).putItem(any(PutItemRequest.class));
+      assertEquals("password", captor.getValue().item().get("password_hash").s());
 
       // The creation time and update time will have been created on insert
       long creationTime = (Long) insertedUser.getProperties().get("creationTime");
@@ -151,6 +198,21 @@ class DynamoDbUsersDaoTest {
       verify(dynamodb).getItem(eq(GET_REQUEST));
     }
 
+    @Test
+    void shouldReturnVersion() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(GET_REQUEST))).thenReturn(completedFuture(
+          GetItemResponse.builder().item(ITEM).build()));
+
+      var found = dao.findVersionedByEmail("test@test.com").join();
+
+      assertAll("The user and version are returned",
+          () -> assertEquals(USER.withTime(CURR_TIME, CURR_TIME), found.user()),
+          () -> assertEquals("version", found.version()));
+    }
+
     @ParameterizedTest(name = "DAO returns {1} when DynamoDB returns {0}")
     @MethodSource("provideFailureTestArgs")
     void shouldFailCorrectly(CompletableFuture<GetItemResponse> fut,
@@ -175,8 +237,84 @@ class DynamoDbUsersDaoTest {
     }
   }
 
+  @Nested
+  class FindPasswordByEmail {
+
+    @Test
+    void shouldOnlyReadPassword() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(PASSWORD_GET_REQUEST))).thenReturn(completedFuture(
+          GetItemResponse.builder().item(Map.of(
+              "email", AttributeValue.builder().s("test@test.com").build(),
+              "password_hash", AttributeValue.builder().s("password").build())).build()));
+
+      assertEquals("password", dao.findPasswordByEmail("test@test.com").join());
+
+      verify(dynamodb).getItem(eq(PASSWORD_GET_REQUEST));
+      verify(dynamodb, never()).getItem(eq(GET_REQUEST));
+    }
+
+    @Test
+    void shouldReadDocumentWhenPasswordIsNotStoredSeparately() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(PASSWORD_GET_REQUEST))).thenReturn(completedFuture(
+          GetItemResponse.builder().item(Map.of(
+              "email", AttributeValue.builder().s("test@test.com").build())).build()));
+      when(dynamodb.getItem(eq(GET_REQUEST))).thenReturn(completedFuture(
+          GetItemResponse.builder().item(ITEM).build()));
+
+      assertEquals("password", dao.findPasswordByEmail("test@test.com").join());
+
+      verify(dynamodb).getItem(eq(PASSWORD_GET_REQUEST));
+      verify(dynamodb).getItem(eq(GET_REQUEST));
+    }
+
+    @Test
+    void shouldFailWhenDocumentReadFails() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(PASSWORD_GET_REQUEST))).thenReturn(completedFuture(
+          GetItemResponse.builder().item(Map.of(
+              "email", AttributeValue.builder().s("test@test.com").build())).build()));
+      when(dynamodb.getItem(eq(GET_REQUEST))).thenReturn(failedFuture(mock(SdkException.class)));
+
+      assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+          () -> dao.findPasswordByEmail("test@test.com").join());
+    }
+
+    @ParameterizedTest(name = "DAO returns {1} when DynamoDB returns {0}")
+    @MethodSource("provideFailureTestArgs")
+    void shouldFailCorrectly(CompletableFuture<GetItemResponse> fut,
+                             DatabaseException.Error expected) {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(PASSWORD_GET_REQUEST))).thenReturn(fut);
+
+      assertDatabaseError(expected, () -> dao.findPasswordByEmail("test@test.com").join());
+      verify(dynamodb, never()).getItem(eq(GET_REQUEST));
+    }
+
+    static Stream<Arguments> provideFailureTestArgs() {
+      return Stream.of(
+          Arguments.of(completedFuture(NULL_GET_RESPONSE), DatabaseException.Error.USER_NOT_FOUND),
+          Arguments.of(completedFuture(EMPTY_GET_RESPONSE), DatabaseException.Error.USER_NOT_FOUND),
+          Arguments.of(failedFuture(mock(SdkException.class)),
+              DatabaseException.Error.DATABASE_DOWN));
+    }
+  }
+
   @Nested
   class Update {
+    private static final UpdateItemResponse UPDATE_RESPONSE = UpdateItemResponse.builder()
+        .attributes(Collections.singletonMap(
+            "creation_time", AttributeValue.builder().n(String.valueOf(CURR_TIME)).build()))
+        .build();
 
     @ParameterizedTest(name = "when existing email is {0}")
     @NullSource
@@ -184,15 +322,9 @@ class DynamoDbUsersDaoTest {
     void shouldSucceed(String existingEmail) {
       var dynamodb = mock(DynamoDbAsyncClient.class);
       var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
 
-      when(dynamodb.getItem(eq(GET_REQUEST)))
-          .thenReturn(completedFuture(GetItemResponse.builder().item(ITEM).build()));
-      when(dynamodb.putItem(any(PutItemRequest.class)))
-          .thenReturn(completedFuture(PutItemResponse.builder()
-              .attributes(Collections.singletonMap(
-                  "creation_time",
-                  AttributeValue.builder().n(String.valueOf(CURR_TIME)).build()))
-              .build()));
+      when(dynamodb.updateItem(captor.capture())).thenReturn(completedFuture(UPDATE_RESPONSE));
 
       var updatedUser = dao.update(existingEmail, USER).join();
 
@@ -206,111 +338,363 @@ class DynamoDbUsersDaoTest {
 
       assertEquals(USER.withTime(creationTime, updateTime), updatedUser);
 
-      verify(dynamodb).getItem(eq(GET_REQUEST));
-      verify(dynamodb).putItem(any(PutItemRequest.class));
+      assertAll("Ensure a single unversioned conditional update was made",
+          () -> assertEquals("attribute_exists(#email)", captor.getValue().conditionExpression()),
+          () -> assertEquals(ReturnValue.UPDATED_NEW, captor.getValue().returnValues()),
+          () -> assertEquals(USER.getEmail().getAddress(),
+              captor.getValue().key().get("email").s()),
+          () -> assertTrue(captor.getValue().updateExpression()
+              .endsWith(", #password_hash = :password_hash")),
+          () -> assertEquals("password",
+              captor.getValue().expressionAttributeValues().get(":password_hash").s()));
+
+      verify(dynamodb, never()).getItem(any(GetItemRequest.class));
+      verify(dynamodb, never()).putItem(any(PutItemRequest.class));
       verify(dynamodb, never()).deleteItem(any(DeleteItemRequest.class));
     }
 
     @Test
-    void shouldSucceedWithNewEmailAddress() {
+    void shouldRemovePasswordWhenNull() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+
+      when(dynamodb.updateItem(captor.capture())).thenReturn(completedFuture(UPDATE_RESPONSE));
+
+      dao.update(null, new User(EMAIL, null, USER.getProperties())).join();
+
+      assertAll("Ensure the stored password is removed",
+          () -> assertTrue(captor.getValue().updateExpression().endsWith(" REMOVE #password_hash")),
+          () -> assertFalse(captor.getValue().expressionAttributeValues()
+              .containsKey(":password_hash")));
+    }
+
+    @Test
+    void shouldSucceedWithExpectedVersion() {
       var dynamodb = mock(DynamoDbAsyncClient.class);
       var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+
+      when(dynamodb.updateItem(captor.capture())).thenReturn(completedFuture(UPDATE_RESPONSE));
 
-      GetItemRequest existingEmailRequest = GetItemRequest.builder()
-          .tableName(TABLE_NAME)
-          .key(Collections.singletonMap("email",
-              AttributeValue.builder().s("existingEmail").build()))
-          .build();
+      var result = dao.update(null, USER, "version").join();
 
-      when(dynamodb.getItem(eq(existingEmailRequest)))
+      assertAll("Ensure the update was conditional on the version",
+          () -> assertEquals(CURR_TIME, result.user().getProperties().get("creationTime")),
+          () -> assertEquals(
+              captor.getValue().expressionAttributeValues().get(":version").s(),
+              result.version()),
+          () -> assertEquals("attribute_exists(#email) AND #version = :expected_version",
+              captor.getValue().conditionExpression()),
+          () -> assertEquals("version",
+              captor.getValue().expressionAttributeValues().get(":expected_version").s()),
+          () -> assertTrue(captor.getValue().expressionAttributeValues()
+              .get(":document").s().contains("testProperty")));
+
+      verify(dynamodb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void shouldSucceedWithNewEmailAddress() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+
+      when(dynamodb.getItem(eq(EXISTING_GET_REQUEST)))
           .thenReturn(completedFuture(GetItemResponse.builder().item(ITEM).build()));
-      when(dynamodb.getItem(eq(GET_REQUEST)))
-          .thenReturn(completedFuture(GetItemResponse.builder().item(null).build()));
-      when(dynamodb.deleteItem(any(DeleteItemRequest.class)))
-          .thenReturn(completedFuture(DeleteItemResponse.builder().attributes(ITEM).build()));
-      when(dynamodb.putItem(any(PutItemRequest.class)))
-          .thenReturn(completedFuture(PutItemResponse.builder().build()));
+      when(dynamodb.transactWriteItems(captor.capture()))
+          .thenReturn(completedFuture(TransactWriteItemsResponse.builder().build()));
 
       var updatedUser = dao.update("existingEmail", USER).join();
 
-      // The creation time and update time will have been reset since an email update
-      // triggers a delete and insert
-      long creationTime = (Long) updatedUser.getProperties().get("creationTime");
+      // The creation time of the existing user is kept
       long updateTime = (Long) updatedUser.getProperties().get("lastUpdateTime");
 
       assertAll("Ensure creation and update time were set",
-          () -> assertTrue(creationTime > CURR_TIME),
-          () -> assertTrue(updateTime > CURR_TIME),
-          () -> assertEquals(creationTime, updateTime));
+          () -> assertEquals(CURR_TIME, updatedUser.getProperties().get("creationTime")),
+          () -> assertTrue(updateTime >= CURR_TIME));
 
-      assertEquals(USER.withTime(creationTime, updateTime), updatedUser);
+      assertEquals(USER.withTime(CURR_TIME, updateTime), updatedUser);
 
-      verify(dynamodb).getItem(eq(GET_REQUEST));
-      verify(dynamodb).deleteItem(any(DeleteItemRequest.class));
-      verify(dynamodb).putItem(any(PutItemRequest.class));
+      var put = captor.getValue().transactItems().get(0).put();
+      var delete = captor.getValue().transactItems().get(1).delete();
+
+      assertAll("Both writes are in one conditional transaction",
+          () -> assertEquals(2, captor.getValue().transactItems().size()),
+          () -> assertEquals("attribute_not_exists(#email)", put.conditionExpression()),
+          () -> assertEquals("test@test.com", put.item().get("email").s()),
+          () -> assertEquals(String.valueOf(CURR_TIME), put.item().get("creation_time").n()),
+          () -> assertEquals("existingEmail", delete.key().get("email").s()),
+          () -> assertEquals("#version = :version", delete.conditionExpression()),
+          () -> assertEquals("version",
+              delete.expressionAttributeValues().get(":version").s()));
+
+      verify(dynamodb, never()).getItem(eq(GET_REQUEST));
+      verify(dynamodb, never()).deleteItem(any(DeleteItemRequest.class));
+      verify(dynamodb, never()).putItem(any(PutItemRequest.class));
+      verify(dynamodb, never()).updateItem(any(UpdateItemRequest.class));
     }
 
-    @ParameterizedTest(name = "DAO returns {1} when DynamoDB returns {0} with existing email {2}")
-    @MethodSource("provideGetFailureTestArgs")
-    void shouldFailWhenGetFails(CompletableFuture<GetItemResponse> fut,
-                                DatabaseException.Error expected,
-                                String existingEmail) {
+    @Test
+    void shouldMoveEmailOnlyIfExpectedVersionMatches() {
       var dynamodb = mock(DynamoDbAsyncClient.class);
       var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
 
-      when(dynamodb.getItem(eq(GET_REQUEST))).thenReturn(fut);
+      when(dynamodb.getItem(eq(EXISTING_GET_REQUEST)))
+          .thenReturn(completedFuture(GetItemResponse.builder().item(ITEM).build()));
+      when(dynamodb.transactWriteItems(captor.capture()))
+          .thenReturn(completedFuture(TransactWriteItemsResponse.builder().build()));
 
-      assertDatabaseError(expected, () -> dao.update(existingEmail, USER).join());
+      var result = dao.update("existingEmail", USER, "expectedVersion").join();
 
-      verify(dynamodb).getItem(eq(GET_REQUEST));
+      var put = captor.getValue().transactItems().get(0).put();
+      var delete = captor.getValue().transactItems().get(1).delete();
+
+      assertAll("The delete is conditional on the caller's version and the new one is returned",
+          () -> assertEquals("#version = :version", delete.conditionExpression()),
+          () -> assertEquals("expectedVersion",
+              delete.expressionAttributeValues().get(":version").s()),
+          () -> assertNotNull(result.version()),
+          () -> assertEquals(put.item().get("version").s(), result.version()),
+          () -> assertEquals(CURR_TIME, result.user().getProperties().get("creationTime")));
+    }
+
+    @Test
+    void shouldFailWithNewEmailAddressWhenUserDoesNotExist() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(EXISTING_GET_REQUEST)))
+          .thenReturn(completedFuture(EMPTY_GET_RESPONSE));
+
+      assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+          () -> dao.update("existingEmail", USER).join());
+
+      verify(dynamodb, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @ParameterizedTest(name = "DAO returns {1} when DynamoDB returns {0}")
+    @MethodSource("provideEmailUpdateFailureTestArgs")
+    void shouldFailWhenEmailUpdateTransactionFails(Throwable exception,
+                                                   DatabaseException.Error expected) {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.getItem(eq(EXISTING_GET_REQUEST)))
+          .thenReturn(completedFuture(GetItemResponse.builder().item(ITEM).build()));
+      when(dynamodb.transactWriteItems(any(TransactWriteItemsRequest.class)))
+          .thenReturn(failedFuture(exception));
+
+      assertDatabaseError(expected, () -> dao.update("existingEmail", USER).join());
+
+      verify(dynamodb).transactWriteItems(any(TransactWriteItemsRequest.class));
     }
 
-    static Stream<Arguments> provideGetFailureTestArgs() {
-      var existingItemResponse = GetItemResponse.builder().item(ITEM).build();
+    static Stream<Arguments> provideEmailUpdateFailureTestArgs() {
+      var none = CancellationReason.builder().code("None").build();
+      var conditionFailed = CancellationReason.builder().code("ConditionalCheckFailed").build();
 
       return Stream.of(
-          // Updating email should fail if the new address already exists as a user
-          Arguments.of(completedFuture(existingItemResponse),
-              DatabaseException.Error.CONFLICT, "originalemail@gmail.com"),
-          // Updating email should fail if the GET request fails
-          Arguments.of(failedFuture(mock(SdkException.class)),
-              DatabaseException.Error.DATABASE_DOWN, "originalemail@gmail.com"),
-          Arguments.of(failedFuture(mock(SdkException.class)),
-              DatabaseException.Error.DATABASE_DOWN, null),
-          // Updating the user should fail if there is no existing user
-          Arguments.of(completedFuture(NULL_GET_RESPONSE),
-              DatabaseException.Error.USER_NOT_FOUND, null),
-          Arguments.of(completedFuture(EMPTY_GET_RESPONSE),
-              DatabaseException.Error.USER_NOT_FOUND, null),
-          // Updating the user should fail if there is an unknown error in the GET request
-          Arguments.of(failedFuture(mock(IllegalStateException.class)),
-              DatabaseException.Error.DATABASE_DOWN, null));
+          // A user with the new email address already exists
+          Arguments.of(cancelled(conditionFailed, none), DatabaseException.Error.CONFLICT),
+          // The existing user changed after it was read
+          Arguments.of(cancelled(none, conditionFailed.toBuilder().item(ITEM).build()),
+              DatabaseException.Error.CONFLICT),
+          // The existing user was deleted after it was read
+          Arguments.of(cancelled(none, conditionFailed), DatabaseException.Error.USER_NOT_FOUND),
+          // Another transaction wrote one of the items at the same time
+          Arguments.of(cancelled(CancellationReason.builder().code("TransactionConflict").build(),
+              none), DatabaseException.Error.CONFLICT),
+          Arguments.of(mock(SdkException.class), DatabaseException.Error.DATABASE_DOWN));
+    }
+
+    private static TransactionCanceledException cancelled(CancellationReason... reasons) {
+      return TransactionCanceledException.builder().cancellationReasons(reasons).build();
     }
 
     @ParameterizedTest(name = "DAO returns {1} when DynamoDB returns {0}")
     @MethodSource("provideUpdateFailureTestArgs")
-    void shouldFailWhenUpdateFails(Class<? extends Throwable> ex,
-                                   DatabaseException.Error expected) {
+    void shouldFailWhenUpdateFails(Throwable exception, DatabaseException.Error expected) {
       var dynamodb = mock(DynamoDbAsyncClient.class);
       var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
 
-      when(dynamodb.getItem(eq(GET_REQUEST)))
-          .thenReturn(completedFuture(GetItemResponse.builder().item(ITEM).build()));
-      when(dynamodb.putItem(any(PutItemRequest.class)))
-          .thenReturn(failedFuture(mock(ex)));
+      when(dynamodb.updateItem(any(UpdateItemRequest.class)))
+          .thenReturn(failedFuture(exception));
 
-      assertDatabaseError(expected, () -> dao.update(null, USER).join());
+      assertDatabaseError(expected, () -> dao.update(null, USER, "version").join());
 
-      verify(dynamodb).getItem(eq(GET_REQUEST));
-      verify(dynamodb).putItem(any(PutItemRequest.class));
+      verify(dynamodb).updateItem(any(UpdateItemRequest.class));
     }
 
     static Stream<Arguments> provideUpdateFailureTestArgs() {
       return Stream.of(
-          Arguments.of(ConditionalCheckFailedException.class, DatabaseException.Error.CONFLICT),
-          Arguments.of(AwsServiceException.class, DatabaseException.Error.REQUEST_REJECTED),
-          Arguments.of(SdkException.class, DatabaseException.Error.DATABASE_DOWN),
-          Arguments.of(IllegalStateException.class, DatabaseException.Error.DATABASE_DOWN));
+          // The condition failed with an existing item, so the version changed
+          Arguments.of(ConditionalCheckFailedException.builder().item(ITEM).build(),
+              DatabaseException.Error.CONFLICT),
+          // The condition failed without an existing item, so the user does not exist
+          Arguments.of(ConditionalCheckFailedException.builder().build(),
+              DatabaseException.Error.USER_NOT_FOUND),
+          Arguments.of(mock(AwsServiceException.class), DatabaseException.Error.REQUEST_REJECTED),
+          Arguments.of(mock(SdkException.class), DatabaseException.Error.DATABASE_DOWN),
+          Arguments.of(mock(IllegalStateException.class), DatabaseException.Error.DATABASE_DOWN));
+    }
+  }
+
+  @Nested
+  class MarkVerified {
+    private static final User TOKEN_USER = new User(
+        new Email("test@test.com", false, "token"), "password", Map.of());
+
+    @Test
+    void shouldVerifyWithSingleConditionalUpdate() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+
+      // The document is not rewritten, so only the verified attribute changes
+      var updated = new HashMap<>(storedItem(TOKEN_USER));
+      updated.put("verified", AttributeValue.builder().bool(true).build());
+
+      when(dynamodb.updateItem(captor.capture())).thenReturn(completedFuture(
+          UpdateItemResponse.builder().attributes(updated).build()));
+
+      var result = dao.markVerified("test@test.com", "token").join();
+      var request = captor.getValue();
+
+      assertAll("The user is verified by one write that checks the token",
+          () -> assertTrue(result.getEmail().isVerified()),
+          () -> assertEquals("token", result.getEmail().getVerificationToken()),
+          () -> assertEquals("#verification_token = :token", request.conditionExpression()),
+          () -> assertEquals("token", request.expressionAttributeValues().get(":token").s()),
+          () -> assertTrue(request.expressionAttributeValues().get(":verified").bool()),
+          () -> assertEquals(ReturnValue.ALL_NEW, request.returnValues()));
+
+      verify(dynamodb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void shouldFailWhenUserDoesNotExist() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.updateItem(any(UpdateItemRequest.class)))
+          .thenReturn(failedFuture(ConditionalCheckFailedException.builder().build()));
+
+      assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+          () -> dao.markVerified("test@test.com", "token").join());
+      verify(dynamodb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void shouldFailWhenTokenDoesNotMatch() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.updateItem(any(UpdateItemRequest.class))).thenReturn(failedFuture(
+          ConditionalCheckFailedException.builder().item(storedItem(TOKEN_USER)).build()));
+
+      assertValidationError(RequestValidationException.Error.INCORRECT_TOKEN,
+          () -> dao.markVerified("test@test.com", "otherToken").join());
+      verify(dynamodb, never()).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void shouldFailWhenTokenIsNotSet() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.updateItem(any(UpdateItemRequest.class))).thenReturn(failedFuture(
+          ConditionalCheckFailedException.builder().item(storedItem(USER)).build()));
+
+      assertValidationError(RequestValidationException.Error.TOKEN_NOT_SET,
+          () -> dao.markVerified("test@test.com", "token").join());
+    }
+
+    @Test
+    void shouldReadAndUpdateUserWithoutVerifiedAttribute() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+
+      // The user was written before the verification attributes were added
+      var legacy = new HashMap<>(ITEM);
+      legacy.put("document",
+          AttributeValue.builder().s(UsersDao.toJson(MAPPER, TOKEN_USER)).build());
+
+      when(dynamodb.updateItem(captor.capture()))
+          .thenReturn(failedFuture(ConditionalCheckFailedException.builder().item(legacy).build()))
+          .thenReturn(completedFuture(UpdateItemResponse.builder()
+              .attributes(Map.of("creation_time",
+                  AttributeValue.builder().n(String.valueOf(CURR_TIME)).build()))
+              .build()));
+      when(dynamodb.getItem(eq(GET_REQUEST)))
+          .thenReturn(completedFuture(GetItemResponse.builder().item(legacy).build()));
+
+      var result = dao.markVerified("test@test.com", "token").join();
+      var update = captor.getAllValues().get(1);
+
+      assertAll("The user is read, then updated with all of its attributes",
+          () -> assertTrue(result.getEmail().isVerified()),
+          () -> assertEquals("attribute_exists(#email) AND #version = :expected_version",
+              update.conditionExpression()),
+          () -> assertEquals("token",
+              update.expressionAttributeValues().get(":verification_token").s()),
+          () -> assertTrue(update.expressionAttributeValues().get(":verified").bool()));
+    }
+
+    @Test
+    void updateShouldStoreVerificationAttributes() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+
+      when(dynamodb.updateItem(captor.capture())).thenReturn(completedFuture(
+          UpdateItemResponse.builder()
+              .attributes(Map.of("creation_time",
+                  AttributeValue.builder().n(String.valueOf(CURR_TIME)).build()))
+              .build()));
+
+      dao.update(null, TOKEN_USER).join();
+      dao.update(null, USER).join();
+
+      var withToken = captor.getAllValues().get(0).expressionAttributeValues();
+      var withoutToken = captor.getAllValues().get(1).expressionAttributeValues();
+
+      assertAll("The token is set, or set to null when the user has none",
+          () -> assertEquals("token", withToken.get(":verification_token").s()),
+          () -> assertFalse(withToken.get(":verified").bool()),
+          () -> assertTrue(withoutToken.get(":verification_token").nul()));
+    }
+
+    @Test
+    void insertShouldStoreVerificationAttributes() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(PutItemRequest.class);
+
+      when(dynamodb.putItem(captor.capture()))
+          .thenReturn(completedFuture(PutItemResponse.builder().build()));
+
+      dao.insert(TOKEN_USER).join();
+
+      assertAll("The verification attributes are stored next to the document",
+          () -> assertEquals("token", captor.getValue().item().get("verification_token").s()),
+          () -> assertFalse(captor.getValue().item().get("verified").bool()));
+    }
+
+    private Map<String, AttributeValue> storedItem(User user) {
+      var item = new HashMap<>(ITEM);
+
+      item.put("document", AttributeValue.builder().s(UsersDao.toJson(MAPPER, user)).build());
+      item.put("verified", AttributeValue.builder().bool(false).build());
+
+      if (user.getEmail().getVerificationToken() != null) {
+        item.put("verification_token",
+            AttributeValue.builder().s(user.getEmail().getVerificationToken()).build());
+      }
+
+      return item;
     }
   }
 
@@ -352,4 +736,452 @@ class DynamoDbUsersDaoTest {
           Arguments.of(IllegalStateException.class, DatabaseException.Error.DATABASE_DOWN));
     }
   }
+
+  @Nested
+  class Batch {
+    private static final String OTHER = "other@test.com";
+
+    private final BatchWriteItemResponse writeResponse = BatchWriteItemResponse.builder().build();
+
+    @Test
+    void insertAllShouldWriteNewUsersInOneTransaction() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var other = new User(Email.unverified(OTHER), "password", Collections.emptyMap());
+      var captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+
+      when(dynamodb.transactWriteItems(captor.capture()))
+          .thenReturn(completedFuture(TransactWriteItemsResponse.builder().build()));
+
+      var results = dao.insertAll(List.of(USER, other, other)).join();
+
+      var puts = captor.getValue().transactItems();
+
+      verify(dynamodb, never()).batchGetItem(any(BatchGetItemRequest.class));
+      verify(dynamodb, never()).putItem(any(PutItemRequest.class));
+      assertAll("Only the first occurrence of each user is written, conditionally",
+          () -> assertEquals(2, puts.size()),
+          () -> assertEquals(EMAIL.getAddress(), puts.get(0).put().item().get("email").s()),
+          () -> assertEquals(OTHER, puts.get(1).put().item().get("email").s()),
+          () -> assertEquals("password", puts.get(1).put().item().get("password_hash").s()),
+          () -> assertEquals("attribute_not_exists(#email)",
+              puts.get(1).put().conditionExpression()),
+          () -> assertEquals(EMAIL.getAddress(), results.get(0).user().getEmail().getAddress()),
+          () -> assertEquals(OTHER, results.get(1).user().getEmail().getAddress()),
+          () -> assertEquals(DatabaseException.Error.CONFLICT,
+              results.get(2).error().getError()));
+    }
+
+    @Test
+    void insertAllShouldSendOneTransactionPerChunk() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+      var users = IntStream.range(0, 51)
+          .mapToObj(i -> new User(Email.unverified(i + "@test.com"), "password", Map.of()))
+          .toList();
+
+      when(dynamodb.transactWriteItems(captor.capture()))
+          .thenReturn(completedFuture(TransactWriteItemsResponse.builder().build()));
+      when(dynamodb.putItem(any(PutItemRequest.class)))
+          .thenReturn(completedFuture(PutItemResponse.builder().build()));
+
+      var results = dao.insertAll(users).join();
+
+      // The last user is alone in its chunk, so it is written without a transaction
+      verify(dynamodb, times(2)).transactWriteItems(any(TransactWriteItemsRequest.class));
+      verify(dynamodb, times(1)).putItem(any(PutItemRequest.class));
+      assertAll("Users are written in transactions of at most 25",
+          () -> assertEquals(25, captor.getAllValues().get(0).transactItems().size()),
+          () -> assertEquals(25, captor.getAllValues().get(1).transactItems().size()),
+          () -> assertEquals(51, results.size()),
+          () -> assertTrue(results.stream().allMatch(result -> result.error() == null)));
+    }
+
+    @Test
+    void insertAllShouldWriteEachUserWhenTransactionIsCancelled() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var other = new User(Email.unverified(OTHER), "password", Collections.emptyMap());
+
+      // The first user already exists, so the transaction is cancelled
+      when(dynamodb.transactWriteItems(any(TransactWriteItemsRequest.class)))
+          .thenReturn(failedFuture(TransactionCanceledException.builder()
+              .cancellationReasons(
+                  CancellationReason.builder().code("ConditionalCheckFailed").build(),
+                  CancellationReason.builder().code("None").build())
+              .build()));
+      when(dynamodb.putItem(any(PutItemRequest.class)))
+          .thenAnswer(invocation -> EMAIL.getAddress().equals(
+              invocation.<PutItemRequest>getArgument(0).item().get("email").s())
+              ? failedFuture(mock(ConditionalCheckFailedException.class))
+              : completedFuture(PutItemResponse.builder().build()));
+
+      var results = dao.insertAll(List.of(USER, other)).join();
+
+      verify(dynamodb, times(2)).putItem(any(PutItemRequest.class));
+      assertAll("Only the existing user is reported as a conflict",
+          () -> assertEquals(DatabaseException.Error.CONFLICT,
+              results.get(0).error().getError()),
+          () -> assertEquals(OTHER, results.get(1).user().getEmail().getAddress()));
+    }
+
+    @Test
+    void insertAllShouldReportTransactionFailures() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var other = new User(Email.unverified(OTHER), "password", Collections.emptyMap());
+
+      when(dynamodb.transactWriteItems(any(TransactWriteItemsRequest.class)))
+          .thenReturn(failedFuture(mock(SdkException.class)));
+
+      var results = dao.insertAll(List.of(USER, other)).join();
+
+      verify(dynamodb, never()).putItem(any(PutItemRequest.class));
+      assertAll("Every user in the failed transaction is reported",
+          () -> assertEquals(DatabaseException.Error.DATABASE_DOWN,
+              results.get(0).error().getError()),
+          () -> assertEquals(DatabaseException.Error.DATABASE_DOWN,
+              results.get(1).error().getError()));
+    }
+
+    @Test
+    void insertAllShouldReportWriteFailures() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.putItem(any(PutItemRequest.class)))
+          .thenReturn(failedFuture(mock(SdkException.class)));
+
+      var results = dao.insertAll(List.of(USER)).join();
+
+      assertEquals(DatabaseException.Error.DATABASE_DOWN, results.get(0).error().getError());
+    }
+
+    @Test
+    void findAllByEmailShouldChunkKeys() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+      var emails = IntStream.range(0, 101).mapToObj(i -> i + "@test.com").toList();
+
+      when(dynamodb.batchGetItem(captor.capture()))
+          .thenReturn(completedFuture(getResponse(List.of(), List.of())));
+
+      var results = dao.findAllByEmail(emails).join();
+
+      verify(dynamodb, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+
+      assertAll("Keys are split into requests of at most 100",
+          () -> assertEquals(100,
+              captor.getAllValues().get(0).requestItems().get(TABLE_NAME).keys().size()),
+          () -> assertEquals(1,
+              captor.getAllValues().get(1).requestItems().get(TABLE_NAME).keys().size()),
+          () -> assertEquals(emails, results.stream().map(BatchResult::email).toList()),
+          () -> assertTrue(results.stream().allMatch(result -> result.error().getError()
+              == DatabaseException.Error.USER_NOT_FOUND)));
+    }
+
+    @Test
+    void findAllByEmailShouldRetryUnprocessedKeys() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.batchGetItem(any(BatchGetItemRequest.class)))
+          .thenReturn(completedFuture(getResponse(List.of(), List.of(EMAIL.getAddress()))))
+          .thenReturn(completedFuture(getResponse(List.of(ITEM), List.of())));
+
+      var results = dao.findAllByEmail(List.of(EMAIL.getAddress(), OTHER)).join();
+
+      verify(dynamodb, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+
+      assertAll("The unprocessed key is read on the second attempt",
+          () -> assertEquals(USER.withTime(CURR_TIME, CURR_TIME), results.get(0).user()),
+          () -> assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+              results.get(1).error().getError()));
+    }
+
+    @Test
+    void findAllByEmailShouldFailWhenKeysAreNeverProcessed() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.batchGetItem(any(BatchGetItemRequest.class)))
+          .thenReturn(completedFuture(getResponse(List.of(), List.of(EMAIL.getAddress()))));
+
+      var results = dao.findAllByEmail(List.of(EMAIL.getAddress())).join();
+
+      verify(dynamodb, times(5)).batchGetItem(any(BatchGetItemRequest.class));
+      assertEquals(DatabaseException.Error.DATABASE_DOWN, results.get(0).error().getError());
+    }
+
+    @Test
+    void findAllByEmailShouldReportReadFailures() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.batchGetItem(any(BatchGetItemRequest.class)))
+          .thenReturn(failedFuture(mock(SdkException.class)));
+
+      var results = dao.findAllByEmail(List.of(EMAIL.getAddress(), OTHER)).join();
+
+      assertAll("Every email fails",
+          () -> assertEquals(DatabaseException.Error.DATABASE_DOWN,
+              results.get(0).error().getError()),
+          () -> assertEquals(DatabaseException.Error.DATABASE_DOWN,
+              results.get(1).error().getError()));
+    }
+
+    @Test
+    void deleteAllShouldOnlyDeleteExistingUsers() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var writeCaptor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+
+      when(dynamodb.batchGetItem(any(BatchGetItemRequest.class)))
+          .thenReturn(completedFuture(getResponse(List.of(ITEM), List.of())));
+      when(dynamodb.batchWriteItem(writeCaptor.capture()))
+          .thenReturn(completedFuture(writeResponse));
+
+      var results = dao.deleteAll(List.of(EMAIL.getAddress(), OTHER)).join();
+
+      var writes = writeCaptor.getValue().requestItems().get(TABLE_NAME);
+
+      assertAll("Only the existing user is deleted",
+          () -> assertEquals(1, writes.size()),
+          () -> assertEquals(EMAIL.getAddress(),
+              writes.get(0).deleteRequest().key().get("email").s()),
+          () -> assertEquals(USER.withTime(CURR_TIME, CURR_TIME), results.get(0).user()),
+          () -> assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+              results.get(1).error().getError()));
+    }
+
+    @Test
+    void deleteAllShouldNotWriteWhenNoUsersExist() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.batchGetItem(any(BatchGetItemRequest.class)))
+          .thenReturn(completedFuture(getResponse(List.of(), List.of())));
+
+      var results = dao.deleteAll(List.of(OTHER)).join();
+
+      verify(dynamodb, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+      assertEquals(DatabaseException.Error.USER_NOT_FOUND, results.get(0).error().getError());
+    }
+
+    private BatchGetItemResponse getResponse(List<Map<String, AttributeValue>> items,
+                                             List<String> unprocessed) {
+      var builder = BatchGetItemResponse.builder().responses(Map.of(TABLE_NAME, items));
+
+      return unprocessed.isEmpty()
+          ? builder.build()
+          : builder.unprocessedKeys(Map.of(TABLE_NAME, KeysAndAttributes.builder()
+              .keys(unprocessed.stream()
+                  .map(email -> Map.of("email", AttributeValue.builder().s(email).build()))
+                  .toList())
+              .build())).build();
+    }
+  }
+
+  @Nested
+  class PropertyIndex {
+    private static final Set<String> INDEXED = Set.of("testProperty", "username");
+
+    private DynamoDbUsersDao indexedDao(DynamoDbAsyncClient dynamodb) {
+      return new DynamoDbUsersDao(
+          dynamodb, TABLE_NAME, MAPPER, new DynamoDbScanConfiguration(), INDEXED);
+    }
+
+    @Test
+    void insertShouldStoreIndexAttributes() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var captor = ArgumentCaptor.forClass(PutItemRequest.class);
+
+      when(dynamodb.putItem(captor.capture()))
+          .thenReturn(completedFuture(PutItemResponse.builder().build()));
+
+      indexedDao(dynamodb).insert(USER).join();
+
+      assertAll("Only properties with a value are stored",
+          () -> assertEquals("test", captor.getValue().item().get("property_testProperty").s()),
+          () -> assertFalse(captor.getValue().item().containsKey("property_username")));
+    }
+
+    @Test
+    void updateShouldSetAndRemoveIndexAttributes() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+
+      when(dynamodb.updateItem(captor.capture())).thenReturn(completedFuture(
+          UpdateItemResponse.builder()
+              .attributes(Map.of("creation_time",
+                  AttributeValue.builder().n(String.valueOf(CURR_TIME)).build()))
+              .build()));
+
+      indexedDao(dynamodb).update(null, USER).join();
+
+      var request = captor.getValue();
+
+      // Properties are aliased in sorted order, so testProperty is 0 and username is 1
+      assertAll("The index attributes follow the document",
+          () -> assertEquals("property_testProperty",
+              request.expressionAttributeNames().get("#property_0")),
+          () -> assertEquals("property_username",
+              request.expressionAttributeNames().get("#property_1")),
+          () -> assertTrue(request.updateExpression().contains("#property_0 = :property_0")),
+          () -> assertEquals("test", request.expressionAttributeValues().get(":property_0").s()),
+          () -> assertTrue(request.updateExpression().endsWith(" REMOVE #property_1")));
+    }
+
+    @Test
+    void findEmailsByPropertyShouldQueryIndex() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var captor = ArgumentCaptor.forClass(QueryRequest.class);
+
+      when(dynamodb.query(captor.capture())).thenReturn(completedFuture(QueryResponse.builder()
+          .items(List.of(Map.of("email", ITEM.get("email"))))
+          .build()));
+
+      var emails = indexedDao(dynamodb).findEmailsByProperty("username", "tester", 2).join();
+
+      assertAll("The index is queried for the value",
+          () -> assertEquals(List.of(EMAIL.getAddress()), emails),
+          () -> assertEquals("property_username-index", captor.getValue().indexName()),
+          () -> assertEquals("#property = :value", captor.getValue().keyConditionExpression()),
+          () -> assertEquals("property_username",
+              captor.getValue().expressionAttributeNames().get("#property")),
+          () -> assertEquals("tester",
+              captor.getValue().expressionAttributeValues().get(":value").s()),
+          () -> assertEquals(2, captor.getValue().limit()));
+    }
+
+    @Test
+    void findEmailsByPropertyShouldFailCorrectly() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = indexedDao(dynamodb);
+
+      when(dynamodb.query(any(QueryRequest.class)))
+          .thenReturn(failedFuture(mock(SdkException.class)));
+
+      assertAll("Unindexed properties are rejected and failures are converted",
+          () -> assertDatabaseError(DatabaseException.Error.REQUEST_REJECTED,
+              () -> dao.findEmailsByProperty("unknown", "tester", 2).join()),
+          () -> assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+              () -> dao.findEmailsByProperty("username", "tester", 2).join()));
+    }
+  }
+
+  @Nested
+  class Scan {
+
+    @Test
+    void shouldReadSegmentPage() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(ScanRequest.class);
+
+      when(dynamodb.scan(captor.capture())).thenReturn(completedFuture(ScanResponse.builder()
+          .items(List.of(ITEM))
+          .lastEvaluatedKey(Map.of("email", ITEM.get("email")))
+          .build()));
+
+      var page = dao.scan(1, 4, "start@test.com", 10).join();
+
+      assertAll("The request and page are correct",
+          () -> assertEquals(TABLE_NAME, captor.getValue().tableName()),
+          () -> assertEquals(1, captor.getValue().segment()),
+          () -> assertEquals(4, captor.getValue().totalSegments()),
+          () -> assertEquals(10, captor.getValue().limit()),
+          () -> assertEquals("start@test.com",
+              captor.getValue().exclusiveStartKey().get("email").s()),
+          () -> assertEquals(List.of(USER.withTime(CURR_TIME, CURR_TIME)), page.users()),
+          () -> assertEquals(EMAIL.getAddress(), page.nextToken()));
+    }
+
+    @Test
+    void shouldNotSplitSingleSegment() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+      var captor = ArgumentCaptor.forClass(ScanRequest.class);
+
+      when(dynamodb.scan(captor.capture()))
+          .thenReturn(completedFuture(ScanResponse.builder().items(List.of()).build()));
+
+      var page = dao.scan(0, 1, null, 10).join();
+
+      assertAll("The request is not segmented and the page is the last one",
+          () -> assertNull(captor.getValue().segment()),
+          () -> assertNull(captor.getValue().totalSegments()),
+          () -> assertFalse(captor.getValue().hasExclusiveStartKey()),
+          () -> assertTrue(page.users().isEmpty()),
+          () -> assertNull(page.nextToken()));
+    }
+
+    @Test
+    void shouldConvertFailures() {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER);
+
+      when(dynamodb.scan(any(ScanRequest.class)))
+          .thenReturn(failedFuture(mock(SdkException.class)));
+
+      assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+          () -> dao.scan(0, 1, null, 10).join());
+    }
+
+    @Test
+    void scanAllShouldReadEverySegmentWithConfiguration() throws Exception {
+      var dynamodb = mock(DynamoDbAsyncClient.class);
+      var configuration = mock(DynamoDbScanConfiguration.class);
+      var captor = ArgumentCaptor.forClass(ScanRequest.class);
+
+      when(configuration.getSegments()).thenReturn(2);
+      when(configuration.getPageSize()).thenReturn(5);
+      when(configuration.getReadCapacityPerSecond()).thenReturn(1000);
+
+      var dao = new DynamoDbUsersDao(dynamodb, TABLE_NAME, MAPPER, configuration);
+
+      when(dynamodb.scan(captor.capture())).thenReturn(completedFuture(ScanResponse.builder()
+          .items(List.of(ITEM))
+          .consumedCapacity(ConsumedCapacity.builder().capacityUnits(2.5).build())
+          .build()));
+
+      var users = new CompletableFuture<List<User>>();
+      var received = Collections.synchronizedList(new ArrayList<User>());
+
+      dao.scanAll().subscribe(new Flow.Subscriber<>() {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+          subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(User item) {
+          received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          users.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+          users.complete(received);
+        }
+      });
+
+      assertAll("Each segment is read once with the configured page size",
+          () -> assertEquals(2, users.get(5, TimeUnit.SECONDS).size()),
+          () -> assertEquals(Set.of(0, 1), captor.getAllValues().stream()
+              .map(ScanRequest::segment)
+              .collect(Collectors.toSet())),
+          () -> assertTrue(captor.getAllValues().stream()
+              .allMatch(request -> request.totalSegments() == 2 && request.limit() == 5)),
+          () -> assertTrue(captor.getAllValues().stream()
+              .allMatch(request -> request.returnConsumedCapacity()
+                  == ReturnConsumedCapacity.TOTAL)));
+    }
+  }
 }
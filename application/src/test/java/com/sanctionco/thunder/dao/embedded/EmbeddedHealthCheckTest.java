@@ -0,0 +1,43 @@
+package com.sanctionco.thunder.dao.embedded;
+
+import com.codahale.metrics.health.HealthCheck;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedHealthCheckTest extends HealthCheck {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void checkReturnsHealthy() {
+    var healthCheck = new EmbeddedHealthCheck(directory, () -> true);
+
+    assertTrue(healthCheck.check()::isHealthy);
+  }
+
+  @Test
+  void checkReturnsUnhealthyWhenDirectoryIsMissing() {
+    var healthCheck = new EmbeddedHealthCheck(directory.resolve("missing"), () -> true);
+
+    assertFalse(healthCheck.check()::isHealthy);
+  }
+
+  @Test
+  void checkReturnsUnhealthyWhenWritesFail() {
+    var healthCheck = new EmbeddedHealthCheck(directory, () -> false);
+
+    assertFalse(healthCheck.check()::isHealthy);
+  }
+
+  // Not used - exists in order to extend HealthCheck
+  @Override protected Result check() {
+    return Result.healthy();
+  }
+}
@@ -0,0 +1,58 @@
+package com.sanctionco.thunder.dao.embedded;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.UsersDaoFactory;
+import com.sanctionco.thunder.dao.inmemorydb.InMemoryDbUsersDao;
+
+import io.dropwizard.util.Duration;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddedUsersDaoFactoryTest {
+
+  @Test
+  void testEmbeddedDbCreation() throws Exception {
+    var usersDaoFactory = TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/embedded-config.yaml");
+
+    assertTrue(usersDaoFactory instanceof EmbeddedUsersDaoFactory);
+
+    var factory = (EmbeddedUsersDaoFactory) usersDaoFactory;
+
+    assertAll("The configuration is read",
+        () -> assertEquals("target/thunder-db-test", factory.getDirectory()),
+        () -> assertEquals(100L, factory.getCacheSize()),
+        () -> assertEquals(30, factory.getCompactionThreshold()),
+        () -> assertEquals(Duration.seconds(30), factory.getCompactionInterval()));
+
+    var metrics = new MetricRegistry();
+    var usersDao = factory.createUsersDao(TestResources.MAPPER, metrics, Set.of());
+    var store = factory.store;
+
+    try {
+      var healthCheck = factory.createHealthCheck();
+
+      assertAll("The DAO, store, and health check are created",
+          () -> assertTrue(usersDao instanceof InMemoryDbUsersDao),
+          () -> assertTrue(healthCheck instanceof EmbeddedHealthCheck),
+          () -> assertTrue(healthCheck.execute().isHealthy()),
+          () -> assertTrue(metrics.getGauges().containsKey(
+              "com.sanctionco.thunder.dao.embedded.LogStructuredUserStore.entries")));
+
+      // The store is only opened once
+      factory.createUsersDao(TestResources.MAPPER, new MetricRegistry(), Set.of());
+      assertSame(store, factory.store);
+    } finally {
+      store.close();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.sanctionco.thunder.dao.embedded;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.inmemorydb.InMemoryDbUsersDao;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import io.dropwizard.util.Duration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStructuredUserStoreTest {
+  private static final String PREFIX = "com.sanctionco.thunder.dao.embedded.LogStructuredUserStore";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void writes_shouldSurviveARestart() throws IOException {
+    try (var store = open(new MetricRegistry(), 10)) {
+      var dao = new InMemoryDbUsersDao(store, Set.of("username"));
+
+      dao.insert(user("a@test.com", "one")).join();
+      dao.insert(user("b@test.com", "two")).join();
+      dao.update(null, user("a@test.com", "three")).join();
+      dao.delete("b@test.com").join();
+    }
+
+    var metrics = new MetricRegistry();
+
+    try (var store = open(metrics, 10)) {
+      var dao = new InMemoryDbUsersDao(store, Set.of("username"));
+
+      assertAll("The latest state is loaded and indexed",
+          () -> assertEquals(1, store.size()),
+          () -> assertEquals("three",
+              dao.findByEmail("a@test.com").join().getProperties().get("username")),
+          () -> assertEquals(List.of("a@test.com"),
+              dao.findEmailsByProperty("username", "three", 10).join()),
+          () -> assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+              () -> dao.findByEmail("b@test.com").join()));
+    }
+  }
+
+  @Test
+  void get_shouldReadThroughTheCache() throws IOException {
+    try (var store = open(new MetricRegistry(), 10)) {
+      new InMemoryDbUsersDao(store, Set.of()).insert(user("a@test.com", "one")).join();
+    }
+
+    var metrics = new MetricRegistry();
+
+    // The cache starts empty, so the first read goes to disk and the second is cached
+    try (var store = open(metrics, 10)) {
+      var first = store.get("a@test.com");
+      var second = store.get("a@test.com");
+
+      assertAll("Misses are read from disk and cached",
+          () -> assertEquals("one", first.getProperties().get("username")),
+          () -> assertEquals(first, second),
+          () -> assertEquals(1, metrics.counter(PREFIX + ".cache-misses").getCount()),
+          () -> assertEquals(1, metrics.counter(PREFIX + ".cache-hits").getCount()));
+    }
+  }
+
+  @Test
+  void compact_shouldRemoveGarbage() throws IOException {
+    var metrics = new MetricRegistry();
+
+    try (var store = open(metrics, 10)) {
+      var dao = new InMemoryDbUsersDao(store, Set.of());
+
+      IntStream.range(0, 10).forEach(i -> dao.insert(user(i + "@test.com", "one")).join());
+      IntStream.range(0, 10).forEach(i -> dao.update(null, user(i + "@test.com", "two")).join());
+      IntStream.range(0, 5).forEach(i -> dao.delete(i + "@test.com").join());
+
+      long before = (Long) metrics.getGauges().get(PREFIX + ".log-bytes").getValue();
+      store.compact();
+      long after = (Long) metrics.getGauges().get(PREFIX + ".log-bytes").getValue();
+
+      assertAll("Only live records remain",
+          () -> assertTrue(after < before),
+          () -> assertEquals(metrics.getGauges().get(PREFIX + ".live-bytes").getValue(), after),
+          () -> assertEquals(1, metrics.counter(PREFIX + ".compactions").getCount()),
+          () -> assertEquals(1, segments()));
+    }
+
+    try (var store = open(new MetricRegistry(), 10)) {
+      assertAll("The compacted data file is loaded",
+          () -> assertEquals(5, store.size()),
+          () -> assertEquals("two", store.get("7@test.com").getProperties().get("username")));
+    }
+  }
+
+  private LogStructuredUserStore open(MetricRegistry metrics, long cacheSize) throws IOException {
+    return new LogStructuredUserStore(TestResources.MAPPER, directory, cacheSize, 50,
+        Duration.hours(1), metrics);
+  }
+
+  private long segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith("wal-")).count();
+    }
+  }
+
+  private static User user(String email, String username) {
+    return new User(Email.unverified(email), "password", Map.of("username", username));
+  }
+}
@@ -0,0 +1,119 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompactUserStoreTest {
+  private static final String PREFIX = "com.sanctionco.thunder.dao.inmemorydb.CompactUserStore";
+
+  private static final User USER = new User(Email.unverified("test@test.com"), "password",
+      Map.of("username", "tester", "age", 30));
+
+  @Test
+  void constructor_shouldRejectInvalidSize() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new CompactUserStore(TestResources.MAPPER, 0, new MetricRegistry()));
+  }
+
+  @Test
+  void sharded_shouldRejectFewerBytesThanShards() {
+    var exception = assertThrows(IllegalArgumentException.class,
+        () -> CompactUserStore.sharded(TestResources.MAPPER, 3, 4, new MetricRegistry()));
+
+    assertEquals("Unable to split 3 bytes across 4 shards. Each shard needs at least one byte.",
+        exception.getMessage());
+  }
+
+  @Test
+  void compute_shouldCountTheExactRecordSize() throws Exception {
+    var metrics = new MetricRegistry();
+    var store = new CompactUserStore(TestResources.MAPPER, 1024, metrics);
+    long size = TestResources.MAPPER.writeValueAsBytes(USER).length;
+
+    var stored = store.compute("test@test.com", (email, current) -> USER, noListener());
+
+    assertAll("The user is stored and its bytes are counted",
+        () -> assertEquals(USER, stored),
+        () -> assertEquals(USER, store.get("test@test.com")),
+        () -> assertEquals(Set.of("test@test.com"), store.emails()),
+        () -> assertEquals(size, store.usedBytes()),
+        () -> assertEquals(1, metrics.getGauges().get(PREFIX + ".entries").getValue()),
+        () -> assertEquals(size, metrics.getGauges().get(PREFIX + ".bytes").getValue()));
+
+    store.compute("test@test.com", (email, current) -> null, noListener());
+
+    assertAll("Deleting the user frees its bytes",
+        () -> assertNull(store.get("test@test.com")),
+        () -> assertEquals(0, store.size()),
+        () -> assertEquals(0L, store.usedBytes()));
+  }
+
+  @Test
+  void compute_shouldRejectWritesOverTheLimit() throws Exception {
+    long size = TestResources.MAPPER.writeValueAsBytes(USER).length;
+    var store = new CompactUserStore(TestResources.MAPPER, size, new MetricRegistry());
+    List<String> changes = new ArrayList<>();
+
+    store.compute("test@test.com", (email, current) -> USER,
+        (email, oldUser, newUser) -> changes.add(email));
+
+    var other = new User(Email.unverified("other@test.com"), "password");
+    var e = assertThrows(DatabaseException.class,
+        () -> store.compute("other@test.com", (email, current) -> other,
+            (email, oldUser, newUser) -> changes.add(email)));
+
+    assertAll("The rejected user is not stored",
+        () -> assertEquals(DatabaseException.Error.DATABASE_DOWN, e.getError()),
+        () -> assertNull(store.get("other@test.com")),
+        () -> assertEquals(List.of("test@test.com"), changes),
+        () -> assertEquals(size, store.usedBytes()));
+  }
+
+  @Test
+  void compute_shouldKeepTheRecordWhenUnchanged() {
+    var store = new CompactUserStore(TestResources.MAPPER, 1024, new MetricRegistry());
+    List<String> changes = new ArrayList<>();
+
+    store.compute("test@test.com", (email, current) -> USER, noListener());
+    var result = store.compute("test@test.com", (email, current) -> current,
+        (email, oldUser, newUser) -> changes.add(email));
+
+    assertAll("The listener is not called when nothing changes",
+        () -> assertEquals(USER, result),
+        () -> assertEquals(List.of(), changes));
+  }
+
+  @Test
+  void compute_shouldReleaseBytesWhenTheListenerFails() {
+    var store = new CompactUserStore(TestResources.MAPPER, 1024, new MetricRegistry());
+
+    assertThrows(IllegalStateException.class,
+        () -> store.compute("test@test.com", (email, current) -> USER,
+            (email, oldUser, newUser) -> {
+              throw new IllegalStateException();
+            }));
+
+    assertAll("Nothing is stored",
+        () -> assertNull(store.get("test@test.com")),
+        () -> assertEquals(0L, store.usedBytes()));
+  }
+
+  private static UserStore.ChangeListener noListener() {
+    return (email, oldUser, newUser) -> { };
+  }
+}
@@ -0,0 +1,108 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import io.dropwizard.util.Duration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurableUserStoreTest {
+  private static final MemoryInfo MEMORY_INFO = new RuntimeMemoryInfo(Runtime.getRuntime());
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void writes_shouldSurviveARestart() throws IOException {
+    try (var store = open()) {
+      var dao = new InMemoryDbUsersDao(store, Set.of("username"));
+
+      dao.insert(user("a@test.com", "one")).join();
+      dao.insert(user("b@test.com", "two")).join();
+      dao.update(null, user("a@test.com", "three")).join();
+      dao.delete("b@test.com").join();
+    }
+
+    try (var store = open()) {
+      var dao = new InMemoryDbUsersDao(store, Set.of("username"));
+
+      assertAll("The latest state is replayed and indexed",
+          () -> assertEquals(1, store.size()),
+          () -> assertEquals("three",
+              dao.findByEmail("a@test.com").join().getProperties().get("username")),
+          () -> assertEquals(List.of("a@test.com"),
+              dao.findEmailsByProperty("username", "three", 10).join()),
+          () -> assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+              () -> dao.findByEmail("b@test.com").join()));
+    }
+  }
+
+  @Test
+  void snapshot_shouldReplaceOldSegments() throws IOException {
+    try (var store = open()) {
+      var dao = new InMemoryDbUsersDao(store, Set.of());
+
+      dao.insert(user("a@test.com", "one")).join();
+      dao.insert(user("b@test.com", "two")).join();
+      store.snapshot();
+      dao.delete("a@test.com").join();
+      dao.insert(user("c@test.com", "three")).join();
+      store.snapshot();
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      // The lock, the snapshot, the segment that was current when it started, and the one after
+      assertEquals(4, files.count());
+    }
+
+    try (var store = open()) {
+      assertAll("The snapshot and later changes are loaded",
+          () -> assertEquals(Set.of("b@test.com", "c@test.com"), Set.copyOf(store.emails())),
+          () -> assertEquals("three", store.get("c@test.com").getProperties().get("username")));
+    }
+  }
+
+  @Test
+  void recover_shouldLoadIntoCompactStore() throws IOException {
+    try (var store = open()) {
+      new InMemoryDbUsersDao(store, Set.of()).insert(user("a@test.com", "one")).join();
+    }
+
+    var compact = new CompactUserStore(TestResources.MAPPER, 1024 * 1024, new MetricRegistry());
+
+    try (var store = new DurableUserStore(compact, TestResources.MAPPER, directory,
+        Duration.hours(1), new MetricRegistry())) {
+      assertAll("The users are stored as compact records",
+          () -> assertEquals(1, compact.size()),
+          () -> assertTrue(compact.usedBytes() > 0),
+          () -> assertEquals("one", store.get("a@test.com").getProperties().get("username")));
+    }
+  }
+
+  private DurableUserStore open() throws IOException {
+    return new DurableUserStore(new HeapUserStore(MEMORY_INFO, 100), TestResources.MAPPER,
+        directory, Duration.hours(1), new MetricRegistry());
+  }
+
+  private static User user(String email, String username) {
+    return new User(Email.unverified(email), "password", Map.of("username", username));
+  }
+}
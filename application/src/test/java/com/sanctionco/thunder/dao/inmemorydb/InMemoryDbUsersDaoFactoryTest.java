@@ -1,10 +1,17 @@
 package com.sanctionco.thunder.dao.inmemorydb;
 
+import com.codahale.metrics.MetricRegistry;
 import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
 
+import java.util.Set;
+
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InMemoryDbUsersDaoFactoryTest {
@@ -23,4 +30,50 @@ class InMemoryDbUsersDaoFactoryTest {
     assertTrue(healthCheck instanceof InMemoryDbHealthCheck);
     assertTrue(usersDao instanceof InMemoryDbUsersDao);
   }
+
+  @Test
+  void testCompactInMemoryDbCreation() {
+    var usersDaoFactory = (InMemoryDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/inmemorydb-compact-config.yaml");
+
+    var metrics = new MetricRegistry();
+    var usersDao = usersDaoFactory.createUsersDao(TestResources.MAPPER, metrics, Set.of());
+
+    assertAll("Compact storage is configured and reports metrics",
+        () -> assertTrue(usersDaoFactory.getCompactConfiguration().isEnabled()),
+        () -> assertEquals(1024 * 1024,
+            usersDaoFactory.getCompactConfiguration().getMaxSize().toBytes()),
+        () -> assertEquals(4, usersDaoFactory.getCompactConfiguration().getShards()),
+        () -> assertTrue(usersDao instanceof InMemoryDbUsersDao),
+        () -> assertTrue(metrics.getGauges().containsKey(
+            "com.sanctionco.thunder.dao.inmemorydb.CompactUserStore.bytes")),
+        () -> assertTrue(metrics.getGauges().containsKey(
+            "com.sanctionco.thunder.dao.inmemorydb.CompactUserStore.shard-3.bytes")));
+  }
+
+  @Test
+  void testCompactMaxSizeSmallerThanShardsIsInvalid() {
+    var usersDaoFactory = TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/inmemorydb-compact-too-small-config.yaml",
+        true);
+
+    assertNull(usersDaoFactory);
+  }
+
+  @Test
+  void testCompactStorageIsDisabledByDefault() {
+    var usersDaoFactory = (InMemoryDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/inmemorydb-config.yaml");
+
+    var metrics = new MetricRegistry();
+    usersDaoFactory.createUsersDao(TestResources.MAPPER, metrics, Set.of());
+
+    assertAll("Users are kept as objects and not saved to disk",
+        () -> assertFalse(usersDaoFactory.getCompactConfiguration().isEnabled()),
+        () -> assertFalse(usersDaoFactory.getPersistenceConfiguration().isEnabled()),
+        () -> assertTrue(metrics.getGauges().isEmpty()));
+  }
 }
@@ -1,15 +1,29 @@
 package com.sanctionco.thunder.dao.inmemorydb;
 
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.dao.DatabaseException;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
 import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertValidationError;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
@@ -68,6 +82,79 @@ class InMemoryDbUsersDaoTest {
         () -> dao.insert(USER).join());
   }
 
+  @Test
+  void insert_FullCompactStoreShouldFail() {
+    var dao = new InMemoryDbUsersDao(
+        new CompactUserStore(TestResources.MAPPER, 16, new MetricRegistry()), Set.of());
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+        () -> dao.insert(USER).join());
+  }
+
+  @Test
+  void compactStore_ShouldRoundTripUsers() {
+    var dao = new InMemoryDbUsersDao(
+        new CompactUserStore(TestResources.MAPPER, 1024 * 1024, new MetricRegistry()),
+        Set.of("testProperty"));
+
+    var inserted = dao.insert(USER).join();
+    var updated = dao.update(null, new User(EMAIL, "newPassword",
+        Collections.singletonMap("testProperty", "updated"))).join();
+
+    assertAll("Users read back from compact records match what was written",
+        () -> assertEquals(updated, dao.findByEmail(EMAIL.getAddress()).join()),
+        () -> assertEquals(inserted.getProperties().get("creationTime"),
+            updated.getProperties().get("creationTime")),
+        () -> assertEquals(List.of(EMAIL.getAddress()),
+            dao.findEmailsByProperty("testProperty", "updated", 10).join()),
+        () -> assertEquals(List.of(),
+            dao.findEmailsByProperty("testProperty", "test", 10).join()));
+
+    assertEquals(updated, dao.delete(EMAIL.getAddress()).join());
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+  }
+
+  @Test
+  void scanAll_ShouldReadEveryShard() throws Exception {
+    var dao = new InMemoryDbUsersDao(
+        CompactUserStore.sharded(TestResources.MAPPER, 1024 * 1024, 4, new MetricRegistry()),
+        Set.of());
+
+    IntStream.range(0, 250).forEach(i -> dao.insert(
+        new User(Email.unverified(i + "@test.com"), "password")).join());
+
+    var users = new CompletableFuture<List<User>>();
+    var received = Collections.synchronizedList(new ArrayList<User>());
+
+    dao.scanAll().subscribe(new Flow.Subscriber<>() {
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(User item) {
+        received.add(item);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        users.completeExceptionally(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        users.complete(received);
+      }
+    });
+
+    assertEquals(IntStream.range(0, 250).mapToObj(i -> i + "@test.com").collect(Collectors.toSet()),
+        users.get(5, TimeUnit.SECONDS).stream()
+            .map(user -> user.getEmail().getAddress())
+            .collect(Collectors.toSet()));
+  }
+
   @Test
   void findByEmail_ShouldSucceed() {
     var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
@@ -106,6 +193,67 @@ class InMemoryDbUsersDaoTest {
     assertEquals(updateResult, getResult);
   }
 
+  @Test
+  void update_NewEmailShouldMoveUser() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+    var userToUpdate = new User(
+        Email.unverified("test2@test.com"), "password", Collections.emptyMap());
+
+    var inserted = dao.insert(USER).join();
+    var updateResult = dao.update("test@test.com", userToUpdate).join();
+
+    assertEquals(inserted.getProperties().get("creationTime"),
+        updateResult.getProperties().get("creationTime"));
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail("test@test.com").join());
+  }
+
+  @Test
+  void update_NewEmailConflictShouldKeepBothUsers() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+    var other = new User(Email.unverified("test2@test.com"), "password", Collections.emptyMap());
+
+    var inserted = dao.insert(USER).join();
+    var otherInserted = dao.insert(other).join();
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> dao.update("test@test.com", other).join());
+
+    assertEquals(inserted, dao.findByEmail("test@test.com").join());
+    assertEquals(otherInserted, dao.findByEmail("test2@test.com").join());
+  }
+
+  @Test
+  void update_NewEmailNotFoundShouldFail() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.update("missing@test.com", USER).join());
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail("test@test.com").join());
+  }
+
+  @Test
+  void update_NewEmailShouldReleaseNewEmailWhenUserChanges() {
+    // Every read returns an older copy of the user, as if it changed right after the read
+    var store = new HeapUserStore(MEMORY_INFO, MAX_MEMORY_PERCENTAGE) {
+      @Override
+      public User get(String email) {
+        User stored = super.get(email);
+        return stored == null ? null : stored.withTime(0L, 0L);
+      }
+    };
+    var dao = new InMemoryDbUsersDao(store, Set.of());
+    var userToUpdate = new User(
+        Email.unverified("test2@test.com"), "password", Collections.emptyMap());
+
+    dao.insert(USER).join();
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> dao.update("test@test.com", userToUpdate).join());
+    assertEquals(Set.of("test@test.com"), store.emails());
+  }
+
   @Test
   void update_ShouldSucceed() {
     var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
@@ -152,6 +300,44 @@ class InMemoryDbUsersDaoTest {
         () -> dao.update(null, USER).join());
   }
 
+  @Test
+  void markVerified_ShouldSucceed() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+    var unverified = new User(new Email("test@test.com", false, "testToken"), "password",
+        Collections.emptyMap());
+
+    var inserted = dao.insert(unverified).join();
+    var verified = dao.markVerified("test@test.com", "testToken").join();
+
+    assertAll("The stored user is verified and keeps its creation time",
+        () -> assertTrue(verified.getEmail().isVerified()),
+        () -> assertEquals("testToken", verified.getEmail().getVerificationToken()),
+        () -> assertEquals(inserted.getProperties().get("creationTime"),
+            verified.getProperties().get("creationTime")),
+        () -> assertEquals(verified, dao.findByEmail("test@test.com").join()));
+  }
+
+  @Test
+  void markVerified_IncorrectTokenShouldNotChangeUser() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+    var unverified = new User(new Email("test@test.com", false, "testToken"), "password",
+        Collections.emptyMap());
+
+    var inserted = dao.insert(unverified).join();
+
+    assertValidationError(RequestValidationException.Error.INCORRECT_TOKEN,
+        () -> dao.markVerified("test@test.com", "otherToken").join());
+    assertEquals(inserted, dao.findByEmail("test@test.com").join());
+  }
+
+  @Test
+  void markVerified_NotFoundShouldFail() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.markVerified("test@test.com", "testToken").join());
+  }
+
   @Test
   void delete_ShouldSucceed() {
     var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
@@ -164,4 +350,132 @@ class InMemoryDbUsersDaoTest {
     assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
         () -> dao.findByEmail(EMAIL.getAddress()).join());
   }
+
+  @Test
+  void findEmailsByProperty_ShouldFollowWrites() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE, Set.of("username"));
+
+    dao.insert(new User(Email.unverified("a@test.com"), "password", Map.of("username", "one")))
+        .join();
+    dao.insert(new User(Email.unverified("b@test.com"), "password", Map.of("username", "one")))
+        .join();
+    dao.insert(new User(Email.unverified("c@test.com"), "password", Map.of("username", 2)))
+        .join();
+
+    assertAll("Lookups use the string value and are limited",
+        () -> assertEquals(List.of("a@test.com", "b@test.com"),
+            dao.findEmailsByProperty("username", "one", 10).join()),
+        () -> assertEquals(List.of("a@test.com"),
+            dao.findEmailsByProperty("username", "one", 1).join()),
+        () -> assertEquals(List.of("c@test.com"),
+            dao.findEmailsByProperty("username", "2", 10).join()));
+
+    dao.update(null, new User(Email.unverified("a@test.com"), "password",
+        Map.of("username", "three"))).join();
+    dao.delete("b@test.com").join();
+    dao.update("c@test.com", new User(Email.unverified("d@test.com"), "password",
+        Map.of("username", 2))).join();
+
+    assertAll("The index is updated when users change",
+        () -> assertEquals(List.of(), dao.findEmailsByProperty("username", "one", 10).join()),
+        () -> assertEquals(List.of("a@test.com"),
+            dao.findEmailsByProperty("username", "three", 10).join()),
+        () -> assertEquals(List.of("d@test.com"),
+            dao.findEmailsByProperty("username", "2", 10).join()));
+  }
+
+  @Test
+  void findEmailsByProperty_NotIndexedShouldFail() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+
+    assertDatabaseError(DatabaseException.Error.REQUEST_REJECTED,
+        () -> dao.findEmailsByProperty("username", "one", 10).join());
+  }
+
+  @Test
+  void scan_ShouldPageThroughEverySegment() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+    var emails = IntStream.range(0, 10).mapToObj(i -> i + "@test.com").toList();
+
+    emails.forEach(email -> dao.insert(new User(Email.unverified(email), "password")).join());
+
+    List<String> scanned = new ArrayList<>();
+
+    for (int segment = 0; segment < 3; segment++) {
+      String token = null;
+
+      do {
+        var page = dao.scan(segment, 3, token, 2).join();
+
+        assertTrue(page.users().size() <= 2);
+        page.users().forEach(user -> scanned.add(user.getEmail().getAddress()));
+        token = page.nextToken();
+      } while (token != null);
+    }
+
+    assertEquals(Set.copyOf(emails), Set.copyOf(scanned));
+    assertEquals(emails.size(), scanned.size());
+  }
+
+  @Test
+  void scan_ShouldReadEachUserOnceWhenPagingThroughThousandsOfUsers() {
+    var gets = new AtomicInteger();
+    var emailReads = new AtomicInteger();
+    var store = new HeapUserStore(MEMORY_INFO, MAX_MEMORY_PERCENTAGE) {
+      @Override
+      public User get(String email) {
+        gets.incrementAndGet();
+        return super.get(email);
+      }
+
+      @Override
+      public Set<String> emails() {
+        emailReads.incrementAndGet();
+        return super.emails();
+      }
+    };
+    var dao = new InMemoryDbUsersDao(store, Set.of());
+    var emails = IntStream.range(0, 3000).mapToObj(i -> i + "@test.com").toList();
+
+    emails.forEach(email -> dao.insert(new User(Email.unverified(email), "password")).join());
+    gets.set(0);
+    emailReads.set(0);
+
+    List<String> scanned = new ArrayList<>();
+
+    for (int segment = 0; segment < 4; segment++) {
+      String token = null;
+
+      do {
+        var page = dao.scan(segment, 4, token, 100).join();
+
+        page.users().forEach(user -> scanned.add(user.getEmail().getAddress()));
+        token = page.nextToken();
+      } while (token != null);
+    }
+
+    assertAll("Every user is read once, and the store is only listed for the first page",
+        () -> assertEquals(Set.copyOf(emails), Set.copyOf(scanned)),
+        () -> assertEquals(emails.size(), scanned.size()),
+        () -> assertEquals(emails.size(), gets.get()),
+        () -> assertEquals(1, emailReads.get()));
+  }
+
+  @Test
+  void scan_ShouldSeeChangesMadeAfterTheFirstScan() {
+    var dao = new InMemoryDbUsersDao(MEMORY_INFO, MAX_MEMORY_PERCENTAGE);
+
+    dao.insert(new User(Email.unverified("a@test.com"), "password")).join();
+    dao.insert(new User(Email.unverified("b@test.com"), "password")).join();
+
+    assertEquals(2, dao.scan(0, 1, null, 10).join().users().size());
+
+    dao.delete("a@test.com").join();
+    dao.insert(new User(Email.unverified("c@test.com"), "password")).join();
+
+    assertEquals(List.of("b@test.com", "c@test.com"), dao.scan(0, 1, null, 10).join().users()
+        .stream()
+        .map(user -> user.getEmail().getAddress())
+        .toList());
+  }
 }
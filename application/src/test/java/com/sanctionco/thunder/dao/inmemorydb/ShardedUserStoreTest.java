@@ -0,0 +1,116 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedUserStoreTest {
+  private static final String PREFIX = "com.sanctionco.thunder.dao.inmemorydb.CompactUserStore";
+  private static final List<String> EMAILS = IntStream.range(0, 40)
+      .mapToObj(i -> i + "@test.com")
+      .toList();
+
+  @Test
+  void constructor_shouldRequireAShard() {
+    assertThrows(IllegalArgumentException.class, () -> new ShardedUserStore(List.of()));
+  }
+
+  @Test
+  void compute_shouldRouteUsersByEmailHash() {
+    var shards = List.of(heapStore(), heapStore(), heapStore());
+    var store = new ShardedUserStore(shards);
+
+    EMAILS.forEach(email -> store.compute(email, (key, current) -> user(email), noListener()));
+
+    assertAll("Each user is stored in exactly one shard",
+        () -> assertEquals(EMAILS.size(), store.size()),
+        () -> assertEquals(Set.copyOf(EMAILS), Set.copyOf(store.emails())),
+        () -> assertTrue(store.emails().contains("7@test.com")),
+        () -> assertFalse(store.emails().contains("missing@test.com")),
+        () -> assertEquals(3, store.segments()),
+        () -> EMAILS.forEach(email -> assertTrue(shards
+            .get(Math.floorMod(email.hashCode(), 3)).emails().contains(email))),
+        () -> assertEquals(user("7@test.com"), store.get("7@test.com")));
+  }
+
+  @Test
+  void emails_shouldMatchTheDefaultSegments() {
+    var store = new ShardedUserStore(List.of(heapStore(), heapStore()));
+    var unsharded = heapStore();
+
+    EMAILS.forEach(email -> {
+      store.compute(email, (key, current) -> user(email), noListener());
+      unsharded.compute(email, (key, current) -> user(email), noListener());
+    });
+
+    // Segment counts that are and are not multiples of the number of shards
+    for (int total : List.of(1, 2, 3, 4)) {
+      for (int segment = 0; segment < total; segment++) {
+        assertEquals(
+            unsharded.emails(segment, total).collect(Collectors.toSet()),
+            store.emails(segment, total).collect(Collectors.toSet()));
+      }
+    }
+  }
+
+  @Test
+  void sharded_shouldRejectUsersWhenTheirShardIsFull() throws Exception {
+    var metrics = new MetricRegistry();
+    long size = TestResources.MAPPER.writeValueAsBytes(user("0@test.com")).length;
+
+    // Each of the two shards has room for a single user
+    var store = CompactUserStore.sharded(TestResources.MAPPER, 2 * size + 1, 2, metrics);
+
+    String first = "0@test.com";
+    String sameShard = EMAILS.stream()
+        .filter(email -> !email.equals(first))
+        .filter(email -> Math.floorMod(email.hashCode(), 2) == Math.floorMod(first.hashCode(), 2))
+        .findFirst()
+        .orElseThrow();
+    String otherShard = EMAILS.stream()
+        .filter(email -> Math.floorMod(email.hashCode(), 2) != Math.floorMod(first.hashCode(), 2))
+        .filter(email -> email.length() == first.length())
+        .findFirst()
+        .orElseThrow();
+
+    store.compute(first, (key, current) -> user(first), noListener());
+    store.compute(otherShard, (key, current) -> user(otherShard), noListener());
+
+    var e = assertThrows(DatabaseException.class,
+        () -> store.compute(sameShard, (key, current) -> user(sameShard), noListener()));
+
+    assertAll("Only the full shard rejects users, and totals cover every shard",
+        () -> assertEquals(DatabaseException.Error.DATABASE_DOWN, e.getError()),
+        () -> assertEquals(2, store.size()),
+        () -> assertEquals(2, metrics.getGauges().get(PREFIX + ".entries").getValue()),
+        () -> assertEquals(2 * size, metrics.getGauges().get(PREFIX + ".bytes").getValue()),
+        () -> assertEquals(1, metrics.getGauges().get(PREFIX + ".shard-0.entries").getValue()));
+  }
+
+  private static HeapUserStore heapStore() {
+    return new HeapUserStore(new RuntimeMemoryInfo(Runtime.getRuntime()), 100);
+  }
+
+  private static User user(String email) {
+    return new User(Email.unverified(email), "password");
+  }
+
+  private static UserStore.ChangeListener noListener() {
+    return (email, oldUser, newUser) -> { };
+  }
+}
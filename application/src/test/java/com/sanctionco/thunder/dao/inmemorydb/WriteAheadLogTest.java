@@ -0,0 +1,148 @@
+package com.sanctionco.thunder.dao.inmemorydb;
+
+import com.codahale.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteAheadLogTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replay_shouldReturnEveryRecordInOrder() throws IOException {
+    var metrics = new MetricRegistry();
+
+    try (var log = new WriteAheadLog(directory, metrics)) {
+      log.append("a@test.com", bytes("one"));
+      log.append("b@test.com", bytes("two"));
+      log.append("a@test.com", null);
+      log.sync().join();
+    }
+
+    assertAll("Every record is read back",
+        () -> assertEquals(List.of("a@test.com=one", "b@test.com=two", "a@test.com=null"),
+            replay(1)),
+        () -> assertEquals(1, metrics.timer(
+            "com.sanctionco.thunder.dao.inmemorydb.WriteAheadLog.sync-time").getCount()));
+  }
+
+  @Test
+  void sync_shouldReportMetricsUnderGivenPrefix() throws IOException {
+    var metrics = new MetricRegistry();
+
+    try (var log = new WriteAheadLog(directory, metrics, "journal")) {
+      log.append("a@test.com", bytes("one"));
+      log.sync().join();
+    }
+
+    assertAll("Only the given prefix is used",
+        () -> assertEquals(1, metrics.timer("journal.sync-time").getCount()),
+        () -> assertFalse(metrics.getNames().stream()
+            .anyMatch(name -> name.startsWith(WriteAheadLog.class.getName()))));
+  }
+
+  @Test
+  void replay_shouldStopAtATornRecord() throws IOException {
+    try (var log = new WriteAheadLog(directory, new MetricRegistry())) {
+      log.append("a@test.com", bytes("one"));
+      log.append("b@test.com", bytes("two"));
+      log.sync().join();
+    }
+
+    // Cut the last record in half, as a crash in the middle of a write would
+    Path segment = segments().getFirst();
+    byte[] contents = Files.readAllBytes(segment);
+    Files.write(segment, Arrays.copyOf(contents, contents.length - 3));
+
+    assertEquals(List.of("a@test.com=one"), replay(1));
+  }
+
+  @Test
+  void rotate_shouldStartANewSegmentAfterExistingOnes() throws IOException {
+    try (var log = new WriteAheadLog(directory, new MetricRegistry())) {
+      log.append("a@test.com", bytes("one"));
+      assertEquals(2, log.rotate());
+      log.append("b@test.com", bytes("two"));
+      log.sync().join();
+    }
+
+    try (var log = new WriteAheadLog(directory, new MetricRegistry())) {
+      log.append("c@test.com", bytes("three"));
+      log.sync().join();
+      log.deleteSegmentsBefore(2);
+    }
+
+    assertAll("Old segments are deleted and later ones are replayed in order",
+        () -> assertEquals(2, segments().size()),
+        () -> assertEquals(List.of("b@test.com=two", "c@test.com=three"), replay(0)),
+        () -> assertEquals(List.of("c@test.com=three"), replay(3)));
+  }
+
+  @Test
+  void read_shouldReturnTheRecordAtAPosition() throws IOException {
+    try (var log = new WriteAheadLog(directory, new MetricRegistry())) {
+      var first = log.append("a@test.com", bytes("one"));
+      var second = log.append("b@test.com", bytes("two"));
+      var deleted = log.append("a@test.com", null);
+
+      List<WriteAheadLog.Position> replayed = new ArrayList<>();
+      WriteAheadLog.replay(directory, 0, (email, user, position) -> replayed.add(position));
+
+      assertAll("Records are read back from their positions",
+          () -> assertEquals(new WriteAheadLog.Position(1, 0, first.size()), first),
+          () -> assertEquals(first.size(), second.offset()),
+          () -> assertEquals("one", new String(log.read(first), StandardCharsets.UTF_8)),
+          () -> assertEquals("two", new String(log.read(second), StandardCharsets.UTF_8)),
+          () -> assertNull(log.read(deleted)),
+          () -> assertEquals(List.of(first, second, deleted), replayed));
+    }
+  }
+
+  @Test
+  void constructor_shouldRejectADirectoryInUse() throws IOException {
+    try (var log = new WriteAheadLog(directory, new MetricRegistry())) {
+      assertThrows(IOException.class, () -> new WriteAheadLog(directory, new MetricRegistry()));
+    }
+
+    // The lock is released when the log is closed
+    new WriteAheadLog(directory, new MetricRegistry()).close();
+  }
+
+  private List<String> replay(long first) throws IOException {
+    List<String> records = new ArrayList<>();
+
+    WriteAheadLog.replay(directory, first, (email, user, position) -> records.add(
+        email + "=" + (user != null ? new String(user, StandardCharsets.UTF_8) : null)));
+
+    return records;
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,56 @@
+package com.sanctionco.thunder.dao.mongodb;
+
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MongoConnectionPoolMetricsTest {
+  private static final String PREFIX = MongoConnectionPoolMetrics.class.getName();
+
+  @Test
+  void shouldTrackPoolState() {
+    var metrics = new MetricRegistry();
+    var poolMetrics = new MongoConnectionPoolMetrics();
+    var checkedOut = mock(ConnectionCheckedOutEvent.class);
+
+    when(checkedOut.getElapsedTime(TimeUnit.NANOSECONDS)).thenReturn(1_000L);
+
+    poolMetrics.register(metrics);
+
+    // Two connections are created, one is checked out and one caller is still waiting
+    poolMetrics.connectionCreated(mock(ConnectionCreatedEvent.class));
+    poolMetrics.connectionCreated(mock(ConnectionCreatedEvent.class));
+    poolMetrics.connectionCheckOutStarted(mock(ConnectionCheckOutStartedEvent.class));
+    poolMetrics.connectionCheckOutStarted(mock(ConnectionCheckOutStartedEvent.class));
+    poolMetrics.connectionCheckedOut(checkedOut);
+
+    assertAll("Pool state while a connection is checked out",
+        () -> assertEquals(2L, metrics.getGauges().get(PREFIX + ".size").getValue()),
+        () -> assertEquals(1L, metrics.getGauges().get(PREFIX + ".checked-out").getValue()),
+        () -> assertEquals(1L, metrics.getGauges().get(PREFIX + ".wait-queue-size").getValue()),
+        () -> assertEquals(1L, metrics.timer(PREFIX + ".wait-time").getCount()));
+
+    poolMetrics.connectionCheckOutFailed(mock(ConnectionCheckOutFailedEvent.class));
+    poolMetrics.connectionCheckedIn(mock(ConnectionCheckedInEvent.class));
+    poolMetrics.connectionClosed(mock(ConnectionClosedEvent.class));
+
+    assertAll("Pool state after the connection is returned",
+        () -> assertEquals(1L, metrics.getGauges().get(PREFIX + ".size").getValue()),
+        () -> assertEquals(0L, metrics.getGauges().get(PREFIX + ".checked-out").getValue()),
+        () -> assertEquals(0L, metrics.getGauges().get(PREFIX + ".wait-queue-size").getValue()),
+        () -> assertEquals(1L, metrics.counter(PREFIX + ".check-out-failures").getCount()));
+  }
+}
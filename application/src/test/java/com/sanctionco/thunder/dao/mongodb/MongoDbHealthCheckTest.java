@@ -1,11 +1,11 @@
 package com.sanctionco.thunder.dao.mongodb;
 
 import com.codahale.metrics.health.HealthCheck;
-import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoIterable;
+import com.mongodb.reactivestreams.client.ListDatabasesPublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
 
 import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -25,12 +25,14 @@ class MongoDbHealthCheckTest extends HealthCheck {
   @Test
   void testHealthy() {
     var client = mock(MongoClient.class);
-    var iterable = mock(MongoIterable.class);
-    var cursor = mock(MongoCursor.class);
+    ListDatabasesPublisher<String> publisher = mock(ListDatabasesPublisher.class);
 
-    when(client.listDatabaseNames()).thenReturn(iterable);
-    when(iterable.iterator()).thenReturn(cursor);
-    when(cursor.hasNext()).thenReturn(true);
+    when(client.listDatabaseNames()).thenReturn(publisher);
+    when(publisher.first()).thenReturn(subscriber -> {
+      subscriber.onSubscribe(mock(Subscription.class));
+      subscriber.onNext("test-db");
+      subscriber.onComplete();
+    });
 
     MongoDbHealthCheck healthCheck = new MongoDbHealthCheck(client);
 
@@ -40,12 +42,13 @@ class MongoDbHealthCheckTest extends HealthCheck {
   @Test
   void testUnhealthy() {
     var client = mock(MongoClient.class);
-    var iterable = mock(MongoIterable.class);
-    var cursor = mock(MongoCursor.class);
+    ListDatabasesPublisher<String> publisher = mock(ListDatabasesPublisher.class);
 
-    when(client.listDatabaseNames()).thenReturn(iterable);
-    when(iterable.iterator()).thenReturn(cursor);
-    when(cursor.hasNext()).thenReturn(false);
+    when(client.listDatabaseNames()).thenReturn(publisher);
+    when(publisher.first()).thenReturn(subscriber -> {
+      subscriber.onSubscribe(mock(Subscription.class));
+      subscriber.onComplete();
+    });
 
     MongoDbHealthCheck healthCheck = new MongoDbHealthCheck(client);
 
@@ -1,10 +1,18 @@
 package com.sanctionco.thunder.dao.mongodb;
 
+import com.codahale.metrics.MetricRegistry;
 import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.dao.UsersDaoFactory;
 
+import io.dropwizard.util.Duration;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class MongoDbUsersDaoFactoryTest {
@@ -17,10 +25,69 @@ class MongoDbUsersDaoFactoryTest {
 
     assertTrue(usersDaoFactory instanceof MongoDbUsersDaoFactory);
 
+    var metrics = new MetricRegistry();
     var healthCheck = usersDaoFactory.createHealthCheck();
-    var usersDao = usersDaoFactory.createUsersDao(TestResources.MAPPER);
+    var usersDao = usersDaoFactory.createUsersDao(TestResources.MAPPER, metrics);
 
     assertTrue(healthCheck instanceof MongoDbHealthCheck);
     assertTrue(usersDao instanceof MongoDbUsersDao);
+
+    String prefix = MongoConnectionPoolMetrics.class.getName();
+
+    assertAll("Connection pool metrics are registered",
+        () -> assertTrue(metrics.getGauges().containsKey(prefix + ".size")),
+        () -> assertTrue(metrics.getGauges().containsKey(prefix + ".checked-out")),
+        () -> assertTrue(metrics.getGauges().containsKey(prefix + ".wait-queue-size")),
+        () -> assertTrue(metrics.getTimers().containsKey(prefix + ".wait-time")),
+        () -> assertTrue(metrics.getCounters().containsKey(prefix + ".check-out-failures")));
+  }
+
+  @Test
+  void testConnectionPoolConfiguration() {
+    var factory = (MongoDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/mongodb-config.yaml");
+
+    var pool = factory.getConnectionPoolConfiguration();
+    var settings = factory.buildClientSettings().getConnectionPoolSettings();
+
+    assertAll("Connection pool configuration is read",
+        () -> assertEquals(Optional.of(5), pool.getMinSize()),
+        () -> assertEquals(Optional.of(50), pool.getMaxSize()),
+        () -> assertEquals(Optional.of(4), pool.getMaxConnecting()),
+        () -> assertEquals(Optional.of(Duration.milliseconds(500)), pool.getMaxWaitTime()),
+        () -> assertEquals(Optional.of(Duration.minutes(10)), pool.getMaxConnectionIdleTime()),
+        () -> assertEquals(5, settings.getMinSize()),
+        () -> assertEquals(50, settings.getMaxSize()),
+        () -> assertEquals(4, settings.getMaxConnecting()),
+        () -> assertEquals(500L, settings.getMaxWaitTime(TimeUnit.MILLISECONDS)),
+        () -> assertEquals(10L, settings.getMaxConnectionIdleTime(TimeUnit.MINUTES)));
+  }
+
+  @Test
+  void testConnectionPoolDefaults() {
+    var pool = new MongoConnectionPoolConfiguration();
+
+    assertAll("Connection pool options are not set by default",
+        () -> assertEquals(Optional.empty(), pool.getMinSize()),
+        () -> assertEquals(Optional.empty(), pool.getMaxSize()),
+        () -> assertEquals(Optional.empty(), pool.getMaxConnecting()),
+        () -> assertEquals(Optional.empty(), pool.getMaxWaitTime()),
+        () -> assertEquals(Optional.empty(), pool.getMaxConnectionIdleTime()));
+  }
+
+  @Test
+  void testConnectionStringPoolOptionsAreKept() {
+    var factory = (MongoDbUsersDaoFactory) TestResources.readResourceYaml(
+        UsersDaoFactory.class,
+        "fixtures/configuration/dao/mongodb-pool-connection-string-config.yaml");
+
+    var settings = factory.buildClientSettings().getConnectionPoolSettings();
+
+    assertAll("Only the configured pool options override the connection string",
+        () -> assertEquals(1, settings.getMinSize()),
+        () -> assertEquals(7, settings.getMaxSize()),
+        () -> assertEquals(2, settings.getMaxConnecting()),
+        () -> assertEquals(2L, settings.getMaxWaitTime(TimeUnit.MINUTES)));
   }
 }
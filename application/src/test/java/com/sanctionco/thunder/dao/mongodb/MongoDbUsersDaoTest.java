@@ -2,39 +2,70 @@ package com.sanctionco.thunder.dao.mongodb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
 import com.mongodb.MongoTimeoutException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.WriteError;
-import com.mongodb.client.FindIterable;
-import com.mongodb.client.MongoCollection;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.reactivestreams.client.ClientSession;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
 import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.dao.BatchResult;
 import com.sanctionco.thunder.dao.DatabaseException;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
 
 import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletionException;
 
 import org.bson.BsonDocument;
+import org.bson.BsonInt32;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertValidationError;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -65,7 +96,7 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testSuccessfulInsert() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
     User result = usersDao.insert(USER).join();
@@ -86,12 +117,13 @@ class MongoDbUsersDaoTest {
             && doc.containsKey("version")
             && doc.containsKey("creation_time")
             && doc.containsKey("update_time")
+            && doc.getString("password_hash").equals("password")
             && doc.containsKey("document")));
   }
 
   @Test
   void testConflictingInsert() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     var exception = mock(MongoWriteException.class);
     var error = mock(WriteError.class);
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
@@ -99,7 +131,7 @@ class MongoDbUsersDaoTest {
     when(exception.getError()).thenReturn(error);
     when(error.getCategory()).thenReturn(ErrorCategory.DUPLICATE_KEY);
 
-    doThrow(exception).when(collection).insertOne(any(Document.class));
+    doReturn(failedPublisher(exception)).when(collection).insertOne(any(Document.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.insert(USER).join());
@@ -120,7 +152,7 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testInsertTimeout() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     var exception = mock(MongoWriteException.class);
     var error = mock(WriteError.class);
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
@@ -128,7 +160,7 @@ class MongoDbUsersDaoTest {
     when(exception.getError()).thenReturn(error);
     when(error.getCategory()).thenReturn(ErrorCategory.EXECUTION_TIMEOUT);
 
-    doThrow(exception).when(collection).insertOne(any(Document.class));
+    doReturn(failedPublisher(exception)).when(collection).insertOne(any(Document.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.insert(USER).join());
@@ -149,7 +181,7 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testInsertRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     var exception = mock(MongoWriteException.class);
     var error = mock(WriteError.class);
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
@@ -157,7 +189,7 @@ class MongoDbUsersDaoTest {
     when(exception.getError()).thenReturn(error);
     when(error.getCategory()).thenReturn(ErrorCategory.UNCATEGORIZED);
 
-    doThrow(exception).when(collection).insertOne(any(Document.class));
+    doReturn(failedPublisher(exception)).when(collection).insertOne(any(Document.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.insert(USER).join());
@@ -178,10 +210,10 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testInsertWithDatabaseDown() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    doThrow(MongoTimeoutException.class)
+    doReturn(failedPublisher(new MongoTimeoutException("Timeout")))
         .when(collection).insertOne(any(Document.class));
 
     CompletionException e = assertThrows(CompletionException.class,
@@ -203,13 +235,13 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testInsertWithRequestRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
     MongoCommandException exception = mock(MongoCommandException.class);
     when(exception.getErrorMessage()).thenReturn("Test error");
 
-    doThrow(exception).when(collection).insertOne(any(Document.class));
+    doReturn(failedPublisher(exception)).when(collection).insertOne(any(Document.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.insert(USER).join());
@@ -230,10 +262,11 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testInsertWithUnknownException() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    doThrow(new IllegalStateException()).when(collection).insertOne(any(Document.class));
+    doReturn(failedPublisher(new IllegalStateException()))
+        .when(collection).insertOne(any(Document.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.insert(USER).join());
@@ -254,11 +287,11 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testSuccessfulFindByEmail() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
+    when(findPublisher.first()).thenReturn(publisherOf(DOCUMENT));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
@@ -271,11 +304,11 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testUnsuccessfulFindByEmailEmptyItem() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
 
-    when(findIterable.first()).thenReturn(null);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
+    when(findPublisher.first()).thenReturn(emptyPublisher());
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
@@ -292,10 +325,11 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testFindByEmailDatabaseDown() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    doThrow(MongoTimeoutException.class).when(collection).find(any(Bson.class));
+    doReturn(failedFind(new MongoTimeoutException("Timeout")))
+        .when(collection).find(any(Bson.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.findByEmail("test@test.com").join());
@@ -310,13 +344,13 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testFindByEmailRequestRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
     MongoCommandException exception = mock(MongoCommandException.class);
     when(exception.getErrorMessage()).thenReturn("Test error");
 
-    doThrow(exception).when(collection).find(any(Bson.class));
+    doReturn(failedFind(exception)).when(collection).find(any(Bson.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.findByEmail("test@test.com").join());
@@ -331,10 +365,10 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testFindByEmailUnknownException() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    doThrow(new IllegalStateException()).when(collection).find(any(Bson.class));
+    doReturn(failedFind(new IllegalStateException())).when(collection).find(any(Bson.class));
 
     CompletionException e = assertThrows(CompletionException.class,
         () -> usersDao.findByEmail("test@test.com").join());
@@ -348,15 +382,85 @@ class MongoDbUsersDaoTest {
   }
 
   @Test
-  void testSuccessfulUpdate() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testFindPasswordByEmail() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.projection(any())).thenReturn(findPublisher);
+    when(findPublisher.first()).thenReturn(publisherOf(
+        new Document("_id", "test@test.com").append("password_hash", "password")));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    assertEquals("password", usersDao.findPasswordByEmail("test@test.com").join());
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
+    verify(collection, times(1)).find(eq(Filters.eq("_id", "test@test.com")));
+    verify(findPublisher, times(1)).projection(argThat((Bson bson) -> toBsonDocument(bson)
+        .equals(new BsonDocument("password_hash", new BsonInt32(1)))));
+  }
+
+  @Test
+  void testFindPasswordByEmailWithoutSeparatePassword() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    // Users written before the password was stored separately only have the document
+    when(findPublisher.projection(any())).thenReturn(findPublisher);
+    when(findPublisher.first())
+        .thenReturn(publisherOf(new Document("_id", "test@test.com")))
+        .thenReturn(publisherOf(DOCUMENT));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
+    assertEquals("password", usersDao.findPasswordByEmail("test@test.com").join());
+
+    verify(collection, times(2)).find(eq(Filters.eq("_id", "test@test.com")));
+  }
+
+  @Test
+  void testFindPasswordByEmailNotFound() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.projection(any())).thenReturn(findPublisher);
+    when(findPublisher.first()).thenReturn(emptyPublisher());
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> usersDao.findPasswordByEmail("test@test.com").join());
+
+    assertTrue(e.getCause() instanceof DatabaseException);
+    assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+        ((DatabaseException) e.getCause()).getError());
+  }
+
+  @Test
+  void testFindPasswordByEmailDatabaseDown() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = failedFind(new MongoTimeoutException("Timeout"));
+
+    when(findPublisher.projection(any())).thenReturn(findPublisher);
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> usersDao.findPasswordByEmail("test@test.com").join());
+
+    assertTrue(e.getCause() instanceof DatabaseException);
+    assertEquals(DatabaseException.Error.DATABASE_DOWN,
+        ((DatabaseException) e.getCause()).getError());
+  }
+
+  @Test
+  void testSuccessfulUpdate() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
     User result = usersDao.update(null, USER).join();
 
     // Update will set the update time
@@ -368,29 +472,210 @@ class MongoDbUsersDaoTest {
         () -> assertTrue(updateTime > CURR_TIME));
 
     assertEquals(USER.withTime(creationTime, updateTime), result);
-    verify(collection, times(1)).find(any(Bson.class));
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
+
+    // Without an expected version, the update only requires that the user exists
+    verify(collection, never()).find(any(Bson.class));
+    verify(collection, times(1)).findOneAndUpdate(
+        eq(Filters.eq("_id", "test@test.com")),
+        argThat((Bson bson) -> toBsonDocument(bson).getDocument("$set")
+            .getString("password_hash").getValue().equals("password")),
+        argThat((FindOneAndUpdateOptions options)
+            -> options.getReturnDocument() == ReturnDocument.AFTER));
+  }
+
+  @Test
+  void testSuccessfulFindVersionedByEmail() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+    Document versioned = new Document(DOCUMENT).append("version", "version");
+
+    when(findPublisher.first()).thenReturn(publisherOf(versioned));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    VersionedUser result = usersDao.findVersionedByEmail("test@test.com").join();
+
+    assertEquals(new VersionedUser(USER.withTime(CURR_TIME, CURR_TIME), "version"), result);
+  }
+
+  @Test
+  void testSuccessfulVersionedUpdate() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    VersionedUser result = usersDao.update(null, USER, "version").join();
+
+    assertAll("The new version is returned",
+        () -> assertEquals(CURR_TIME, result.user().getProperties().get("creationTime")),
+        () -> assertTrue(result.version() != null && !result.version().equals("version")));
+
+    verify(collection, never()).find(any(Bson.class));
+    verify(collection, times(1)).findOneAndUpdate(argThat((Bson bson) -> {
+      BsonDocument doc = toBsonDocument(bson);
+      return doc.getString("_id").getValue().equals("test@test.com")
+          && doc.getString("version").getValue().equals("version");
+    }), argThat((Bson bson) -> toBsonDocument(bson).toJson().contains(result.version())),
+        any(FindOneAndUpdateOptions.class));
+  }
+
+  @Test
+  void testVersionedUpdateMismatch() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.first()).thenReturn(publisherOf(DOCUMENT));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+    doReturn(emptyPublisher()).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> usersDao.update(null, USER, "version").join());
+
+    assertTrue(e.getCause() instanceof DatabaseException);
+    assertEquals(DatabaseException.Error.CONFLICT,
+        ((DatabaseException) e.getCause()).getError());
+    verify(collection, times(1)).find(eq(Filters.eq("_id", "test@test.com")));
+  }
+
+  @Test
+  void testVersionedUpdateNotFound() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.first()).thenReturn(emptyPublisher());
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+    doReturn(emptyPublisher()).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> usersDao.update(null, USER, "version").join());
+
+    assertTrue(e.getCause() instanceof DatabaseException);
+    assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+        ((DatabaseException) e.getCause()).getError());
+  }
+
+  @Test
+  void testMarkVerified() {
+    MongoCollection<Document> collection = mockCollection();
+    User unverified = new User(new Email("test@test.com", false, "testToken"), "password",
+        Collections.singletonMap("testProperty", "test"));
+
+    // The document is not rewritten, so only the verified field changes
+    doReturn(publisherOf(new Document(DOCUMENT)
+        .append("document", UsersDao.toJson(MAPPER, unverified))
+        .append("verified", true)
+        .append("verification_token", "testToken")))
+        .when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    User result = usersDao.markVerified("test@test.com", "testToken").join();
+
+    assertAll("The user is verified by one write that checks the token",
+        () -> assertTrue(result.getEmail().isVerified()),
+        () -> assertEquals("testToken", result.getEmail().getVerificationToken()));
+
+    verify(collection, times(1)).findOneAndUpdate(
+        eq(new Document("_id", "test@test.com").append("verification_token", "testToken")),
+        argThat((Bson bson) -> toBsonDocument(bson).getDocument("$set")
+            .getBoolean("verified").getValue()),
+        any(FindOneAndUpdateOptions.class));
+    verify(collection, never()).find(any(Bson.class));
+  }
+
+  @Test
+  void testMarkVerifiedIncorrectToken() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.first()).thenReturn(publisherOf(
+        new Document(DOCUMENT).append("verification_token", "testToken")));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+    doReturn(emptyPublisher()).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    assertValidationError(RequestValidationException.Error.INCORRECT_TOKEN,
+        () -> usersDao.markVerified("test@test.com", "otherToken").join());
+    verify(collection, times(1)).findOneAndUpdate(
+        any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+  }
+
+  @Test
+  void testMarkVerifiedTokenNotSet() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.first()).thenReturn(publisherOf(
+        new Document(DOCUMENT).append("verification_token", null)));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+    doReturn(emptyPublisher()).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    assertValidationError(RequestValidationException.Error.TOKEN_NOT_SET,
+        () -> usersDao.markVerified("test@test.com", "testToken").join());
+  }
+
+  @Test
+  void testMarkVerifiedNotFound() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    when(findPublisher.first()).thenReturn(emptyPublisher());
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+    doReturn(emptyPublisher()).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> usersDao.markVerified("test@test.com", "testToken").join());
+  }
+
+  @Test
+  void testMarkVerifiedWithoutTokenField() {
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    // The user was written before the verification token field was added
+    when(findPublisher.first()).thenReturn(publisherOf(DOCUMENT));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+    doReturn(emptyPublisher(), publisherOf(DOCUMENT)).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    User result = usersDao.markVerified("test@test.com", "testToken").join();
+
+    assertTrue(result.getEmail().isVerified());
+
+    // The user is read again and updated with all of its fields
+    verify(collection, times(1)).findOneAndUpdate(
+        eq(Filters.eq("_id", "test@test.com")),
+        argThat((Bson bson) -> toBsonDocument(bson).getDocument("$set")
+            .getString("verification_token").getValue().equals("testToken")),
+        any(FindOneAndUpdateOptions.class));
   }
 
   @Test
   void testSuccessfulEmailUpdate() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
 
-    FindIterable<Document> findIterableNew = mock(FindIterable.class);
-    when(findIterableNew.first()).thenReturn(null);
-    doReturn(findIterableNew).when(collection).find(eq(
+    FindPublisher<Document> findPublisherNew = mock(FindPublisher.class);
+    when(findPublisherNew.first()).thenReturn(emptyPublisher());
+    doReturn(findPublisherNew).when(collection).find(eq(
         Filters.eq("_id", USER.getEmail().getAddress())));
 
-    FindIterable<Document> findIterableExisting = mock(FindIterable.class);
-    when(findIterableExisting.first()).thenReturn(DOCUMENT);
-    doReturn(findIterableExisting).when(collection).find(eq(
-        Filters.eq("_id", "existingEmail")));
-
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
     User result = usersDao.update("existingEmail", USER).join();
@@ -407,9 +692,6 @@ class MongoDbUsersDaoTest {
 
     assertEquals(USER.withTime(creationTime, updateTime), result);
 
-    verify(collection, times(1))
-        .find(eq(Filters.eq("_id", "existingEmail")));
-
     verify(collection, times(1))
         .find(eq(Filters.eq("_id", "test@test.com")));
 
@@ -422,17 +704,12 @@ class MongoDbUsersDaoTest {
             && doc.containsKey("document")));
 
     verify(collection, times(1))
-        .deleteOne(eq(Filters.eq("_id", "existingEmail")));
+        .findOneAndDelete(eq(Filters.eq("_id", "existingEmail")));
   }
 
   @Test
   void testSameExistingEmail() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
-
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
     User result = usersDao.update("test@test.com", USER).join();
@@ -447,26 +724,21 @@ class MongoDbUsersDaoTest {
 
     assertEquals(USER.withTime(creationTime, updateTime), result);
 
-    verify(collection, times(1))
-        .find(eq(Filters.eq("_id", "test@test.com")));
-
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
-
-    verify(collection, never()).deleteOne(any());
+    verify(collection, times(1)).findOneAndUpdate(
+        eq(Filters.eq("_id", "test@test.com")),
+        any(Bson.class),
+        any(FindOneAndUpdateOptions.class));
+    verify(collection, never()).insertOne(any());
+    verify(collection, never()).findOneAndDelete(any());
   }
 
   @Test
   void testExistingUserWithNewEmail() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+    MongoCollection<Document> collection = mockCollection();
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
+    when(findPublisher.first()).thenReturn(publisherOf(DOCUMENT));
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
@@ -483,9 +755,10 @@ class MongoDbUsersDaoTest {
 
   @Test
   void testExistingUserWithNewEmailDatabaseDown() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+    MongoCollection<Document> collection = mockCollection();
 
-    doThrow(MongoTimeoutException.class).when(collection).find(any(Bson.class));
+    doReturn(failedFind(new MongoTimeoutException("Timeout")))
+        .when(collection).find(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
@@ -501,53 +774,178 @@ class MongoDbUsersDaoTest {
   }
 
   @Test
-  void testUpdateGetNotFound() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testTransactionalEmailUpdate() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
 
-    when(findIterable.first()).thenReturn(null);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
+    doReturn(publisherOf(storedDocument())).when(collection)
+        .findOneAndDelete(eq(session), eq(Filters.eq("_id", "existingEmail")));
+    doReturn(publisherOf(InsertOneResult.unacknowledged()))
+        .when(collection).insertOne(eq(session), any(Document.class));
 
-    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
+    User result = usersDao.update("existingEmail", USER).join();
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    // The creation time of the existing user is kept
+    long updateTime = (Long) result.getProperties().get("lastUpdateTime");
 
-    assertEquals(DatabaseException.Error.USER_NOT_FOUND, exp.getError());
-    verify(collection, times(1))
-        .find(eq(Filters.eq("_id", "test@test.com")));
+    assertEquals(USER.withTime(CURR_TIME, updateTime), result);
+
+    verify(collection, times(1)).insertOne(eq(session), argThat(
+        (Document doc) -> doc.getString("_id").equals("test@test.com")
+            && doc.getLong("creation_time") == CURR_TIME
+            && doc.getLong("update_time") == updateTime));
+    verify(session, times(1)).startTransaction();
+    verify(session, times(1)).commitTransaction();
+    verify(session, never()).abortTransaction();
+    verify(session, times(1)).close();
+
+    // Nothing is written outside of the transaction
+    verify(collection, never()).insertOne(any(Document.class));
+    verify(collection, never()).findOneAndDelete(any(Bson.class));
   }
 
   @Test
-  void testUpdateGetDatabaseDown() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+  void testTransactionalEmailUpdateWithExpectedVersion() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
+    var inserted = ArgumentCaptor.forClass(Document.class);
+
+    doReturn(publisherOf(storedDocument())).when(collection).findOneAndDelete(eq(session),
+        eq(new Document("_id", "existingEmail").append("version", "expectedVersion")));
+    doReturn(publisherOf(InsertOneResult.unacknowledged()))
+        .when(collection).insertOne(eq(session), inserted.capture());
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
+
+    VersionedUser result = usersDao.update("existingEmail", USER, "expectedVersion").join();
+
+    assertAll("The move is conditional on the version and returns the new version",
+        () -> assertEquals(CURR_TIME, result.user().getProperties().get("creationTime")),
+        () -> assertNotNull(result.version()),
+        () -> assertEquals(inserted.getValue().getString("version"), result.version()));
+    verify(session, times(1)).commitTransaction();
+  }
 
-    doThrow(MongoTimeoutException.class).when(collection).find(any(Bson.class));
+  @Test
+  void testTransactionalEmailUpdateVersionMismatch() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
 
-    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    doReturn(emptyPublisher()).when(collection).findOneAndDelete(eq(session), any(Bson.class));
+    when(findPublisher.first()).thenReturn(publisherOf(storedDocument()));
+    doReturn(findPublisher).when(collection)
+        .find(eq(session), eq(Filters.eq("_id", "existingEmail")));
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> usersDao.update("existingEmail", USER, "staleVersion").join());
 
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1))
-        .find(eq(Filters.eq("_id", "test@test.com")));
+    verify(collection, never()).insertOne(eq(session), any(Document.class));
+    verify(session, times(1)).abortTransaction();
   }
 
   @Test
-  void testUpdateGetRequestRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+  void testTransactionalEmailUpdateConflict() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
+    var exception = mock(MongoWriteException.class);
+    var error = mock(WriteError.class);
+
+    when(exception.getError()).thenReturn(error);
+    when(error.getCategory()).thenReturn(ErrorCategory.DUPLICATE_KEY);
 
+    doReturn(publisherOf(storedDocument())).when(collection)
+        .findOneAndDelete(eq(session), any(Bson.class));
+    doReturn(failedPublisher(exception))
+        .when(collection).insertOne(eq(session), any(Document.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> usersDao.update("existingEmail", USER).join());
+
+    // The delete of the existing user is rolled back
+    verify(session, times(1)).abortTransaction();
+    verify(session, never()).commitTransaction();
+    verify(session, times(1)).close();
+  }
+
+  @Test
+  void testTransactionalEmailUpdateNotFound() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
+
+    doReturn(emptyPublisher()).when(collection).findOneAndDelete(eq(session), any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
+
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> usersDao.update("existingEmail", USER).join());
+
+    verify(collection, never()).insertOne(eq(session), any(Document.class));
+    verify(session, times(1)).abortTransaction();
+  }
+
+  @Test
+  void testTransactionalEmailUpdateWriteConflict() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
+    var exception = mock(MongoException.class);
+
+    when(exception.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL))
+        .thenReturn(true);
+
+    doReturn(failedPublisher(exception))
+        .when(collection).findOneAndDelete(eq(session), any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> usersDao.update("existingEmail", USER).join());
+  }
+
+  @Test
+  void testEmailUpdateWithoutTransactionSupport() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoClient client = mock(MongoClient.class);
+    ClientSession session = mockSession(client);
     MongoCommandException exception = mock(MongoCommandException.class);
-    when(exception.getErrorMessage()).thenReturn("Test error");
 
-    doThrow(exception).when(collection).find(any(Bson.class));
+    when(exception.getErrorCode()).thenReturn(20);
+
+    doReturn(failedPublisher(exception))
+        .when(collection).findOneAndDelete(eq(session), any(Bson.class));
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+    when(findPublisher.first()).thenReturn(emptyPublisher());
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of(), client);
+
+    usersDao.update("existingEmail", USER).join();
+    usersDao.update("existingEmail", USER).join();
+
+    // A standalone server rejects the first transaction, and no other is started
+    verify(client, times(1)).startSession();
+    verify(collection, times(2)).insertOne(any(Document.class));
+    verify(collection, times(2)).findOneAndDelete(eq(Filters.eq("_id", "existingEmail")));
+  }
+
+  @Test
+  void testUpdateNotFound() {
+    MongoCollection<Document> collection = mockCollection();
+
+    doReturn(emptyPublisher()).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
@@ -557,252 +955,375 @@ class MongoDbUsersDaoTest {
     assertTrue(e.getCause() instanceof DatabaseException);
     var exp = (DatabaseException) e.getCause();
 
-    assertEquals(DatabaseException.Error.REQUEST_REJECTED, exp.getError());
-    verify(collection, times(1))
-        .find(eq(Filters.eq("_id", "test@test.com")));
+    assertEquals(DatabaseException.Error.USER_NOT_FOUND, exp.getError());
+    verify(collection, never()).find(any(Bson.class));
   }
 
   @Test
-  void testUpdatePutTimeout() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testUpdateTimeout() {
     var exception = mock(MongoWriteException.class);
     var error = mock(WriteError.class);
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
     when(exception.getError()).thenReturn(error);
     when(error.getCategory()).thenReturn(ErrorCategory.EXECUTION_TIMEOUT);
 
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(exception).when(collection).updateOne(any(Bson.class), any(Bson.class));
-
-    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
-
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
-
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
-
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1)).find(any(Bson.class));
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
+    assertUpdateFailure(exception, DatabaseException.Error.DATABASE_DOWN);
   }
 
   @Test
-  void testUpdatePutRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testUpdateRejected() {
     var exception = mock(MongoWriteException.class);
     var error = mock(WriteError.class);
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
     when(exception.getError()).thenReturn(error);
     when(error.getCategory()).thenReturn(ErrorCategory.UNCATEGORIZED);
 
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(exception).when(collection).updateOne(any(Bson.class), any(Bson.class));
+    assertUpdateFailure(exception, DatabaseException.Error.REQUEST_REJECTED);
+  }
 
-    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+  @Test
+  void testUpdateDatabaseDown() {
+    assertUpdateFailure(new MongoTimeoutException("Timeout"),
+        DatabaseException.Error.DATABASE_DOWN);
+  }
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
+  @Test
+  void testUpdateRequestRejected() {
+    MongoCommandException exception = mock(MongoCommandException.class);
+    when(exception.getErrorMessage()).thenReturn("Test error");
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    assertUpdateFailure(exception, DatabaseException.Error.REQUEST_REJECTED);
+  }
 
-    assertEquals(DatabaseException.Error.REQUEST_REJECTED, exp.getError());
-    verify(collection, times(1)).find(any(Bson.class));
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
+  @Test
+  void testUpdateUnknownException() {
+    assertUpdateFailure(new IllegalStateException(), DatabaseException.Error.DATABASE_DOWN);
   }
 
   @Test
-  void testUpdatePutDatabaseDown() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testSuccessfulDelete() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    User result = usersDao.delete("test@test.com").join();
+
+    assertEquals(USER.withTime(CURR_TIME, CURR_TIME), result);
+    verify(collection, never()).find(any(Bson.class));
+    verify(collection, times(1)).findOneAndDelete(eq(Filters.eq("_id", "test@test.com")));
+  }
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(MongoTimeoutException.class).when(collection)
-        .updateOne(any(Bson.class), any(Bson.class));
+  @Test
+  void testUnsuccessfulDeleteNotFound() {
+    MongoCollection<Document> collection = mockCollection();
+
+    doReturn(emptyPublisher()).when(collection).findOneAndDelete(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
     CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
+        () -> usersDao.delete("test@test.com").join());
 
     assertTrue(e.getCause() instanceof DatabaseException);
     var exp = (DatabaseException) e.getCause();
 
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1)).find(any(Bson.class));
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
+    assertEquals(DatabaseException.Error.USER_NOT_FOUND, exp.getError());
   }
 
   @Test
-  void testUpdatePutRequestRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testUnsuccessfulDeleteDatabaseDown() {
+    assertDeleteFailure(new MongoTimeoutException("Timeout"),
+        DatabaseException.Error.DATABASE_DOWN);
+  }
 
+  @Test
+  void testUnsuccessfulDeleteRequestRejected() {
     MongoCommandException exception = mock(MongoCommandException.class);
     when(exception.getErrorMessage()).thenReturn("Test error");
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(exception).when(collection)
-        .updateOne(any(Bson.class), any(Bson.class));
+    assertDeleteFailure(exception, DatabaseException.Error.REQUEST_REJECTED);
+  }
+
+  @Test
+  void testUnsuccessfulDeleteUnknownException() {
+    assertDeleteFailure(new IllegalStateException(), DatabaseException.Error.DATABASE_DOWN);
+  }
 
+  @Test
+  void testInsertAllInsertsDistinctUsersUnordered() {
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    var other = new User(Email.unverified("other@test.com"), "password", Map.of());
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
+    List<BatchResult> results = usersDao.insertAll(List.of(USER, other, USER)).join();
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    verify(collection, times(1)).insertMany(
+        argThat((List<Document> docs) -> docs.size() == 2
+            && docs.get(0).getString("_id").equals("test@test.com")
+            && docs.get(1).getString("_id").equals("other@test.com")),
+        argThat((InsertManyOptions options) -> !options.isOrdered()));
 
-    assertEquals(DatabaseException.Error.REQUEST_REJECTED, exp.getError());
-    verify(collection, times(1)).find(any(Bson.class));
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
+    assertAll("The duplicate user is a conflict",
+        () -> assertEquals(USER.getEmail(), results.get(0).user().getEmail()),
+        () -> assertEquals(other.getEmail(), results.get(1).user().getEmail()),
+        () -> assertEquals(DatabaseException.Error.CONFLICT, results.get(2).error().getError()));
   }
 
   @Test
-  void testUpdatePutRequestUnknownException() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testInsertAllReportsEachWriteError() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    var other = new User(Email.unverified("other@test.com"), "password", Map.of());
+    var exception = mock(MongoBulkWriteException.class);
+    var error = mock(BulkWriteError.class);
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(new IllegalStateException()).when(collection)
-        .updateOne(any(Bson.class), any(Bson.class));
+    when(error.getIndex()).thenReturn(1);
+    when(error.getCategory()).thenReturn(ErrorCategory.DUPLICATE_KEY);
+    when(exception.getWriteErrors()).thenReturn(List.of(error));
+
+    doReturn(failedPublisher(exception)).when(collection)
+        .insertMany(anyList(), any(InsertManyOptions.class));
+
+    List<BatchResult> results = usersDao.insertAll(List.of(USER, other)).join();
 
+    assertAll("Only the user that failed has an error",
+        () -> assertEquals(USER.getEmail(), results.get(0).user().getEmail()),
+        () -> assertEquals("other@test.com", results.get(1).email()),
+        () -> assertEquals(DatabaseException.Error.CONFLICT, results.get(1).error().getError()));
+  }
+
+  @Test
+  void testInsertAllFailureFailsEveryUser() {
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.update(null, USER).join());
+    doReturn(failedPublisher(new MongoTimeoutException("Timeout"))).when(collection)
+        .insertMany(anyList(), any(InsertManyOptions.class));
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    List<BatchResult> results = usersDao.insertAll(List.of(USER)).join();
 
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1)).find(any(Bson.class));
-    verify(collection, times(1)).updateOne(argThat((Bson bson) -> {
-      BsonDocument doc = bson.toBsonDocument(
-          BsonDocument.class,
-          MongoClientSettings.getDefaultCodecRegistry());
-      return doc.containsKey("version");
-    }), any(Bson.class));
+    assertEquals(DatabaseException.Error.DATABASE_DOWN, results.get(0).error().getError());
   }
 
   @Test
-  void testSuccessfulDelete() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testFindAllByEmailUsesSingleQuery() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    var captor = ArgumentCaptor.forClass(Bson.class);
+
+    doReturn(findOf(storedDocument())).when(collection).find(captor.capture());
+
+    List<BatchResult> results = usersDao
+        .findAllByEmail(List.of("missing@test.com", "test@test.com", "missing@test.com"))
+        .join();
+
+    assertAll("Each email has a result, in order",
+        () -> assertEquals(toBsonDocument(Filters.in("_id",
+            List.of("missing@test.com", "test@test.com"))), toBsonDocument(captor.getValue())),
+        () -> assertEquals(3, results.size()),
+        () -> assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+            results.get(0).error().getError()),
+        () -> assertEquals(USER.withTime(CURR_TIME, CURR_TIME), results.get(1).user()),
+        () -> assertEquals("missing@test.com", results.get(2).email()));
+  }
+
+  @Test
+  void testFindAllByEmailFailureFailsEveryEmail() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
+    doReturn(failedFind(new MongoTimeoutException("Timeout")))
+        .when(collection).find(any(Bson.class));
 
+    List<BatchResult> results = usersDao.findAllByEmail(List.of("test@test.com")).join();
+
+    assertEquals(DatabaseException.Error.DATABASE_DOWN, results.get(0).error().getError());
+  }
+
+  @Test
+  void testDeleteAllOnlyDeletesExistingUsers() {
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    User result = usersDao.delete("test@test.com").join();
+    doReturn(findOf(storedDocument())).when(collection).find(any(Bson.class));
+    doReturn(publisherOf(DeleteResult.acknowledged(1))).when(collection)
+        .deleteMany(any(Bson.class));
 
-    assertEquals(USER.withTime(CURR_TIME, CURR_TIME), result);
-    verify(collection, times(1)).find(eq(Filters.eq("_id", "test@test.com")));
-    verify(collection, times(1)).deleteOne(eq(Filters.eq("_id", "test@test.com")));
+    List<BatchResult> results = usersDao
+        .deleteAll(List.of("test@test.com", "missing@test.com"))
+        .join();
+
+    verify(collection, times(1)).deleteMany(argThat((Bson filter) -> toBsonDocument(filter)
+        .equals(toBsonDocument(Filters.in("_id", List.of("test@test.com"))))));
+
+    assertAll("The existing user is deleted",
+        () -> assertEquals(USER.withTime(CURR_TIME, CURR_TIME), results.get(0).user()),
+        () -> assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+            results.get(1).error().getError()));
   }
 
   @Test
-  void testUnsuccessfulDeleteGetFailure() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
+  void testDeleteAllWithoutExistingUsersDoesNotDelete() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    doReturn(findOf()).when(collection).find(any(Bson.class));
 
-    doThrow(MongoTimeoutException.class).when(collection).find(any(Bson.class));
+    List<BatchResult> results = usersDao.deleteAll(List.of("missing@test.com")).join();
 
+    verify(collection, never()).deleteMany(any(Bson.class));
+    assertEquals(DatabaseException.Error.USER_NOT_FOUND, results.get(0).error().getError());
+  }
+
+  @Test
+  void testDeleteAllFailureFailsExistingUsers() {
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.delete("test@test.com").join());
+    doReturn(findOf(storedDocument())).when(collection).find(any(Bson.class));
+    doReturn(failedPublisher(new MongoTimeoutException("Timeout"))).when(collection)
+        .deleteMany(any(Bson.class));
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    List<BatchResult> results = usersDao
+        .deleteAll(List.of("test@test.com", "missing@test.com"))
+        .join();
 
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1)).find(any(Bson.class));
+    assertAll("Only the existing user fails",
+        () -> assertEquals(DatabaseException.Error.DATABASE_DOWN,
+            results.get(0).error().getError()),
+        () -> assertEquals(DatabaseException.Error.USER_NOT_FOUND,
+            results.get(1).error().getError()));
   }
 
   @Test
-  void testUnsuccessfulDeleteDatabaseDown() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testScanReadsPageInEmailOrder() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    FindPublisher<Document> findPublisher = findOf(storedDocument());
+
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(MongoTimeoutException.class).when(collection).deleteOne(any(Bson.class));
+    UsersPage page = usersDao.scan(0, 4, "start@test.com", 1).join();
 
+    assertAll("The query and page are correct",
+        () -> assertEquals(List.of(USER.withTime(CURR_TIME, CURR_TIME)), page.users()),
+        () -> assertEquals("test@test.com", page.nextToken()));
+
+    verify(collection).find(eq(Filters.gt("_id", "start@test.com")));
+    verify(findPublisher).sort(eq(Sorts.ascending("_id")));
+    verify(findPublisher).limit(1);
+  }
+
+  @Test
+  void testScanLastPageHasNoNextToken() {
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.delete("test@test.com").join());
+    doReturn(findOf(storedDocument())).when(collection).find(any(Bson.class));
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    UsersPage page = usersDao.scan(0, 1, null, 10).join();
 
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1)).find(eq(Filters.eq("_id", "test@test.com")));
-    verify(collection, times(1)).deleteOne(eq(Filters.eq("_id", "test@test.com")));
+    assertAll("The page is the last one",
+        () -> assertEquals(1, page.users().size()),
+        () -> assertNull(page.nextToken()));
+
+    verify(collection).find(eq(new Document()));
   }
 
   @Test
-  void testUnsuccessfulDeleteRequestRejected() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testScanOtherSegmentsAreEmpty() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
-    MongoCommandException exception = mock(MongoCommandException.class);
-    when(exception.getErrorMessage()).thenReturn("Test error");
+    UsersPage page = usersDao.scan(1, 4, null, 10).join();
+
+    assertAll("The segment is empty",
+        () -> assertTrue(page.users().isEmpty()),
+        () -> assertNull(page.nextToken()));
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(exception).when(collection).deleteOne(any(Bson.class));
+    verify(collection, never()).find(any(Bson.class));
+  }
 
+  @Test
+  void testScanFailure() {
+    MongoCollection<Document> collection = mockCollection();
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+    FindPublisher<Document> findPublisher = findOf();
 
-    CompletionException e = assertThrows(CompletionException.class,
-        () -> usersDao.delete("test@test.com").join());
+    doAnswer(invocation -> {
+      failedPublisher(new MongoTimeoutException("Timeout"))
+          .subscribe(invocation.getArgument(0));
+      return null;
+    }).when(findPublisher).subscribe(any());
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
 
-    assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+        () -> usersDao.scan(0, 1, null, 10).join());
+  }
 
-    assertEquals(DatabaseException.Error.REQUEST_REJECTED, exp.getError());
-    verify(collection, times(1)).find(eq(Filters.eq("_id", "test@test.com")));
-    verify(collection, times(1)).deleteOne(eq(Filters.eq("_id", "test@test.com")));
+  @Test
+  void testInsertStoresIndexedProperties() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of("username"));
+    User user = new User(EMAIL, "password", Map.of("username", "tester", "age", 30));
+
+    usersDao.insert(user).join();
+
+    verify(collection, times(1)).insertOne(argThat(
+        (Document doc) -> doc.get("indexed", Document.class).equals(
+            new Document("username", "tester"))));
   }
 
   @Test
-  void testUnsuccessfulDeleteUnknownException() {
-    MongoCollection<Document> collection = mock(MongoCollection.class);
-    FindIterable<Document> findIterable = mock(FindIterable.class);
+  void testFindEmailsByProperty() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER, Set.of("username"));
+    FindPublisher<Document> findPublisher = findOf(new Document("_id", EMAIL.getAddress()));
+
+    doReturn(findPublisher).when(collection).find(any(Bson.class));
+
+    List<String> emails = usersDao.findEmailsByProperty("username", "tester", 2).join();
+
+    assertEquals(List.of(EMAIL.getAddress()), emails);
+
+    verify(collection).find(eq(Filters.eq("indexed.username", "tester")));
+    verify(findPublisher).projection(eq(Projections.include("_id")));
+    verify(findPublisher).limit(2);
+  }
+
+  @Test
+  void testFindEmailsByPropertyNotIndexed() {
+    MongoCollection<Document> collection = mockCollection();
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    assertDatabaseError(DatabaseException.Error.REQUEST_REJECTED,
+        () -> usersDao.findEmailsByProperty("username", "tester", 2).join());
+
+    verify(collection, never()).find(any(Bson.class));
+  }
+
+  private static void assertUpdateFailure(Throwable exception, DatabaseException.Error expected) {
+    MongoCollection<Document> collection = mockCollection();
+
+    doReturn(failedPublisher(exception)).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+
+    MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
+
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> usersDao.update(null, USER).join());
+
+    assertTrue(e.getCause() instanceof DatabaseException);
+    assertEquals(expected, ((DatabaseException) e.getCause()).getError());
+    verify(collection, times(1)).findOneAndUpdate(
+        eq(Filters.eq("_id", "test@test.com")),
+        any(Bson.class),
+        any(FindOneAndUpdateOptions.class));
+  }
+
+  private static void assertDeleteFailure(Throwable exception, DatabaseException.Error expected) {
+    MongoCollection<Document> collection = mockCollection();
 
-    when(findIterable.first()).thenReturn(DOCUMENT);
-    doReturn(findIterable).when(collection).find(any(Bson.class));
-    doThrow(new IllegalStateException()).when(collection).deleteOne(any(Bson.class));
+    doReturn(failedPublisher(exception)).when(collection).findOneAndDelete(any(Bson.class));
 
     MongoDbUsersDao usersDao = new MongoDbUsersDao(collection, MAPPER);
 
@@ -810,10 +1331,96 @@ class MongoDbUsersDaoTest {
         () -> usersDao.delete("test@test.com").join());
 
     assertTrue(e.getCause() instanceof DatabaseException);
-    var exp = (DatabaseException) e.getCause();
+    assertEquals(expected, ((DatabaseException) e.getCause()).getError());
+    verify(collection, times(1)).findOneAndDelete(eq(Filters.eq("_id", "test@test.com")));
+  }
 
-    assertEquals(DatabaseException.Error.DATABASE_DOWN, exp.getError());
-    verify(collection, times(1)).find(eq(Filters.eq("_id", "test@test.com")));
-    verify(collection, times(1)).deleteOne(eq(Filters.eq("_id", "test@test.com")));
+  private static BsonDocument toBsonDocument(Bson bson) {
+    return bson.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+  }
+
+  private static final Subscription SUBSCRIPTION = new Subscription() {
+    @Override
+    public void request(long n) {
+    }
+
+    @Override
+    public void cancel() {
+    }
+  };
+
+  private static <T> Publisher<T> publisherOf(T item) {
+    return subscriber -> {
+      subscriber.onSubscribe(SUBSCRIPTION);
+      subscriber.onNext(item);
+      subscriber.onComplete();
+    };
+  }
+
+  private static <T> Publisher<T> emptyPublisher() {
+    return subscriber -> {
+      subscriber.onSubscribe(SUBSCRIPTION);
+      subscriber.onComplete();
+    };
+  }
+
+  private static <T> Publisher<T> failedPublisher(Throwable throwable) {
+    return subscriber -> {
+      subscriber.onSubscribe(SUBSCRIPTION);
+      subscriber.onError(throwable);
+    };
+  }
+
+  private static FindPublisher<Document> failedFind(Throwable throwable) {
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+    when(findPublisher.first()).thenReturn(failedPublisher(throwable));
+
+    return findPublisher;
+  }
+
+  private static Document storedDocument() {
+    return new Document(DOCUMENT).append("_id", EMAIL.getAddress());
+  }
+
+  private static FindPublisher<Document> findOf(Document... documents) {
+    FindPublisher<Document> findPublisher = mock(FindPublisher.class);
+
+    doAnswer(invocation -> {
+      Subscriber<Document> subscriber = invocation.getArgument(0);
+      subscriber.onSubscribe(SUBSCRIPTION);
+      List.of(documents).forEach(subscriber::onNext);
+      subscriber.onComplete();
+      return null;
+    }).when(findPublisher).subscribe(any());
+
+    doReturn(findPublisher).when(findPublisher).sort(any(Bson.class));
+    doReturn(findPublisher).when(findPublisher).projection(any(Bson.class));
+    doReturn(findPublisher).when(findPublisher).limit(anyInt());
+
+    return findPublisher;
+  }
+
+  private static ClientSession mockSession(MongoClient client) {
+    ClientSession session = mock(ClientSession.class);
+
+    doReturn(publisherOf(session)).when(client).startSession();
+    doReturn(emptyPublisher()).when(session).commitTransaction();
+    doReturn(emptyPublisher()).when(session).abortTransaction();
+
+    return session;
+  }
+
+  private static MongoCollection<Document> mockCollection() {
+    MongoCollection<Document> collection = mock(MongoCollection.class);
+
+    doReturn(publisherOf(InsertOneResult.unacknowledged()))
+        .when(collection).insertOne(any(Document.class));
+    doReturn(publisherOf(DOCUMENT)).when(collection)
+        .findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+    doReturn(publisherOf(DOCUMENT)).when(collection).findOneAndDelete(any(Bson.class));
+    doReturn(publisherOf(InsertManyResult.unacknowledged()))
+        .when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+
+    return collection;
   }
 }
@@ -0,0 +1,96 @@
+package com.sanctionco.thunder.dao.mongodb;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PublishersTest {
+
+  @Test
+  void firstShouldCompleteWithFirstItemAndCancel() {
+    var subscription = mock(Subscription.class);
+    Publisher<String> publisher = subscriber -> {
+      subscriber.onSubscribe(subscription);
+      subscriber.onNext("first");
+      subscriber.onNext("second");
+      subscriber.onComplete();
+    };
+
+    assertEquals("first", Publishers.first(publisher).join());
+
+    verify(subscription, times(1)).request(1);
+    verify(subscription, times(1)).cancel();
+  }
+
+  @Test
+  void firstShouldCompleteWithNullWhenEmpty() {
+    Publisher<String> publisher = subscriber -> {
+      subscriber.onSubscribe(mock(Subscription.class));
+      subscriber.onComplete();
+    };
+
+    assertNull(Publishers.first(publisher).join());
+  }
+
+  @Test
+  void firstShouldCompleteExceptionallyOnError() {
+    var exception = new IllegalStateException("Error");
+    Publisher<String> publisher = subscriber -> {
+      subscriber.onSubscribe(mock(Subscription.class));
+      subscriber.onError(exception);
+    };
+
+    var e = assertThrows(CompletionException.class, () -> Publishers.first(publisher).join());
+
+    assertEquals(exception, e.getCause());
+  }
+
+  @Test
+  void allShouldCompleteWithEveryItem() {
+    var subscription = mock(Subscription.class);
+    Publisher<String> publisher = subscriber -> {
+      subscriber.onSubscribe(subscription);
+      subscriber.onNext("first");
+      subscriber.onNext("second");
+      subscriber.onComplete();
+    };
+
+    assertEquals(List.of("first", "second"), Publishers.all(publisher).join());
+
+    verify(subscription, times(1)).request(Long.MAX_VALUE);
+  }
+
+  @Test
+  void allShouldCompleteWithEmptyListWhenEmpty() {
+    Publisher<String> publisher = subscriber -> {
+      subscriber.onSubscribe(mock(Subscription.class));
+      subscriber.onComplete();
+    };
+
+    assertEquals(List.of(), Publishers.all(publisher).join());
+  }
+
+  @Test
+  void allShouldCompleteExceptionallyOnError() {
+    var exception = new IllegalStateException("Error");
+    Publisher<String> publisher = subscriber -> {
+      subscriber.onSubscribe(mock(Subscription.class));
+      subscriber.onNext("first");
+      subscriber.onError(exception);
+    };
+
+    var e = assertThrows(CompletionException.class, () -> Publishers.all(publisher).join());
+
+    assertEquals(exception, e.getCause());
+  }
+}
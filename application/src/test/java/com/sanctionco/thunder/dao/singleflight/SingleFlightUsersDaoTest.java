@@ -0,0 +1,168 @@
+package com.sanctionco.thunder.dao.singleflight;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SingleFlightUsersDaoTest {
+  private static final String PREFIX
+      = "com.sanctionco.thunder.dao.singleflight.SingleFlightUsersDao";
+  private static final Email EMAIL = new Email("test@test.com", true, "testToken");
+  private static final User USER = new User(EMAIL, "password",
+      Collections.singletonMap("testProperty", "test"));
+
+  @Test
+  void findByEmail_ConcurrentLookupsShouldShareOneCall() {
+    var delegate = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = new SingleFlightUsersDao(delegate, metrics);
+    var lookup = new CompletableFuture<User>();
+
+    when(delegate.findByEmail(EMAIL.getAddress())).thenReturn(lookup);
+
+    List<CompletableFuture<User>> results = IntStream.range(0, 10)
+        .mapToObj(i -> dao.findByEmail(EMAIL.getAddress()))
+        .toList();
+
+    assertAll("Every lookup waits for the same call",
+        () -> assertFalse(results.stream().anyMatch(CompletableFuture::isDone)),
+        () -> assertEquals(1, metrics.getGauges().get(PREFIX + ".in-flight").getValue()));
+
+    lookup.complete(USER);
+
+    results.forEach(result -> assertEquals(USER, result.join()));
+    verify(delegate, times(1)).findByEmail(EMAIL.getAddress());
+
+    assertAll("Collapsed lookups are counted",
+        () -> assertEquals(10, metrics.counter(PREFIX + ".requests").getCount()),
+        () -> assertEquals(9, metrics.counter(PREFIX + ".collapsed").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".in-flight").getValue()));
+  }
+
+  @Test
+  void findByEmail_CompletedLookupShouldNotBeReused() {
+    var delegate = mock(UsersDao.class);
+    var dao = new SingleFlightUsersDao(delegate, new MetricRegistry());
+
+    when(delegate.findByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(delegate, times(2)).findByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void findVersionedByEmail_FailureShouldReachEveryWaiter() {
+    var delegate = mock(UsersDao.class);
+    var dao = new SingleFlightUsersDao(delegate, new MetricRegistry());
+    var lookup = new CompletableFuture<VersionedUser>();
+
+    when(delegate.findVersionedByEmail(EMAIL.getAddress())).thenReturn(lookup);
+
+    var first = dao.findVersionedByEmail(EMAIL.getAddress());
+    var second = dao.findVersionedByEmail(EMAIL.getAddress());
+
+    lookup.completeExceptionally(new DatabaseException("Not found",
+        DatabaseException.Error.USER_NOT_FOUND));
+
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND, first::join);
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND, second::join);
+    verify(delegate, times(1)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void findPasswordByEmail_ShouldShareOneCall() {
+    var delegate = mock(UsersDao.class);
+    var dao = new SingleFlightUsersDao(delegate, new MetricRegistry());
+    var lookup = new CompletableFuture<String>();
+
+    when(delegate.findPasswordByEmail(EMAIL.getAddress())).thenReturn(lookup);
+
+    var first = dao.findPasswordByEmail(EMAIL.getAddress());
+    var second = dao.findPasswordByEmail(EMAIL.getAddress());
+
+    lookup.complete("password");
+
+    assertEquals("password", first.join());
+    assertEquals("password", second.join());
+    verify(delegate, times(1)).findPasswordByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void update_ShouldDetachLookupInFlight() {
+    var delegate = mock(UsersDao.class);
+    var dao = new SingleFlightUsersDao(delegate, new MetricRegistry());
+    var staleLookup = new CompletableFuture<User>();
+
+    when(delegate.findByEmail(EMAIL.getAddress()))
+        .thenReturn(staleLookup)
+        .thenReturn(CompletableFuture.completedFuture(USER));
+    when(delegate.update(null, USER)).thenReturn(CompletableFuture.completedFuture(USER));
+
+    var stale = dao.findByEmail(EMAIL.getAddress());
+
+    dao.update(null, USER).join();
+
+    // A lookup made after the update must not join the lookup that started before it
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertFalse(stale.isDone());
+    verify(delegate, times(2)).findByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void markVerified_ShouldDetachLookupInFlight() {
+    var delegate = mock(UsersDao.class);
+    var dao = new SingleFlightUsersDao(delegate, new MetricRegistry());
+    var staleLookup = new CompletableFuture<User>();
+
+    when(delegate.findByEmail(EMAIL.getAddress()))
+        .thenReturn(staleLookup)
+        .thenReturn(CompletableFuture.completedFuture(USER));
+    when(delegate.markVerified(EMAIL.getAddress(), "testToken"))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+
+    var stale = dao.findByEmail(EMAIL.getAddress());
+
+    assertEquals(USER, dao.markVerified(EMAIL.getAddress(), "testToken").join());
+
+    // A lookup made after the user was verified must not see the user from before
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    assertFalse(stale.isDone());
+    verify(delegate, times(2)).findByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void lookup_ThrowingDelegateShouldNotLeaveLookupInFlight() {
+    var delegate = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = new SingleFlightUsersDao(delegate, metrics);
+
+    when(delegate.findByEmail(EMAIL.getAddress()))
+        .thenThrow(new DatabaseException("Down", DatabaseException.Error.DATABASE_DOWN));
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+    assertEquals(0, metrics.getGauges().get(PREFIX + ".in-flight").getValue());
+  }
+}
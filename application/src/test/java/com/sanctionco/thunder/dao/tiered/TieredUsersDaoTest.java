@@ -0,0 +1,509 @@
+package com.sanctionco.thunder.dao.tiered;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import io.dropwizard.util.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static com.sanctionco.thunder.dao.DatabaseTestUtil.assertDatabaseError;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TieredUsersDaoTest {
+  private static final String PREFIX = "com.sanctionco.thunder.dao.tiered.TieredUsersDao";
+  private static final Email EMAIL = new Email("test@test.com", true, "testToken");
+  private static final User USER = new User(EMAIL, "password",
+      Map.of("testProperty", "test")).withTime(1L, 1L);
+
+  @Test
+  void insert_ShouldBeWrittenToDatabaseOnFlush() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(notFound())
+        .thenReturn(found(USER));
+    when(database.insert(any(User.class)))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+
+    var inserted = dao.insert(USER).join();
+
+    // Reads are served from memory, and nothing is written until the queue is flushed
+    assertEquals(inserted, dao.findByEmail(EMAIL.getAddress()).join());
+    verify(database, times(1)).findVersionedByEmail(EMAIL.getAddress());
+    verify(database, never()).insert(any(User.class));
+    assertEquals(1, metrics.getGauges().get(PREFIX + ".pending").getValue());
+
+    dao.flush().join();
+
+    // The new user is inserted rather than updated, and read again for its version
+    verify(database, times(1)).insert(inserted);
+    verify(database, never()).update(any(), any(User.class), any());
+    verify(database, times(2)).findVersionedByEmail(EMAIL.getAddress());
+    assertAll("The queue is empty once the user has been written",
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()),
+        () -> assertEquals(0L, metrics.getGauges().get(PREFIX + ".lag").getValue()),
+        () -> assertEquals(1, metrics.counter(PREFIX + ".written").getCount()));
+  }
+
+  @Test
+  void insert_ExistingDatabaseUserShouldConflict() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT, () -> dao.insert(USER).join());
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(database, times(1)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void update_ShouldCoalesceChangesToTheSameUser() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+    var captor = ArgumentCaptor.forClass(User.class);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    dao.update(null, new User(EMAIL, "first", Map.of())).join();
+    dao.update(null, new User(EMAIL, "second", Map.of())).join();
+    var last = dao.update(null, new User(EMAIL, "third", Map.of())).join();
+
+    dao.flush().join();
+
+    verify(database, times(1)).update(isNull(), captor.capture(), eq("v1"));
+    assertAll("Only the latest change is written",
+        () -> assertEquals(List.of(last), captor.getAllValues()),
+        () -> assertEquals(2, metrics.counter(PREFIX + ".coalesced").getCount()));
+  }
+
+  @Test
+  void markVerified_ShouldBeCheckedInMemoryAndWrittenOnFlush() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+    var unverified = new User(new Email(EMAIL.getAddress(), false, "testToken"), "password",
+        Map.of("testProperty", "test")).withTime(1L, 1L);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(unverified));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    var verified = dao.markVerified(EMAIL.getAddress(), "testToken").join();
+
+    assertTrue(verified.getEmail().isVerified());
+
+    dao.flush().join();
+
+    // The token is checked against the user in memory, so the database only sees the update
+    verify(database, times(1)).update(null, verified, "v1");
+    verify(database, never()).markVerified(any(), any());
+  }
+
+  @Test
+  void delete_ShouldNotReadDeletedUserFromDatabase() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.delete(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+
+    assertEquals(USER, dao.delete(EMAIL.getAddress()).join());
+
+    // The database still has the user until the queue is flushed
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+    verify(database, times(1)).findVersionedByEmail(EMAIL.getAddress());
+
+    dao.flush().join();
+
+    verify(database, times(1)).delete(EMAIL.getAddress());
+  }
+
+  @Test
+  void flush_ShouldRetryWithBackoff() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenReturn(databaseDown())
+        .thenReturn(databaseDown())
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    dao.update(null, USER).join();
+    dao.flush().join();
+
+    assertAll("The write succeeds after two retries",
+        () -> assertEquals(2, metrics.counter(PREFIX + ".retries").getCount()),
+        () -> assertEquals(1, metrics.counter(PREFIX + ".written").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+  }
+
+  @Test
+  void flush_FailedWriteShouldStayQueued() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any())).thenReturn(databaseDown());
+
+    dao.update(null, USER).join();
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN, () -> dao.flush().join());
+    assertAll("The change is kept for the next flush",
+        () -> assertEquals(1, metrics.counter(PREFIX + ".failures").getCount()),
+        () -> assertEquals(1, metrics.getGauges().get(PREFIX + ".pending").getValue()),
+        () -> assertTrue((long) metrics.getGauges().get(PREFIX + ".lag").getValue() >= 0));
+
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    dao.flush().join();
+
+    assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue());
+  }
+
+  @Test
+  void flush_RejectedWriteShouldBeDropped() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenReturn(CompletableFuture.failedFuture(new DatabaseException("Rejected",
+            DatabaseException.Error.REQUEST_REJECTED)));
+
+    dao.update(null, USER).join();
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN, () -> dao.flush().join());
+    assertAll("The rejected change is not retried",
+        () -> assertEquals(0, metrics.counter(PREFIX + ".retries").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+  }
+
+  @Test
+  void write_FullQueueShouldWriteThrough() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(1, true), metrics);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    var updated = dao.update(null, USER).join();
+
+    // The write only completed once it had been written to the database
+    verify(database, times(1)).update(null, updated, "v1");
+    assertAll("The full queue was flushed",
+        () -> assertEquals(1, metrics.counter(PREFIX + ".write-throughs").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+  }
+
+  @Test
+  void write_FullQueueShouldNotFailWhenAnotherQueuedWriteFails() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(2, true), metrics);
+    var other = new User(Email.unverified("other@test.com"), "password").withTime(1L, 1L);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.findVersionedByEmail(other.getEmail().getAddress()))
+        .thenReturn(found(other));
+    when(database.update(isNull(), any(User.class), any())).thenAnswer(invocation ->
+        invocation.<User>getArgument(1).getEmail().getAddress().equals("other@test.com")
+            ? databaseDown()
+            : written(invocation.getArgument(1)));
+
+    dao.update(null, other).join();
+
+    // The queue is full after this write, and the flush fails to write the other user
+    var updated = dao.update(null, USER).join();
+
+    verify(database, times(1)).update(null, updated, "v1");
+    assertAll("Only the failed change stays queued",
+        () -> assertEquals(1, metrics.counter(PREFIX + ".write-throughs").getCount()),
+        () -> assertEquals(1, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+  }
+
+  @Test
+  void findByEmail_ShouldReadDatabaseAgainOnceWrittenUserExpires() throws Exception {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true, Duration.milliseconds(100)),
+        new MetricRegistry());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    var updated = dao.update(null, new User(EMAIL, "changed", Map.of())).join();
+    Thread.sleep(200);
+
+    // The user has a queued change, so it cannot expire
+    assertEquals(updated, dao.findByEmail(EMAIL.getAddress()).join());
+    verify(database, times(1)).findVersionedByEmail(EMAIL.getAddress());
+
+    dao.flush().join();
+    Thread.sleep(200);
+
+    // Once the change has been written, the user expires and is read from the database again
+    assertEquals(USER, dao.findByEmail(EMAIL.getAddress()).join());
+    verify(database, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void close_ShouldFlushAndCloseDatabase() throws Exception {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    var updated = dao.update(null, USER).join();
+    dao.close();
+
+    verify(database, times(1)).update(null, updated, "v1");
+    verify(database, times(1)).close();
+  }
+
+  @Test
+  void write_FullQueueShouldRejectWhenWriteThroughIsDisabled() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(1, false), new MetricRegistry());
+    var other = new User(Email.unverified("other@test.com"), "password").withTime(1L, 1L);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER));
+    when(database.findVersionedByEmail(other.getEmail().getAddress()))
+        .thenReturn(found(other));
+
+    dao.update(null, USER).join();
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN,
+        () -> dao.update(null, other).join());
+
+    // The rejected change was not applied, and the queued user can still change
+    assertEquals(other, dao.findByEmail(other.getEmail().getAddress()).join());
+    dao.update(null, USER).join();
+    verify(database, never()).update(isNull(), any(User.class), any());
+  }
+
+  @Test
+  void update_ShouldCheckExpectedVersionInMemory() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress())).thenReturn(found(USER));
+
+    var loaded = dao.findVersionedByEmail(EMAIL.getAddress()).join();
+    var updated = dao.update(null, new User(EMAIL, "first", Map.of()), loaded.version()).join();
+
+    // Every change gives the user a new version, before it is written to the database
+    assertEquals("v1", loaded.version());
+    assertNotEquals(loaded.version(), updated.version());
+    assertEquals(updated, dao.findVersionedByEmail(EMAIL.getAddress()).join());
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> dao.update(null, new User(EMAIL, "second", Map.of()), loaded.version()).join());
+    assertEquals(updated.user(), dao.findByEmail(EMAIL.getAddress()).join());
+
+    verify(database, never()).update(any(), any(User.class), any());
+  }
+
+  @Test
+  void update_EmailChangeShouldCheckExpectedVersion() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+    var moved = new User(Email.unverified("new@test.com"), "password", Map.of());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress())).thenReturn(found(USER));
+    when(database.findVersionedByEmail("new@test.com")).thenReturn(notFound());
+
+    assertDatabaseError(DatabaseException.Error.CONFLICT,
+        () -> dao.update(EMAIL.getAddress(), moved, "stale").join());
+
+    var result = dao.update(EMAIL.getAddress(), moved, "v1").join();
+
+    assertAll("The user is moved once the version matches",
+        () -> assertEquals("new@test.com", result.user().getEmail().getAddress()),
+        () -> assertEquals(result, dao.findVersionedByEmail("new@test.com").join()),
+        () -> assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+            () -> dao.findByEmail(EMAIL.getAddress()).join()));
+  }
+
+  @Test
+  void flush_ShouldWriteOnTopOfTheVersionLastWritten() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+
+    when(database.findVersionedByEmail(EMAIL.getAddress())).thenReturn(found(USER));
+    when(database.update(isNull(), any(User.class), any()))
+        .thenAnswer(invocation -> written(invocation.getArgument(1)));
+
+    var first = dao.update(null, new User(EMAIL, "first", Map.of())).join();
+    dao.flush().join();
+
+    var second = dao.update(null, new User(EMAIL, "second", Map.of())).join();
+    dao.flush().join();
+
+    // The second change expects the version that the first change was written with
+    verify(database, times(1)).update(null, first, "v1");
+    verify(database, times(1)).update(null, second, "v2");
+    verify(database, times(1)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void flush_ConflictShouldDropUserAndReadItAgain() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+    var changed = new User(EMAIL, "changedElsewhere", Map.of()).withTime(1L, 2L);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER))
+        .thenReturn(CompletableFuture.completedFuture(new VersionedUser(changed, "v3")));
+    when(database.update(isNull(), any(User.class), any())).thenReturn(conflict());
+
+    dao.update(null, new User(EMAIL, "first", Map.of())).join();
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN, () -> dao.flush().join());
+    assertAll("The conflicting change is dropped without being retried",
+        () -> assertEquals(1, metrics.counter(PREFIX + ".conflicts").getCount()),
+        () -> assertEquals(0, metrics.counter(PREFIX + ".retries").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+
+    // The user that the other instance wrote is read from the database again
+    assertEquals(new VersionedUser(changed, "v3"),
+        dao.findVersionedByEmail(EMAIL.getAddress()).join());
+    verify(database, times(2)).findVersionedByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void flush_ShouldNotInsertUserDeletedByAnotherInstance() {
+    var database = mock(UsersDao.class);
+    var metrics = new MetricRegistry();
+    var dao = tieredDao(database, configuration(10, true), metrics);
+
+    when(database.findVersionedByEmail(EMAIL.getAddress()))
+        .thenReturn(found(USER))
+        .thenReturn(notFound());
+    when(database.update(isNull(), any(User.class), any())).thenReturn(notFound());
+
+    dao.update(null, new User(EMAIL, "first", Map.of())).join();
+
+    assertDatabaseError(DatabaseException.Error.DATABASE_DOWN, () -> dao.flush().join());
+
+    // The deleted user is not written again with a new creation time
+    verify(database, never()).insert(any(User.class));
+    assertEquals(1, metrics.counter(PREFIX + ".conflicts").getCount());
+    assertDatabaseError(DatabaseException.Error.USER_NOT_FOUND,
+        () -> dao.findByEmail(EMAIL.getAddress()).join());
+  }
+
+  @Test
+  void findEmailsByProperty_ShouldReadDatabase() {
+    var database = mock(UsersDao.class);
+    var dao = tieredDao(database, configuration(10, true), new MetricRegistry());
+
+    when(database.findEmailsByProperty("testProperty", "test", 10))
+        .thenReturn(CompletableFuture.completedFuture(List.of(EMAIL.getAddress())));
+
+    assertEquals(List.of(EMAIL.getAddress()),
+        dao.findEmailsByProperty("testProperty", "test", 10).join());
+  }
+
+  private static TieredUsersDao tieredDao(UsersDao database,
+                                          WriteBehindConfiguration configuration,
+                                          MetricRegistry metrics) {
+    return new TieredUsersDao(database, configuration, metrics);
+  }
+
+  private static WriteBehindConfiguration configuration(int maxPendingWrites,
+                                                        boolean writeThroughWhenFull) {
+    return configuration(maxPendingWrites, writeThroughWhenFull, Duration.hours(1));
+  }
+
+  private static WriteBehindConfiguration configuration(int maxPendingWrites,
+                                                        boolean writeThroughWhenFull,
+                                                        Duration expireAfterWrite) {
+    var configuration = mock(WriteBehindConfiguration.class);
+
+    // Flushes are triggered by the tests, not the background thread
+    when(configuration.getFlushInterval()).thenReturn(Duration.hours(1));
+    when(configuration.getMaxPendingWrites()).thenReturn(maxPendingWrites);
+    when(configuration.getBatchSize()).thenReturn(2);
+    when(configuration.getMaxRetries()).thenReturn(2);
+    when(configuration.getRetryBackoff()).thenReturn(Duration.milliseconds(1));
+    when(configuration.isWriteThroughWhenFull()).thenReturn(writeThroughWhenFull);
+    when(configuration.getMaxSize()).thenReturn(100L);
+    when(configuration.getExpireAfterWrite()).thenReturn(expireAfterWrite);
+
+    return configuration;
+  }
+
+  private static CompletableFuture<VersionedUser> found(User user) {
+    return CompletableFuture.completedFuture(new VersionedUser(user, "v1"));
+  }
+
+  private static CompletableFuture<VersionedUser> written(User user) {
+    return CompletableFuture.completedFuture(new VersionedUser(user, "v2"));
+  }
+
+  private static <T> CompletableFuture<T> notFound() {
+    return CompletableFuture.failedFuture(new DatabaseException("Not found",
+        DatabaseException.Error.USER_NOT_FOUND));
+  }
+
+  private static <T> CompletableFuture<T> conflict() {
+    return CompletableFuture.failedFuture(new DatabaseException("Conflict",
+        DatabaseException.Error.CONFLICT));
+  }
+
+  private static <T> CompletableFuture<T> databaseDown() {
+    return CompletableFuture.failedFuture(new DatabaseException("Down",
+        DatabaseException.Error.DATABASE_DOWN));
+  }
+}
@@ -1,16 +1,29 @@
 package com.sanctionco.thunder.email;
 
 import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.secrets.SecretProvider;
+
+import io.dropwizard.util.Duration;
 
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class EmailModuleTest {
+  private static final MessageOptions MESSAGE_OPTIONS = new MessageOptions(
+      "Subject", "html CODEGEN-URL", "text CODEGEN-URL", "CODEGEN-URL", "CODEGEN-URL", "success");
 
   @Test
   void testNullConstructorArgumentThrows() {
@@ -24,12 +37,48 @@ class EmailModuleTest {
     var emailService = mock(EmailService.class);
 
     when(factory.createEmailService(any(MetricRegistry.class))).thenReturn(emailService);
+    when(factory.getOutboxConfiguration()).thenReturn(new OutboxConfiguration());
 
     EmailModule module = new EmailModule(factory);
 
     assertEquals(emailService, module.provideEmailService(new MetricRegistry()));
   }
 
+  @Test
+  void testProvideOutboxEmailService() {
+    var factory = mock(EmailServiceFactory.class);
+    var emailService = mock(EmailService.class);
+    var outboxConfiguration = TestResources.readResourceYaml(
+        EmailServiceFactory.class,
+        "fixtures/configuration/email/outbox-config.yaml")
+        .getOutboxConfiguration();
+
+    when(emailService.getMessageOptions()).thenReturn(MESSAGE_OPTIONS);
+    when(factory.createEmailService(any(MetricRegistry.class))).thenReturn(emailService);
+    when(factory.getOutboxConfiguration()).thenReturn(outboxConfiguration);
+
+    EmailModule module = new EmailModule(factory);
+
+    var outbox = assertInstanceOf(OutboxEmailService.class,
+        module.provideEmailService(new MetricRegistry()));
+
+    // The outbox is closed by the application lifecycle, not by the module
+    outbox.close();
+  }
+
+  @Test
+  void testProvideDisabledEmailServiceWithOutbox() {
+    var factory = mock(EmailServiceFactory.class);
+    var outboxConfiguration = mock(OutboxConfiguration.class);
+
+    when(outboxConfiguration.isEnabled()).thenReturn(true);
+    when(factory.getOutboxConfiguration()).thenReturn(outboxConfiguration);
+
+    EmailModule module = new EmailModule(factory);
+
+    assertNull(module.provideEmailService(new MetricRegistry()));
+  }
+
   @Test
   void testProvideDatabaseHealthCheck() {
     var factory = mock(EmailServiceFactory.class);
@@ -41,4 +90,55 @@ class EmailModuleTest {
 
     assertEquals(healthCheck, module.provideEmailHealthCheck());
   }
+
+  @Test
+  void testProvideUnsignedVerificationTokenService() {
+    var factory = mock(EmailServiceFactory.class);
+    var secretProvider = mock(SecretProvider.class);
+
+    when(factory.getVerificationTokenConfiguration())
+        .thenReturn(new VerificationTokenConfiguration());
+
+    EmailModule module = new EmailModule(factory);
+
+    assertFalse(module.provideVerificationTokenService(secretProvider).isSigned());
+    verify(secretProvider, never()).lookup(anyString());
+  }
+
+  @Test
+  void testProvideSignedVerificationTokenService() {
+    var factory = mock(EmailServiceFactory.class);
+    var configuration = signedConfiguration();
+    var secretProvider = mock(SecretProvider.class);
+
+    when(factory.getVerificationTokenConfiguration()).thenReturn(configuration);
+    when(secretProvider.lookup("TEST_TOKEN_KEY")).thenReturn("0123456789abcdef0123456789abcdef");
+
+    EmailModule module = new EmailModule(factory);
+
+    assertTrue(module.provideVerificationTokenService(secretProvider).isSigned());
+  }
+
+  @Test
+  void testProvideSignedVerificationTokenServiceMissingSecret() {
+    var factory = mock(EmailServiceFactory.class);
+    var configuration = signedConfiguration();
+
+    when(factory.getVerificationTokenConfiguration()).thenReturn(configuration);
+
+    EmailModule module = new EmailModule(factory);
+
+    assertThrows(IllegalStateException.class,
+        () -> module.provideVerificationTokenService(mock(SecretProvider.class)));
+  }
+
+  private static VerificationTokenConfiguration signedConfiguration() {
+    var configuration = mock(VerificationTokenConfiguration.class);
+
+    when(configuration.isSigned()).thenReturn(true);
+    when(configuration.getSecretName()).thenReturn("TEST_TOKEN_KEY");
+    when(configuration.getExpiration()).thenReturn(Duration.hours(1));
+
+    return configuration;
+  }
 }
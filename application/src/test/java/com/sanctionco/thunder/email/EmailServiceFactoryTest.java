@@ -6,6 +6,7 @@ import com.sanctionco.thunder.email.disabled.DisabledEmailServiceFactory;
 import com.sanctionco.thunder.email.ses.SesEmailServiceFactory;
 
 import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.util.Duration;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -16,7 +17,10 @@ import java.nio.file.Path;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -51,6 +55,64 @@ class EmailServiceFactoryTest {
         .contains(DisabledEmailServiceFactory.class));
   }
 
+  @Test
+  void testDefaultVerificationTokens() {
+    VerificationTokenConfiguration configuration
+        = DEFAULT_FACTORY.getVerificationTokenConfiguration();
+
+    assertAll("Verification tokens are not signed by default",
+        () -> assertFalse(configuration.isSigned()),
+        () -> assertEquals("THUNDER_VERIFICATION_TOKEN_KEY", configuration.getSecretName()),
+        () -> assertEquals(Duration.hours(24), configuration.getExpiration()));
+  }
+
+  @Test
+  void testSignedVerificationTokensFromYaml() {
+    EmailServiceFactory serviceFactory = TestResources.readResourceYaml(
+        EmailServiceFactory.class,
+        "fixtures/configuration/email/signed-tokens-config.yaml");
+    VerificationTokenConfiguration configuration
+        = serviceFactory.getVerificationTokenConfiguration();
+
+    assertAll("Verification token options are read",
+        () -> assertTrue(configuration.isSigned()),
+        () -> assertEquals("TEST_TOKEN_KEY", configuration.getSecretName()),
+        () -> assertEquals(Duration.hours(2), configuration.getExpiration()));
+  }
+
+  @Test
+  void testDefaultOutbox() {
+    OutboxConfiguration configuration = DEFAULT_FACTORY.getOutboxConfiguration();
+
+    assertAll("The outbox is disabled by default",
+        () -> assertFalse(configuration.isEnabled()),
+        () -> assertNull(configuration.getJournalDirectory()),
+        () -> assertEquals(10_000, configuration.getMaxPendingMessages()),
+        () -> assertEquals(14.0, configuration.getMaxMessagesPerSecond()),
+        () -> assertEquals(Duration.seconds(1), configuration.getDispatchInterval()),
+        () -> assertEquals(50, configuration.getBatchSize()),
+        () -> assertEquals(5, configuration.getMaxRetries()),
+        () -> assertEquals(Duration.seconds(1), configuration.getRetryBackoff()));
+  }
+
+  @Test
+  void testOutboxFromYaml() {
+    EmailServiceFactory serviceFactory = TestResources.readResourceYaml(
+        EmailServiceFactory.class,
+        "fixtures/configuration/email/outbox-config.yaml");
+    OutboxConfiguration configuration = serviceFactory.getOutboxConfiguration();
+
+    assertAll("Outbox options are read",
+        () -> assertTrue(configuration.isEnabled()),
+        () -> assertNull(configuration.getJournalDirectory()),
+        () -> assertEquals(500, configuration.getMaxPendingMessages()),
+        () -> assertEquals(50.0, configuration.getMaxMessagesPerSecond()),
+        () -> assertEquals(Duration.milliseconds(200), configuration.getDispatchInterval()),
+        () -> assertEquals(10, configuration.getBatchSize()),
+        () -> assertEquals(2, configuration.getMaxRetries()),
+        () -> assertEquals(Duration.milliseconds(50), configuration.getRetryBackoff()));
+  }
+
   @Test
   void testDefaultMessageOptions() {
     EmailServiceFactory serviceFactory = TestResources.readResourceYaml(
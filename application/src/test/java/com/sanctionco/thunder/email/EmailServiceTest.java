@@ -1,44 +1,80 @@
 package com.sanctionco.thunder.email;
 
 import com.codahale.metrics.MetricRegistry;
-import com.sanctionco.thunder.email.ses.SesEmailService;
+import com.sanctionco.thunder.models.Email;
 
-import org.junit.jupiter.api.Test;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
-import software.amazon.awssdk.services.ses.SesAsyncClient;
+import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.Mockito.mock;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 class EmailServiceTest {
-  private final EmailService emailService = new SesEmailService(
-      mock(SesAsyncClient.class), "address", mock(MessageOptions.class), new MetricRegistry());
+  private static final Map<MessageTemplate.Placeholder, String> URL_VALUE
+      = Map.of(MessageTemplate.Placeholder.URL, "http://www.test.com");
 
   @Test
   void testReplacePlaceholderNoUrl() {
     String contents = "test contents";
-    String url = "http://www.test.com";
 
-    assertEquals(contents, emailService.replaceUrlPlaceholder(contents, "CODEGEN-URL", url));
+    var template = EmailService.compileTemplate(contents, "CODEGEN-URL");
+
+    assertFalse(template.contains(MessageTemplate.Placeholder.URL));
+    assertEquals(contents, template.render(URL_VALUE));
   }
 
   @Test
   void testReplacePlaceholderWithUrl() {
     String contents = "test contents CODEGEN-URL";
-    String url = "http://www.test.com";
 
-    String expected = "test contents " + url;
+    String expected = "test contents http://www.test.com";
 
-    assertEquals(expected, emailService.replaceUrlPlaceholder(contents, "CODEGEN-URL", url));
+    assertEquals(expected,
+        EmailService.compileTemplate(contents, "CODEGEN-URL").render(URL_VALUE));
   }
 
   @Test
   void testReplaceWithCustomPlaceholder() {
     String contents = "test contents PLACEHOLDER";
-    String url = "http://www.test.com";
 
-    String expected = "test contents " + url;
+    String expected = "test contents http://www.test.com";
+
+    assertEquals(expected,
+        EmailService.compileTemplate(contents, "PLACEHOLDER").render(URL_VALUE));
+  }
+
+  @Test
+  void testSendVerificationEmailFillsEveryPlaceholder() {
+    var options = new MessageOptions("Subject",
+        "<a href=\"LINK\">Verify CODEGEN-EMAIL</a> before CODEGEN-EXPIRY",
+        "Verify CODEGEN-EMAIL at LINK (CODEGEN-LOCALE)",
+        "LINK", "LINK", "success");
+    var html = new AtomicReference<String>();
+    var text = new AtomicReference<String>();
+
+    EmailService emailService = new EmailService(options, new MetricRegistry()) {
+      @Override
+      public CompletableFuture<Boolean> sendEmail(Email to,
+                                                  String subjectString,
+                                                  String htmlBodyString,
+                                                  String bodyString) {
+        html.set(htmlBodyString);
+        text.set(bodyString);
+
+        return CompletableFuture.completedFuture(true);
+      }
+    };
+
+    emailService.sendVerificationEmail(Email.unverified("test@test.com"), "http://test.com/$1",
+        Map.of(MessageTemplate.Placeholder.EXPIRY, "tomorrow")).join();
+
+    assertEquals("<a href=\"http://test.com/$1\">Verify test@test.com</a> before tomorrow",
+        html.get());
 
-    assertEquals(expected, emailService.replaceUrlPlaceholder(contents, "PLACEHOLDER", url));
+    // The locale was not given, so its placeholder is left as it was
+    assertEquals("Verify test@test.com at http://test.com/$1 (CODEGEN-LOCALE)", text.get());
   }
 }
@@ -0,0 +1,88 @@
+package com.sanctionco.thunder.email;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageTemplateTest {
+  private static final Map<MessageTemplate.Placeholder, String> PLACEHOLDERS = Map.of(
+      MessageTemplate.Placeholder.URL, "CODEGEN-URL",
+      MessageTemplate.Placeholder.EMAIL, "CODEGEN-EMAIL");
+
+  @Test
+  void nullContentsShouldThrow() {
+    assertThrows(NullPointerException.class, () -> MessageTemplate.compile(null, PLACEHOLDERS));
+  }
+
+  @Test
+  void everyOccurrenceShouldBeReplaced() {
+    var template = MessageTemplate.compile(
+        "CODEGEN-URL to CODEGEN-EMAIL, then CODEGEN-URL again", PLACEHOLDERS);
+
+    assertEquals("u to e, then u again", template.render(Map.of(
+        MessageTemplate.Placeholder.URL, "u",
+        MessageTemplate.Placeholder.EMAIL, "e")));
+  }
+
+  @Test
+  void templateWithoutPlaceholdersShouldRenderUnchanged() {
+    var template = MessageTemplate.compile("no placeholders here", PLACEHOLDERS);
+
+    assertAll("The contents are a single literal",
+        () -> assertFalse(template.contains(MessageTemplate.Placeholder.URL)),
+        () -> assertEquals("no placeholders here", template.render(Map.of(
+            MessageTemplate.Placeholder.URL, "u"))));
+  }
+
+  @Test
+  void missingValueShouldLeavePlaceholder() {
+    var template = MessageTemplate.compile("CODEGEN-URL CODEGEN-EMAIL", PLACEHOLDERS);
+
+    assertAll("Only placeholders with a value are replaced",
+        () -> assertTrue(template.contains(MessageTemplate.Placeholder.EMAIL)),
+        () -> assertEquals("u CODEGEN-EMAIL", template.render(Map.of(
+            MessageTemplate.Placeholder.URL, "u"))));
+  }
+
+  @Test
+  void valuesShouldBeInsertedLiterally() {
+    var template = MessageTemplate.compile("<a href=\"CODEGEN-URL\">", PLACEHOLDERS);
+
+    // These would be group references or escapes to String.replaceAll
+    assertEquals("<a href=\"http://test.com/$1\\$\">", template.render(Map.of(
+        MessageTemplate.Placeholder.URL, "http://test.com/$1\\$")));
+  }
+
+  @Test
+  void placeholderShouldBeMatchedLiterally() {
+    var template = MessageTemplate.compile("a.b and axb",
+        Map.of(MessageTemplate.Placeholder.URL, "a.b"));
+
+    assertEquals("u and axb", template.render(Map.of(MessageTemplate.Placeholder.URL, "u")));
+  }
+
+  @Test
+  void longerPlaceholderShouldWinAtSamePosition() {
+    var template = MessageTemplate.compile("URL-FULL", Map.of(
+        MessageTemplate.Placeholder.URL, "URL",
+        MessageTemplate.Placeholder.LOCALE, "URL-FULL"));
+
+    assertEquals("en", template.render(Map.of(
+        MessageTemplate.Placeholder.URL, "u",
+        MessageTemplate.Placeholder.LOCALE, "en")));
+  }
+
+  @Test
+  void emptyPlaceholderShouldBeIgnored() {
+    var template = MessageTemplate.compile("contents",
+        Map.of(MessageTemplate.Placeholder.URL, ""));
+
+    assertEquals("contents", template.render(Map.of(MessageTemplate.Placeholder.URL, "u")));
+  }
+}
@@ -0,0 +1,241 @@
+package com.sanctionco.thunder.email;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.dao.inmemorydb.WriteAheadLog;
+import com.sanctionco.thunder.models.Email;
+
+import io.dropwizard.util.Duration;
+
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxEmailServiceTest {
+  private static final String PREFIX = "com.sanctionco.thunder.email.OutboxEmailService";
+  private static final Email EMAIL = new Email("test@test.com", false, "testToken");
+  private static final MessageOptions MESSAGE_OPTIONS = new MessageOptions(
+      "Subject", "html CODEGEN-URL", "text CODEGEN-URL", "CODEGEN-URL", "CODEGEN-URL", "success");
+
+  @Test
+  void sendEmail_ShouldBeAcknowledgedBeforeSending() throws IOException {
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+    var outbox = new OutboxEmailService(delegate, configuration(10, 2, null), metrics);
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    assertTrue(outbox.sendEmail(EMAIL, "Subject", "<p>Body</p>", "Body").join());
+
+    // Nothing is sent until the outbox is flushed
+    verify(delegate, never()).sendEmail(any(Email.class), anyString(), anyString(), anyString());
+    assertEquals(1, metrics.getGauges().get(PREFIX + ".pending").getValue());
+
+    outbox.flush().join();
+
+    verify(delegate, times(1))
+        .sendEmail(Email.unverified(EMAIL.getAddress()), "Subject", "<p>Body</p>", "Body");
+    assertAll("The outbox is empty once the email has been sent",
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()),
+        () -> assertEquals(0L, metrics.getGauges().get(PREFIX + ".age").getValue()),
+        () -> assertEquals(1, metrics.counter(PREFIX + ".sent").getCount()));
+
+    outbox.close();
+  }
+
+  @Test
+  void flush_ShouldSendEveryEmailInBatches() throws IOException {
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+    var outbox = new OutboxEmailService(delegate, configuration(10, 2, null), metrics);
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    IntStream.range(0, 5).forEach(i -> outbox.sendEmail(EMAIL, "Subject", "html", "text").join());
+    outbox.flush().join();
+
+    verify(delegate, times(5)).sendEmail(any(Email.class), anyString(), anyString(), anyString());
+    assertEquals(5, metrics.counter(PREFIX + ".sent").getCount());
+
+    outbox.close();
+  }
+
+  @Test
+  void sendEmail_FullOutboxShouldReject() throws IOException {
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+    var outbox = new OutboxEmailService(delegate, configuration(1, 2, null), metrics);
+
+    assertTrue(outbox.sendEmail(EMAIL, "Subject", "html", "text").join());
+    assertFalse(outbox.sendEmail(EMAIL, "Subject", "html", "text").join());
+
+    assertAll("Only the first email is queued",
+        () -> assertEquals(1, metrics.getGauges().get(PREFIX + ".pending").getValue()),
+        () -> assertEquals(1, metrics.counter(PREFIX + ".rejected").getCount()));
+  }
+
+  @Test
+  void flush_FailedSendShouldBeRetried() throws Exception {
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+    var outbox = new OutboxEmailService(delegate, configuration(10, 2, null), metrics);
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(false))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Throttled")))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    outbox.sendEmail(EMAIL, "Subject", "html", "text").join();
+
+    // Each retry is only ready again once its backoff has passed
+    for (int i = 0; i < 100 && metrics.counter(PREFIX + ".sent").getCount() == 0; i++) {
+      outbox.flush().join();
+      Thread.sleep(10);
+    }
+
+    assertAll("The email is sent after two retries",
+        () -> assertEquals(2, metrics.counter(PREFIX + ".retries").getCount()),
+        () -> assertEquals(1, metrics.counter(PREFIX + ".sent").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+
+    outbox.close();
+  }
+
+  @Test
+  void flush_EmailShouldBeDroppedAfterMaxRetries() throws IOException {
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+    var outbox = new OutboxEmailService(delegate, configuration(10, 0, null), metrics);
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    outbox.sendEmail(EMAIL, "Subject", "html", "text").join();
+    outbox.flush().join();
+
+    assertAll("The email is not retried",
+        () -> assertEquals(0, metrics.counter(PREFIX + ".retries").getCount()),
+        () -> assertEquals(1, metrics.counter(PREFIX + ".dropped").getCount()),
+        () -> assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue()));
+
+    outbox.close();
+  }
+
+  @Test
+  void journal_QueuedEmailShouldBeSentAfterRestart(@TempDir Path directory) throws IOException {
+    var failing = delegate();
+    var configuration = configuration(10, 5, directory);
+
+    // A long backoff keeps the email queued when the first outbox is closed
+    when(configuration.getRetryBackoff()).thenReturn(Duration.hours(1));
+    when(failing.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    var first = new OutboxEmailService(failing, configuration, new MetricRegistry());
+
+    assertTrue(first.sendEmail(EMAIL, "Subject", "<p>Body</p>", "Body").join());
+    first.close();
+
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    var second = new OutboxEmailService(delegate, configuration, metrics);
+
+    assertEquals(1, metrics.getGauges().get(PREFIX + ".pending").getValue());
+
+    second.flush().join();
+
+    verify(delegate, times(1))
+        .sendEmail(Email.unverified(EMAIL.getAddress()), "Subject", "<p>Body</p>", "Body");
+    second.close();
+  }
+
+  @Test
+  void journal_SentEmailShouldNotBeSentAfterRestart(@TempDir Path directory) throws IOException {
+    var delegate = delegate();
+    var configuration = configuration(10, 2, directory);
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    var first = new OutboxEmailService(delegate, configuration, new MetricRegistry());
+
+    first.sendEmail(EMAIL, "Subject", "html", "text").join();
+    first.close();
+
+    var metrics = new MetricRegistry();
+    var second = new OutboxEmailService(delegate, configuration, metrics);
+
+    assertEquals(0, metrics.getGauges().get(PREFIX + ".pending").getValue());
+    verify(delegate, times(1)).sendEmail(any(Email.class), anyString(), anyString(), anyString());
+
+    second.close();
+  }
+
+  @Test
+  void journal_MetricsShouldBeReportedUnderOutbox(@TempDir Path directory) throws IOException {
+    var delegate = delegate();
+    var metrics = new MetricRegistry();
+    var outbox = new OutboxEmailService(delegate, configuration(10, 2, directory), metrics);
+
+    when(delegate.sendEmail(any(Email.class), anyString(), anyString(), anyString()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    assertTrue(outbox.sendEmail(EMAIL, "Subject", "html", "text").join());
+
+    assertAll("The journal metrics do not share the database log names",
+        () -> assertEquals(1, metrics.timer(PREFIX + ".journal.sync-time").getCount()),
+        () -> assertFalse(metrics.getNames().stream()
+            .anyMatch(name -> name.startsWith(WriteAheadLog.class.getName()))));
+
+    outbox.close();
+  }
+
+  private static EmailService delegate() {
+    var delegate = mock(EmailService.class);
+
+    when(delegate.getMessageOptions()).thenReturn(MESSAGE_OPTIONS);
+
+    return delegate;
+  }
+
+  private static OutboxConfiguration configuration(int maxPendingMessages,
+                                                   int maxRetries,
+                                                   @Nullable Path journalDirectory) {
+    var configuration = mock(OutboxConfiguration.class);
+
+    // Dispatches are triggered by the tests, not the background thread
+    when(configuration.getDispatchInterval()).thenReturn(Duration.hours(1));
+    when(configuration.getJournalDirectory())
+        .thenReturn(journalDirectory != null ? journalDirectory.toString() : null);
+    when(configuration.getMaxPendingMessages()).thenReturn(maxPendingMessages);
+    when(configuration.getMaxMessagesPerSecond()).thenReturn(1_000.0);
+    when(configuration.getBatchSize()).thenReturn(2);
+    when(configuration.getMaxRetries()).thenReturn(maxRetries);
+    when(configuration.getRetryBackoff()).thenReturn(Duration.milliseconds(1));
+
+    return configuration;
+  }
+}
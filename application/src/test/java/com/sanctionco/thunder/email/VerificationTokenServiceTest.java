@@ -0,0 +1,117 @@
+package com.sanctionco.thunder.email;
+
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerificationTokenServiceTest {
+  private static final byte[] KEY = "0123456789abcdef0123456789abcdef"
+      .getBytes(StandardCharsets.UTF_8);
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+  private static final User USER = new User(Email.unverified("test@test.com"), "hash", Map.of());
+
+  @Test
+  void unsignedTokensShouldBeRandom() {
+    var service = new VerificationTokenService();
+
+    assertAll("Random tokens are not signed",
+        () -> assertFalse(service.isSigned()),
+        () -> assertFalse(service.isSignedToken(service.generate(USER))),
+        () -> assertFalse(service.generate(USER).equals(service.generate(USER))),
+        () -> assertTrue(service.getExpiration().isEmpty()));
+  }
+
+  @Test
+  void shortKeyShouldThrow() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new VerificationTokenService(new byte[16], Duration.ofHours(1), clockAt(NOW)));
+  }
+
+  @Test
+  void signedTokenShouldVerify() {
+    var service = signedService(clockAt(NOW));
+    var token = service.generate(USER);
+
+    assertTrue(service.isSignedToken(token));
+    assertEquals(Optional.of(Duration.ofHours(1)), service.getExpiration());
+    assertDoesNotThrow(() -> service.verify("test@test.com", token));
+    assertDoesNotThrow(() -> service.verifyUser(token, USER));
+  }
+
+  @Test
+  void signedTokenShouldNotVerifyOtherEmail() {
+    var service = signedService(clockAt(NOW));
+    var token = service.generate(USER);
+
+    assertIncorrectToken(() -> service.verify("other@test.com", token));
+  }
+
+  @Test
+  void signedTokenFromOtherKeyShouldNotVerify() {
+    var token = new VerificationTokenService("fedcba9876543210fedcba9876543210"
+        .getBytes(StandardCharsets.UTF_8), Duration.ofHours(1), clockAt(NOW)).generate(USER);
+
+    assertIncorrectToken(() -> signedService(clockAt(NOW)).verify("test@test.com", token));
+  }
+
+  @Test
+  void malformedTokenShouldNotVerify() {
+    var service = signedService(clockAt(NOW));
+
+    assertAll("Malformed tokens are rejected",
+        () -> assertIncorrectToken(() -> service.verify("test@test.com", "abc.def")),
+        () -> assertIncorrectToken(() -> service.verify("test@test.com", "a.b.c")),
+        () -> assertIncorrectToken(() -> service.verify("test@test.com", "!!!.???")));
+  }
+
+  @Test
+  void expiredTokenShouldNotVerify() {
+    var token = signedService(clockAt(NOW)).generate(USER);
+    var later = signedService(clockAt(NOW.plus(Duration.ofHours(1)).plusMillis(1)));
+
+    var e = assertIncorrectToken(() -> later.verify("test@test.com", token));
+
+    assertEquals("The verification token has expired.", e.getMessage());
+  }
+
+  @Test
+  void changedPasswordShouldNotVerify() {
+    var service = signedService(clockAt(NOW));
+    var token = service.generate(USER);
+    var changed = new User(USER.getEmail(), "newHash", Map.of());
+
+    assertIncorrectToken(() -> service.verifyUser(token, changed));
+  }
+
+  private static VerificationTokenService signedService(Clock clock) {
+    return new VerificationTokenService(KEY, Duration.ofHours(1), clock);
+  }
+
+  private static Clock clockAt(Instant instant) {
+    return Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private static RequestValidationException assertIncorrectToken(Runnable op) {
+    var e = assertThrows(RequestValidationException.class, op::run);
+
+    assertEquals(RequestValidationException.Error.INCORRECT_TOKEN, e.getError());
+    return e;
+  }
+}
@@ -0,0 +1,227 @@
+package com.sanctionco.thunder.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.jmail.JMail;
+import com.sanctionco.thunder.TestResources;
+import com.sanctionco.thunder.authentication.basic.Key;
+import com.sanctionco.thunder.crypto.HashAlgorithm;
+import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.dao.BatchResult;
+import com.sanctionco.thunder.dao.DatabaseException;
+import com.sanctionco.thunder.dao.SegmentedScanPublisher;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.PropertyValidator;
+import com.sanctionco.thunder.validation.RequestValidator;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("AdminResource")
+class AdminResourceTest {
+  private static final ObjectMapper MAPPER = TestResources.MAPPER;
+  private static final HashService HASH_SERVICE = HashAlgorithm.SIMPLE
+      .newHashService(false, false);
+
+  private static final User USER = new User(
+      Email.unverified("test@test.com"), "password", Collections.emptyMap());
+  private static final User OTHER_USER = new User(
+      new Email("other@test.com", true, null), "password", Collections.emptyMap());
+
+  private final UsersDao usersDao = mock(UsersDao.class);
+  private final HashService hashService = mock(HashService.class);
+  private final Key key = mock(Key.class);
+  private final PropertyValidator propertyValidator = mock(PropertyValidator.class);
+  private final RequestValidator validator = new RequestValidator(
+      JMail.strictValidator(), propertyValidator, HASH_SERVICE, true);
+  private final AdminResource resource
+      = new AdminResource(usersDao, validator, hashService, MAPPER);
+
+  @BeforeEach
+  void setup() {
+    when(propertyValidator.isValidPropertiesMap(anyMap())).thenReturn(true);
+    when(hashService.hashAsync(anyString())).thenAnswer(invocation -> CompletableFuture
+        .completedFuture("hashed-" + invocation.getArgument(0)));
+
+    // Succeed for every user that is inserted
+    when(usersDao.insertAll(anyList())).thenAnswer(invocation -> CompletableFuture
+        .completedFuture(invocation.<List<User>>getArgument(0).stream()
+            .map(BatchResult::success)
+            .toList()));
+  }
+
+  @Test
+  void export_shouldWriteEveryPageOfEverySegment() throws Exception {
+    Map<String, UsersPage> pages = Map.of(
+        "0-null", new UsersPage(List.of(USER), USER.getEmail().getAddress()),
+        "0-" + USER.getEmail().getAddress(), new UsersPage(List.of(), null),
+        "1-null", new UsersPage(List.of(OTHER_USER), null));
+
+    when(usersDao.scanAll()).thenReturn(new SegmentedScanPublisher(
+        (segment, total, token, limit) -> pages.get(segment + "-" + token), 2, 10));
+
+    Response response = resource.exportUsers(key);
+
+    var output = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(output);
+
+    List<User> exported = output.toString(StandardCharsets.UTF_8).lines()
+        .map(line -> UsersDao.fromJson(MAPPER, line))
+        .toList();
+
+    assertAll("Every user is exported on its own line",
+        () -> assertEquals(Response.Status.OK, response.getStatusInfo()),
+        () -> assertEquals(AdminResource.NDJSON, response.getMediaType().toString()),
+        () -> assertEquals(2, exported.size()),
+        () -> assertEquals(
+            Map.of(USER.getEmail(), USER, OTHER_USER.getEmail(), OTHER_USER),
+            exported.stream().collect(Collectors.toMap(User::getEmail, user -> user))));
+  }
+
+  @Test
+  void export_withDatabaseFailure_shouldFail() {
+    when(usersDao.scanAll()).thenReturn(new SegmentedScanPublisher(
+        (segment, total, token, limit) -> {
+          throw new DatabaseException("Error", DatabaseException.Error.DATABASE_DOWN);
+        }, 1, 10));
+
+    Response response = resource.exportUsers(key);
+
+    var e = assertThrows(WebApplicationException.class,
+        () -> ((StreamingOutput) response.getEntity()).write(new ByteArrayOutputStream()));
+
+    assertEquals(Response.Status.SERVICE_UNAVAILABLE, e.getResponse().getStatusInfo());
+  }
+
+  @Test
+  void import_shouldReportEachFailedLine() throws Exception {
+    String body = String.join("\n",
+        MAPPER.writeValueAsString(USER),
+        "",
+        "not json",
+        MAPPER.writeValueAsString(new User(Email.unverified("bad"), "password")),
+        MAPPER.writeValueAsString(OTHER_USER.withTime(1L, 2L)));
+
+    var summary = importUsers(body, false);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+    verify(usersDao, times(1)).insertAll(captor.capture());
+
+    assertAll("Valid users are hashed and inserted, and invalid lines are reported",
+        () -> assertEquals(2, summary.imported()),
+        () -> assertEquals(2, summary.failed()),
+        () -> assertEquals(List.of(3L, 4L), summary.failures().stream()
+            .map(AdminResource.ImportFailure::line)
+            .toList()),
+        () -> assertEquals(List.of(400, 400), summary.failures().stream()
+            .map(AdminResource.ImportFailure::status)
+            .toList()),
+        () -> assertEquals(List.of(
+            new User(USER.getEmail(), "hashed-password", Collections.emptyMap()),
+            new User(OTHER_USER.getEmail(), "hashed-password", Collections.emptyMap())),
+            captor.getValue()));
+  }
+
+  @Test
+  void import_withHashedPasswords_shouldNotHash() throws Exception {
+    var summary = importUsers(MAPPER.writeValueAsString(USER), true);
+
+    verify(hashService, never()).hashAsync(anyString());
+    verify(usersDao, times(1)).insertAll(List.of(USER));
+    assertEquals(1, summary.imported());
+  }
+
+  @Test
+  void import_shouldWriteInBatches() throws Exception {
+    String body = IntStream.range(0, AdminResource.IMPORT_BATCH_SIZE + 5)
+        .mapToObj(i -> UsersDao.toJson(MAPPER,
+            new User(Email.unverified(i + "@test.com"), "password")))
+        .collect(Collectors.joining("\n"));
+
+    var summary = importUsers(body, true);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<User>> captor = ArgumentCaptor.forClass(List.class);
+    verify(usersDao, times(2)).insertAll(captor.capture());
+
+    assertAll("The users are written in two batches",
+        () -> assertEquals(AdminResource.IMPORT_BATCH_SIZE, captor.getAllValues().get(0).size()),
+        () -> assertEquals(5, captor.getAllValues().get(1).size()),
+        () -> assertEquals(AdminResource.IMPORT_BATCH_SIZE + 5, summary.imported()),
+        () -> assertEquals(0, summary.failed()));
+  }
+
+  @Test
+  void import_withConflict_shouldReportConflict() throws Exception {
+    when(usersDao.insertAll(anyList())).thenReturn(CompletableFuture.completedFuture(List.of(
+        BatchResult.failure(USER.getEmail().getAddress(),
+            new DatabaseException("Conflict", DatabaseException.Error.CONFLICT)))));
+
+    var summary = importUsers(MAPPER.writeValueAsString(USER), true);
+
+    assertAll("The conflict is reported",
+        () -> assertEquals(0, summary.imported()),
+        () -> assertEquals(1, summary.failed()),
+        () -> assertEquals(1L, summary.failures().get(0).line()),
+        () -> assertEquals(USER.getEmail().getAddress(), summary.failures().get(0).email()),
+        () -> assertEquals(409, summary.failures().get(0).status()));
+  }
+
+  @Test
+  void import_withDatabaseFailure_shouldFailBatch() throws Exception {
+    when(usersDao.insertAll(anyList())).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Error", DatabaseException.Error.DATABASE_DOWN)));
+
+    var summary = importUsers(String.join("\n",
+        MAPPER.writeValueAsString(USER), MAPPER.writeValueAsString(OTHER_USER)), true);
+
+    assertAll("Every user in the batch fails",
+        () -> assertEquals(0, summary.imported()),
+        () -> assertEquals(2, summary.failed()),
+        () -> assertEquals(List.of(503, 503), summary.failures().stream()
+            .map(AdminResource.ImportFailure::status)
+            .toList()));
+  }
+
+  private AdminResource.ImportSummary importUsers(String body, boolean hashed) throws Exception {
+    InputStream stream = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+
+    Response response = resource.importUsers(key, hashed, stream);
+
+    assertEquals(Response.Status.OK, response.getStatusInfo());
+
+    return (AdminResource.ImportSummary) response.getEntity();
+  }
+}
@@ -7,10 +7,15 @@ import com.sanctionco.thunder.TestResources;
 import com.sanctionco.thunder.authentication.basic.Key;
 import com.sanctionco.thunder.crypto.HashAlgorithm;
 import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.crypto.HashServiceBusyException;
 import com.sanctionco.thunder.dao.DatabaseException;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.UsersPage;
+import com.sanctionco.thunder.dao.VersionedUser;
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
 import com.sanctionco.thunder.util.MetricNameUtil;
 import com.sanctionco.thunder.validation.PropertyValidator;
 import com.sanctionco.thunder.validation.RequestValidator;
@@ -20,7 +25,12 @@ import jakarta.ws.rs.container.TimeoutHandler;
 import jakarta.ws.rs.core.Response;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -33,13 +43,19 @@ import org.mockito.ArgumentCaptor;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -58,7 +74,8 @@ class UserResourceTest {
   private static final MetricRegistry METRICS = TestResources.METRICS;
   private static final RequestOptions OPTIONS = new RequestOptions();
 
-  private final UsersDao usersDao = mock(UsersDao.class);
+  // Calls the real default methods, so that versioned reads and writes use the stubbed methods
+  private final UsersDao usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
   private final Key key = mock(Key.class);
   private final PropertyValidator propertyValidator = mock(PropertyValidator.class);
   private final RequestValidator validator
@@ -182,7 +199,8 @@ class UserResourceTest {
   void create_shouldHashUserPassword() {
     // Setup the test object
     var hashService = mock(HashService.class);
-    when(hashService.hash(anyString())).thenReturn("hashedpassword");
+    when(hashService.hashAsync(anyString()))
+        .thenReturn(CompletableFuture.completedFuture("hashedpassword"));
 
     var resource = new UserResource(usersDao, OPTIONS, validator, hashService, METRICS);
 
@@ -210,6 +228,23 @@ class UserResourceTest {
         () -> assertEquals(expectedUser, result));
   }
 
+  @Test
+  void create_withBusyHashService_shouldReturnServiceUnavailable() {
+    var hashService = mock(HashService.class);
+    when(hashService.hashAsync(anyString())).thenReturn(CompletableFuture.failedFuture(
+        new HashServiceBusyException("Busy", new RejectedExecutionException())));
+
+    var resource = new UserResource(usersDao, OPTIONS, validator, hashService, METRICS);
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.postUser(asyncResponse, key, USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).insert(any(User.class));
+    assertEquals(Response.Status.SERVICE_UNAVAILABLE, captor.getValue().getStatusInfo());
+  }
+
   private void runCreateTest(Response.Status expectedStatus) {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
@@ -226,7 +261,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, user);
+    resource.updateUser(asyncResponse, key, "password", null, null, user);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
@@ -237,7 +272,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, null, null, USER);
+    resource.updateUser(asyncResponse, key, null, null, null, USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
@@ -250,7 +285,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
@@ -265,7 +300,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.NOT_FOUND, captor.getValue().getStatusInfo());
@@ -280,7 +315,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.SERVICE_UNAVAILABLE, captor.getValue().getStatusInfo());
@@ -295,7 +330,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.INTERNAL_SERVER_ERROR, captor.getValue().getStatusInfo());
@@ -309,7 +344,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "incorrectPassword", null, UPDATED_USER);
+    resource.updateUser(asyncResponse, key, "incorrectPassword", null, null, UPDATED_USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.UNAUTHORIZED, captor.getValue().getStatusInfo());
@@ -326,7 +361,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, UPDATED_USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, UPDATED_USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.NOT_FOUND, captor.getValue().getStatusInfo());
@@ -343,7 +378,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, UPDATED_USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, UPDATED_USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.CONFLICT, captor.getValue().getStatusInfo());
@@ -360,7 +395,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.updateUser(asyncResponse, key, "password", null, UPDATED_USER);
+    resource.updateUser(asyncResponse, key, "password", null, null, UPDATED_USER);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.SERVICE_UNAVAILABLE, captor.getValue().getStatusInfo());
@@ -369,7 +404,7 @@ class UserResourceTest {
   @Test
   void put_timeoutReturns() {
     ResourceTestHelpers.runTimeoutTest(
-        resp -> resource.updateUser(resp, key, "password", null, UPDATED_USER),
+        resp -> resource.updateUser(resp, key, "password", null, null, UPDATED_USER),
         MetricNameUtil.UPDATE_TIMEOUTS,
         usersDao);
   }
@@ -404,7 +439,7 @@ class UserResourceTest {
         .thenReturn(CompletableFuture.completedFuture(expectedResponse));
 
     // Update with a missing password header
-    resource.updateUser(asyncResponse, key, null, null, updatedUser);
+    resource.updateUser(asyncResponse, key, null, null, null, updatedUser);
 
     var responseCaptor = ArgumentCaptor.forClass(Response.class);
     verify(asyncResponse, timeout(100).times(1)).resume(responseCaptor.capture());
@@ -443,7 +478,7 @@ class UserResourceTest {
     when(usersDao.update(eq(null), userCaptor.capture()))
         .thenReturn(CompletableFuture.completedFuture(expectedResponse));
 
-    resource.updateUser(asyncResponse, key, "password", null, updatedUser);
+    resource.updateUser(asyncResponse, key, "password", null, null, updatedUser);
 
     var responseCaptor = ArgumentCaptor.forClass(Response.class);
     verify(asyncResponse, timeout(100).times(1)).resume(responseCaptor.capture());
@@ -481,7 +516,7 @@ class UserResourceTest {
     when(usersDao.update(eq(existingEmail.getAddress()), userCaptor.capture()))
         .thenReturn(CompletableFuture.completedFuture(expectedResponse));
 
-    resource.updateUser(asyncResponse, key, "password", "existing@test.com", updatedUser);
+    resource.updateUser(asyncResponse, key, "password", null, "existing@test.com", updatedUser);
 
     var responseCaptor = ArgumentCaptor.forClass(Response.class);
     verify(asyncResponse, timeout(100).times(1)).resume(responseCaptor.capture());
@@ -527,7 +562,7 @@ class UserResourceTest {
     when(usersDao.update(eq(null), userCaptor.capture()))
         .thenReturn(CompletableFuture.completedFuture(expectedResponse));
 
-    resource.updateUser(asyncResponse, key, "password", null, updatedUser);
+    resource.updateUser(asyncResponse, key, "password", null, null, updatedUser);
 
     var responseCaptor = ArgumentCaptor.forClass(Response.class);
     verify(asyncResponse, timeout(100).times(1)).resume(responseCaptor.capture());
@@ -542,6 +577,130 @@ class UserResourceTest {
         () -> assertEquals(expectedResponse, result));
   }
 
+  @Test
+  void put_shouldPassReadVersionToUpdate() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(UPDATED_USER, "newVersion")))
+        .when(usersDao).update(eq(null), any(User.class), eq("version"));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.updateUser(asyncResponse, key, "password", null, null, UPDATED_USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findByEmail(EMAIL.getAddress());
+    verify(usersDao).update(eq(null), any(User.class), eq("version"));
+
+    assertAll("Assert the version that was read is used for the update",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(UPDATED_USER, captor.getValue().getEntity()),
+        () -> assertEquals("newVersion", captor.getValue().getEntityTag().getValue()));
+  }
+
+  @Test
+  void put_matchingIfMatchShouldUpdate() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(UPDATED_USER, "newVersion")))
+        .when(usersDao).update(eq(null), any(User.class), eq("version"));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.updateUser(asyncResponse, key, "password", "\"version\"", null, UPDATED_USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao).update(eq(null), any(User.class), eq("version"));
+
+    assertEquals(Response.Status.OK, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void put_staleIfMatchShouldReturnPreconditionFailed() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "newerVersion")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.updateUser(asyncResponse, key, "password", "\"version\"", null, UPDATED_USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).update(any(), any(User.class), any());
+
+    assertEquals(Response.Status.PRECONDITION_FAILED, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void put_weakIfMatchShouldReturnPreconditionFailed() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.updateUser(asyncResponse, key, "password", "W/\"version\"", null, UPDATED_USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).update(any(), any(User.class), any());
+
+    assertEquals(Response.Status.PRECONDITION_FAILED, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void put_ifMatchListContainingVersionShouldUpdate() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(UPDATED_USER, "newVersion")))
+        .when(usersDao).update(eq(null), any(User.class), eq("version"));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.updateUser(asyncResponse, key, "password",
+        "\"older\", \"version\"", null, UPDATED_USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao).update(eq(null), any(User.class), eq("version"));
+
+    assertEquals(Response.Status.OK, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void put_ifMatchShouldBeIgnoredWithoutStoredVersion() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, null)))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(UPDATED_USER, null)))
+        .when(usersDao).update(eq(null), any(User.class), eq(null));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.updateUser(asyncResponse, key, "password", "\"version\"", null, UPDATED_USER);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao).update(eq(null), any(User.class), eq(null));
+
+    assertAll("Assert the update is applied without an ETag",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertNull(captor.getValue().getEntityTag()));
+  }
+
+  @Test
+  void testParseVersions() {
+    assertAll("Assert If-Match values are parsed",
+        () -> assertEquals(Optional.empty(), UserResource.parseVersions(null)),
+        () -> assertEquals(Optional.empty(), UserResource.parseVersions(" ")),
+        () -> assertEquals(Optional.empty(), UserResource.parseVersions("*")),
+        () -> assertEquals(Optional.of(Set.of("v1")), UserResource.parseVersions("v1")),
+        () -> assertEquals(Optional.of(Set.of("v1")), UserResource.parseVersions("\"v1\"")),
+        () -> assertEquals(Optional.of(Set.of()), UserResource.parseVersions("W/\"v1\"")),
+        () -> assertEquals(Optional.of(Set.of("v1", "v,2")),
+            UserResource.parseVersions("\"v1\", W/\"v3\",\"v,2\"")));
+  }
+
   @Test
   void testUpdateUserServerSideHashNoPasswordChange() {
     var hashService = HashAlgorithm.SHA256.newHashService(true, false);
@@ -574,7 +733,7 @@ class UserResourceTest {
     when(usersDao.update(eq(null), userCaptor.capture()))
         .thenReturn(CompletableFuture.completedFuture(expectedResponse));
 
-    resource.updateUser(asyncResponse, key, "password", null, updatedUser);
+    resource.updateUser(asyncResponse, key, "password", null, null, updatedUser);
 
     var responseCaptor = ArgumentCaptor.forClass(Response.class);
     verify(asyncResponse, timeout(100).times(1)).resume(responseCaptor.capture());
@@ -593,7 +752,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, "password", null);
+    resource.getUser(asyncResponse, key, "password", null, null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
@@ -604,7 +763,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, null, EMAIL.getAddress());
+    resource.getUser(asyncResponse, key, null, EMAIL.getAddress(), null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
@@ -619,7 +778,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress());
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.NOT_FOUND, captor.getValue().getStatusInfo());
@@ -634,7 +793,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress());
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.SERVICE_UNAVAILABLE, captor.getValue().getStatusInfo());
@@ -648,7 +807,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, "incorrectPassword", EMAIL.getAddress());
+    resource.getUser(asyncResponse, key, "incorrectPassword", EMAIL.getAddress(), null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
     assertEquals(Response.Status.UNAUTHORIZED, captor.getValue().getStatusInfo());
@@ -665,7 +824,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, null, EMAIL.getAddress());
+    resource.getUser(asyncResponse, key, null, EMAIL.getAddress(), null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
 
@@ -679,7 +838,7 @@ class UserResourceTest {
   @Test
   void get_timeoutReturns() {
     ResourceTestHelpers.runTimeoutTest(
-        resp -> resource.getUser(resp, key, "password", EMAIL.getAddress()),
+        resp -> resource.getUser(resp, key, "password", EMAIL.getAddress(), null, null),
         MetricNameUtil.GET_TIMEOUTS,
         usersDao);
   }
@@ -692,7 +851,7 @@ class UserResourceTest {
     var asyncResponse = mock(AsyncResponse.class);
     var captor = ArgumentCaptor.forClass(Response.class);
 
-    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress());
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), null, null);
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
 
@@ -703,6 +862,172 @@ class UserResourceTest {
         () -> assertEquals(USER, result));
   }
 
+  @Test
+  void get_shouldReturnVersionAsEtag() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    assertAll("Assert the user version is returned in the ETag header",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(USER, captor.getValue().getEntity()),
+        () -> assertEquals("version", captor.getValue().getEntityTag().getValue()));
+  }
+
+  @Test
+  void get_outdatedPasswordHashIsUpgraded() {
+    var hashService = spy(HashAlgorithm.SIMPLE.newHashService(false, false));
+    when(hashService.needsRehash("password")).thenReturn(true);
+    when(hashService.hash("password")).thenReturn("upgraded");
+
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, hashService, true);
+    var resource = new UserResource(usersDao, OPTIONS, validator, hashService, METRICS);
+    var upgradedUser = new User(EMAIL, "upgraded", Collections.emptyMap());
+
+    when(usersDao.findByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+    when(usersDao.update(null, upgradedUser))
+        .thenReturn(CompletableFuture.completedFuture(upgradedUser));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao).update(null, upgradedUser);
+
+    assertAll("Assert successful get user with upgraded hash",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(upgradedUser, captor.getValue().getEntity()));
+  }
+
+  @Test
+  void get_failedPasswordHashUpgradeReturnsExistingUser() {
+    var hashService = spy(HashAlgorithm.SIMPLE.newHashService(false, false));
+    when(hashService.needsRehash("password")).thenReturn(true);
+
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, hashService, true);
+    var resource = new UserResource(usersDao, OPTIONS, validator, hashService, METRICS);
+
+    when(usersDao.findByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+    when(usersDao.update(eq(null), any(User.class))).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Conflict", DatabaseException.Error.CONFLICT)));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    assertAll("Assert successful get user without upgraded hash",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(USER, captor.getValue().getEntity()));
+  }
+
+  @Test
+  void get_byPropertyIsSuccessful() {
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+    doReturn(CompletableFuture.completedFuture(List.of(EMAIL.getAddress())))
+        .when(usersDao).findEmailsByProperty("username", "tester", 2);
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", null, "username", "tester");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    assertAll("Assert successful get user by property",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(USER, captor.getValue().getEntity()),
+        () -> assertEquals("version", captor.getValue().getEntityTag().getValue()));
+  }
+
+  @Test
+  void get_byPropertyWithIncorrectPasswordReturnsUnauthorized() {
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+    doReturn(CompletableFuture.completedFuture(List.of(EMAIL.getAddress())))
+        .when(usersDao).findEmailsByProperty("username", "tester", 2);
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(USER, "version")))
+        .when(usersDao).findVersionedByEmail(EMAIL.getAddress());
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "incorrectPassword", null, "username", "tester");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.UNAUTHORIZED, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void get_byPropertyWithNoMatchReturnsNotFound() {
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+    doReturn(CompletableFuture.completedFuture(List.of()))
+        .when(usersDao).findEmailsByProperty("username", "tester", 2);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", null, "username", "tester");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findVersionedByEmail(anyString());
+    assertEquals(Response.Status.NOT_FOUND, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void get_byPropertyWithMultipleMatchesReturnsConflict() {
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+    doReturn(CompletableFuture.completedFuture(List.of(EMAIL.getAddress(), "other@test.com")))
+        .when(usersDao).findEmailsByProperty("username", "tester", 2);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", null, "username", "tester");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findVersionedByEmail(anyString());
+    assertEquals(Response.Status.CONFLICT, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void get_byPropertyThatIsNotIndexedFailsValidation() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", null, "username", "tester");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findEmailsByProperty(anyString(), anyString(), anyInt());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void get_byPropertyAndEmailFailsValidation() {
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUser(asyncResponse, key, "password", EMAIL.getAddress(), "username", "tester");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
   @Test
   void delete_nullEmailFailsValidation() {
     var asyncResponse = mock(AsyncResponse.class);
@@ -853,4 +1178,318 @@ class UserResourceTest {
         () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
         () -> assertEquals(USER, result));
   }
+
+  @Test
+  void delete_shouldOnlyReadStoredPassword() {
+    doReturn(CompletableFuture.completedFuture(USER.getPassword()))
+        .when(usersDao).findPasswordByEmail(EMAIL.getAddress());
+    when(usersDao.delete(EMAIL.getAddress())).thenReturn(CompletableFuture.completedFuture(USER));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.deleteUser(asyncResponse, key, "password", EMAIL.getAddress());
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.OK, captor.getValue().getStatusInfo());
+    verify(usersDao, never()).findByEmail(EMAIL.getAddress());
+  }
+
+  @Test
+  void batchCreate_emptyBatchFailsValidation() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.postUsers(asyncResponse, key, Collections.emptyList());
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void batchCreate_oversizedBatchFailsValidation() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.postUsers(asyncResponse, key,
+        Collections.nCopies(OPTIONS.maxBatchSize() + 1, USER));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).insert(any(User.class));
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void batchCreate_returnsResultForEachUser() {
+    var existing = new User(Email.unverified("existing@test.com"), "password", Map.of());
+    var invalid = new User(BAD_EMAIL, "password", Collections.emptyMap());
+
+    when(usersDao.insert(any(User.class))).thenAnswer(invocation -> {
+      User user = invocation.getArgument(0);
+
+      return user.getEmail().getAddress().equals(existing.getEmail().getAddress())
+          ? CompletableFuture.failedFuture(
+              new DatabaseException("Conflict", DatabaseException.Error.CONFLICT))
+          : CompletableFuture.completedFuture(user);
+    });
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.postUsers(asyncResponse, key, List.of(USER, invalid, existing));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    var results = (List<BatchItemResult>) captor.getValue().getEntity();
+
+    assertAll("Each user has its own result, in order",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(3, results.size()),
+        () -> assertEquals(201, results.get(0).getStatus()),
+        () -> assertEquals(EMAIL.getAddress(), results.get(0).getUser().getEmail().getAddress()),
+        () -> assertEquals(400, results.get(1).getStatus()),
+        () -> assertEquals("badEmail", results.get(1).getEmail()),
+        () -> assertEquals(409, results.get(2).getStatus()),
+        () -> assertTrue(results.get(2).getMessage().contains("existing@test.com")));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void batchCreate_shouldHashPasswordsAndIsolateHashFailures() {
+    var hashService = mock(HashService.class);
+    when(hashService.hashAsync("password"))
+        .thenReturn(CompletableFuture.completedFuture("hashedpassword"));
+    when(hashService.hashAsync("busy")).thenReturn(CompletableFuture.failedFuture(
+        new HashServiceBusyException("Busy", new RejectedExecutionException())));
+
+    var resource = new UserResource(usersDao, OPTIONS, validator, hashService, METRICS);
+    var insertCaptor = ArgumentCaptor.forClass(User.class);
+
+    when(usersDao.insert(insertCaptor.capture()))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(0)));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+    var busy = new User(Email.unverified("busy@test.com"), "busy", Collections.emptyMap());
+
+    resource.postUsers(asyncResponse, key, List.of(busy, USER));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    var results = (List<BatchItemResult>) captor.getValue().getEntity();
+
+    assertAll("Only the user with a hashed password is inserted",
+        () -> assertEquals(1, insertCaptor.getAllValues().size()),
+        () -> assertEquals("hashedpassword", insertCaptor.getValue().getPassword()),
+        () -> assertEquals(503, results.get(0).getStatus()),
+        () -> assertEquals(201, results.get(1).getStatus()));
+  }
+
+  @Test
+  void batchGet_withPasswordHeaderCheckFailsValidation() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUsers(asyncResponse, key, List.of(EMAIL.getAddress()));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findByEmail(anyString());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void batchGet_returnsResultForEachEmail() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    when(usersDao.findByEmail(EMAIL.getAddress()))
+        .thenReturn(CompletableFuture.completedFuture(USER));
+    when(usersDao.findByEmail("missing@test.com")).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Not Found", DatabaseException.Error.USER_NOT_FOUND)));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.getUsers(asyncResponse, key, List.of("missing@test.com", "", EMAIL.getAddress()));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    var results = (List<BatchItemResult>) captor.getValue().getEntity();
+
+    assertAll("Each email has its own result, in order",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(404, results.get(0).getStatus()),
+        () -> assertEquals(400, results.get(1).getStatus()),
+        () -> assertEquals(BatchItemResult.success(200, USER), results.get(2)));
+  }
+
+  @Test
+  void batchGet_timeoutReturns() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    ResourceTestHelpers.runTimeoutTest(
+        resp -> resource.getUsers(resp, key, List.of(EMAIL.getAddress())),
+        MetricNameUtil.BATCH_GET_TIMEOUTS,
+        usersDao);
+  }
+
+  @Test
+  void batchDelete_withPasswordHeaderCheckFailsValidation() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.deleteUsers(asyncResponse, key, List.of(EMAIL.getAddress()));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).delete(anyString());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void batchDelete_returnsResultForEachEmail() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    when(usersDao.delete(EMAIL.getAddress())).thenReturn(CompletableFuture.completedFuture(USER));
+    when(usersDao.delete("missing@test.com")).thenReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Not Found", DatabaseException.Error.USER_NOT_FOUND)));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.deleteUsers(asyncResponse, key, List.of(EMAIL.getAddress(), "missing@test.com"));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    var results = (List<BatchItemResult>) captor.getValue().getEntity();
+
+    assertAll("Each email has its own result, in order",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(BatchItemResult.success(200, USER), results.get(0)),
+        () -> assertEquals(404, results.get(1).getStatus()));
+  }
+
+  @Test
+  void batchDelete_databaseFailureReturnsServiceUnavailable() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    doReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Down", DatabaseException.Error.DATABASE_DOWN)))
+        .when(usersDao).deleteAll(List.of(EMAIL.getAddress()));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.deleteUsers(asyncResponse, key, List.of(EMAIL.getAddress()));
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.SERVICE_UNAVAILABLE, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void list_withPasswordHeaderCheckFailsValidation() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.listUsers(asyncResponse, key, 10, null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).scan(eq(0), eq(1), any(), eq(10));
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void list_invalidLimitFailsValidation() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.listUsers(asyncResponse, key, OPTIONS.maxBatchSize() + 1, null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void list_invalidTokenFailsValidation() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.listUsers(asyncResponse, key, 10, "not a token!", null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void list_returnsPageWithOpaqueToken() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+    var verifiedUser = new User(
+        new Email("verified@test.com", true, null), "password", Collections.emptyMap());
+
+    doReturn(CompletableFuture.completedFuture(new UsersPage(List.of(USER, verifiedUser), "next")))
+        .when(usersDao).scan(0, 1, "previous", 10);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.listUsers(asyncResponse, key, 10, UserResource.encodeToken("previous"), false);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    var result = (UserList) captor.getValue().getEntity();
+
+    assertAll("The page is filtered and the token continues the scan",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(List.of(USER), result.getUsers()),
+        () -> assertNotEquals("next", result.getNextToken()),
+        () -> assertEquals("next", UserResource.decodeToken(result.getNextToken())));
+  }
+
+  @Test
+  void list_lastPageHasNoToken() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    doReturn(CompletableFuture.completedFuture(new UsersPage(List.of(USER), null)))
+        .when(usersDao).scan(0, 1, null, 100);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.listUsers(asyncResponse, key, 100, null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    assertEquals(new UserList(List.of(USER), null), captor.getValue().getEntity());
+  }
+
+  @Test
+  void list_databaseFailureReturnsServiceUnavailable() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+    var resource = new UserResource(usersDao, OPTIONS, validator, HASH_SERVICE, METRICS);
+
+    doReturn(CompletableFuture.failedFuture(
+        new DatabaseException("Down", DatabaseException.Error.DATABASE_DOWN)))
+        .when(usersDao).scan(0, 1, null, 10);
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.listUsers(asyncResponse, key, 10, null, null);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    assertEquals(Response.Status.SERVICE_UNAVAILABLE, captor.getValue().getStatusInfo());
+  }
 }
@@ -9,7 +9,10 @@ import com.sanctionco.thunder.crypto.HashAlgorithm;
 import com.sanctionco.thunder.crypto.HashService;
 import com.sanctionco.thunder.dao.DatabaseException;
 import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.VersionedUser;
 import com.sanctionco.thunder.email.EmailService;
+import com.sanctionco.thunder.email.MessageTemplate;
+import com.sanctionco.thunder.email.VerificationTokenService;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.ResponseType;
 import com.sanctionco.thunder.models.User;
@@ -23,7 +26,11 @@ import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -31,11 +38,17 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -50,7 +63,8 @@ class VerificationResourceTest {
 
   private final HashService hashService = HashAlgorithm.SIMPLE.newHashService(false, false);
   private final EmailService emailService = mock(EmailService.class);
-  private final UsersDao usersDao = mock(UsersDao.class);
+  // Calls the real default methods, so that versioned reads and writes use the stubbed methods
+  private final UsersDao usersDao = mock(UsersDao.class, CALLS_REAL_METHODS);
   private final PropertyValidator propertyValidator = mock(PropertyValidator.class);
   private final RequestValidator requestValidator
       = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, hashService, true);
@@ -78,6 +92,12 @@ class VerificationResourceTest {
   private final VerificationResource resource = new VerificationResource(
       usersDao, OPTIONS, requestValidator, emailService, METRICS);
 
+  private final VerificationTokenService signedTokens = new VerificationTokenService(
+      "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8),
+      Duration.ofHours(1), Clock.systemUTC());
+  private final VerificationResource signedResource = new VerificationResource(
+      usersDao, OPTIONS, requestValidator, emailService, signedTokens, METRICS);
+
   @BeforeAll
   static void setup() throws Exception {
     when(uriBuilder.path(anyString())).thenReturn(uriBuilder);
@@ -186,7 +206,7 @@ class VerificationResourceTest {
         .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
     when(usersDao.update(anyString(), any(User.class)))
         .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
-    when(emailService.sendVerificationEmail(any(Email.class), anyString()))
+    when(emailService.sendVerificationEmail(any(Email.class), anyString(), anyMap()))
         .thenReturn(CompletableFuture.completedFuture(false));
 
     var asyncResponse = mock(AsyncResponse.class);
@@ -204,7 +224,7 @@ class VerificationResourceTest {
         .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
     when(usersDao.update(anyString(), any(User.class)))
         .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
-    when(emailService.sendVerificationEmail(any(Email.class), anyString()))
+    when(emailService.sendVerificationEmail(any(Email.class), anyString(), anyMap()))
         .thenReturn(CompletableFuture.completedFuture(true));
 
     var requestValidator
@@ -239,7 +259,7 @@ class VerificationResourceTest {
         .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
     when(usersDao.update(anyString(), any(User.class)))
         .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
-    when(emailService.sendVerificationEmail(any(Email.class), anyString()))
+    when(emailService.sendVerificationEmail(any(Email.class), anyString(), anyMap()))
         .thenReturn(CompletableFuture.completedFuture(true));
 
     var asyncResponse = mock(AsyncResponse.class);
@@ -248,6 +268,7 @@ class VerificationResourceTest {
     resource.sendEmail(uriInfo, asyncResponse, key, "test@test.com", "password");
 
     verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(emailService).sendVerificationEmail(any(Email.class), anyString(), eq(Map.of()));
 
     User result = (User) captor.getValue().getEntity();
 
@@ -411,6 +432,48 @@ class VerificationResourceTest {
         () -> assertEquals(verifiedMockUser, result));
   }
 
+  @Test
+  void verify_shouldPassReadVersionToUpdate() {
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(unverifiedMockUser, "version")))
+        .when(usersDao).findVersionedByEmail("test@test.com");
+    doReturn(CompletableFuture.completedFuture(new VersionedUser(verifiedMockUser, "newVersion")))
+        .when(usersDao).update("test@test.com", verifiedMockUser, "version");
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.verifyEmail(
+        asyncResponse, "test@test.com", "verificationToken", ResponseType.JSON);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findByEmail("test@test.com");
+
+    assertAll("Assert the version that was read is used for the update",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(verifiedMockUser, captor.getValue().getEntity()));
+  }
+
+  @Test
+  void verify_shouldUseSingleConditionalWrite() {
+    doReturn(CompletableFuture.completedFuture(verifiedMockUser))
+        .when(usersDao).markVerified("test@test.com", "verificationToken");
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    resource.verifyEmail(
+        asyncResponse, "test@test.com", "verificationToken", ResponseType.JSON);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    // The stored token is compared by the database, so the user is not read first
+    verify(usersDao, never()).findVersionedByEmail("test@test.com");
+
+    assertAll("Assert the user is verified with a single write",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(verifiedMockUser, captor.getValue().getEntity()));
+  }
+
   @Test
   void verify_withHtmlResponseTypeIsSuccessful() {
     when(usersDao.findByEmail("test@test.com"))
@@ -433,6 +496,98 @@ class VerificationResourceTest {
         () -> assertEquals(UriBuilder.fromUri("/verify/success").build(), result));
   }
 
+  /* Signed Token Tests */
+  @Test
+  void email_signedTokenIsNotStored() {
+    when(usersDao.findByEmail(anyString()))
+        .thenReturn(CompletableFuture.completedFuture(unverifiedMockUser));
+    when(emailService.sendVerificationEmail(any(Email.class), anyString(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    signedResource.sendEmail(uriInfo, asyncResponse, key, "test@test.com", "password");
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).update(anyString(), any(User.class));
+    verify(emailService).sendVerificationEmail(any(Email.class), anyString(),
+        eq(Map.of(MessageTemplate.Placeholder.EXPIRY, "1 hour")));
+
+    User result = (User) captor.getValue().getEntity();
+
+    assertAll("Assert the signed token is returned without being stored",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertTrue(signedTokens.isSignedToken(result.getEmail().getVerificationToken())),
+        () -> assertDoesNotThrow(() -> signedTokens.verify(
+            "test@test.com", result.getEmail().getVerificationToken())));
+  }
+
+  @Test
+  void testDescribeExpiration() {
+    assertAll("The largest whole unit is used",
+        () -> assertEquals("1 day", VerificationResource.describe(Duration.ofDays(1))),
+        () -> assertEquals("2 days", VerificationResource.describe(Duration.ofHours(48))),
+        () -> assertEquals("1 hour", VerificationResource.describe(Duration.ofMinutes(60))),
+        () -> assertEquals("90 minutes", VerificationResource.describe(Duration.ofMinutes(90))),
+        () -> assertEquals("1 minute", VerificationResource.describe(Duration.ofSeconds(90))));
+  }
+
+  @Test
+  void verify_forgedSignedTokenIsRejectedWithoutReadingDatabase() {
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    signedResource.verifyEmail(asyncResponse, "test@test.com", "abc.def", ResponseType.JSON);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).findVersionedByEmail(anyString());
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
+  @Test
+  void verify_signedTokenIsSuccessful() {
+    var token = signedTokens.generate(nullDatabaseTokenMockUser);
+    var verified = new User(nullDatabaseTokenMockUser.getEmail().verifiedCopy(),
+        "password", Collections.emptyMap());
+
+    when(usersDao.findByEmail("test@test.com"))
+        .thenReturn(CompletableFuture.completedFuture(nullDatabaseTokenMockUser));
+    when(usersDao.update("test@test.com", verified))
+        .thenReturn(CompletableFuture.completedFuture(verified));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    signedResource.verifyEmail(asyncResponse, "test@test.com", token, ResponseType.JSON);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+
+    assertAll("Assert the signed token verified the user without a stored token",
+        () -> assertEquals(Response.Status.OK, captor.getValue().getStatusInfo()),
+        () -> assertEquals(verified, captor.getValue().getEntity()));
+  }
+
+  @Test
+  void verify_signedTokenAfterPasswordChangeReturnsBadRequest() {
+    var token = signedTokens.generate(new User(
+        Email.unverified("test@test.com"), "oldPassword", Collections.emptyMap()));
+
+    when(usersDao.findByEmail("test@test.com"))
+        .thenReturn(CompletableFuture.completedFuture(nullDatabaseTokenMockUser));
+
+    var asyncResponse = mock(AsyncResponse.class);
+    var captor = ArgumentCaptor.forClass(Response.class);
+
+    signedResource.verifyEmail(asyncResponse, "test@test.com", token, ResponseType.JSON);
+
+    verify(asyncResponse, timeout(100).times(1)).resume(captor.capture());
+    verify(usersDao, never()).update(anyString(), any(User.class));
+    verify(emailService).sendVerificationEmail(any(Email.class), anyString(),
+        eq(Map.of(MessageTemplate.Placeholder.EXPIRY, "1 hour")));
+    assertEquals(Response.Status.BAD_REQUEST, captor.getValue().getStatusInfo());
+  }
+
   /* Reset Tests */
   @Test
   void reset_nullEmailFailsValidation() {
@@ -8,7 +8,10 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PropertyValidationRuleTest {
 
@@ -28,7 +31,30 @@ class PropertyValidationRuleTest {
 
     assertAll("PropertyValidationRule properties are correct",
         () -> assertEquals("testDefaultProperty", defaultRule.getName()),
-        () -> assertEquals(Object.class, defaultRule.getType()));
+        () -> assertEquals(Object.class, defaultRule.getType()),
+        () -> assertFalse(defaultRule.isIndexed()));
+
+    PropertyValidationRule indexedRule = TestResources.readResourceYaml(
+        PropertyValidationRule.class,
+        "fixtures/models/property-validation-rule-indexed.yaml");
+
+    assertAll("PropertyValidationRule properties are correct",
+        () -> assertEquals("username", indexedRule.getName()),
+        () -> assertEquals(String.class, indexedRule.getType()),
+        () -> assertTrue(indexedRule.isIndexed()));
+  }
+
+  @Test
+  void testIndexedRuleValidation() {
+    assertAll("Only simple names and scalar types can be indexed",
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new PropertyValidationRule("user.name", "string", true)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new PropertyValidationRule("names", "list", true)),
+        () -> assertThrows(IllegalArgumentException.class,
+            () -> new PropertyValidationRule("names", "map", true)),
+        () -> assertTrue(new PropertyValidationRule("user_name-2", "integer", true).isIndexed()),
+        () -> assertFalse(new PropertyValidationRule("names", "list", false).isIndexed()));
   }
 
   @Test
@@ -68,6 +94,7 @@ class PropertyValidationRuleTest {
     // Create different PropertyValidationRule objects to test against
     PropertyValidationRule differentName = new PropertyValidationRule("badName", "string");
     PropertyValidationRule differentType = new PropertyValidationRule("name", "unknown");
+    PropertyValidationRule differentIndexed = new PropertyValidationRule("name", "string", true);
 
     // Also test against an equal object
     PropertyValidationRule sameRule = new PropertyValidationRule("name", "string");
@@ -75,13 +102,15 @@ class PropertyValidationRuleTest {
     assertAll("Verify against other created objects",
         () -> assertNotEquals(differentName, rule),
         () -> assertNotEquals(differentType, rule),
+        () -> assertNotEquals(differentIndexed, rule),
         () -> assertEquals(sameRule, rule));
   }
 
   @Test
   void testToString() {
     PropertyValidationRule rule = new PropertyValidationRule("testName", "string");
-    String expected = "PropertyValidationRule [name=testName, type=class java.lang.String]";
+    String expected
+        = "PropertyValidationRule [name=testName, type=class java.lang.String, indexed=false]";
 
     assertEquals(expected, rule.toString());
   }
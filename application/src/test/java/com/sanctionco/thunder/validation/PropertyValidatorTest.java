@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -75,6 +76,18 @@ class PropertyValidatorTest {
     assertTrue(validator.isValidPropertiesMap(properties));
   }
 
+  @Test
+  void isIndexedShouldUseConfiguredIndexedProperties() {
+    PropertyValidationConfiguration config = mock(PropertyValidationConfiguration.class);
+    when(config.getIndexedProperties()).thenReturn(Set.of("username"));
+
+    PropertyValidator validator = new PropertyValidator(config);
+
+    assertAll("Only configured properties are indexed",
+        () -> assertTrue(validator.isIndexed("username")),
+        () -> assertFalse(validator.isIndexed("firstProperty")));
+  }
+
   @Test
   void bothTrueEmptyConfigurationShouldAllowAny() {
     PropertyValidationConfiguration config = mock(PropertyValidationConfiguration.class);
@@ -54,6 +54,10 @@ class RequestValidationExceptionTest {
     exception = RequestValidationException.tokenNotSet("My message");
     assertEquals("My message", exception.getMessage());
     assertEquals(RequestValidationException.Error.TOKEN_NOT_SET, exception.getError());
+
+    exception = RequestValidationException.preconditionFailed("My message");
+    assertEquals("My message", exception.getMessage());
+    assertEquals(RequestValidationException.Error.PRECONDITION_FAILED, exception.getError());
   }
 
   @Test
@@ -71,6 +75,10 @@ class RequestValidationExceptionTest {
     assertEquals(400, response.getStatus());
     assertEquals("My message 2 (User: test4.com)", response.getEntity());
 
+    response = RequestValidationException.preconditionFailed("Changed").response("test5.com");
+    assertEquals(412, response.getStatus());
+    assertEquals("Changed (User: test5.com)", response.getEntity());
+
     response = RequestValidationException.tokenNotSet("Unknown").response("test3.com");
     assertEquals(500, response.getStatus());
     assertEquals("Unknown (User: test3.com)", response.getEntity());
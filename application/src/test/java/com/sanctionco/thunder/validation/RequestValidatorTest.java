@@ -7,11 +7,16 @@ import com.sanctionco.thunder.crypto.HashService;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.User;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyMap;
@@ -249,6 +254,105 @@ class RequestValidatorTest {
     assertDoesNotThrow(() -> validator.validate("", "test@test.com", user));
   }
 
+  @Test
+  void testValidateBatchEmpty() {
+    RequestValidationException nullException = assertThrows(RequestValidationException.class,
+        () -> validator.validateBatch(null, 10, false));
+    RequestValidationException emptyException = assertThrows(RequestValidationException.class,
+        () -> validator.validateBatch(Collections.emptyList(), 10, false));
+
+    assertEquals("Cannot operate on an empty batch.", nullException.getMessage());
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, nullException.getError());
+    assertEquals("Cannot operate on an empty batch.", emptyException.getMessage());
+  }
+
+  @Test
+  void testValidateBatchTooLarge() {
+    RequestValidationException e = assertThrows(RequestValidationException.class,
+        () -> validator.validateBatch(List.of("a", "b", "c"), 2, false));
+
+    assertEquals("A batch cannot contain more than 2 users.", e.getMessage());
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, e.getError());
+  }
+
+  @Test
+  void testValidateBatchExistingUsersWithPasswordHeaderCheck() {
+    RequestValidationException e = assertThrows(RequestValidationException.class,
+        () -> validator.validateBatch(List.of("a"), 2, true));
+
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, e.getError());
+
+    var validator = new RequestValidator(EMAIL_VALIDATOR, PROPERTY_VALIDATOR, HASH_SERVICE, false);
+
+    assertDoesNotThrow(() -> validator.validateBatch(List.of("a"), 2, true));
+    assertDoesNotThrow(() -> this.validator.validateBatch(List.of("a", "b"), 2, false));
+  }
+
+  @Test
+  void testValidateListLimitOutOfRange() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, PROPERTY_VALIDATOR, HASH_SERVICE, false);
+
+    RequestValidationException zero = assertThrows(RequestValidationException.class,
+        () -> validator.validateList(0, 10));
+    RequestValidationException large = assertThrows(RequestValidationException.class,
+        () -> validator.validateList(11, 10));
+
+    assertEquals("The limit query parameter must be between 1 and 10.", zero.getMessage());
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, zero.getError());
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, large.getError());
+    assertDoesNotThrow(() -> validator.validateList(10, 10));
+  }
+
+  @Test
+  void testValidateListWithPasswordHeaderCheck() {
+    RequestValidationException e = assertThrows(RequestValidationException.class,
+        () -> validator.validateList(10, 10));
+
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, e.getError());
+  }
+
+  @Test
+  void testValidatePropertyLookupNotIndexed() {
+    var propertyValidator = mock(PropertyValidator.class);
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, true);
+
+    RequestValidationException e = assertThrows(RequestValidationException.class,
+        () -> validator.validatePropertyLookup("password", "username", "tester"));
+
+    assertEquals("Users cannot be looked up by the property username.", e.getMessage());
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, e.getError());
+  }
+
+  @Test
+  void testValidatePropertyLookupMissingValue() {
+    var propertyValidator = mock(PropertyValidator.class);
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, true);
+
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+
+    RequestValidationException e = assertThrows(RequestValidationException.class,
+        () -> validator.validatePropertyLookup("password", "username", ""));
+
+    assertEquals("Incorrect or missing value query parameter.", e.getMessage());
+    assertEquals(RequestValidationException.Error.INVALID_PARAMETERS, e.getError());
+  }
+
+  @Test
+  void testValidatePropertyLookupPassword() {
+    var propertyValidator = mock(PropertyValidator.class);
+    var validator = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, true);
+    var disabled = new RequestValidator(EMAIL_VALIDATOR, propertyValidator, HASH_SERVICE, false);
+
+    when(propertyValidator.isIndexed("username")).thenReturn(true);
+
+    RequestValidationException e = assertThrows(RequestValidationException.class,
+        () -> validator.validatePropertyLookup(null, "username", "tester"));
+
+    assertEquals("Credentials are required to access this resource.", e.getMessage());
+    assertDoesNotThrow(() -> validator.validatePropertyLookup("password", "username", "tester"));
+    assertDoesNotThrow(() -> disabled.validatePropertyLookup(null, "username", "tester"));
+  }
+
   @Test
   void testIsPasswordHeaderCheckEnabled() {
     var validator = new RequestValidator(EMAIL_VALIDATOR, PROPERTY_VALIDATOR, HASH_SERVICE, true);
@@ -278,4 +382,24 @@ class RequestValidatorTest {
 
     assertEquals(e.getError(), RequestValidationException.Error.INCORRECT_PASSWORD);
   }
+
+  @Test
+  void verifyPasswordAsyncCompletesWhenCheckIsDisabled() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, PROPERTY_VALIDATOR, HASH_SERVICE, false);
+
+    assertDoesNotThrow(() -> validator.verifyPasswordHeaderAsync("supply", "different").join());
+    assertDoesNotThrow(() -> validator.verifyPasswordHeaderAsync("supply", "supply").join());
+  }
+
+  @Test
+  void verifyPasswordAsyncCompletesWhenCheckIsEnabled() {
+    var validator = new RequestValidator(EMAIL_VALIDATOR, PROPERTY_VALIDATOR, HASH_SERVICE, true);
+
+    assertDoesNotThrow(() -> validator.verifyPasswordHeaderAsync("supply", "supply").join());
+    CompletionException e = assertThrows(CompletionException.class,
+        () -> validator.verifyPasswordHeaderAsync("supply", "different").join());
+
+    var cause = assertInstanceOf(RequestValidationException.class, e.getCause());
+    assertEquals(RequestValidationException.Error.INCORRECT_PASSWORD, cause.getError());
+  }
 }
@@ -0,0 +1,98 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.authentication.basic.BasicAuthenticator;
+import com.sanctionco.thunder.authentication.basic.Key;
+import com.sanctionco.thunder.authentication.oauth.OAuthAuthenticator;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link BasicAuthenticator} and {@link OAuthAuthenticator}, one of which
+ * runs on every authenticated request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticatorBenchmark {
+  private static final String HMAC_SECRET = "benchmark-hmac-secret";
+  private static final String ISSUER = "thunder-benchmarks";
+  private static final String AUDIENCE = "thunder";
+
+  @Param({"1", "16"})
+  private int keyCount;
+
+  private BasicAuthenticator basicAuthenticator;
+  private BasicCredentials basicCredentials;
+
+  private OAuthAuthenticator oauthAuthenticator;
+  private String validToken;
+  private String invalidToken;
+
+  @Setup
+  public void setup() {
+    MetricRegistry metrics = new MetricRegistry();
+
+    List<Key> keys = IntStream.range(0, keyCount)
+        .mapToObj(i -> new Key("application" + i, "secret" + i))
+        .collect(Collectors.toList());
+
+    basicAuthenticator = new BasicAuthenticator(keys, metrics);
+
+    // Authenticate as the last key so the whole list is searched
+    basicCredentials = new BasicCredentials(
+        "application" + (keyCount - 1), "secret" + (keyCount - 1));
+
+    oauthAuthenticator = new OAuthAuthenticator(HMAC_SECRET, ISSUER, AUDIENCE, null, metrics);
+
+    validToken = JWT.create()
+        .withIssuer(ISSUER)
+        .withAudience(AUDIENCE)
+        .withSubject("benchmark")
+        .sign(Algorithm.HMAC256(HMAC_SECRET));
+    invalidToken = JWT.create()
+        .withIssuer(ISSUER)
+        .withAudience(AUDIENCE)
+        .withSubject("benchmark")
+        .sign(Algorithm.HMAC256("incorrect-secret"));
+  }
+
+  @Benchmark
+  public Optional<Principal> basicAuthenticate() {
+    return basicAuthenticator.authenticate(basicCredentials);
+  }
+
+  @Benchmark
+  public Optional<Principal> oauthAuthenticate() {
+    return oauthAuthenticator.authenticate(validToken);
+  }
+
+  @Benchmark
+  public Optional<Principal> oauthAuthenticateInvalid() {
+    return oauthAuthenticator.authenticate(invalidToken);
+  }
+}
@@ -0,0 +1,79 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.jmail.JMail;
+import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.PropertyValidationConfiguration;
+import com.sanctionco.thunder.validation.PropertyValidator;
+import com.sanctionco.thunder.validation.RequestValidator;
+
+import io.dropwizard.jackson.Jackson;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides shared objects used across the Thunder benchmarks.
+ */
+final class BenchmarkResources {
+  static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+
+  static final Map<String, Object> PROPERTIES = Map.of(
+      "uniqueId", "ABC123",
+      "attributes", List.of("admin", "beta"),
+      "age", 30,
+      "subscribed", true);
+
+  private BenchmarkResources() {
+  }
+
+  /**
+   * Builds a {@link PropertyValidationConfiguration} with rules that match {@link #PROPERTIES}.
+   * The configuration is built the same way Dropwizard builds it from the YAML configuration.
+   *
+   * @param allowSubset whether a subset of the rules is allowed
+   * @param allowSuperset whether a superset of the rules is allowed
+   * @return the new configuration
+   */
+  static PropertyValidationConfiguration propertyValidationConfiguration(boolean allowSubset,
+                                                                         boolean allowSuperset) {
+    return MAPPER.convertValue(Map.of(
+        "allowSubset", allowSubset,
+        "allowSuperset", allowSuperset,
+        "allowed", List.of(
+            Map.of("name", "uniqueId", "type", "string"),
+            Map.of("name", "attributes", "type", "list"),
+            Map.of("name", "age", "type", "integer"),
+            Map.of("name", "subscribed", "type", "boolean"))),
+        PropertyValidationConfiguration.class);
+  }
+
+  /**
+   * Builds a {@link RequestValidator} that uses the strict email validator, strict property
+   * validation, and the password header check.
+   *
+   * @param hashService the hash service used to verify password headers
+   * @return the new validator
+   */
+  static RequestValidator requestValidator(HashService hashService) {
+    return new RequestValidator(
+        JMail.strictValidator(),
+        new PropertyValidator(propertyValidationConfiguration(false, false)),
+        hashService,
+        true);
+  }
+
+  /**
+   * Builds a user that passes validation, with the given email address and password.
+   *
+   * @param address the email address of the user
+   * @param password the password of the user
+   * @return the new user
+   */
+  static User user(String address, String password) {
+    return new User(Email.unverified(address), password, new HashMap<>(PROPERTIES));
+  }
+}
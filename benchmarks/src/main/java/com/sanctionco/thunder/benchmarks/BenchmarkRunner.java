@@ -0,0 +1,36 @@
+package com.sanctionco.thunder.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Thunder JMH benchmarks. Accepts all of the standard JMH command line options, but
+ * defaults to writing results as JSON so that runs can be compared between releases.
+ */
+public class BenchmarkRunner {
+  private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  private BenchmarkRunner() {
+  }
+
+  /**
+   * Runs the benchmarks that match the given JMH command line options.
+   *
+   * @param args the JMH command line options
+   * @throws Exception if the options are invalid or a benchmark fails to run
+   */
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+    Options options = new OptionsBuilder()
+        .parent(commandLineOptions)
+        .resultFormat(commandLineOptions.getResultFormat().orElse(ResultFormatType.JSON))
+        .result(commandLineOptions.getResult().orElse(DEFAULT_RESULT_FILE))
+        .build();
+
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,98 @@
+package com.sanctionco.thunder.benchmarks;
+
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.TimeoutHandler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AsyncResponse} that records the object it was resumed with, allowing resource
+ * methods to be benchmarked without a running Jersey server.
+ */
+class CapturingAsyncResponse implements AsyncResponse {
+  private volatile Object result;
+
+  /**
+   * Provides the object that this response was resumed with.
+   *
+   * @return the resumed object, or {@code null} if the response has not been resumed
+   */
+  Object getResult() {
+    return result;
+  }
+
+  @Override
+  public boolean resume(Object response) {
+    this.result = response;
+    return true;
+  }
+
+  @Override
+  public boolean resume(Throwable response) {
+    this.result = response;
+    return true;
+  }
+
+  @Override
+  public boolean cancel() {
+    return false;
+  }
+
+  @Override
+  public boolean cancel(int retryAfter) {
+    return false;
+  }
+
+  @Override
+  public boolean cancel(Date retryAfter) {
+    return false;
+  }
+
+  @Override
+  public boolean isSuspended() {
+    return result == null;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return false;
+  }
+
+  @Override
+  public boolean isDone() {
+    return result != null;
+  }
+
+  @Override
+  public boolean setTimeout(long time, TimeUnit unit) {
+    return true;
+  }
+
+  @Override
+  public void setTimeoutHandler(TimeoutHandler handler) {
+  }
+
+  @Override
+  public Collection<Class<?>> register(Class<?> callback) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public Collection<Class<?>> register(Object callback) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+    return Collections.emptyMap();
+  }
+}
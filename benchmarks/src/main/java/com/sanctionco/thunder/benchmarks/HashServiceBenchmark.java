@@ -0,0 +1,65 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.sanctionco.thunder.crypto.HashAlgorithm;
+import com.sanctionco.thunder.crypto.HashService;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks password hashing and verification for each {@link HashAlgorithm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashServiceBenchmark {
+  private static final String PASSWORD = "5up3r-S3cure-P@ssw0rd";
+
+  @Param({"argon", "bcrypt", "sha256", "simple"})
+  private String algorithm;
+
+  @Param({"false", "true"})
+  private boolean allowCommonMistakes;
+
+  private HashService hashService;
+  private String hashed;
+
+  @Setup
+  public void setup() {
+    hashService = HashAlgorithm.fromString(algorithm).newHashService(true, allowCommonMistakes);
+    hashed = hashService.hash(PASSWORD);
+  }
+
+  @Benchmark
+  public String hash() {
+    return hashService.hash(PASSWORD);
+  }
+
+  @Benchmark
+  public boolean isMatch() {
+    return hashService.isMatch(PASSWORD, hashed);
+  }
+
+  /**
+   * With {@code allowCommonMistakes} enabled, a mismatch is the worst case since
+   * every common mistake variant is checked.
+   */
+  @Benchmark
+  public boolean isMatchIncorrect() {
+    return hashService.isMatch("incorrect-password", hashed);
+  }
+}
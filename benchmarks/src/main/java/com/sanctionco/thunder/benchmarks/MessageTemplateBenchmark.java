@@ -0,0 +1,85 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.sanctionco.thunder.email.MessageTemplate;
+import com.sanctionco.thunder.util.FileUtilities;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks building the bodies of a verification email from the default message files, with
+ * a compiled {@link MessageTemplate} and with the {@code String.replaceAll} calls that were made
+ * for each email before templates were compiled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageTemplateBenchmark {
+  private static final String PLACEHOLDER = MessageTemplate.Placeholder.URL.getDefaultString();
+  private static final String EMAIL = "test@test.com";
+  private static final String URL = "https://thunder.sanctionco.com/verify"
+      + "?email=test%40test.com&token=0f8c6a52-4d5e-4c8e-9a8f-1d2b3c4d5e6f&response_type=html";
+
+  private String bodyHtml;
+  private String bodyText;
+  private MessageTemplate htmlTemplate;
+  private MessageTemplate textTemplate;
+
+  @Setup
+  public void setup() {
+    bodyHtml = FileUtilities.readFileAsResources("verification.html");
+    bodyText = FileUtilities.readFileAsResources("verification.txt");
+
+    Map<MessageTemplate.Placeholder, String> placeholders
+        = new EnumMap<>(MessageTemplate.Placeholder.class);
+
+    for (var placeholder : MessageTemplate.Placeholder.values()) {
+      placeholders.put(placeholder, placeholder.getDefaultString());
+    }
+
+    htmlTemplate = MessageTemplate.compile(bodyHtml, placeholders);
+    textTemplate = MessageTemplate.compile(bodyText, placeholders);
+  }
+
+  @Benchmark
+  public void render(Blackhole blackhole) {
+    Map<MessageTemplate.Placeholder, String> values
+        = new EnumMap<>(MessageTemplate.Placeholder.class);
+
+    values.put(MessageTemplate.Placeholder.URL, URL);
+    values.put(MessageTemplate.Placeholder.EMAIL, EMAIL);
+
+    blackhole.consume(htmlTemplate.render(values));
+    blackhole.consume(textTemplate.render(values));
+  }
+
+  @Benchmark
+  public void replaceAll(Blackhole blackhole) {
+    blackhole.consume(replaceUrlPlaceholder(bodyHtml));
+    blackhole.consume(replaceUrlPlaceholder(bodyText));
+  }
+
+  private static String replaceUrlPlaceholder(String contents) {
+    if (!contents.contains(PLACEHOLDER)) {
+      throw new IllegalStateException("The contents do not contain the URL placeholder.");
+    }
+
+    return contents.replaceAll(PLACEHOLDER, URL);
+  }
+}
@@ -0,0 +1,50 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.sanctionco.thunder.validation.PropertyValidationConfiguration;
+import com.sanctionco.thunder.validation.PropertyValidator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link PropertyValidator#isValidPropertiesMap(Map)} under each combination of
+ * the {@code allowSubset} and {@code allowSuperset} options.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyValidatorBenchmark {
+  @Param({"false", "true"})
+  private boolean allowSubset;
+
+  @Param({"false", "true"})
+  private boolean allowSuperset;
+
+  private PropertyValidator validator;
+
+  @Setup
+  public void setup() {
+    validator = new PropertyValidator(BenchmarkResources.propertyValidationConfiguration(
+        allowSubset, allowSuperset));
+  }
+
+  @Benchmark
+  public boolean isValidPropertiesMap() {
+    return validator.isValidPropertiesMap(BenchmarkResources.PROPERTIES);
+  }
+}
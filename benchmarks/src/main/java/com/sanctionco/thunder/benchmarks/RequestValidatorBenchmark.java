@@ -0,0 +1,64 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.sanctionco.thunder.crypto.HashAlgorithm;
+import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.validation.RequestValidator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link RequestValidator} validation methods that run before
+ * every request reaches the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestValidatorBenchmark {
+  private static final String EMAIL = "benchmark.user@thunder.sanctionco.com";
+  private static final String PASSWORD = "password";
+
+  private RequestValidator validator;
+  private User user;
+
+  @Setup
+  public void setup() {
+    validator = BenchmarkResources.requestValidator(
+        HashAlgorithm.SIMPLE.newHashService(false, false));
+    user = BenchmarkResources.user(EMAIL, PASSWORD);
+  }
+
+  @Benchmark
+  public User validateUser() {
+    validator.validate(user);
+
+    return user;
+  }
+
+  @Benchmark
+  public String validatePasswordAndEmail() {
+    validator.validate(PASSWORD, EMAIL, false);
+
+    return EMAIL;
+  }
+
+  @Benchmark
+  public User validatePasswordEmailAndUser() {
+    validator.validate(PASSWORD, EMAIL, user);
+
+    return user;
+  }
+}
@@ -0,0 +1,72 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sanctionco.thunder.authentication.basic.Key;
+import com.sanctionco.thunder.crypto.HashAlgorithm;
+import com.sanctionco.thunder.crypto.HashService;
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.dao.inmemorydb.InMemoryDbUsersDao;
+import com.sanctionco.thunder.dao.inmemorydb.RuntimeMemoryInfo;
+import com.sanctionco.thunder.resources.RequestOptions;
+import com.sanctionco.thunder.resources.UserResource;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the full {@link UserResource#getUser} path, including request validation,
+ * the database lookup against an {@link InMemoryDbUsersDao}, and password header
+ * verification for each {@link HashAlgorithm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserResourceBenchmark {
+  private static final String EMAIL = "benchmark.user@thunder.sanctionco.com";
+  private static final String PASSWORD = "5up3r-S3cure-P@ssw0rd";
+  private static final Principal AUTH = new Key("application", "secret");
+
+  @Param({"argon", "bcrypt", "sha256", "simple"})
+  private String algorithm;
+
+  private UserResource resource;
+
+  @Setup
+  public void setup() {
+    HashService hashService = HashAlgorithm.fromString(algorithm).newHashService(true, false);
+    UsersDao usersDao = new InMemoryDbUsersDao(new RuntimeMemoryInfo(Runtime.getRuntime()), 100);
+
+    usersDao.insert(BenchmarkResources.user(EMAIL, hashService.hash(PASSWORD))).join();
+
+    resource = new UserResource(
+        usersDao,
+        new RequestOptions(),
+        BenchmarkResources.requestValidator(hashService),
+        hashService,
+        new MetricRegistry());
+  }
+
+  @Benchmark
+  public Object getUser() {
+    CapturingAsyncResponse response = new CapturingAsyncResponse();
+
+    resource.getUser(response, AUTH, PASSWORD, EMAIL, null, null);
+
+    return response.getResult();
+  }
+}
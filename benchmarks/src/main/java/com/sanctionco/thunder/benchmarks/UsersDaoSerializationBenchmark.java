@@ -0,0 +1,64 @@
+package com.sanctionco.thunder.benchmarks;
+
+import com.sanctionco.thunder.dao.UsersDao;
+import com.sanctionco.thunder.models.Email;
+import com.sanctionco.thunder.models.User;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link UsersDao#toJson} and {@link UsersDao#fromJson}, which every database
+ * backend uses to store the user document. The number of extra properties is varied to show
+ * how the cost grows with large user profiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UsersDaoSerializationBenchmark {
+
+  @Param({"4", "64", "512"})
+  private int propertyCount;
+
+  private User user;
+  private String json;
+
+  @Setup
+  public void setup() {
+    Map<String, Object> properties = new HashMap<>(BenchmarkResources.PROPERTIES);
+
+    for (int i = properties.size(); i < propertyCount; i++) {
+      properties.put("property" + i, "value-" + i);
+    }
+
+    user = new User(new Email("benchmark@thunder.sanctionco.com", true, "token"),
+        "password", properties);
+    json = UsersDao.toJson(BenchmarkResources.MAPPER, user);
+  }
+
+  @Benchmark
+  public String toJson() {
+    return UsersDao.toJson(BenchmarkResources.MAPPER, user);
+  }
+
+  @Benchmark
+  public User fromJson() {
+    return UsersDao.fromJson(BenchmarkResources.MAPPER, json);
+  }
+}
@@ -1,9 +1,12 @@
 package com.sanctionco.thunder;
 
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.ResponseType;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
 import com.sanctionco.thunder.testing.ThunderClientFake;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import retrofit2.http.Body;
@@ -67,6 +70,21 @@ public interface ThunderClient {
   CompletableFuture<User> getUser(@Query("email") String email,
                                   @Header("password") String password);
 
+  /**
+   * Gets the user whose indexed property has the given value from the user database. The
+   * property must be indexed in the Thunder configuration, and exactly one user may have the
+   * value.
+   *
+   * @param property the name of the indexed property
+   * @param value the value of the property
+   * @param password the user's password
+   * @return a {@link CompletableFuture} that holds the user after the request completes
+   */
+  @GET("users")
+  CompletableFuture<User> getUserByProperty(@Query("property") String property,
+                                            @Query("value") String value,
+                                            @Header("password") String password);
+
   /**
    * Deletes the user with the given email address from the user database.
    *
@@ -78,6 +96,55 @@ public interface ThunderClient {
   CompletableFuture<User> deleteUser(@Query("email") String email,
                                      @Header("password") String password);
 
+  /**
+   * Creates each of the given users in the user database. Each user is created independently,
+   * so check the status of each result to see which users were created.
+   *
+   * @param users the users to create
+   * @return a {@link CompletableFuture} that holds one result per user, in the same order as the
+   *     given users, after the request completes
+   */
+  @POST("users/batch")
+  CompletableFuture<List<BatchItemResult>> postUsers(@Body List<User> users);
+
+  /**
+   * Gets each of the users with the given email addresses from the user database. This request
+   * is rejected if the password header check is enabled.
+   *
+   * @param emails the users' email addresses
+   * @return a {@link CompletableFuture} that holds one result per email address, in the same
+   *     order as the given email addresses, after the request completes
+   */
+  @GET("users/batch")
+  CompletableFuture<List<BatchItemResult>> getUsers(@Query("email") List<String> emails);
+
+  /**
+   * Deletes each of the users with the given email addresses from the user database. This
+   * request is rejected if the password header check is enabled.
+   *
+   * @param emails the users' email addresses
+   * @return a {@link CompletableFuture} that holds one result per email address, in the same
+   *     order as the given email addresses, after the request completes
+   */
+  @DELETE("users/batch")
+  CompletableFuture<List<BatchItemResult>> deleteUsers(@Query("email") List<String> emails);
+
+  /**
+   * Gets one page of users from the user database. Pass the token from the returned page to get
+   * the next page; the last page has no token. A page may contain fewer users than the limit
+   * even when there are more users to list. This request is rejected if the password header
+   * check is enabled.
+   *
+   * @param limit the maximum number of users to return, or {@code null} for the default of 100
+   * @param token the token from the previous page, or {@code null} to get the first page
+   * @param verified if not {@code null}, only get users with this email verification status
+   * @return a {@link CompletableFuture} that holds the page of users after the request completes
+   */
+  @GET("users/list")
+  CompletableFuture<UserList> listUsers(@Query("limit") Integer limit,
+                                        @Query("token") String token,
+                                        @Query("verified") Boolean verified);
+
   /**
    * Sends a verification email to the user with the given email address.
    *
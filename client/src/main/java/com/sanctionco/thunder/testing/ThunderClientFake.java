@@ -1,10 +1,16 @@
 package com.sanctionco.thunder.testing;
 
 import com.sanctionco.thunder.ThunderClient;
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.ResponseType;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -21,6 +27,9 @@ import retrofit2.Response;
  * make any network calls, but stores user data in-memory.
  */
 public class ThunderClientFake implements ThunderClient {
+  private static final int DEFAULT_LIST_LIMIT = 100;
+  private static final int MAX_LIST_LIMIT = 1000;
+
   private final ConcurrentMap<String, User> inMemoryStore = new ConcurrentHashMap<>();
 
   private final boolean requirePasswordHeader;
@@ -79,6 +88,27 @@ public class ThunderClientFake implements ThunderClient {
     return CompletableFuture.completedFuture(user);
   }
 
+  @Override
+  public CompletableFuture<User> getUserByProperty(String property,
+                                                   String value,
+                                                   String password) {
+    // Every property can be looked up, and values are compared by their string form
+    var matches = inMemoryStore.values().stream()
+        .filter(user -> user.getProperties().get(property) != null)
+        .filter(user -> value.equals(String.valueOf(user.getProperties().get(property))))
+        .toList();
+
+    if (matches.isEmpty()) {
+      return fail(404);
+    }
+
+    if (matches.size() > 1) {
+      return fail(409);
+    }
+
+    return getUser(matches.getFirst().getEmail().getAddress(), password);
+  }
+
   @Override
   public CompletableFuture<User> deleteUser(String email, String password) {
     var user = inMemoryStore.get(email);
@@ -95,6 +125,79 @@ public class ThunderClientFake implements ThunderClient {
     return CompletableFuture.completedFuture(user);
   }
 
+  @Override
+  public CompletableFuture<List<BatchItemResult>> postUsers(List<User> users) {
+    return CompletableFuture.completedFuture(users.stream()
+        .map(user -> inMemoryStore.putIfAbsent(user.getEmail().getAddress(), user) == null
+            ? BatchItemResult.success(201, user)
+            : BatchItemResult.failure(user.getEmail().getAddress(), 409, "Conflict"))
+        .toList());
+  }
+
+  @Override
+  public CompletableFuture<List<BatchItemResult>> getUsers(List<String> emails) {
+    if (requirePasswordHeader) {
+      return fail(400);
+    }
+
+    return CompletableFuture.completedFuture(emails.stream()
+        .map(email -> Optional.ofNullable(inMemoryStore.get(email))
+            .map(user -> BatchItemResult.success(200, user))
+            .orElseGet(() -> BatchItemResult.failure(email, 404, "Not Found")))
+        .toList());
+  }
+
+  @Override
+  public CompletableFuture<List<BatchItemResult>> deleteUsers(List<String> emails) {
+    if (requirePasswordHeader) {
+      return fail(400);
+    }
+
+    return CompletableFuture.completedFuture(emails.stream()
+        .map(email -> Optional.ofNullable(inMemoryStore.remove(email))
+            .map(user -> BatchItemResult.success(200, user))
+            .orElseGet(() -> BatchItemResult.failure(email, 404, "Not Found")))
+        .toList());
+  }
+
+  @Override
+  public CompletableFuture<UserList> listUsers(Integer limit, String token, Boolean verified) {
+    int pageSize = Optional.ofNullable(limit).orElse(DEFAULT_LIST_LIMIT);
+
+    if (requirePasswordHeader || pageSize < 1 || pageSize > MAX_LIST_LIMIT) {
+      return fail(400);
+    }
+
+    // Users are listed in email order, and the token holds the last email of the previous page
+    String after;
+
+    try {
+      after = token == null
+          ? ""
+          : new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return fail(400);
+    }
+
+    List<User> page = inMemoryStore.values().stream()
+        .filter(user -> user.getEmail().getAddress().compareTo(after) > 0)
+        .sorted(Comparator.comparing(user -> user.getEmail().getAddress()))
+        .limit(pageSize + 1L)
+        .toList();
+
+    String nextToken = page.size() > pageSize
+        ? Base64.getUrlEncoder().withoutPadding().encodeToString(page.get(pageSize - 1)
+            .getEmail().getAddress().getBytes(StandardCharsets.UTF_8))
+        : null;
+
+    return CompletableFuture.completedFuture(new UserList(
+        page.stream()
+            .limit(pageSize)
+            .filter(user -> verified == null || verified == user.getEmail().isVerified())
+            .toList(),
+        nextToken));
+  }
+
   @Override
   public CompletableFuture<User> sendVerificationEmail(String email, String password) {
     // This does not actually send an email, but it does update the verification token of the user.
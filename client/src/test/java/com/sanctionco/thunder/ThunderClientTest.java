@@ -1,9 +1,11 @@
 package com.sanctionco.thunder;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.ResponseType;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
 
 import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.junit5.DropwizardClientExtension;
@@ -22,6 +24,7 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import org.junit.jupiter.api.Test;
@@ -86,14 +89,20 @@ class ThunderClientTest {
     }
 
     /**
-     * Sample getUser method. The email and password must be present.
+     * Sample getUser method. The email, or the property and value, and the password must be
+     * present.
      */
     @GET
     @TestDouble
     @Path("users")
     public Response getUser(@QueryParam("email") String email,
+                            @QueryParam("property") String property,
+                            @QueryParam("value") String value,
                             @HeaderParam("password") String password) {
-      if (email == null || email.isEmpty() || password == null || password.isEmpty()) {
+      boolean hasEmail = email != null && !email.isEmpty();
+      boolean hasProperty = property != null && value != null;
+
+      if (hasEmail == hasProperty || password == null || password.isEmpty()) {
         return Response.status(Response.Status.BAD_REQUEST)
             .entity(null).build();
       }
@@ -119,6 +128,74 @@ class ThunderClientTest {
           .entity(user).build();
     }
 
+    /**
+     * Sample postUsers method. The list of users must be present.
+     */
+    @POST
+    @TestDouble
+    @Path("users/batch")
+    public Response postUsers(List<User> users) {
+      if (users == null || users.isEmpty()) {
+        return Response.status(Response.Status.BAD_REQUEST)
+            .entity(null).build();
+      }
+
+      return Response.status(Response.Status.OK)
+          .entity(users.stream().map(u -> BatchItemResult.success(201, u)).toList()).build();
+    }
+
+    /**
+     * Sample getUsers method. At least one email must be present.
+     */
+    @GET
+    @TestDouble
+    @Path("users/batch")
+    public Response getUsers(@QueryParam("email") List<String> emails) {
+      if (emails == null || emails.isEmpty()) {
+        return Response.status(Response.Status.BAD_REQUEST)
+            .entity(null).build();
+      }
+
+      return Response.status(Response.Status.OK)
+          .entity(emails.stream().map(e -> BatchItemResult.failure(e, 404, "Not Found")).toList())
+          .build();
+    }
+
+    /**
+     * Sample deleteUsers method. At least one email must be present.
+     */
+    @DELETE
+    @TestDouble
+    @Path("users/batch")
+    public Response deleteUsers(@QueryParam("email") List<String> emails) {
+      if (emails == null || emails.isEmpty()) {
+        return Response.status(Response.Status.BAD_REQUEST)
+            .entity(null).build();
+      }
+
+      return Response.status(Response.Status.OK)
+          .entity(emails.stream().map(e -> BatchItemResult.success(200, user)).toList())
+          .build();
+    }
+
+    /**
+     * Sample listUsers method. The first page has a token, and the second page does not.
+     */
+    @GET
+    @TestDouble
+    @Path("users/list")
+    public Response listUsers(@QueryParam("limit") Integer limit,
+                              @QueryParam("token") String token) {
+      if (limit != null && limit < 1) {
+        return Response.status(Response.Status.BAD_REQUEST)
+            .entity(null).build();
+      }
+
+      return Response.status(Response.Status.OK)
+          .entity(new UserList(List.of(user), token == null ? "next" : null))
+          .build();
+    }
+
     /**
      * Sample sendEmail method. The email and password must be present.
      */
@@ -206,6 +283,13 @@ class ThunderClientTest {
     assertEquals(user.getEmail(), response.getEmail());
   }
 
+  @Test
+  void testGetUserByProperty() throws Exception {
+    User response = client.getUserByProperty("username", "tester", password).get();
+
+    assertEquals(user.getEmail(), response.getEmail());
+  }
+
   @Test
   void testDeleteUser() throws Exception {
     User response = client.deleteUser("email", password).get();
@@ -213,6 +297,61 @@ class ThunderClientTest {
     assertEquals(user.getEmail(), response.getEmail());
   }
 
+  @Test
+  void testPostUsers() throws Exception {
+    List<BatchItemResult> response = client.postUsers(List.of(user)).get();
+
+    assertEquals(List.of(BatchItemResult.success(201, user)), response);
+  }
+
+  @Test
+  void testGetUsers() throws Exception {
+    List<BatchItemResult> response = client.getUsers(List.of("first", "second")).get();
+
+    assertAll(
+        () -> assertEquals(2, response.size()),
+        () -> assertEquals("first", response.get(0).getEmail()),
+        () -> assertEquals("second", response.get(1).getEmail()),
+        () -> assertEquals(404, response.get(1).getStatus()));
+  }
+
+  @Test
+  void testGetUsersEmpty() {
+    ExecutionException exception = assertThrows(ExecutionException.class,
+        () -> client.getUsers(List.of()).get());
+
+    assertAll(
+        () -> assertTrue(exception.getCause() instanceof HttpException),
+        () -> assertTrue(exception.getMessage().contains("400 Bad Request")));
+  }
+
+  @Test
+  void testDeleteUsers() throws Exception {
+    List<BatchItemResult> response = client.deleteUsers(List.of("email")).get();
+
+    assertEquals(List.of(BatchItemResult.success(200, user)), response);
+  }
+
+  @Test
+  void testListUsers() throws Exception {
+    UserList first = client.listUsers(10, null, null).get();
+    UserList second = client.listUsers(10, first.getNextToken(), true).get();
+
+    assertAll(
+        () -> assertEquals(new UserList(List.of(user), "next"), first),
+        () -> assertEquals(new UserList(List.of(user), null), second));
+  }
+
+  @Test
+  void testListUsersInvalidLimit() {
+    ExecutionException exception = assertThrows(ExecutionException.class,
+        () -> client.listUsers(0, null, null).get());
+
+    assertAll(
+        () -> assertTrue(exception.getCause() instanceof HttpException),
+        () -> assertTrue(exception.getMessage().contains("400 Bad Request")));
+  }
+
   @Test
   void testSendVerificationEmail() throws Exception {
     User response = client.sendVerificationEmail("email", password).get();
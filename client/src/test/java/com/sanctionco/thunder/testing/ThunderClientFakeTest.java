@@ -1,11 +1,15 @@
 package com.sanctionco.thunder.testing;
 
 import com.sanctionco.thunder.ThunderClient;
+import com.sanctionco.thunder.models.BatchItemResult;
 import com.sanctionco.thunder.models.Email;
 import com.sanctionco.thunder.models.ResponseType;
 import com.sanctionco.thunder.models.User;
+import com.sanctionco.thunder.models.UserList;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import org.junit.jupiter.api.Test;
@@ -59,6 +63,25 @@ class ThunderClientFakeTest {
     assertFailure(() -> client.getUser(ADDRESS, "WRONG").get(), 401);
   }
 
+  @Test
+  void ensureGetByPropertyWorks() {
+    var client = ThunderClient.fake();
+    var user = new User(Email.unverified(ADDRESS), PASSWORD, Map.of("username", "tester"));
+    var other = new User(Email.unverified("b@test.com"), PASSWORD, Map.of("username", 10));
+
+    client.postUsers(List.of(user, other)).join();
+
+    assertEquals(user, client.getUserByProperty("username", "tester", PASSWORD).join());
+    assertEquals(other, client.getUserByProperty("username", "10", PASSWORD).join());
+    assertFailure(() -> client.getUserByProperty("username", "tester", "WRONG").get(), 401);
+    assertFailure(() -> client.getUserByProperty("username", "missing", PASSWORD).get(), 404);
+
+    client.postUser(new User(Email.unverified("c@test.com"), PASSWORD,
+        Map.of("username", "tester"))).join();
+
+    assertFailure(() -> client.getUserByProperty("username", "tester", PASSWORD).get(), 409);
+  }
+
   @Test
   void ensureGetWorksWithoutPassword() {
     var client = ThunderClient.fake(false);
@@ -176,6 +199,79 @@ class ThunderClientFakeTest {
     assertEquals(user, deleteUser);
   }
 
+  @Test
+  void ensureBatchPostWorks() {
+    var client = ThunderClient.fake();
+    var user = new User(Email.unverified(ADDRESS), PASSWORD, Collections.emptyMap());
+
+    var results = client.postUsers(List.of(user, user)).join();
+
+    // The second user is a duplicate of the first
+    assertAll(
+        () -> assertEquals(BatchItemResult.success(201, user), results.get(0)),
+        () -> assertEquals(409, results.get(1).getStatus()),
+        () -> assertEquals(user, client.getUser(ADDRESS, PASSWORD).join()));
+  }
+
+  @Test
+  void ensureBatchGetAndDeleteWork() {
+    var client = ThunderClient.fake(false);
+    var user = new User(Email.unverified(ADDRESS), PASSWORD, Collections.emptyMap());
+
+    client.postUser(user).join();
+
+    var found = client.getUsers(List.of(ADDRESS, "other@test.com")).join();
+
+    assertAll(
+        () -> assertEquals(BatchItemResult.success(200, user), found.get(0)),
+        () -> assertEquals(404, found.get(1).getStatus()));
+
+    var deleted = client.deleteUsers(List.of(ADDRESS, ADDRESS)).join();
+
+    assertAll(
+        () -> assertEquals(BatchItemResult.success(200, user), deleted.get(0)),
+        () -> assertEquals(404, deleted.get(1).getStatus()));
+
+    assertFailure(() -> client.getUser(ADDRESS, PASSWORD).get(), 404);
+  }
+
+  @Test
+  void ensureBatchGetAndDeleteFailWithPassword() {
+    var client = ThunderClient.fake();
+
+    assertFailure(() -> client.getUsers(List.of(ADDRESS)).get(), 400);
+    assertFailure(() -> client.deleteUsers(List.of(ADDRESS)).get(), 400);
+  }
+
+  @Test
+  void ensureListPagesThroughUsers() {
+    var client = ThunderClient.fake(false);
+    var first = new User(Email.unverified("a@test.com"), PASSWORD, Collections.emptyMap());
+    var second = new User(new Email("b@test.com", true, null), PASSWORD, Collections.emptyMap());
+    var third = new User(Email.unverified("c@test.com"), PASSWORD, Collections.emptyMap());
+
+    client.postUsers(List.of(third, first, second)).join();
+
+    var page = client.listUsers(2, null, null).join();
+    var last = client.listUsers(2, page.getNextToken(), null).join();
+    var verified = client.listUsers(null, null, true).join();
+
+    assertAll(
+        () -> assertEquals(List.of(first, second), page.getUsers()),
+        () -> assertNotNull(page.getNextToken()),
+        () -> assertEquals(new UserList(List.of(third), null), last),
+        () -> assertEquals(new UserList(List.of(second), null), verified));
+  }
+
+  @Test
+  void ensureListFailsWithInvalidRequest() {
+    var client = ThunderClient.fake(false);
+
+    assertFailure(() -> ThunderClient.fake().listUsers(10, null, null).get(), 400);
+    assertFailure(() -> client.listUsers(0, null, null).get(), 400);
+    assertFailure(() -> client.listUsers(10, "not a token!", null).get(), 400);
+  }
+
   @Test
   void ensureSendEmailWorks() {
     var client = ThunderClient.fake();